@@ -1,7 +1,38 @@
 package banking;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Represents a bank account with balance and status management.
+ * 
+ * Thread safety:
+ *   Mutations are guarded by a per-account lock. Accounts that see heavy
+ *   lock contention (merchant settlement, fee collection) are promoted to
+ *   "hot" mode, where deposits are added to per-core balance stripes
+ *   without taking the lock and the balance is summed on read.
+ *   Withdrawals always take the lock, so they see a lower bound of the
+ *   true balance and can never overdraw. A striped deposit checks the
+ *   status and adds while registered as in flight; setStatus() closes
+ *   the striped path and waits for in-flight deposits before changing
+ *   the status, so no deposit lands on a status that forbids it.
+ * 
+ * Amounts:
+ *   The balance is held in minor units (cents). Amounts given as Money
+ *   are applied exactly; double amounts are rounded to the nearest cent
+ *   on the way in, and an amount that rounds to zero is rejected.
+ * 
+ * Storage:
+ *   Balance, status and lock are reached through protected hooks, so a
+ *   subclass can keep them elsewhere (see OffHeapAccountTable) and still
+ *   run through TransactionProcessor and AccountService unchanged.
  */
 public class Account {
     
@@ -11,100 +42,641 @@ public class Account {
     public static final String SUSPENDED = "Suspended";
     public static final String CLOSED = "Closed";
     
+    // Hot-account promotion: lock acquisitions sampled per window, and how
+    // many of them must have been contended to promote the account.
+    static final int CONTENTION_WINDOW = 1024;
+    static final int CONTENTION_THRESHOLD = 64;
+    
+    // Failed optimistic reads before a snapshot falls back to the lock
+    static final int SNAPSHOT_SPINS = 64;
+    
+    // applyEndOfDay() result for an account already adjusted that day
+    static final long END_OF_DAY_DONE = Long.MIN_VALUE;
+    
+    // Breaks ties when two distinct locks have the same identity hash
+    private static final ReentrantLock TIE_LOCK = new ReentrantLock();
+    
     private final String accountId;
-    private double balance;
-    private String status;
+    private final ReentrantLock lock;
+    private volatile long balance;
+    private volatile String status;
+    
+    // Seqlock version: odd while a locked write is in progress
+    private volatile long version;
+    
+    // Deposit stripes, non-null once the account is hot
+    private volatile LongAdder stripes;
+    // Striped deposits that began and that finished (whether or not they
+    // added anything); set before stripes. Two counters that only grow,
+    // rather than one that goes up and down, see setStatus()
+    private volatile LongAdder depositsStarted;
+    private volatile LongAdder depositsFinished;
+    // Set by setStatus() while it waits for deposits in flight
+    private volatile boolean statusChanging;
+    private int acquisitions;
+    private int contentions;
+    
+    // Client whose aggregates track this account, if any
+    private volatile Client owner;
+    
+    // Last business day the end-of-day batch adjusted this account
+    private long lastEndOfDay = Long.MIN_VALUE;
     
     public Account(String accountId, double initialBalance) {
-        this.accountId = accountId;
-        this.balance = initialBalance;
-        this.status = UNVERIFIED;
+        this(accountId, initialBalance, UNVERIFIED);
     }
     
     public Account(String accountId, double initialBalance, String status) {
+        this(accountId, status, Money.toMinorUnits(initialBalance));
+    }
+    
+    public Account(String accountId, Money initialBalance, String status) {
+        this(accountId, status, initialBalance.getMinorUnits());
+    }
+    
+    private Account(String accountId, String status, long initialMinorUnits) {
         this.accountId = accountId;
-        this.balance = initialBalance;
+        this.lock = new ReentrantLock();
+        this.balance = initialMinorUnits;
         this.status = status;
     }
     
+    /**
+     * For subclasses that keep balance, status and lock outside the
+     * object and override the storage hooks.
+     */
+    protected Account(String accountId) {
+        this.accountId = accountId;
+        this.lock = null;
+    }
+    
     /**
      * Deposits money into the account.
      * 
      * Control Flow:
-     *   1. Check if CLOSED -> return false
-     *   2. Check if amount <= 0 -> return false
-     *   3. Add to balance -> return true
+     *   1. Check the deposit rules for status and amount
+     *      (default: not CLOSED, amount > 0) -> return false
+     *   2. Add to balance -> return true
+     * 
+     * Both steps run under the lock, or for hot accounts inside the
+     * in-flight window that setStatus() waits out.
      */
     public boolean deposit(double amount) {
-        // Branch 1: Status check
-        if (status.equals(CLOSED)) {
-            return false;
+        return depositMinorUnits(Money.amountMinorUnits(amount), ValidationRules.DEFAULT);
+    }
+    
+    public boolean deposit(Money amount) {
+        return depositMinorUnits(amount.getMinorUnits(), ValidationRules.DEFAULT);
+    }
+    
+    boolean depositMinorUnits(long amount, ValidationRules rules) {
+        // Hot accounts add to a stripe without locking, unless a status
+        // change is under way
+        LongAdder hot = stripes;
+        if (hot != null) {
+            LongAdder finished = depositsFinished;
+            depositsStarted.increment();
+            try {
+                if (!statusChanging) {
+                    // Branch 1: Status and amount rules
+                    if (!rules.permits(ValidationRules.Operation.DEPOSIT, this, loadStatus(), amount)) {
+                        return false;
+                    }
+                    // Success path
+                    hot.add(amount);
+                    balanceChanged(amount);
+                    return true;
+                }
+            } finally {
+                finished.increment();
+            }
         }
-        // Branch 2: Amount validation
-        if (amount <= 0) {
-            return false;
+        lockTracked();
+        try {
+            // Branch 1: Status and amount rules
+            if (!rules.permits(ValidationRules.Operation.DEPOSIT, this, loadStatus(), amount)) {
+                return false;
+            }
+            // Success path
+            credit(amount);
+            return true;
+        } finally {
+            lock().unlock();
         }
-        // Success path
-        balance += amount;
-        return true;
     }
     
     /**
      * Withdraws money from the account.
      * 
      * Control Flow:
-     *   1. Check if CLOSED -> return false
-     *   2. Check if SUSPENDED -> return false
-     *   3. Check if amount <= 0 -> return false
-     *   4. Check if amount > balance -> return false
-     *   5. Subtract from balance -> return true
+     *   1. Check if amount > balance -> return false
+     *   2. Check the withdrawal rules for status and amount
+     *      (default: not CLOSED or SUSPENDED, amount > 0) -> return false
+     *   3. Subtract from balance -> return true
      */
     public boolean withdraw(double amount) {
-        // Branch 1: Closed check
-        if (status.equals(CLOSED)) {
-            return false;
-        }
-        // Branch 2: Suspended check
-        if (status.equals(SUSPENDED)) {
-            return false;
-        }
-        // Branch 3: Amount validation
-        if (amount <= 0) {
-            return false;
-        }
-        // Branch 4: Balance check
-        if (amount > balance) {
-            return false;
+        return withdrawMinorUnits(Money.amountMinorUnits(amount), ValidationRules.DEFAULT)
+                == TransactionProcessor.Result.OK;
+    }
+    
+    public boolean withdraw(Money amount) {
+        return withdrawMinorUnits(amount.getMinorUnits(), ValidationRules.DEFAULT)
+                == TransactionProcessor.Result.OK;
+    }
+    
+    /**
+     * @return Result.OK, INSUFFICIENT_FUNDS or WITHDRAWAL_FAILED
+     */
+    int withdrawMinorUnits(long amount, ValidationRules rules) {
+        lockTracked();
+        try {
+            // Branch 1: Balance check
+            if (amount > getBalanceMinorUnits()) {
+                return TransactionProcessor.Result.INSUFFICIENT_FUNDS;
+            }
+            // Branch 2: Status and amount rules
+            if (!rules.permits(ValidationRules.Operation.WITHDRAW, this, loadStatus(), amount)) {
+                return TransactionProcessor.Result.WITHDRAWAL_FAILED;
+            }
+            // Success path
+            beginWrite();
+            storeBalance(loadBalance() - amount);
+            endWrite();
+            balanceChanged(-amount);
+            return TransactionProcessor.Result.OK;
+        } finally {
+            lock().unlock();
         }
-        // Success path
-        balance -= amount;
-        return true;
     }
     
     /**
      * Transfers money to another account.
      */
     public boolean transfer(Account target, double amount) {
+        return transferMinorUnits(target, Money.amountMinorUnits(amount), ValidationRules.DEFAULT);
+    }
+    
+    public boolean transfer(Account target, Money amount) {
+        return transferMinorUnits(target, amount.getMinorUnits(), ValidationRules.DEFAULT);
+    }
+    
+    boolean transferMinorUnits(Account target, long amount, ValidationRules rules) {
         if (target == null) {
             return false;
         }
-        if (!status.equals(VERIFIED)) {
-            return false;
+        lockBoth(this, target);
+        try {
+            if (!rules.permits(ValidationRules.Operation.TRANSFER_OUT, this, loadStatus(), amount)) {
+                return false;
+            }
+            if (amount > getBalanceMinorUnits()) {
+                return false;
+            }
+            if (!rules.permits(ValidationRules.Operation.TRANSFER_IN, target, target.loadStatus(), amount)) {
+                return false;
+            }
+            beginWrite();
+            storeBalance(loadBalance() - amount);
+            endWrite();
+            balanceChanged(-amount);
+            target.credit(amount);
+            return true;
+        } finally {
+            unlockBoth(this, target);
         }
-        if (amount <= 0 || amount > balance) {
-            return false;
+    }
+    
+    /**
+     * Debits this account once and credits every target of a bulk
+     * transfer, holding the locks of all accounts involved throughout.
+     * 
+     * Control Flow:
+     *   1. Check the transfer-out rules for every amount -> TRANSFER_FAILED
+     *   2. Check the transfer-in rules per target -> reject that credit
+     *      (strict: any rejection -> TRANSFER_FAILED)
+     *   3. Check if total of accepted credits > balance -> INSUFFICIENT_FUNDS
+     *   4. Subtract the total once, add each accepted credit -> OK
+     * 
+     * @param rejected receives the credits not applied
+     * @return Result.OK, INSUFFICIENT_FUNDS or TRANSFER_FAILED
+     */
+    int transferToManyMinorUnits(List<BulkTransfer.Credit> credits, boolean strict,
+                                 ValidationRules rules, List<BulkTransfer.Rejection> rejected) {
+        List<Account> involved = new ArrayList<>(credits.size() + 1);
+        involved.add(this);
+        for (BulkTransfer.Credit credit : credits) {
+            if (credit.getTarget() != null) {
+                involved.add(credit.getTarget());
+            }
         }
-        if (target.status.equals(CLOSED)) {
-            return false;
+        ReentrantLock[] locks = lockAll(involved);
+        try {
+            String status = loadStatus();
+            boolean[] accepted = new boolean[credits.size()];
+            int acceptedCount = 0;
+            long total = 0;
+            for (int i = 0; i < credits.size(); i++) {
+                BulkTransfer.Credit credit = credits.get(i);
+                long amount = credit.getAmountMinorUnits();
+                // Branch 1: The source must be able to send every amount
+                if (!rules.permits(ValidationRules.Operation.TRANSFER_OUT, this, status, amount)) {
+                    rejected.clear();
+                    return TransactionProcessor.Result.TRANSFER_FAILED;
+                }
+                // Branch 2: Targets that may not receive are skipped
+                Account target = credit.getTarget();
+                String targetStatus = target == null ? null : target.loadStatus();
+                if (target == null
+                        || !rules.permits(ValidationRules.Operation.TRANSFER_IN, target, targetStatus, amount)) {
+                    rejected.add(new BulkTransfer.Rejection(credit, targetStatus));
+                    continue;
+                }
+                accepted[i] = true;
+                acceptedCount++;
+                total = Math.addExact(total, amount);
+            }
+            if (acceptedCount == 0 || strict && !rejected.isEmpty()) {
+                return TransactionProcessor.Result.TRANSFER_FAILED;
+            }
+            // Branch 3: Balance check, once for the whole batch
+            if (total > getBalanceMinorUnits()) {
+                return TransactionProcessor.Result.INSUFFICIENT_FUNDS;
+            }
+            // Success path
+            beginWrite();
+            storeBalance(loadBalance() - total);
+            endWrite();
+            balanceChanged(-total);
+            for (int i = 0; i < credits.size(); i++) {
+                if (accepted[i]) {
+                    credits.get(i).getTarget().credit(credits.get(i).getAmountMinorUnits());
+                }
+            }
+            return TransactionProcessor.Result.OK;
+        } finally {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
         }
-        balance -= amount;
-        target.balance += amount;
-        return true;
     }
     
+    /**
+     * Applies the end-of-day interest/fee adjustment at most once per
+     * business day.
+     * 
+     * @return the adjustment in minor units, or END_OF_DAY_DONE if the
+     *         account was already adjusted for that day
+     */
+    long applyEndOfDay(long businessDay, RateTable rates) {
+        lock().lock();
+        try {
+            if (loadLastEndOfDay() >= businessDay) {
+                return END_OF_DAY_DONE;
+            }
+            long adjustment = Money.toMinorUnits(rates.adjustment(loadStatus(), getBalance()));
+            beginWrite();
+            storeBalance(loadBalance() + adjustment);
+            endWrite();
+            balanceChanged(adjustment);
+            storeLastEndOfDay(businessDay);
+            return adjustment;
+        } finally {
+            lock().unlock();
+        }
+    }
+    
+    /**
+     * Switches the account to striped deposits. Called automatically once
+     * contention crosses the threshold, or up front for accounts known to
+     * be hot.
+     */
+    public void promoteToHot() {
+        if (!supportsStriping()) {
+            return;
+        }
+        lock().lock();
+        try {
+            if (stripes == null) {
+                depositsStarted = new LongAdder();
+                depositsFinished = new LongAdder();
+                stripes = new LongAdder();
+            }
+        } finally {
+            lock().unlock();
+        }
+    }
+    
+    public boolean isHot() {
+        return stripes != null;
+    }
+    
+    // Caller holds the lock
+    private void credit(long amount) {
+        LongAdder hot = stripes;
+        if (hot != null) {
+            hot.add(amount);
+        } else {
+            beginWrite();
+            storeBalance(loadBalance() + amount);
+            endWrite();
+        }
+        balanceChanged(amount);
+    }
+    
+    // Caller holds the lock; applies a netted change in one step
+    void applyNetMinorUnits(long delta) {
+        if (delta > 0) {
+            credit(delta);
+            return;
+        }
+        beginWrite();
+        storeBalance(loadBalance() + delta);
+        endWrite();
+        balanceChanged(delta);
+    }
+    
+    // Keeps the owning client's aggregates in step
+    private void balanceChanged(long delta) {
+        Client client = owner;
+        if (client != null) {
+            client.balanceChanged(delta);
+        }
+    }
+    
+    /**
+     * Links the account to its client and adds it to the client's
+     * aggregates. Attach before the account sees concurrent traffic.
+     */
+    void attach(Client client) {
+        lock().lock();
+        try {
+            owner = client;
+            client.accountAttached(getBalanceMinorUnits(), loadStatus());
+        } finally {
+            lock().unlock();
+        }
+    }
+    
+    /** The client the account is attached to, or null. */
+    Client getOwner() {
+        return owner;
+    }
+    
+    /**
+     * Unlinks the account from its client and takes it out of the
+     * client's aggregates.
+     */
+    void detach(Client client) {
+        lock().lock();
+        try {
+            if (owner == client) {
+                owner = null;
+                client.accountDetached(getBalanceMinorUnits(), loadStatus());
+            }
+        } finally {
+            lock().unlock();
+        }
+    }
+    
+    // Caller holds the lock; readers retry while the version is odd
+    private void beginWrite() {
+        version++;
+    }
+    
+    private void endWrite() {
+        version++;
+    }
+    
+    /**
+     * Acquires the lock and samples whether it was contended.
+     */
+    private void lockTracked() {
+        ReentrantLock lock = lock();
+        boolean contended = !lock.tryLock();
+        if (contended) {
+            lock.lock();
+        }
+        if (stripes != null || !supportsStriping()) {
+            return;
+        }
+        acquisitions++;
+        if (contended) {
+            contentions++;
+        }
+        if (acquisitions >= CONTENTION_WINDOW) {
+            if (contentions >= CONTENTION_THRESHOLD) {
+                depositsStarted = new LongAdder();
+                depositsFinished = new LongAdder();
+                stripes = new LongAdder();
+            }
+            acquisitions = 0;
+            contentions = 0;
+        }
+    }
+    
+    /**
+     * Locks two accounts in a global order so opposing transfers cannot
+     * deadlock. The order is by lock, not by account, because storage
+     * subclasses may share striped locks between accounts.
+     */
+    static void lockBoth(Account a, Account b) {
+        ReentrantLock first = a.lock();
+        ReentrantLock second = b.lock();
+        if (first == second) {
+            first.lock();
+            return;
+        }
+        int h1 = System.identityHashCode(first);
+        int h2 = System.identityHashCode(second);
+        if (h1 == h2) {
+            TIE_LOCK.lock();
+            try {
+                first.lock();
+                second.lock();
+            } finally {
+                TIE_LOCK.unlock();
+            }
+        } else if (h1 < h2) {
+            first.lock();
+            second.lock();
+        } else {
+            second.lock();
+            first.lock();
+        }
+    }
+    
+    /**
+     * Locks any number of accounts in the same global order as lockBoth.
+     * 
+     * @return the distinct locks taken, to be unlocked by the caller
+     */
+    static ReentrantLock[] lockAll(List<Account> accounts) {
+        Set<ReentrantLock> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Account account : accounts) {
+            distinct.add(account.lock());
+        }
+        ReentrantLock[] locks = distinct.toArray(new ReentrantLock[0]);
+        Arrays.sort(locks, Comparator.comparingInt(System::identityHashCode));
+        boolean tie = false;
+        for (int i = 1; i < locks.length && !tie; i++) {
+            tie = System.identityHashCode(locks[i - 1]) == System.identityHashCode(locks[i]);
+        }
+        if (tie) {
+            TIE_LOCK.lock();
+        }
+        try {
+            for (ReentrantLock lock : locks) {
+                lock.lock();
+            }
+        } finally {
+            if (tie) {
+                TIE_LOCK.unlock();
+            }
+        }
+        return locks;
+    }
+    
+    static void unlockBoth(Account a, Account b) {
+        ReentrantLock first = a.lock();
+        ReentrantLock second = b.lock();
+        first.unlock();
+        if (first != second) {
+            second.unlock();
+        }
+    }
+    
+    /**
+     * Reads balance and status as one consistent pair.
+     * 
+     * Seqlock read: retry until no locked write overlapped the read, so
+     * readers take no lock and writers never wait for them. Only if a
+     * writer keeps the read from validating (e.g. it was descheduled
+     * mid-write) does the reader fall back to the lock. Striped deposits
+     * on hot accounts do not change the status, so they need no
+     * versioning.
+     */
+    public Snapshot snapshot() {
+        for (int attempt = 0; attempt < SNAPSHOT_SPINS; attempt++) {
+            long before = version;
+            if ((before & 1) == 0) {
+                long balanceRead = getBalanceMinorUnits();
+                String statusRead = loadStatus();
+                if (version == before) {
+                    return new Snapshot(statusRead, balanceRead);
+                }
+            }
+            Thread.onSpinWait();
+        }
+        lock().lock();
+        try {
+            return new Snapshot(loadStatus(), getBalanceMinorUnits());
+        } finally {
+            lock().unlock();
+        }
+    }
+    
+    /**
+     * Whether the value is one of the status constants above.
+     */
+    public static boolean isValidStatus(String status) {
+        return UNVERIFIED.equals(status) || VERIFIED.equals(status)
+                || SUSPENDED.equals(status) || CLOSED.equals(status);
+    }
+    
+    // ========== STORAGE HOOKS ==========
+    
+    // Balances are in minor units
+    protected ReentrantLock lock() { return lock; }
+    protected long loadBalance() { return balance; }
+    protected void storeBalance(long value) { balance = value; }
+    protected String loadStatus() { return status; }
+    protected void storeStatus(String value) { status = value; }
+    protected long loadLastEndOfDay() { return lastEndOfDay; }
+    protected void storeLastEndOfDay(long day) { lastEndOfDay = day; }
+    
+    /**
+     * Whether the account may switch to striped deposits. Stripes live on
+     * the object, so subclasses whose instances are transient handles
+     * must return false.
+     */
+    protected boolean supportsStriping() { return true; }
+    
     // Getters and setters
     public String getAccountId() { return accountId; }
-    public double getBalance() { return balance; }
-    public String getStatus() { return status; }
-    public void setStatus(String status) { this.status = status; }
+    public String getStatus() { return loadStatus(); }
+    
+    public double getBalance() {
+        return Money.toDouble(getBalanceMinorUnits());
+    }
+    
+    public Money getBalanceAsMoney() {
+        return Money.ofMinorUnits(getBalanceMinorUnits());
+    }
+    
+    public long getBalanceMinorUnits() {
+        LongAdder hot = stripes;
+        return hot == null ? loadBalance() : loadBalance() + hot.sum();
+    }
+    
+    public void setStatus(String status) {
+        lock().lock();
+        LongAdder started = depositsStarted;
+        LongAdder finished = depositsFinished;
+        try {
+            if (started != null) {
+                // New striped deposits go to the lock; wait out the rest.
+                // LongAdder.sum() is not a snapshot, so the finished count
+                // is read first: each deposit it includes was added to the
+                // started count before, so the started sum read next
+                // includes it too, and every deposit that saw the flag
+                // clear started before the flag was set. Once finished
+                // catches up with started, none of those is still running.
+                // A single up-and-down counter could be read as zero while
+                // one is, if another deposit's +1 and -1 land in different
+                // cells around the read.
+                statusChanging = true;
+                while (true) {
+                    long done = finished.sum();
+                    if (done >= started.sum()) {
+                        break;
+                    }
+                    Thread.onSpinWait();
+                }
+            }
+            String previous = loadStatus();
+            beginWrite();
+            storeStatus(status);
+            endWrite();
+            Client client = owner;
+            if (client != null) {
+                client.statusChanged(previous, status);
+            }
+        } finally {
+            if (started != null) {
+                statusChanging = false;
+            }
+            lock().unlock();
+        }
+    }
+    
+    /**
+     * A balance and status read together.
+     */
+    public static class Snapshot {
+        private final long balance;
+        private final String status;
+        
+        public Snapshot(double balance, String status) {
+            this(status, Money.toMinorUnits(balance));
+        }
+        
+        Snapshot(String status, long balanceMinorUnits) {
+            this.balance = balanceMinorUnits;
+            this.status = status;
+        }
+        
+        public double getBalance() { return Money.toDouble(balance); }
+        public long getBalanceMinorUnits() { return balance; }
+        public String getStatus() { return status; }
+    }
 }
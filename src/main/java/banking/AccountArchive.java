@@ -0,0 +1,240 @@
+package banking;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Append-only file of archived accounts (cold storage).
+ * 
+ * Record: int length, then account id, client id and status (UTF),
+ * balance in minor units, closed-at and archived-at millis.
+ * 
+ * The in-memory index keeps no strings or objects: an open-addressing
+ * table of id hash codes and file offsets, 12 bytes per slot. A lookup
+ * reads the records whose hash matches and compares the id, so it costs
+ * a disk read, which is fine for the rare lookup of a closed account.
+ * The monitor is only held to pick the candidate offsets from the
+ * index; records never move once written, so the reads run outside it
+ * and lookups do not queue behind each other or behind append().
+ * The index is rebuilt by scanning the file on open; a record torn by a
+ * crash mid-append is cut off.
+ */
+public class AccountArchive implements AutoCloseable {
+    
+    private static final long EMPTY = -1;
+    
+    /**
+     * One archived account.
+     */
+    public static class Entry {
+        private final String accountId;
+        private final String clientId;
+        private final String status;
+        private final long balanceMinorUnits;
+        private final long closedAt;
+        private final long archivedAt;
+        
+        Entry(String accountId, String clientId, String status, long balanceMinorUnits,
+              long closedAt, long archivedAt) {
+            this.accountId = accountId;
+            this.clientId = clientId;
+            this.status = status;
+            this.balanceMinorUnits = balanceMinorUnits;
+            this.closedAt = closedAt;
+            this.archivedAt = archivedAt;
+        }
+        
+        public String getAccountId() { return accountId; }
+        public String getClientId() { return clientId; }
+        public String getStatus() { return status; }
+        public Money getBalance() { return Money.ofMinorUnits(balanceMinorUnits); }
+        public long getClosedAt() { return closedAt; }
+        public long getArchivedAt() { return archivedAt; }
+        
+        /**
+         * A detached copy of the account as it was archived.
+         */
+        public Account toAccount() {
+            return new Account(accountId, Money.ofMinorUnits(balanceMinorUnits), status);
+        }
+    }
+    
+    private final FileChannel channel;
+    private long end;
+    // Open addressing: hash code and record offset per slot
+    private int[] hashes = new int[1024];
+    private long[] offsets = new long[1024];
+    private int size;
+    
+    public AccountArchive(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Arrays.fill(offsets, EMPTY);
+        scan(file);
+    }
+    
+    private void scan(Path file) throws IOException {
+        long size = channel.size();
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (offset + 4 <= size) {
+                int length = in.readInt();
+                if (length <= 0 || offset + 4 + length > size) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                String accountId = new DataInputStream(new ByteArrayInputStream(record)).readUTF();
+                index(accountId.hashCode(), offset);
+                offset += 4 + length;
+            }
+        }
+        if (offset < size) {
+            channel.truncate(offset);
+        }
+        end = offset;
+    }
+    
+    /**
+     * Appends an account. Call flush() before dropping the live copy.
+     */
+    public synchronized void append(String clientId, Account account, long closedAt, long archivedAt)
+            throws IOException {
+        Account.Snapshot snapshot = account.snapshot();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeUTF(account.getAccountId());
+        out.writeUTF(clientId);
+        out.writeUTF(snapshot.getStatus());
+        out.writeLong(snapshot.getBalanceMinorUnits());
+        out.writeLong(closedAt);
+        out.writeLong(archivedAt);
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        record.putInt(0, record.capacity() - 4);
+        long offset = end;
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        end = offset + record.capacity();
+        index(account.getAccountId().hashCode(), offset);
+    }
+    
+    /**
+     * Forces appended records to disk.
+     */
+    public void flush() throws IOException {
+        channel.force(false);
+    }
+    
+    public Entry find(String accountId) {
+        try {
+            for (long offset : candidates(accountId.hashCode())) {
+                Entry entry = read(offset);
+                if (entry.getAccountId().equals(accountId)) {
+                    return entry;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+    
+    // Offsets of the records whose id has this hash code
+    private synchronized long[] candidates(int hash) {
+        long[] found = new long[1];
+        int count = 0;
+        int mask = offsets.length - 1;
+        for (int slot = mix(hash) & mask; offsets[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = offsets[slot];
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+    
+    /**
+     * Reloads an archived account as a detached copy, or null.
+     */
+    public Account load(String accountId) {
+        Entry entry = find(accountId);
+        return entry == null ? null : entry.toAccount();
+    }
+    
+    public boolean contains(String accountId) {
+        return find(accountId) != null;
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    private Entry read(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(header, offset);
+        ByteBuffer record = ByteBuffer.allocate(header.getInt(0));
+        readFully(record, offset + 4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array()));
+        return new Entry(in.readUTF(), in.readUTF(), in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+    }
+    
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Archive truncated at " + position);
+            }
+        }
+    }
+    
+    private void index(int hash, long offset) {
+        if ((size + 1) * 2 > offsets.length) {
+            int[] oldHashes = hashes;
+            long[] oldOffsets = offsets;
+            hashes = new int[oldOffsets.length * 2];
+            offsets = new long[oldOffsets.length * 2];
+            Arrays.fill(offsets, EMPTY);
+            for (int i = 0; i < oldOffsets.length; i++) {
+                if (oldOffsets[i] != EMPTY) {
+                    insert(oldHashes[i], oldOffsets[i]);
+                }
+            }
+        }
+        insert(hash, offset);
+        size++;
+    }
+    
+    private void insert(int hash, long offset) {
+        int mask = offsets.length - 1;
+        int slot = mix(hash) & mask;
+        while (offsets[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        offsets[slot] = offset;
+    }
+    
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
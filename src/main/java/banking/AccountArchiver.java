@@ -0,0 +1,164 @@
+package banking;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Moves accounts that have been closed for longer than the retention
+ * period out of memory and into an AccountArchive.
+ * 
+ * The archiver learns when accounts close from AccountService status
+ * changes and queues them in close order, so a sweep only looks at the
+ * accounts that are due instead of scanning the registry. Accounts
+ * already closed when the archiver is created, or registered closed
+ * later, are queued as closing at that moment. An account closed
+ * without going through an AccountService is not seen.
+ * 
+ * A sweep appends the due accounts to the archive and forces it to disk
+ * before removing them from the registry and their clients, so a crash
+ * in between leaves an account in both places, never in neither. The
+ * client's aggregates drop the account's balance and count. Lookups
+ * through AccountRegistry.getAccount and Client.getAccount still find
+ * archived accounts, reloaded from disk as read-only copies.
+ * 
+ * With a processor attached, archived accounts are also dropped from
+ * its velocity limits and passed to its listeners' onAccountArchived(),
+ * so rankings, reconciliation and dashboards let go of them too.
+ * 
+ * The class is final: the constructor registers the archiver with the
+ * registry, which must not see a partly built subclass.
+ */
+public final class AccountArchiver implements TransactionListener {
+    
+    /**
+     * A closed account waiting out the retention period.
+     */
+    private static class Candidate {
+        final Account account;
+        final long closedAt;
+        
+        Candidate(Account account, long closedAt) {
+            this.account = account;
+            this.closedAt = closedAt;
+        }
+    }
+    
+    private final AccountRegistry registry;
+    private final AccountArchive archive;
+    private final long retentionMillis;
+    private final LongSupplier clock;
+    private final ConcurrentLinkedQueue<Candidate> candidates = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, Long> closedAt = new ConcurrentHashMap<>();
+    private volatile TransactionProcessor processor;
+    
+    public AccountArchiver(AccountRegistry registry, AccountArchive archive, long retentionMillis) {
+        this(registry, archive, retentionMillis, System::currentTimeMillis);
+    }
+    
+    public AccountArchiver(AccountRegistry registry, AccountArchive archive, long retentionMillis,
+                           LongSupplier clock) {
+        this.registry = registry;
+        this.archive = archive;
+        this.retentionMillis = retentionMillis;
+        this.clock = clock;
+        registry.setArchive(archive);
+        registry.addListener(this);
+        long now = clock.getAsLong();
+        for (Account account : registry.getAccounts()) {
+            if (Account.CLOSED.equals(account.getStatus())) {
+                queue(account, now);
+            }
+        }
+    }
+    
+    /**
+     * Registers for status changes made through the processor's account
+     * service, and tells the processor about archived accounts.
+     */
+    public AccountArchiver attach(TransactionProcessor processor) {
+        processor.getAccountService().addListener(this);
+        this.processor = processor;
+        return this;
+    }
+    
+    @Override
+    public void onStatusChange(Account account, String from, String to) {
+        if (Account.CLOSED.equals(to)) {
+            queue(account, clock.getAsLong());
+        }
+    }
+    
+    @Override
+    public void onAccountOpened(Account account) {
+        if (Account.CLOSED.equals(account.getStatus())) {
+            queue(account, clock.getAsLong());
+        }
+    }
+    
+    private void queue(Account account, long now) {
+        if (closedAt.putIfAbsent(account.getAccountId(), now) == null) {
+            candidates.add(new Candidate(account, now));
+        }
+    }
+    
+    /**
+     * Archives every account closed for at least the retention period.
+     * 
+     * @return the number of accounts archived
+     */
+    public synchronized int archive() throws IOException {
+        long now = clock.getAsLong();
+        List<Client> owners = new ArrayList<>();
+        List<Account> due = new ArrayList<>();
+        // Only this method takes from the queue, so peek and poll agree
+        Candidate next;
+        while ((next = candidates.peek()) != null && now - next.closedAt >= retentionMillis) {
+            candidates.poll();
+            Account account = next.account;
+            Client owner = account.getOwner();
+            if (owner == null || registry.getAccount(account.getAccountId()) != account) {
+                // Never registered, or already removed
+                closedAt.remove(account.getAccountId());
+                continue;
+            }
+            owners.add(owner);
+            due.add(account);
+        }
+        if (due.isEmpty()) {
+            return 0;
+        }
+        
+        for (int i = 0; i < due.size(); i++) {
+            Account account = due.get(i);
+            // Already there if a previous sweep crashed before removing it
+            if (!archive.contains(account.getAccountId())) {
+                archive.append(owners.get(i).getClientId(), account, closedAt.get(account.getAccountId()), now);
+            }
+        }
+        archive.flush();
+        
+        TransactionProcessor attached = processor;
+        for (int i = 0; i < due.size(); i++) {
+            Client client = owners.get(i);
+            Account account = due.get(i);
+            client.archivedTo(archive);
+            if (!registry.removeAccount(client, account)) {
+                client.removeAccount(account);
+            }
+            closedAt.remove(account.getAccountId());
+            if (attached != null) {
+                attached.archived(account);
+            }
+        }
+        return due.size();
+    }
+    
+    /** Closed accounts still in memory, waiting to be archived. */
+    public int getPendingCount() {
+        return closedAt.size();
+    }
+}
@@ -0,0 +1,59 @@
+package banking;
+
+/**
+ * A change to one account, as published by AccountEventPublisher.
+ * 
+ * A transfer produces two events, TRANSFER_OUT on the source and
+ * TRANSFER_IN on the target. Sequence numbers are assigned in publish
+ * order across all accounts, so a subscriber can detect events it
+ * missed by a gap in the sequence.
+ */
+public class AccountEvent {
+    
+    public enum Type {
+        DEPOSIT, WITHDRAWAL, TRANSFER_OUT, TRANSFER_IN, STATUS_CHANGE
+    }
+    
+    private final long sequence;
+    private final Type type;
+    private final String accountId;
+    private final String counterpartyId;
+    private final double amount;
+    private final double balance;
+    private final String previousStatus;
+    private final String status;
+    private final long timestamp;
+    
+    public AccountEvent(long sequence, Type type, String accountId, String counterpartyId, double amount,
+                        double balance, String previousStatus, String status, long timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.accountId = accountId;
+        this.counterpartyId = counterpartyId;
+        this.amount = amount;
+        this.balance = balance;
+        this.previousStatus = previousStatus;
+        this.status = status;
+        this.timestamp = timestamp;
+    }
+    
+    public long getSequence() { return sequence; }
+    public Type getType() { return type; }
+    public String getAccountId() { return accountId; }
+    /** The other account of a transfer, otherwise null. */
+    public String getCounterpartyId() { return counterpartyId; }
+    public double getAmount() { return amount; }
+    /** The balance read right after the change. */
+    public double getBalance() { return balance; }
+    /** The status before a status change, otherwise null. */
+    public String getPreviousStatus() { return previousStatus; }
+    public String getStatus() { return status; }
+    public long getTimestamp() { return timestamp; }
+    
+    @Override
+    public String toString() {
+        return "AccountEvent{" + sequence + " " + type + " " + accountId
+                + (counterpartyId != null ? " <-> " + counterpartyId : "")
+                + " amount=" + amount + " balance=" + balance + " status=" + status + "}";
+    }
+}
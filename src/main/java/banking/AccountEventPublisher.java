@@ -0,0 +1,258 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Change-data-capture stream of account events.
+ * 
+ * Attach it to a processor to publish every successful deposit,
+ * withdrawal, transfer and status change. Each subscriber receives the
+ * events as batches (lists) and its request(n) counts batches, so a
+ * busy consumer gets fewer, larger deliveries instead of one call per
+ * event.
+ * 
+ * Publishing never blocks: every subscriber has a bounded buffer, and
+ * when a subscriber falls so far behind that its buffer is full, new
+ * events for it are dropped and counted rather than making the
+ * transaction wait. The gap shows up in the event sequence numbers.
+ * Delivery runs on the executor, one drain task per subscriber at a
+ * time, so batches to one subscriber arrive in order.
+ * 
+ * Sequence numbers are assigned and events enqueued to every subscriber
+ * under one lock, so each subscriber sees sequences in increasing order
+ * even when operations publish from many threads. Enqueueing never
+ * waits, so the lock is only held briefly. Subscribing and closing take
+ * the same lock: a subscriber either joins before close() and is
+ * completed by it, or is completed at once.
+ */
+public class AccountEventPublisher implements Flow.Publisher<List<AccountEvent>>, TransactionListener, AutoCloseable {
+    
+    public static final int DEFAULT_MAX_BATCH = 64;
+    
+    private final Executor executor;
+    private final int bufferCapacity;
+    private final int maxBatch;
+    private final LongSupplier clock;
+    private final List<BatchSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    // Guards sequence, closed and changes to subscriptions
+    private final Object publishLock = new Object();
+    private long sequence;
+    private volatile boolean closed;
+    
+    public AccountEventPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), DEFAULT_MAX_BATCH);
+    }
+    
+    public AccountEventPublisher(Executor executor, int bufferCapacity, int maxBatch) {
+        this(executor, bufferCapacity, maxBatch, System::currentTimeMillis);
+    }
+    
+    public AccountEventPublisher(Executor executor, int bufferCapacity, int maxBatch, LongSupplier clock) {
+        if (bufferCapacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Buffer capacity and batch size must be positive");
+        }
+        this.executor = executor;
+        this.bufferCapacity = bufferCapacity;
+        this.maxBatch = maxBatch;
+        this.clock = clock;
+    }
+    
+    /**
+     * Publishes every operation of the processor and its AccountService.
+     */
+    public AccountEventPublisher attach(TransactionProcessor processor) {
+        processor.addListener(this);
+        processor.getAccountService().addListener(this);
+        return this;
+    }
+    
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<AccountEvent>> subscriber) {
+        BatchSubscription subscription = new BatchSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        synchronized (publishLock) {
+            if (!closed) {
+                subscriptions.add(subscription);
+                return;
+            }
+        }
+        subscription.complete();
+    }
+    
+    /**
+     * Completes every subscriber once its buffered events are delivered.
+     */
+    @Override
+    public void close() {
+        List<BatchSubscription> open;
+        synchronized (publishLock) {
+            closed = true;
+            open = new ArrayList<>(subscriptions);
+            subscriptions.clear();
+        }
+        for (BatchSubscription subscription : open) {
+            subscription.complete();
+        }
+    }
+    
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+    
+    /**
+     * Events dropped, summed over subscribers, because a subscriber's
+     * buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    // ========== EVENTS ==========
+    
+    @Override
+    public void onDeposit(Account account, double amount) {
+        publish(AccountEvent.Type.DEPOSIT, account, null, amount, null);
+    }
+    
+    @Override
+    public void onWithdraw(Account account, double amount) {
+        publish(AccountEvent.Type.WITHDRAWAL, account, null, amount, null);
+    }
+    
+    @Override
+    public void onTransfer(Account from, Account to, double amount) {
+        publish(AccountEvent.Type.TRANSFER_OUT, from, to.getAccountId(), amount, null);
+        publish(AccountEvent.Type.TRANSFER_IN, to, from.getAccountId(), amount, null);
+    }
+    
+    @Override
+    public void onStatusChange(Account account, String from, String to) {
+        publish(AccountEvent.Type.STATUS_CHANGE, account, null, 0, from);
+    }
+    
+    private void publish(AccountEvent.Type type, Account account, String counterpartyId,
+                         double amount, String previousStatus) {
+        if (closed || subscriptions.isEmpty()) {
+            return;
+        }
+        Account.Snapshot state = account.snapshot();
+        long timestamp = clock.getAsLong();
+        synchronized (publishLock) {
+            if (closed) {
+                return;
+            }
+            AccountEvent event = new AccountEvent(sequence++, type, account.getAccountId(),
+                    counterpartyId, amount, state.getBalance(), previousStatus, state.getStatus(), timestamp);
+            for (BatchSubscription subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        }
+    }
+    
+    /**
+     * One subscriber's buffer, demand and drain loop.
+     */
+    private final class BatchSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super List<AccountEvent>> subscriber;
+        private final ArrayBlockingQueue<AccountEvent> buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        private final AtomicLong demand = new AtomicLong();
+        // Non-zero while a drain is scheduled; counts missed wake-ups
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean completed;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        
+        BatchSubscription(Flow.Subscriber<? super List<AccountEvent>> subscriber) {
+            this.subscriber = subscriber;
+        }
+        
+        void offer(AccountEvent event) {
+            if (!buffer.offer(event)) {
+                dropped.incrementAndGet();
+            }
+            schedule();
+        }
+        
+        void complete() {
+            completed = true;
+            schedule();
+        }
+        
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> {
+                    long sum = current + added;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            schedule();
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            buffer.clear();
+        }
+        
+        private void schedule() {
+            if (work.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+        
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+        
+        private void drain() {
+            while (!cancelled) {
+                if (error != null) {
+                    cancel();
+                    subscriber.onError(error);
+                    return;
+                }
+                if (buffer.isEmpty()) {
+                    if (completed) {
+                        cancel();
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+                List<AccountEvent> batch = new ArrayList<>(Math.min(maxBatch, buffer.size()));
+                buffer.drainTo(batch, maxBatch);
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                try {
+                    subscriber.onNext(batch);
+                } catch (Throwable t) {
+                    cancel();
+                    subscriber.onError(t);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongSupplier;
+
+/**
+ * Live "top accounts by balance" and "most active accounts" rankings.
+ * 
+ * Attach it to a processor; every successful operation re-ranks the
+ * accounts it touched in O(log n), and top-K queries walk only the
+ * first K entries. Balances are ranked by their exact minor units.
+ * 
+ * Activity is counted per account over a sliding window split into
+ * buckets. Each account keeps its own ring of bucket counts under its
+ * own monitor, so operations on different accounts never contend, and
+ * buckets that left the window are dropped when the account is next
+ * touched: at most one pass over the ring per bucket interval. An
+ * account that goes quiet keeps its last rank, an upper bound of its
+ * real count, until a query reaches it; mostActive() refreshes entries
+ * as it walks and only returns counts it has checked.
+ * 
+ * Closed and archived accounts leave both rankings; remove() takes out
+ * any other account that should no longer be ranked.
+ */
+public class AccountRankingIndex implements TransactionListener {
+    
+    public static final long DEFAULT_WINDOW_MILLIS = 60 * 60 * 1000L;
+    public static final int DEFAULT_BUCKETS = 60;
+    
+    private static final Comparator<Ranked> ORDER = Comparator
+            .comparingLong((Ranked r) -> r.value).reversed()
+            .thenComparing(r -> r.account.getAccountId())
+            .thenComparingInt(r -> System.identityHashCode(r.account));
+    
+    /**
+     * An account and the value it is ranked by.
+     */
+    public static class Ranked {
+        private final Account account;
+        // Minor units of a balance, or an operation count
+        private final long value;
+        private final boolean balance;
+        
+        Ranked(Account account, long value, boolean balance) {
+            this.account = account;
+            this.value = value;
+            this.balance = balance;
+        }
+        
+        public Account getAccount() { return account; }
+        /** The balance, or the number of operations in the window. */
+        public double getValue() { return balance ? Money.toDouble(value) : value; }
+        /** The balance in minor units, or the number of operations. */
+        public long getExactValue() { return value; }
+    }
+    
+    /**
+     * One account's bucket counts; guarded by its own monitor.
+     */
+    private static class Activity {
+        final int[] counts;
+        long lastBucket = Long.MIN_VALUE;
+        long total;
+        // Current entry in byActivity, or null
+        Ranked ranked;
+        // Dropped from the map; recorders must fetch a fresh one
+        boolean removed;
+        
+        Activity(int buckets) {
+            counts = new int[buckets];
+        }
+        
+        // Moves the ring up to the given bucket, clearing those that left
+        // the window
+        void advance(long bucket) {
+            if (bucket <= lastBucket) {
+                return;
+            }
+            long from = Math.max(lastBucket + 1, bucket - counts.length + 1);
+            for (long b = from; b <= bucket; b++) {
+                int slot = (int) Math.floorMod(b, (long) counts.length);
+                total -= counts[slot];
+                counts[slot] = 0;
+            }
+            lastBucket = bucket;
+        }
+    }
+    
+    // Balance ranking
+    private final ConcurrentHashMap<Account, Ranked> balanceEntries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Ranked> byBalance = new ConcurrentSkipListSet<>(ORDER);
+    
+    // Activity ranking
+    private final LongSupplier clock;
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final ConcurrentHashMap<Account, Activity> activity = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Ranked> byActivity = new ConcurrentSkipListSet<>(ORDER);
+    
+    public AccountRankingIndex() {
+        this(DEFAULT_WINDOW_MILLIS, DEFAULT_BUCKETS, System::currentTimeMillis);
+    }
+    
+    public AccountRankingIndex(long windowMillis, int bucketCount, LongSupplier clock) {
+        this.clock = clock;
+        this.bucketMillis = Math.max(1, windowMillis / bucketCount);
+        this.bucketCount = bucketCount;
+    }
+    
+    /**
+     * Registers with the processor and its AccountService: the processor
+     * reports balance changes and archived accounts, the service reports
+     * closed accounts, which leave the rankings.
+     */
+    public AccountRankingIndex attach(TransactionProcessor processor) {
+        processor.addListener(this);
+        processor.getAccountService().addListener(this);
+        return this;
+    }
+    
+    /**
+     * Adds an account to the balance ranking before it sees traffic.
+     */
+    public void track(Account account) {
+        updateBalance(account);
+    }
+    
+    /**
+     * Takes an account out of both rankings.
+     */
+    public void remove(Account account) {
+        balanceEntries.computeIfPresent(account, (a, old) -> {
+            byBalance.remove(old);
+            return null;
+        });
+        Activity counts = activity.remove(account);
+        if (counts != null) {
+            synchronized (counts) {
+                counts.removed = true;
+                if (counts.ranked != null) {
+                    byActivity.remove(counts.ranked);
+                    counts.ranked = null;
+                }
+            }
+        }
+    }
+    
+    @Override
+    public void onDeposit(Account account, double amount) {
+        updateBalance(account);
+        recordActivity(account);
+    }
+    
+    @Override
+    public void onWithdraw(Account account, double amount) {
+        updateBalance(account);
+        recordActivity(account);
+    }
+    
+    @Override
+    public void onTransfer(Account from, Account to, double amount) {
+        updateBalance(from);
+        updateBalance(to);
+        recordActivity(from);
+        recordActivity(to);
+    }
+    
+    @Override
+    public void onStatusChange(Account account, String from, String to) {
+        if (Account.CLOSED.equals(to)) {
+            remove(account);
+        }
+    }
+    
+    @Override
+    public void onAccountArchived(Account account) {
+        remove(account);
+    }
+    
+    // ========== QUERIES ==========
+    
+    public List<Ranked> topByBalance(int k) {
+        return first(byBalance.iterator(), k);
+    }
+    
+    /**
+     * Accounts with the most successful operations inside the window.
+     * 
+     * Entries are upper bounds, so walking in rank order and refreshing
+     * each one until it is exact yields the true top K; a refreshed
+     * entry moves further down and is met again if it still qualifies.
+     */
+    public List<Ranked> mostActive(int k) {
+        long bucket = Math.floorDiv(clock.getAsLong(), bucketMillis);
+        List<Ranked> result = new ArrayList<>(k);
+        Iterator<Ranked> it = byActivity.iterator();
+        while (result.size() < k && it.hasNext()) {
+            Ranked entry = it.next();
+            Activity counts = activity.get(entry.account);
+            if (counts == null) {
+                continue;
+            }
+            synchronized (counts) {
+                if (counts.ranked != entry) {
+                    continue;
+                }
+                counts.advance(bucket);
+                if (counts.total == entry.value) {
+                    result.add(entry);
+                } else {
+                    rerank(entry.account, counts);
+                }
+            }
+        }
+        return result;
+    }
+    
+    private static List<Ranked> first(Iterator<Ranked> it, int k) {
+        List<Ranked> result = new ArrayList<>(k);
+        while (result.size() < k && it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+    
+    // ========== UPDATES ==========
+    
+    private void updateBalance(Account account) {
+        // compute() is atomic per account, so racing updates cannot leave
+        // a stale entry behind in the skip list
+        balanceEntries.compute(account, (a, old) -> {
+            if (old != null) {
+                byBalance.remove(old);
+            }
+            Ranked entry = new Ranked(a, a.getBalanceMinorUnits(), true);
+            byBalance.add(entry);
+            return entry;
+        });
+    }
+    
+    private void recordActivity(Account account) {
+        long now = clock.getAsLong();
+        long bucket = Math.floorDiv(now, bucketMillis);
+        while (true) {
+            Activity counts = activity.computeIfAbsent(account, a -> new Activity(bucketCount));
+            synchronized (counts) {
+                if (counts.removed) {
+                    continue;
+                }
+                counts.advance(bucket);
+                // A clock that stepped back counts in the newest bucket
+                int slot = (int) Math.floorMod(counts.lastBucket, (long) bucketCount);
+                counts.counts[slot]++;
+                counts.total++;
+                rerank(account, counts);
+                return;
+            }
+        }
+    }
+    
+    // Caller holds the account's monitor
+    private void rerank(Account account, Activity counts) {
+        if (counts.ranked != null) {
+            byActivity.remove(counts.ranked);
+            counts.ranked = null;
+        }
+        if (counts.total > 0) {
+            counts.ranked = new Ranked(account, counts.total, false);
+            byActivity.add(counts.ranked);
+        } else if (activity.remove(account, counts)) {
+            counts.removed = true;
+        }
+    }
+}
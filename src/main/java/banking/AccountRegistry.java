@@ -0,0 +1,108 @@
+package banking;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory registry of clients and their accounts, keyed by id.
+ * 
+ * Safe for concurrent use; the bulk loader fills it from many threads.
+ * 
+ * With an archive set, accounts removed by AccountArchiver are still
+ * found by getAccount(), reloaded from disk on each lookup.
+ */
+public class AccountRegistry {
+    
+    private final ConcurrentHashMap<String, Client> clients = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+    // Ids being registered, held while their listeners run
+    private final ConcurrentHashMap<String, Account> opening = new ConcurrentHashMap<>();
+    private final List<TransactionListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile AccountArchive archive;
+    
+    /**
+     * Returns the client with this id, creating it on first use.
+     */
+    public Client getOrCreateClient(String clientId, String name) {
+        return clients.computeIfAbsent(clientId, id -> new Client(id, name));
+    }
+    
+    /**
+     * Registers an account under a client. Listeners hear of it before
+     * it becomes visible through getAccount(), so nothing done to the
+     * account can be recorded ahead of its opening. The id is reserved
+     * while they run, outside any map operation, so listeners may use the
+     * registry themselves.
+     * 
+     * @return false if an account with the same id is already registered
+     *         or being registered
+     */
+    public boolean addAccount(Client client, Account account) {
+        String accountId = account.getAccountId();
+        if (opening.putIfAbsent(accountId, account) != null) {
+            return false;
+        }
+        try {
+            // Published to accounts before the reservation is dropped, so
+            // a later reservation always sees it here
+            if (accounts.containsKey(accountId)) {
+                return false;
+            }
+            for (TransactionListener listener : listeners) {
+                listener.onAccountOpened(account);
+            }
+            accounts.put(accountId, account);
+        } finally {
+            opening.remove(accountId, account);
+        }
+        client.addAccount(account);
+        return true;
+    }
+    
+    /**
+     * Removes an account from the registry and from its client.
+     * 
+     * @return false if the account is not registered
+     */
+    public boolean removeAccount(Client client, Account account) {
+        if (!accounts.remove(account.getAccountId(), account)) {
+            return false;
+        }
+        client.removeAccount(account);
+        return true;
+    }
+    
+    /**
+     * A live account, or a read-only copy of an archived one.
+     */
+    public Account getAccount(String accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            AccountArchive archived = archive;
+            if (archived != null) {
+                return archived.load(accountId);
+            }
+        }
+        return account;
+    }
+    
+    public void addListener(TransactionListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(TransactionListener listener) {
+        listeners.remove(listener);
+    }
+    
+    public void setArchive(AccountArchive archive) {
+        this.archive = archive;
+    }
+    
+    public Client getClient(String clientId) { return clients.get(clientId); }
+    public Collection<Client> getClients() { return clients.values(); }
+    public Collection<Account> getAccounts() { return accounts.values(); }
+    public int clientCount() { return clients.size(); }
+    public int accountCount() { return accounts.size(); }
+}
@@ -1,5 +1,8 @@
 package banking;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * Manages account state transitions.
  * 
@@ -8,34 +11,80 @@ package banking;
  *   Verified -> Suspended (suspend)
  *   Suspended -> Verified (reinstate)
  *   Any -> Closed (close)
+ * 
+ * A transition holds the account's lock while it is checked, applied
+ * and passed to the listeners, so listener callbacks must not wait on
+ * other accounts.
  */
 public class AccountService {
     
+    private final List<TransactionListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile FlightRecorder flightRecorder;
+    
     public boolean verify(Account account) {
-        if (account == null) return false;
-        if (!account.getStatus().equals(Account.UNVERIFIED)) return false;
-        account.setStatus(Account.VERIFIED);
-        return true;
+        return transition(account, TransactionCodec.VERIFY, Account.UNVERIFIED, Account.VERIFIED);
     }
     
     public boolean suspend(Account account) {
-        if (account == null) return false;
-        if (!account.getStatus().equals(Account.VERIFIED)) return false;
-        account.setStatus(Account.SUSPENDED);
-        return true;
+        return transition(account, TransactionCodec.SUSPEND, Account.VERIFIED, Account.SUSPENDED);
     }
     
     public boolean reinstate(Account account) {
-        if (account == null) return false;
-        if (!account.getStatus().equals(Account.SUSPENDED)) return false;
-        account.setStatus(Account.VERIFIED);
-        return true;
+        return transition(account, TransactionCodec.REINSTATE, Account.SUSPENDED, Account.VERIFIED);
     }
     
     public boolean close(Account account) {
-        if (account == null) return false;
-        if (account.getStatus().equals(Account.CLOSED)) return false;
-        account.setStatus(Account.CLOSED);
-        return true;
+        return transition(account, TransactionCodec.CLOSE, null, Account.CLOSED);
+    }
+    
+    public void addListener(TransactionListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(TransactionListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Records status changes in the recorder; null stops recording.
+     */
+    public void setFlightRecorder(FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+    
+    // required == null means any status but Closed
+    private boolean transition(Account account, byte statusOp, String required, String status) {
+        FlightRecorder recorder = flightRecorder;
+        long start = recorder == null ? 0 : recorder.begin();
+        boolean success = false;
+        if (account != null) {
+            // Checked, applied and reported under the account's lock, so
+            // listeners see an account's transitions in the order they happened
+            account.lock().lock();
+            try {
+                success = required == null
+                        ? !account.getStatus().equals(Account.CLOSED)
+                        : account.getStatus().equals(required);
+                if (success) {
+                    changeStatus(account, status);
+                }
+            } finally {
+                account.lock().unlock();
+            }
+        }
+        if (recorder != null) {
+            int code = account == null ? TransactionProcessor.Result.ACCOUNT_NULL
+                    : success ? TransactionProcessor.Result.OK : TransactionProcessor.Result.STATUS_CHANGE_FAILED;
+            recorder.end(start, TransactionCodec.STATUS_CHANGE, statusOp, account, null, 0, code);
+        }
+        return success;
+    }
+    
+    private void changeStatus(Account account, String status) {
+        String previous = account.getStatus();
+        account.setStatus(status);
+        for (TransactionListener listener : listeners) {
+            listener.onStatusChange(account, previous, status);
+        }
     }
 }
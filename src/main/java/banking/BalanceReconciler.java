@@ -0,0 +1,398 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Proves that the book balances against the journal.
+ * 
+ * Invariant checked:
+ *   sum(balances) = opening total + deposits - withdrawals
+ * with transfer debits and credits netting to zero, and every account's
+ * balance equal to its opening balance plus its journaled movements.
+ * 
+ * Work is split into partitions by account id and each partition is
+ * reconciled in parallel on the pool. All sums are kept in cents, so
+ * they are exact and independent of the order partitions finish in.
+ * 
+ * Runs are incremental: reconcile() applies only the journal entries
+ * appended since the previous run and re-reads only the accounts they
+ * touched (plus accounts already drifting). reconcileAll() re-reads
+ * every account and should be run periodically, since a change that
+ * bypasses the journal on an otherwise quiet account is only found by a
+ * full scan.
+ * 
+ * The reconciler may run while the processor is busy. An operation
+ * changes the balance before its journal entry is appended, and a run
+ * reads balances after taking its batch of entries, so an account in
+ * the middle of an operation can look out of line. Such an account is
+ * not reported at once: it is listed as unconfirmed and re-checked by
+ * the next run, and only reported as drifting if it is off by the same
+ * amount again. Unconfirmed differences are left out of isBalanced().
+ * 
+ * Archived accounts are checked one last time by the next run and then
+ * dropped; their balances are kept as a single archived total. Attach
+ * the reconciler to the processor, or call untrack(), so they are.
+ */
+public class BalanceReconciler implements TransactionListener {
+    
+    /**
+     * An account whose balance differs from its journaled balance.
+     */
+    public static class Drift {
+        private final String accountId;
+        private final long expectedCents;
+        private final long actualCents;
+        
+        Drift(String accountId, long expectedCents, long actualCents) {
+            this.accountId = accountId;
+            this.expectedCents = expectedCents;
+            this.actualCents = actualCents;
+        }
+        
+        public String getAccountId() { return accountId; }
+        public double getExpected() { return Money.toDouble(expectedCents); }
+        public double getActual() { return Money.toDouble(actualCents); }
+        /** Actual minus expected. */
+        public double getDifference() { return Money.toDouble(actualCents - expectedCents); }
+        
+        @Override
+        public String toString() {
+            return accountId + ": expected " + getExpected() + ", actual " + getActual();
+        }
+    }
+    
+    /**
+     * Outcome of one run. Totals are cumulative since the opening state.
+     */
+    public static class Report {
+        private final long openingCents;
+        private final long depositCents;
+        private final long withdrawalCents;
+        private final long transferOutCents;
+        private final long transferInCents;
+        private final long archivedCents;
+        private final long actualCents;
+        private final List<Drift> drifts;
+        private final List<String> unconfirmed;
+        private final long unconfirmedCents;
+        private final long entriesApplied;
+        private final int accountsChecked;
+        
+        Report(long openingCents, long depositCents, long withdrawalCents, long transferOutCents,
+               long transferInCents, long archivedCents, long actualCents, List<Drift> drifts, List<String> unconfirmed,
+               long unconfirmedCents, long entriesApplied, int accountsChecked) {
+            this.openingCents = openingCents;
+            this.depositCents = depositCents;
+            this.withdrawalCents = withdrawalCents;
+            this.transferOutCents = transferOutCents;
+            this.transferInCents = transferInCents;
+            this.archivedCents = archivedCents;
+            this.actualCents = actualCents;
+            this.drifts = Collections.unmodifiableList(drifts);
+            this.unconfirmed = Collections.unmodifiableList(unconfirmed);
+            this.unconfirmedCents = unconfirmedCents;
+            this.entriesApplied = entriesApplied;
+            this.accountsChecked = accountsChecked;
+        }
+        
+        public double getOpeningTotal() { return Money.toDouble(openingCents); }
+        public double getDeposits() { return Money.toDouble(depositCents); }
+        public double getWithdrawals() { return Money.toDouble(withdrawalCents); }
+        public double getTransfersOut() { return Money.toDouble(transferOutCents); }
+        public double getTransfersIn() { return Money.toDouble(transferInCents); }
+        /** Final balances of archived accounts no longer tracked. */
+        public double getArchived() { return Money.toDouble(archivedCents); }
+        
+        /** Opening total plus deposits minus withdrawals, less archived balances. */
+        public double getExpectedTotal() {
+            return Money.toDouble(openingCents + depositCents - withdrawalCents - archivedCents);
+        }
+        
+        /** Sum of the balances last read, archived accounts excluded. */
+        public double getActualTotal() { return Money.toDouble(actualCents); }
+        
+        /** Accounts out of line with the journal, ordered by id. */
+        public List<Drift> getDrifts() { return drifts; }
+        /**
+         * Accounts out of line for the first time, ordered by id; the next
+         * run confirms or clears them.
+         */
+        public List<String> getUnconfirmed() { return unconfirmed; }
+        /** Journal entries applied by this run. */
+        public long getEntriesApplied() { return entriesApplied; }
+        /** Account balances read by this run. */
+        public int getAccountsChecked() { return accountsChecked; }
+        
+        public boolean isBalanced() {
+            return drifts.isEmpty()
+                    && transferOutCents == transferInCents
+                    && actualCents - unconfirmedCents == openingCents + depositCents - withdrawalCents - archivedCents;
+        }
+    }
+    
+    /**
+     * Journaled and last-read balances of one partition's accounts. Only
+     * the thread reconciling the partition touches it during a run.
+     */
+    private static class Partition {
+        final Map<String, long[]> expected = new HashMap<>();
+        final Map<String, long[]> lastRead = new HashMap<>();
+        final Set<String> drifting = new HashSet<>();
+        // Out of line on the last check, by this difference
+        final Map<String, long[]> unconfirmed = new HashMap<>();
+        // Archived, dropped once their final balance checks out
+        final Set<String> retiring = new HashSet<>();
+        long depositCents;
+        long withdrawalCents;
+        long transferOutCents;
+        long transferInCents;
+        long archivedCents;
+    }
+    
+    private final TransactionJournal journal;
+    private final ForkJoinPool pool;
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Partition[] partitions;
+    private long openingCents;
+    private long actualCents;
+    private long cursor;
+    
+    public BalanceReconciler(TransactionJournal journal, Collection<Account> accounts) {
+        this(journal, accounts, ForkJoinPool.commonPool().getParallelism() * 4, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Takes the opening state from the accounts as they are now, which
+     * must be the moment the journal was started (or is empty).
+     */
+    public BalanceReconciler(TransactionJournal journal, Collection<Account> accounts,
+                             int partitionCount, ForkJoinPool pool) {
+        this.journal = journal;
+        this.pool = pool;
+        this.partitions = new Partition[Math.max(1, partitionCount)];
+        for (int p = 0; p < partitions.length; p++) {
+            partitions[p] = new Partition();
+        }
+        this.cursor = journal.size();
+        for (Account account : accounts) {
+            register(account);
+        }
+    }
+    
+    /**
+     * Adds an account opened after reconciliation started; its current
+     * balance becomes its opening balance.
+     */
+    public synchronized void track(Account account) {
+        register(account);
+    }
+    
+    private void register(Account account) {
+        String id = account.getAccountId();
+        if (accounts.putIfAbsent(id, account) != null) {
+            return;
+        }
+        long cents = account.getBalanceMinorUnits();
+        Partition partition = partitions[partition(id)];
+        partition.expected.computeIfAbsent(id, k -> new long[1])[0] += cents;
+        partition.lastRead.put(id, new long[] { cents });
+        openingCents += cents;
+        actualCents += cents;
+    }
+    
+    /**
+     * Stops tracking an archived account. The next run checks its balance
+     * once more and, unless it drifted, moves it to the archived total.
+     */
+    public synchronized void untrack(Account account) {
+        String id = account.getAccountId();
+        if (accounts.get(id) == account) {
+            partitions[partition(id)].retiring.add(id);
+        }
+    }
+    
+    /**
+     * Registers for the processor's archival notices.
+     */
+    public BalanceReconciler attach(TransactionProcessor processor) {
+        processor.addListener(this);
+        return this;
+    }
+    
+    @Override
+    public void onAccountArchived(Account account) {
+        untrack(account);
+    }
+    
+    /**
+     * Applies new journal entries and re-checks the accounts they touched.
+     */
+    public synchronized Report reconcile() {
+        return run(false);
+    }
+    
+    /**
+     * Applies new journal entries and re-checks every account.
+     */
+    public synchronized Report reconcileAll() {
+        return run(true);
+    }
+    
+    private Report run(boolean full) {
+        long end = journal.size();
+        List<JournalEntry> entries = journal.entries(cursor, end);
+        List<List<JournalEntry>> routed = new ArrayList<>(partitions.length);
+        for (int p = 0; p < partitions.length; p++) {
+            routed.add(new ArrayList<>());
+        }
+        for (JournalEntry entry : entries) {
+            int source = partition(entry.getAccountId());
+            routed.get(source).add(entry);
+            if (entry.getType() == TransactionCodec.TRANSFER) {
+                int target = partition(entry.getTargetId());
+                if (target != source) {
+                    routed.get(target).add(entry);
+                }
+            }
+        }
+        
+        List<Callable<PartitionResult>> tasks = new ArrayList<>(partitions.length);
+        for (int p = 0; p < partitions.length; p++) {
+            int index = p;
+            tasks.add(() -> reconcilePartition(index, routed.get(index), full));
+        }
+        List<Drift> drifts = new ArrayList<>();
+        List<String> unconfirmed = new ArrayList<>();
+        long unconfirmedCents = 0;
+        int checked = 0;
+        try {
+            for (Future<PartitionResult> future : pool.invokeAll(tasks)) {
+                PartitionResult result = future.get();
+                actualCents += result.actualDelta;
+                drifts.addAll(result.drifts);
+                unconfirmed.addAll(result.unconfirmed);
+                unconfirmedCents += result.unconfirmedCents;
+                checked += result.checked;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Reconciliation failed", e.getCause());
+        }
+        cursor = end;
+        drifts.sort((a, b) -> a.getAccountId().compareTo(b.getAccountId()));
+        Collections.sort(unconfirmed);
+        
+        long deposits = 0, withdrawals = 0, transfersOut = 0, transfersIn = 0, archived = 0;
+        for (Partition partition : partitions) {
+            deposits += partition.depositCents;
+            withdrawals += partition.withdrawalCents;
+            transfersOut += partition.transferOutCents;
+            transfersIn += partition.transferInCents;
+            archived += partition.archivedCents;
+        }
+        return new Report(openingCents, deposits, withdrawals, transfersOut, transfersIn, archived,
+                actualCents, drifts, unconfirmed, unconfirmedCents, entries.size(), checked);
+    }
+    
+    private static class PartitionResult {
+        long actualDelta;
+        final List<Drift> drifts = new ArrayList<>();
+        final List<String> unconfirmed = new ArrayList<>();
+        long unconfirmedCents;
+        int checked;
+    }
+    
+    private PartitionResult reconcilePartition(int index, List<JournalEntry> entries, boolean full) {
+        Partition partition = partitions[index];
+        Set<String> touched = new HashSet<>(partition.drifting);
+        touched.addAll(partition.unconfirmed.keySet());
+        touched.addAll(partition.retiring);
+        for (JournalEntry entry : entries) {
+            long cents = entry.getAmountMinorUnits();
+            String id = entry.getAccountId();
+            switch (entry.getType()) {
+                case TransactionCodec.DEPOSIT:
+                    adjust(partition, id, cents, touched);
+                    partition.depositCents += cents;
+                    break;
+                case TransactionCodec.WITHDRAW:
+                    adjust(partition, id, -cents, touched);
+                    partition.withdrawalCents += cents;
+                    break;
+                case TransactionCodec.TRANSFER:
+                    if (partition(id) == index) {
+                        adjust(partition, id, -cents, touched);
+                        partition.transferOutCents += cents;
+                    }
+                    if (partition(entry.getTargetId()) == index) {
+                        adjust(partition, entry.getTargetId(), cents, touched);
+                        partition.transferInCents += cents;
+                    }
+                    break;
+                default:
+                    // Status changes do not move money
+                    break;
+            }
+        }
+        
+        PartitionResult result = new PartitionResult();
+        Collection<String> toCheck = full ? partition.expected.keySet() : touched;
+        for (String id : toCheck) {
+            Account account = accounts.get(id);
+            long actual = account == null ? 0 : account.getBalanceMinorUnits();
+            long[] last = partition.lastRead.computeIfAbsent(id, k -> new long[1]);
+            result.actualDelta += actual - last[0];
+            last[0] = actual;
+            long expected = partition.expected.get(id)[0];
+            long[] seen = partition.unconfirmed.remove(id);
+            if (actual == expected) {
+                partition.drifting.remove(id);
+            } else if (partition.drifting.contains(id) || (seen != null && seen[0] == actual - expected)) {
+                result.drifts.add(new Drift(id, expected, actual));
+                partition.drifting.add(id);
+            } else {
+                // May be an operation not yet journaled; the next run decides
+                partition.unconfirmed.put(id, new long[] { actual - expected });
+                result.unconfirmed.add(id);
+                result.unconfirmedCents += actual - expected;
+            }
+            result.checked++;
+        }
+        
+        for (Iterator<String> it = partition.retiring.iterator(); it.hasNext(); ) {
+            String id = it.next();
+            if (partition.drifting.contains(id) || partition.unconfirmed.containsKey(id)) {
+                continue;
+            }
+            result.actualDelta -= partition.lastRead.remove(id)[0];
+            partition.archivedCents += partition.expected.remove(id)[0];
+            accounts.remove(id);
+            it.remove();
+        }
+        return result;
+    }
+    
+    private static void adjust(Partition partition, String id, long cents, Set<String> touched) {
+        partition.expected.computeIfAbsent(id, k -> new long[1])[0] += cents;
+        touched.add(id);
+    }
+    
+    private int partition(String accountId) {
+        return Math.floorMod(accountId.hashCode(), partitions.length);
+    }
+}
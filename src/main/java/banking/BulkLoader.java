@@ -0,0 +1,165 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Streaming bulk loader for clients and accounts.
+ * 
+ * Each record holds: clientId, clientName, accountId, balance, status.
+ * The file is streamed in chunks and records are built in parallel into
+ * an AccountRegistry. Bad records are passed to a reject consumer and
+ * counted; they never stop the load.
+ */
+public class BulkLoader {
+    
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    static final int FIELD_COUNT = 5;
+    
+    /**
+     * Splits one line of the input into its fields.
+     */
+    public interface Format {
+        String[] fields(String line);
+        
+        static Format csv() {
+            return line -> line.split(",", -1);
+        }
+        
+        /**
+         * Fixed-width columns; each field is trimmed.
+         */
+        static Format fixedWidth(int... widths) {
+            return line -> {
+                String[] fields = new String[widths.length];
+                int start = 0;
+                for (int i = 0; i < widths.length; i++) {
+                    int end = Math.min(start + widths[i], line.length());
+                    fields[i] = start < end ? line.substring(start, end).trim() : "";
+                    start = end;
+                }
+                return fields;
+            };
+        }
+    }
+    
+    /**
+     * A record that could not be loaded.
+     */
+    public static class Reject {
+        private final long lineNumber;
+        private final String line;
+        private final String reason;
+        
+        public Reject(long lineNumber, String line, String reason) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.reason = reason;
+        }
+        
+        public long getLineNumber() { return lineNumber; }
+        public String getLine() { return line; }
+        public String getReason() { return reason; }
+    }
+    
+    /**
+     * Outcome of one load.
+     */
+    public static class LoadReport {
+        private final long loaded;
+        private final long rejected;
+        private final long elapsedMillis;
+        
+        public LoadReport(long loaded, long rejected, long elapsedMillis) {
+            this.loaded = loaded;
+            this.rejected = rejected;
+            this.elapsedMillis = elapsedMillis;
+        }
+        
+        public long getLoaded() { return loaded; }
+        public long getRejected() { return rejected; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+    
+    private final AccountRegistry registry;
+    private final Format format;
+    private final boolean skipHeader;
+    private final ChunkedLineReader reader;
+    
+    public BulkLoader(AccountRegistry registry, Format format) {
+        this(registry, format, false, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public BulkLoader(AccountRegistry registry, Format format, boolean skipHeader,
+                      int chunkSize, int parallelism) {
+        this.registry = registry;
+        this.format = format;
+        this.skipHeader = skipHeader;
+        this.reader = new ChunkedLineReader(chunkSize, parallelism);
+    }
+    
+    /**
+     * Loads every record of the file into the registry.
+     * 
+     * @param rejects receives bad records; called from worker threads,
+     *                so it must be thread-safe
+     */
+    public LoadReport load(Path file, Consumer<Reject> rejects) throws IOException {
+        long start = System.nanoTime();
+        LongAdder loaded = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        reader.forEachLine(file, (lineNumber, line) -> {
+            if (skipHeader && lineNumber == 1) {
+                return;
+            }
+            String reason = loadRecord(line);
+            if (reason == null) {
+                loaded.increment();
+            } else {
+                rejected.increment();
+                rejects.accept(new Reject(lineNumber, line, reason));
+            }
+        });
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        return new LoadReport(loaded.sum(), rejected.sum(), elapsed);
+    }
+    
+    /**
+     * Builds and registers one record.
+     * 
+     * @return null on success, otherwise the reject reason
+     */
+    String loadRecord(String line) {
+        String[] fields = format.fields(line);
+        if (fields.length != FIELD_COUNT) {
+            return "Expected " + FIELD_COUNT + " fields but found " + fields.length;
+        }
+        String clientId = fields[0].trim();
+        String clientName = fields[1].trim();
+        String accountId = fields[2].trim();
+        String status = fields[4].trim();
+        if (clientId.isEmpty() || accountId.isEmpty()) {
+            return "Missing client or account id";
+        }
+        Money balance;
+        try {
+            // Exact to the cent; no detour through a double
+            balance = Money.parse(fields[3]);
+        } catch (NumberFormatException e) {
+            return "Invalid balance: " + fields[3];
+        }
+        if (balance.getMinorUnits() < 0) {
+            return "Invalid balance: " + fields[3];
+        }
+        if (!Account.isValidStatus(status)) {
+            return "Unknown status: " + status;
+        }
+        Client client = registry.getOrCreateClient(clientId, clientName);
+        if (!registry.addAccount(client, new Account(accountId, balance, status))) {
+            return "Duplicate account id: " + accountId;
+        }
+        return null;
+    }
+}
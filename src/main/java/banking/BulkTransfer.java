@@ -0,0 +1,129 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A one-to-many transfer, e.g. a payroll run: one source account, many
+ * credits. Executed by TransactionProcessor.transfer(BulkTransfer).
+ * 
+ * The source is checked and debited once for the total of the accepted
+ * credits, and every credit is applied while the source and all targets
+ * are locked, so no other operation sees the batch half applied.
+ * 
+ * A credit whose target may not receive it (e.g. a CLOSED account) is
+ * reported as rejected and the rest of the batch goes ahead. In strict
+ * mode any rejection fails the whole batch and nothing is moved.
+ */
+public class BulkTransfer {
+    
+    /**
+     * One line of the batch.
+     */
+    public static class Credit {
+        private final Account target;
+        private final long amountMinorUnits;
+        
+        Credit(Account target, long amountMinorUnits) {
+            this.target = target;
+            this.amountMinorUnits = amountMinorUnits;
+        }
+        
+        public Account getTarget() { return target; }
+        public Money getAmount() { return Money.ofMinorUnits(amountMinorUnits); }
+        long getAmountMinorUnits() { return amountMinorUnits; }
+    }
+    
+    /**
+     * A credit that was not applied, with the target's status at the time.
+     */
+    public static class Rejection {
+        private final Credit credit;
+        private final String targetStatus;
+        
+        Rejection(Credit credit, String targetStatus) {
+            this.credit = credit;
+            this.targetStatus = targetStatus;
+        }
+        
+        public Credit getCredit() { return credit; }
+        public String getTargetStatus() { return targetStatus; }
+        
+        @Override
+        public String toString() {
+            String id = credit.getTarget() == null ? "null" : credit.getTarget().getAccountId();
+            return id + " (" + targetStatus + "): " + credit.getAmount();
+        }
+    }
+    
+    /**
+     * Outcome of a batch.
+     */
+    public static class Result {
+        private final int code;
+        private final String message;
+        private final long debitedMinorUnits;
+        private final List<Credit> applied;
+        private final List<Rejection> rejected;
+        
+        Result(int code, String message, long debitedMinorUnits, List<Credit> applied, List<Rejection> rejected) {
+            this.code = code;
+            this.message = message;
+            this.debitedMinorUnits = debitedMinorUnits;
+            this.applied = Collections.unmodifiableList(applied);
+            this.rejected = Collections.unmodifiableList(rejected);
+        }
+        
+        public boolean isSuccess() { return code == TransactionProcessor.Result.OK; }
+        /** A TransactionProcessor.Result code. */
+        public int getCode() { return code; }
+        public String getMessage() { return message; }
+        /** Total taken from the source; zero if the batch failed. */
+        public Money getDebited() { return Money.ofMinorUnits(debitedMinorUnits); }
+        public List<Credit> getApplied() { return applied; }
+        /** Credits not applied; in strict mode these are why the batch failed. */
+        public List<Rejection> getRejected() { return rejected; }
+    }
+    
+    private final Account source;
+    private final List<Credit> credits = new ArrayList<>();
+    private boolean strict;
+    
+    public BulkTransfer(Account source) {
+        this.source = source;
+    }
+    
+    public BulkTransfer credit(Account target, double amount) {
+        credits.add(new Credit(target, Money.amountMinorUnits(amount)));
+        return this;
+    }
+    
+    public BulkTransfer credit(Account target, Money amount) {
+        credits.add(new Credit(target, amount.getMinorUnits()));
+        return this;
+    }
+    
+    /**
+     * Fail the whole batch if any credit would be rejected.
+     */
+    public BulkTransfer strict() {
+        this.strict = true;
+        return this;
+    }
+    
+    public Account getSource() { return source; }
+    public List<Credit> getCredits() { return Collections.unmodifiableList(credits); }
+    public boolean isStrict() { return strict; }
+    
+    /**
+     * Sum of all credits, accepted or not.
+     */
+    public Money getTotal() {
+        long total = 0;
+        for (Credit credit : credits) {
+            total = Math.addExact(total, credit.getAmountMinorUnits());
+        }
+        return Money.ofMinorUnits(total);
+    }
+}
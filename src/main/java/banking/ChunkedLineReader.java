@@ -0,0 +1,154 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams a text file through NIO in fixed-size chunks and hands the
+ * lines of each chunk to a pool of workers.
+ * 
+ * Only a bounded number of chunks are in flight at once, so memory use
+ * depends on chunk size and parallelism, never on file size. Lines of
+ * one chunk are handled in order; chunks run in parallel.
+ */
+class ChunkedLineReader {
+    
+    interface LineHandler {
+        void line(long lineNumber, String line);
+    }
+    
+    interface ChunkHandler {
+        /** Every line numbered firstLine up to, not including, endLine has been handled. */
+        void done(long firstLine, long endLine);
+    }
+    
+    private final int chunkSize;
+    private final int parallelism;
+    
+    ChunkedLineReader(int chunkSize, int parallelism) {
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+    
+    void forEachLine(Path file, LineHandler handler) throws IOException {
+        forEachLine(file, handler, (firstLine, endLine) -> { });
+    }
+    
+    void forEachLine(Path file, LineHandler handler, ChunkHandler chunks) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+            // Bytes read but not yet handed out: the tail of a line
+            byte[] pending = new byte[chunkSize];
+            int pendingLength = 0;
+            long nextLine = 1;
+            while (failure.get() == null) {
+                boolean eof = channel.read(buffer) == -1;
+                buffer.flip();
+                int read = buffer.remaining();
+                if (pendingLength + read > pending.length) {
+                    // Doubling keeps a line many chunks long linear to gather
+                    pending = Arrays.copyOf(pending, Math.max(pendingLength + read, pending.length * 2));
+                }
+                buffer.get(pending, pendingLength, read);
+                buffer.clear();
+                
+                // The tail has no newline, so only the new bytes need a scan
+                int end = eof ? pendingLength + read : lastNewline(pending, pendingLength, pendingLength + read) + 1;
+                pendingLength += read;
+                if (end > 0) {
+                    byte[] data = pending;
+                    pendingLength -= end;
+                    pending = new byte[pendingLength + chunkSize];
+                    System.arraycopy(data, end, pending, 0, pendingLength);
+                    long firstLine = nextLine;
+                    nextLine += countNewlines(data, end);
+                    inFlight.acquire();
+                    workers.execute(() -> {
+                        try {
+                            chunks.done(firstLine, handleChunk(data, end, firstLine, handler));
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+                if (eof) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + file, e);
+        } finally {
+            workers.shutdown();
+            awaitQuietly(workers);
+        }
+        Throwable t = failure.get();
+        if (t != null) {
+            throw new IOException("Failed processing " + file, t);
+        }
+    }
+    
+    // Returns the number of the line after the chunk
+    private static long handleChunk(byte[] data, int end, long firstLine, LineHandler handler) {
+        long lineNumber = firstLine;
+        int start = 0;
+        while (start < end) {
+            int stop = start;
+            while (stop < end && data[stop] != '\n') {
+                stop++;
+            }
+            int length = stop - start;
+            if (length > 0 && data[start + length - 1] == '\r') {
+                length--;
+            }
+            if (length > 0) {
+                handler.line(lineNumber, new String(data, start, length, StandardCharsets.UTF_8));
+            }
+            lineNumber++;
+            start = stop + 1;
+        }
+        return lineNumber;
+    }
+    
+    private static int lastNewline(byte[] data, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (data[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static int countNewlines(byte[] data, int end) {
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (data[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private static void awaitQuietly(ExecutorService workers) {
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,42 +1,175 @@
 package banking;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represents a bank client.
+ * 
+ * The account list is copy-on-write: clients hold few accounts, and
+ * lookups and iteration must stay safe while loaders add accounts. An
+ * index by id, kept under the same lock as the list, makes getAccount()
+ * O(1); with several accounts of one id it finds the first added.
+ * 
+ * Total balance and per-status account counts are kept incrementally:
+ * accounts report every balance and status change to their client, so
+ * the aggregates are O(1) to read and safe under concurrent updates.
  */
 public class Client {
     
     private final String clientId;
     private final String name;
     private final List<Account> accounts;
-    private int creditScore;
+    private final ConcurrentHashMap<String, Account> accountsById = new ConcurrentHashMap<>();
+    private final Object accountsLock = new Object();
+    private volatile int creditScore;
+    
+    // Tier indexes kept in step with the score
+    private final CopyOnWriteArrayList<ClientTierIndex> tierIndexes = new CopyOnWriteArrayList<>();
+    
+    // Where this client's archived accounts went, if any were archived
+    private volatile AccountArchive archive;
+    
+    // Incremental aggregates over the accounts; balance in minor units
+    private final LongAdder totalBalance = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> statusCounts = new ConcurrentHashMap<>();
     
     public Client(String clientId, String name) {
         this.clientId = clientId;
         this.name = name;
-        this.accounts = new ArrayList<>();
         this.creditScore = 0;
+        this.accounts = new CopyOnWriteArrayList<>();
     }
     
     public void addAccount(Account account) {
-        accounts.add(account);
+        synchronized (accountsLock) {
+            accounts.add(account);
+            accountsById.putIfAbsent(account.getAccountId(), account);
+            account.attach(this);
+        }
+    }
+    
+    /**
+     * Removes an account and its share of the aggregates.
+     * 
+     * @return false if the account was not this client's
+     */
+    public boolean removeAccount(Account account) {
+        synchronized (accountsLock) {
+            if (!accounts.remove(account)) {
+                return false;
+            }
+            String accountId = account.getAccountId();
+            if (accountsById.remove(accountId, account)) {
+                // Another account with the same id, if any, takes its place
+                for (Account other : accounts) {
+                    if (other.getAccountId().equals(accountId)) {
+                        accountsById.put(accountId, other);
+                        break;
+                    }
+                }
+            }
+            account.detach(this);
+            return true;
+        }
     }
     
+    /**
+     * Finds a live account, or else reloads an archived one (read-only
+     * copy, not re-added to the client).
+     */
     public Account getAccount(String accountId) {
-        for (Account account : accounts) {
-            if (account.getAccountId().equals(accountId)) {
-                return account;
+        Account account = accountsById.get(accountId);
+        if (account != null) {
+            return account;
+        }
+        AccountArchive archived = archive;
+        if (archived != null) {
+            AccountArchive.Entry entry = archived.find(accountId);
+            if (entry != null && entry.getClientId().equals(clientId)) {
+                return entry.toAccount();
             }
         }
         return null;
     }
     
+    void archivedTo(AccountArchive archive) {
+        this.archive = archive;
+    }
+    
+    // ========== AGGREGATES ==========
+    
+    void accountAttached(long balance, String status) {
+        totalBalance.add(balance);
+        statusCounter(status).increment();
+    }
+    
+    void accountDetached(long balance, String status) {
+        totalBalance.add(-balance);
+        statusCounter(status).decrement();
+    }
+    
+    void balanceChanged(long delta) {
+        totalBalance.add(delta);
+    }
+    
+    void statusChanged(String from, String to) {
+        statusCounter(from).decrement();
+        statusCounter(to).increment();
+    }
+    
+    private LongAdder statusCounter(String status) {
+        return statusCounts.computeIfAbsent(status, s -> new LongAdder());
+    }
+    
+    public double getTotalBalance() {
+        return Money.toDouble(totalBalance.sum());
+    }
+    
+    public Money getTotalBalanceAsMoney() {
+        return Money.ofMinorUnits(totalBalance.sum());
+    }
+    
+    public long getAccountCount(String status) {
+        LongAdder count = statusCounts.get(status);
+        return count == null ? 0 : count.sum();
+    }
+    
+    /**
+     * Accounts that are not closed.
+     */
+    public long getActiveAccountCount() {
+        return accounts.size() - getAccountCount(Account.CLOSED);
+    }
+    
     // Getters
     public String getClientId() { return clientId; }
     public String getName() { return name; }
-    public List<Account> getAccounts() { return accounts; }
+    /** Live, read-only view in the order added; use addAccount/removeAccount to change it. */
+    public List<Account> getAccounts() { return Collections.unmodifiableList(accounts); }
     public int getCreditScore() { return creditScore; }
-    public void setCreditScore(int creditScore) { this.creditScore = creditScore; }
+    public void setCreditScore(int creditScore) { updateCreditScore(creditScore); }
+    
+    /**
+     * Sets the score and returns the previous one, atomically with
+     * respect to other calls of this method.
+     */
+    public synchronized int updateCreditScore(int creditScore) {
+        int previous = this.creditScore;
+        this.creditScore = creditScore;
+        if (previous != creditScore) {
+            for (ClientTierIndex index : tierIndexes) {
+                index.scoreChanged(this, previous, creditScore);
+            }
+        }
+        return previous;
+    }
+    
+    // Links the client to an index that buckets it by tier
+    void indexedBy(ClientTierIndex index) {
+        tierIndexes.addIfAbsent(index);
+    }
 }
@@ -84,25 +84,59 @@ public class ClientController {
             return;
         }
         
-        String status = currentAccount.getStatus();
-        switch (status) {
-            case Account.VERIFIED:
-                depositEnabled = true;
-                withdrawEnabled = true;
-                transferEnabled = true;
-                break;
-            case Account.UNVERIFIED:
-            case Account.SUSPENDED:
-                depositEnabled = true;
-                withdrawEnabled = false;
-                transferEnabled = false;
-                break;
-            case Account.CLOSED:
-                depositEnabled = false;
-                withdrawEnabled = false;
-                transferEnabled = false;
-                break;
+        ViewState state = ViewState.of(currentAccount);
+        depositEnabled = state.isDepositEnabled();
+        withdrawEnabled = state.isWithdrawEnabled();
+        transferEnabled = state.isTransferEnabled();
+    }
+    
+    /**
+     * What the UI shows for an account: balance, status and which actions
+     * are enabled. Also pushed to open dashboards by DashboardEventServer.
+     */
+    public static class ViewState {
+        private final String accountId;
+        private final long balanceMinorUnits;
+        private final String status;
+        private final boolean depositEnabled;
+        private final boolean withdrawEnabled;
+        private final boolean transferEnabled;
+        
+        private ViewState(String accountId, long balanceMinorUnits, String status) {
+            this.accountId = accountId;
+            this.balanceMinorUnits = balanceMinorUnits;
+            this.status = status;
+            switch (status) {
+                case Account.VERIFIED:
+                    depositEnabled = true;
+                    withdrawEnabled = true;
+                    transferEnabled = true;
+                    break;
+                case Account.UNVERIFIED:
+                case Account.SUSPENDED:
+                    depositEnabled = true;
+                    withdrawEnabled = false;
+                    transferEnabled = false;
+                    break;
+                default:
+                    depositEnabled = false;
+                    withdrawEnabled = false;
+                    transferEnabled = false;
+                    break;
+            }
         }
+        
+        public static ViewState of(Account account) {
+            Account.Snapshot snapshot = account.snapshot();
+            return new ViewState(account.getAccountId(), snapshot.getBalanceMinorUnits(), snapshot.getStatus());
+        }
+        
+        public String getAccountId() { return accountId; }
+        public Money getBalance() { return Money.ofMinorUnits(balanceMinorUnits); }
+        public String getStatus() { return status; }
+        public boolean isDepositEnabled() { return depositEnabled; }
+        public boolean isWithdrawEnabled() { return withdrawEnabled; }
+        public boolean isTransferEnabled() { return transferEnabled; }
     }
     
     // Getters for UI state
@@ -112,5 +146,6 @@ public class ClientController {
     public String getStatusMessage() { return statusMessage; }
     public String getErrorMessage() { return errorMessage; }
     public Account getCurrentAccount() { return currentAccount; }
+    public ViewState getViewState() { return currentAccount == null ? null : ViewState.of(currentAccount); }
     public TransactionProcessor getProcessor() { return processor; }
 }
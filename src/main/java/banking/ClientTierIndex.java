@@ -0,0 +1,205 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Clients bucketed by credit tier, eligibility and caller-defined flags.
+ * 
+ * Every indexed client gets a dense ordinal, and each bucket is a bitmap
+ * over the ordinals. Clients report score changes to the index, which
+ * moves them between tier bitmaps; there is no rescan. Queries return
+ * ClientSet snapshots that can be intersected and combined a word
+ * (64 clients) at a time, and listing a result visits only its members.
+ * 
+ * A query hands out the bucket's bitmap itself, in O(1); the bucket is
+ * then marked shared and its next change copies the bitmap first. Only
+ * a change after a query pays for a copy, once, however many queries
+ * came between.
+ */
+public class ClientTierIndex {
+    
+    public static final String ELIGIBLE = "eligible";
+    
+    private final CreditScoreChecker checker;
+    // Append-only by ordinal; query results share the array, so it is
+    // replaced, never modified in place, when it grows
+    private Client[] clients = new Client[64];
+    private int count;
+    private final Map<Client, Integer> ordinals = new HashMap<>();
+    private final Map<String, Bucket> tiers = new HashMap<>();
+    private final Map<String, Bucket> flags = new HashMap<>();
+    private final Bucket all = new Bucket();
+    
+    /**
+     * One bitmap over the ordinals. Guarded by the index's monitor.
+     */
+    private static final class Bucket {
+        private BitSet bits = new BitSet();
+        // Handed to a query; copy before the next change
+        private boolean shared;
+        
+        void set(int ordinal, boolean value) {
+            if (bits.get(ordinal) == value) {
+                return;
+            }
+            if (shared) {
+                bits = (BitSet) bits.clone();
+                shared = false;
+            }
+            bits.set(ordinal, value);
+        }
+        
+        BitSet share() {
+            shared = true;
+            return bits;
+        }
+    }
+    
+    public ClientTierIndex(CreditScoreChecker checker) {
+        this.checker = checker;
+    }
+    
+    /**
+     * Indexes a client and keeps it indexed as its score changes.
+     */
+    public void add(Client client) {
+        // Holding the client's monitor orders this with its score updates
+        synchronized (client) {
+            synchronized (this) {
+                if (ordinals.containsKey(client)) {
+                    return;
+                }
+                int ordinal = count++;
+                if (ordinal == clients.length) {
+                    clients = Arrays.copyOf(clients, ordinal * 2);
+                }
+                clients[ordinal] = client;
+                ordinals.put(client, ordinal);
+                all.set(ordinal, true);
+                place(ordinal, client.getCreditScore(), true);
+            }
+            client.indexedBy(this);
+        }
+    }
+    
+    public void addAll(Iterable<Client> clients) {
+        for (Client client : clients) {
+            add(client);
+        }
+    }
+    
+    // Called by the client, holding its monitor
+    synchronized void scoreChanged(Client client, int previous, int score) {
+        Integer ordinal = ordinals.get(client);
+        if (ordinal == null) {
+            return;
+        }
+        place(ordinal, previous, false);
+        place(ordinal, score, true);
+    }
+    
+    private void place(int ordinal, int score, boolean present) {
+        tiers.computeIfAbsent(checker.getTier(score), t -> new Bucket()).set(ordinal, present);
+        if (checker.isEligible(score)) {
+            flags.computeIfAbsent(ELIGIBLE, f -> new Bucket()).set(ordinal, present);
+        }
+    }
+    
+    /**
+     * Sets or clears a caller-maintained flag, e.g. "creditLine".
+     */
+    public synchronized void setFlag(Client client, String flag, boolean value) {
+        if (ELIGIBLE.equals(flag)) {
+            throw new IllegalArgumentException("Eligibility is derived from the score");
+        }
+        Integer ordinal = ordinals.get(client);
+        if (ordinal == null) {
+            throw new IllegalArgumentException("Client is not indexed: " + client.getClientId());
+        }
+        flags.computeIfAbsent(flag, f -> new Bucket()).set(ordinal, value);
+    }
+    
+    // ========== QUERIES ==========
+    
+    /**
+     * Clients in a tier, as named by CreditScoreChecker.getTier().
+     */
+    public synchronized ClientSet tier(String tier) {
+        return snapshot(tiers.get(tier));
+    }
+    
+    public synchronized ClientSet eligible() {
+        return snapshot(flags.get(ELIGIBLE));
+    }
+    
+    public synchronized ClientSet flagged(String flag) {
+        return snapshot(flags.get(flag));
+    }
+    
+    public synchronized ClientSet all() {
+        return snapshot(all);
+    }
+    
+    public synchronized int size() {
+        return count;
+    }
+    
+    private ClientSet snapshot(Bucket bucket) {
+        return new ClientSet(bucket == null ? new BitSet() : bucket.share(), clients);
+    }
+    
+    /**
+     * An immutable set of indexed clients. The bitmap may be shared with
+     * the index or other sets and is never modified.
+     */
+    public static class ClientSet {
+        private final BitSet bits;
+        private final Client[] clients;
+        
+        ClientSet(BitSet bits, Client[] clients) {
+            this.bits = bits;
+            this.clients = clients;
+        }
+        
+        public ClientSet and(ClientSet other) {
+            return combine(other, BitSet::and);
+        }
+        
+        public ClientSet or(ClientSet other) {
+            return combine(other, BitSet::or);
+        }
+        
+        public ClientSet andNot(ClientSet other) {
+            return combine(other, BitSet::andNot);
+        }
+        
+        private ClientSet combine(ClientSet other, BiConsumer<BitSet, BitSet> op) {
+            BitSet result = (BitSet) bits.clone();
+            op.accept(result, other.bits);
+            // Use the longer view so later ordinals resolve
+            return new ClientSet(result, clients.length >= other.clients.length ? clients : other.clients);
+        }
+        
+        public int size() {
+            return bits.cardinality();
+        }
+        
+        public boolean isEmpty() {
+            return bits.isEmpty();
+        }
+        
+        public List<Client> clients() {
+            List<Client> result = new ArrayList<>(size());
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                result.add(clients[i]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Streaming ingestion of credit bureau update files.
+ * 
+ * Each record holds: clientId, score, which must lie between
+ * CreditScoreChecker.MIN_SCORE and MAX_SCORE. The file is streamed in chunks
+ * (see BulkLoader) and clients are updated in parallel. An update that
+ * moves a client to another credit tier or changes its eligibility is
+ * emitted on the delta feed; other updates are applied silently, so
+ * downstream work is proportional to real changes, not to the file
+ * size. Records that repeat the current score write nothing.
+ * 
+ * A client may appear on several rows, possibly in chunks that run in
+ * parallel. Rows for one client are applied under the client's lock,
+ * which remembers the row it was last updated from; a row older than
+ * that is skipped, so the last row in the file wins and the client's
+ * changes reach the feed in file order. A row number is only kept until
+ * every earlier line of the file has been handled, since no older row
+ * can turn up after that, so memory follows the rows read past the
+ * oldest chunk still running, not the number of clients.
+ */
+public class CreditBureauIngestor {
+    
+    static final int FIELD_COUNT = 2;
+    
+    /**
+     * A client whose tier or eligibility changed.
+     */
+    public static class ScoreChange {
+        private final Client client;
+        private final int previousScore;
+        private final int score;
+        private final String previousTier;
+        private final String tier;
+        private final boolean previouslyEligible;
+        private final boolean eligible;
+        
+        public ScoreChange(Client client, int previousScore, int score, String previousTier, String tier,
+                           boolean previouslyEligible, boolean eligible) {
+            this.client = client;
+            this.previousScore = previousScore;
+            this.score = score;
+            this.previousTier = previousTier;
+            this.tier = tier;
+            this.previouslyEligible = previouslyEligible;
+            this.eligible = eligible;
+        }
+        
+        public Client getClient() { return client; }
+        public int getPreviousScore() { return previousScore; }
+        public int getScore() { return score; }
+        public String getPreviousTier() { return previousTier; }
+        public String getTier() { return tier; }
+        public boolean wasEligible() { return previouslyEligible; }
+        public boolean isEligible() { return eligible; }
+        public boolean isTierChange() { return !previousTier.equals(tier); }
+        public boolean isEligibilityChange() { return previouslyEligible != eligible; }
+    }
+    
+    /**
+     * Outcome of one ingestion.
+     */
+    public static class IngestReport {
+        private final long updated;
+        private final long unchanged;
+        private final long changes;
+        private final long rejected;
+        private final long superseded;
+        private final long elapsedMillis;
+        
+        public IngestReport(long updated, long unchanged, long changes, long rejected, long superseded,
+                            long elapsedMillis) {
+            this.updated = updated;
+            this.unchanged = unchanged;
+            this.changes = changes;
+            this.rejected = rejected;
+            this.superseded = superseded;
+            this.elapsedMillis = elapsedMillis;
+        }
+        
+        /** Records that changed a client's score. */
+        public long getUpdated() { return updated; }
+        /** Records that repeated the client's current score. */
+        public long getUnchanged() { return unchanged; }
+        /** Tier or eligibility changes emitted on the delta feed. */
+        public long getChanges() { return changes; }
+        public long getRejected() { return rejected; }
+        /** Records skipped because a later row for the client was applied first. */
+        public long getSuperseded() { return superseded; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+    
+    private final AccountRegistry registry;
+    private final CreditScoreChecker checker;
+    private final BulkLoader.Format format;
+    private final boolean skipHeader;
+    private final ChunkedLineReader reader;
+    
+    public CreditBureauIngestor(AccountRegistry registry, CreditScoreChecker checker) {
+        this(registry, checker, BulkLoader.Format.csv(), false,
+                BulkLoader.DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public CreditBureauIngestor(AccountRegistry registry, CreditScoreChecker checker, BulkLoader.Format format,
+                                boolean skipHeader, int chunkSize, int parallelism) {
+        this.registry = registry;
+        this.checker = checker;
+        this.format = format;
+        this.skipHeader = skipHeader;
+        this.reader = new ChunkedLineReader(chunkSize, parallelism);
+    }
+    
+    /**
+     * Applies every record of the file.
+     * 
+     * @param changes receives tier and eligibility changes
+     * @param rejects receives bad records
+     *                (both are called from worker threads, so they must be
+     *                thread-safe)
+     */
+    public IngestReport ingest(Path file, Consumer<ScoreChange> changes,
+                               Consumer<BulkLoader.Reject> rejects) throws IOException {
+        long start = System.nanoTime();
+        LongAdder updated = new LongAdder();
+        LongAdder unchanged = new LongAdder();
+        LongAdder changed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder superseded = new LongAdder();
+        AppliedRows appliedRows = new AppliedRows();
+        reader.forEachLine(file, (lineNumber, line) -> {
+            if (skipHeader && lineNumber == 1) {
+                return;
+            }
+            String[] fields = format.fields(line);
+            String reason = null;
+            Client client = null;
+            int score = 0;
+            if (fields.length != FIELD_COUNT) {
+                reason = "Expected " + FIELD_COUNT + " fields but found " + fields.length;
+            } else {
+                client = registry.getClient(fields[0].trim());
+                try {
+                    score = Integer.parseInt(fields[1].trim());
+                } catch (NumberFormatException e) {
+                    reason = "Invalid score: " + fields[1];
+                }
+                if (client == null) {
+                    reason = "Unknown client: " + fields[0];
+                } else if (reason == null
+                        && (score < CreditScoreChecker.MIN_SCORE || score > CreditScoreChecker.MAX_SCORE)) {
+                    reason = "Score out of range: " + fields[1];
+                }
+            }
+            if (reason != null) {
+                rejected.increment();
+                rejects.accept(new BulkLoader.Reject(lineNumber, line, reason));
+                return;
+            }
+            // The lock updateCreditScore takes as well: rows for one
+            // client apply, and reach the feed, one at a time
+            synchronized (client) {
+                if (!appliedRows.apply(client, lineNumber)) {
+                    superseded.increment();
+                    return;
+                }
+                int previous = client.updateCreditScore(score);
+                if (previous == score) {
+                    unchanged.increment();
+                    return;
+                }
+                updated.increment();
+                ScoreChange change = compare(client, previous, score);
+                if (change != null) {
+                    changed.increment();
+                    changes.accept(change);
+                }
+            }
+        }, appliedRows::chunkDone);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        return new IngestReport(updated.sum(), unchanged.sum(), changed.sum(), rejected.sum(), superseded.sum(),
+                elapsed);
+    }
+    
+    /**
+     * Row each client was last updated from, kept while a row older than
+     * it may still be read.
+     */
+    private static class AppliedRows {
+        private final ConcurrentHashMap<Client, Long> byClient = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<Long, Client> byRow = new ConcurrentSkipListMap<>();
+        // Chunks handled past the first gap, first line to end line
+        private final Map<Long, Long> finished = new TreeMap<>();
+        // Every line before it has been handled
+        private long handledBefore = 1;
+        
+        /**
+         * Records the row for the client, with the client's lock held.
+         * 
+         * @return false if a later row for the client was applied first
+         */
+        boolean apply(Client client, long row) {
+            Long applied = byClient.get(client);
+            if (applied != null && applied > row) {
+                return false;
+            }
+            byClient.put(client, row);
+            byRow.put(row, client);
+            if (applied != null) {
+                byRow.remove(applied);
+            }
+            return true;
+        }
+        
+        synchronized void chunkDone(long firstLine, long endLine) {
+            finished.put(firstLine, endLine);
+            Long next;
+            while ((next = finished.remove(handledBefore)) != null) {
+                handledBefore = next;
+            }
+            NavigableMap<Long, Client> settled = byRow.headMap(handledBefore);
+            for (Map.Entry<Long, Client> entry : settled.entrySet()) {
+                // Unless the client has moved on to a later row meanwhile
+                byClient.remove(entry.getValue(), entry.getKey());
+            }
+            settled.clear();
+        }
+    }
+    
+    /**
+     * @return the change, or null if tier and eligibility are the same
+     */
+    private ScoreChange compare(Client client, int previous, int score) {
+        String previousTier = checker.getTier(previous);
+        String tier = checker.getTier(score);
+        boolean previouslyEligible = checker.isEligible(previous);
+        boolean eligible = checker.isEligible(score);
+        if (previousTier.equals(tier) && previouslyEligible == eligible) {
+            return null;
+        }
+        return new ScoreChange(client, previous, score, previousTier, tier, previouslyEligible, eligible);
+    }
+}
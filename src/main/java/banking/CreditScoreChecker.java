@@ -13,11 +13,19 @@ package banking;
  */
 public class CreditScoreChecker {
     
+    /** Range of a valid bureau score. */
+    public static final int MIN_SCORE = 300;
+    public static final int MAX_SCORE = 850;
+    
     public static final int THRESHOLD_ELIGIBLE = 650;
     public static final int THRESHOLD_EXCELLENT = 750;
     public static final int THRESHOLD_GOOD = 650;
     public static final int THRESHOLD_FAIR = 550;
     
+    private static final Money LIMIT_EXCELLENT = Money.ofMajorUnits(50000);
+    private static final Money LIMIT_GOOD = Money.ofMajorUnits(25000);
+    private static final Money LIMIT_FAIR = Money.ofMajorUnits(10000);
+    
     public boolean isEligible(int score) {
         return score >= THRESHOLD_ELIGIBLE;
     }
@@ -35,9 +43,13 @@ public class CreditScoreChecker {
     }
     
     public double getMaxCredit(int score) {
-        if (score >= THRESHOLD_EXCELLENT) return 50000;
-        if (score >= THRESHOLD_GOOD) return 25000;
-        if (score >= THRESHOLD_FAIR) return 10000;
-        return 0;
+        return getCreditLimit(score).toDouble();
+    }
+    
+    public Money getCreditLimit(int score) {
+        if (score >= THRESHOLD_EXCELLENT) return LIMIT_EXCELLENT;
+        if (score >= THRESHOLD_GOOD) return LIMIT_GOOD;
+        if (score >= THRESHOLD_FAIR) return LIMIT_FAIR;
+        return Money.ZERO;
     }
 }
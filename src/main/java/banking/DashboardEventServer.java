@@ -0,0 +1,377 @@
+package banking;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes account state to open dashboards over Server-Sent Events.
+ * 
+ * Endpoints:
+ *   GET /events?account=ID[&account=ID...]  text/event-stream of
+ *                                           ClientController.ViewState
+ *   GET /                                   the dashboard page
+ * 
+ * Access: the server binds to the loopback interface unless given an
+ * address. An event stream needs a token from grant(clientId), sent as
+ * "Authorization: Bearer TOKEN" or, for browsers' EventSource, as a
+ * token query parameter; it may only watch that client's accounts.
+ * Missing or unknown tokens get 401, accounts of another client (or
+ * no client) get 403.
+ * 
+ * Every request is served on its own virtual thread, and a connection
+ * holds it for its lifetime, blocked while there is nothing to send, so
+ * an idle dashboard costs a parked virtual thread and a socket.
+ * 
+ * Listener callbacks only mark the account dirty on each session that
+ * watches it. The session thread sends the current state of every dirty
+ * account, then waits out the frame interval; changes made meanwhile
+ * are marked again and sent together in the next frame. A burst of
+ * deposits therefore reaches the browser as at most one event per
+ * account per frame, always carrying the latest balance.
+ */
+public class DashboardEventServer implements TransactionListener, AutoCloseable {
+    
+    private static final String DASHBOARD = "/ui/dashboard.html";
+    private static final SecureRandom RANDOM = new SecureRandom();
+    
+    /**
+     * One open event stream.
+     */
+    private static class Session {
+        final List<String> accountIds;
+        // Dirty accounts since the last frame
+        final Map<String, Account> pending = new ConcurrentHashMap<>();
+        final Semaphore signal = new Semaphore(0);
+        
+        Session(List<String> accountIds) {
+            this.accountIds = accountIds;
+        }
+        
+        void mark(Account account) {
+            if (pending.put(account.getAccountId(), account) == null) {
+                signal.release();
+            }
+        }
+    }
+    
+    private final AccountRegistry registry;
+    private final long frameMillis;
+    private final long heartbeatMillis;
+    private final HttpServer server;
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Set<Session>> watchers = new ConcurrentHashMap<>();
+    // Token -> client id whose accounts it may watch
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+    
+    public DashboardEventServer(AccountRegistry registry, int port) throws IOException {
+        this(registry, port, 100, 15_000);
+    }
+    
+    /**
+     * Listens on the loopback interface only.
+     * 
+     * @param port            0 picks a free port, see getPort()
+     * @param frameMillis     minimum interval between events for an account
+     * @param heartbeatMillis idle interval after which a comment is sent,
+     *                        so dead connections are noticed
+     */
+    public DashboardEventServer(AccountRegistry registry, int port, long frameMillis, long heartbeatMillis)
+            throws IOException {
+        this(registry, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), frameMillis, heartbeatMillis);
+    }
+    
+    /**
+     * @param address interface and port to listen on; only expose it
+     *                beyond loopback behind TLS
+     */
+    public DashboardEventServer(AccountRegistry registry, InetSocketAddress address, long frameMillis,
+                                long heartbeatMillis) throws IOException {
+        this.registry = registry;
+        this.frameMillis = frameMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(threads);
+        server.createContext("/events", this::stream);
+        server.createContext("/", this::page);
+    }
+    
+    /**
+     * Registers for the processor's transactions and its account service's
+     * status changes.
+     */
+    public DashboardEventServer attach(TransactionProcessor processor) {
+        processor.addListener(this);
+        processor.getAccountService().addListener(this);
+        return this;
+    }
+    
+    public DashboardEventServer start() {
+        server.start();
+        return this;
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+    
+    /**
+     * Issues a token that may watch the given client's accounts.
+     */
+    public String grant(String clientId) {
+        byte[] bytes = new byte[24];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tokens.put(token, clientId);
+        return token;
+    }
+    
+    /**
+     * Withdraws a token; streams already open keep running until they
+     * disconnect.
+     */
+    public void revoke(String token) {
+        tokens.remove(token);
+    }
+    
+    public int getSessionCount() {
+        Set<Session> sessions = ConcurrentHashMap.newKeySet();
+        for (Set<Session> watching : watchers.values()) {
+            sessions.addAll(watching);
+        }
+        return sessions.size();
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        for (Set<Session> sessions : watchers.values()) {
+            for (Session session : sessions) {
+                session.signal.release();
+            }
+        }
+        server.stop(0);
+        threads.shutdownNow();
+    }
+    
+    // ========== LISTENER ==========
+    
+    @Override
+    public void onDeposit(Account account, double amount) {
+        changed(account);
+    }
+    
+    @Override
+    public void onWithdraw(Account account, double amount) {
+        changed(account);
+    }
+    
+    @Override
+    public void onTransfer(Account from, Account to, double amount) {
+        changed(from);
+        changed(to);
+    }
+    
+    @Override
+    public void onStatusChange(Account account, String from, String to) {
+        changed(account);
+    }
+    
+    @Override
+    public void onAccountArchived(Account account) {
+        // Archived accounts no longer change; open streams keep their last
+        // state. Streams add and drop themselves inside compute(), so a
+        // stream starting now lands in a fresh entry, not the removed one
+        watchers.remove(account.getAccountId());
+    }
+    
+    private void changed(Account account) {
+        Set<Session> sessions = watchers.get(account.getAccountId());
+        if (sessions == null) {
+            return;
+        }
+        for (Session session : sessions) {
+            session.mark(account);
+        }
+    }
+    
+    // ========== HTTP ==========
+    
+    private void stream(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        List<String> ids = parameters(query, "account");
+        if (!"GET".equals(exchange.getRequestMethod()) || ids.isEmpty()) {
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+            return;
+        }
+        String clientId = tokenOwner(exchange, query);
+        if (clientId == null) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            exchange.sendResponseHeaders(401, -1);
+            exchange.close();
+            return;
+        }
+        if (!owns(clientId, ids)) {
+            exchange.sendResponseHeaders(403, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        
+        Session session = new Session(ids);
+        for (String id : ids) {
+            // Atomic with the removal of an emptied entry below
+            watchers.compute(id, (k, sessions) -> {
+                Set<Session> watching = sessions != null ? sessions : ConcurrentHashMap.newKeySet();
+                watching.add(session);
+                return watching;
+            });
+            // Initial state, sent in the first frame
+            Account account = registry.getAccount(id);
+            if (account != null) {
+                session.mark(account);
+            }
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            while (!closed) {
+                if (!session.signal.tryAcquire(heartbeatMillis, TimeUnit.MILLISECONDS)) {
+                    out.write(": keepalive\n\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    continue;
+                }
+                session.signal.drainPermits();
+                StringBuilder frame = new StringBuilder();
+                for (String id : session.pending.keySet()) {
+                    Account account = session.pending.remove(id);
+                    if (account != null) {
+                        frame.append("event: state\ndata: ")
+                                .append(toJson(ClientController.ViewState.of(account)))
+                                .append("\n\n");
+                    }
+                }
+                if (frame.length() > 0) {
+                    out.write(frame.toString().getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+                Thread.sleep(frameMillis);
+            }
+        } catch (IOException | InterruptedException e) {
+            // Browser went away or the server is closing
+        } finally {
+            for (String id : ids) {
+                watchers.computeIfPresent(id, (k, sessions) -> {
+                    sessions.remove(session);
+                    return sessions.isEmpty() ? null : sessions;
+                });
+            }
+            exchange.close();
+        }
+    }
+    
+    private void page(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        try (InputStream in = DashboardEventServer.class.getResourceAsStream(DASHBOARD)) {
+            if (in == null || !(path.equals("/") || path.equals("/dashboard.html"))) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = in.readAllBytes();
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    private String tokenOwner(HttpExchange exchange, String query) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        String token = null;
+        if (header != null && header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            token = header.substring(7).trim();
+        } else {
+            List<String> params = parameters(query, "token");
+            if (params.size() == 1) {
+                token = params.get(0);
+            }
+        }
+        return token == null ? null : tokens.get(token);
+    }
+    
+    private boolean owns(String clientId, List<String> ids) {
+        Client client = registry.getClient(clientId);
+        if (client == null) {
+            return false;
+        }
+        for (String id : ids) {
+            if (client.getAccount(id) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static List<String> parameters(String query, String name) {
+        List<String> values = new ArrayList<>();
+        if (query == null) {
+            return values;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq > 0 && param.substring(0, eq).equals(name) && eq < param.length() - 1) {
+                values.add(URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return values;
+    }
+    
+    static String toJson(ClientController.ViewState state) {
+        return "{\"accountId\":" + quote(state.getAccountId())
+                + ",\"balance\":\"" + state.getBalance() + "\""
+                + ",\"status\":" + quote(state.getStatus())
+                + ",\"depositEnabled\":" + state.isDepositEnabled()
+                + ",\"withdrawEnabled\":" + state.isWithdrawEnabled()
+                + ",\"transferEnabled\":" + state.isTransferEnabled() + "}";
+    }
+    
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
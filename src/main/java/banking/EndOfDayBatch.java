@@ -0,0 +1,324 @@
+package banking;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-of-day interest and fee batch over the whole book.
+ * 
+ * Accounts are sorted by id and cut into fixed chunks; a fork/join pool
+ * splits the chunk range across workers.
+ * 
+ * Progress is kept per account id in a marker file for the business
+ * day. A worker takes up to MARK_GROUP accounts at a time, appends a
+ * "started" marker for each and forces the file, and only then applies
+ * the adjustments, appending a "done" marker after each one. A rerun for
+ * the same day, even over accounts rebuilt from disk after a crash,
+ * skips every account with a marker, so nothing is ever charged twice.
+ * An account started but never confirmed done may or may not have been
+ * adjusted when the run died: it is not adjusted again, but listed in
+ * the report as uncertain, to be settled against the transaction log.
+ * Accounts added to the book between the crash and the rerun are simply
+ * adjusted, wherever they sort.
+ * 
+ * Accounts also remember the last business day they were adjusted for,
+ * so a book that stays in memory is guarded twice.
+ * 
+ * With a processor set, every adjustment is reported to its listeners,
+ * net interest as a deposit and a net fee as a withdrawal, so journals,
+ * logs and dashboards see the batch like any other balance change.
+ */
+public class EndOfDayBatch {
+    
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+    
+    /** Accounts marked started per forced write. */
+    public static final int MARK_GROUP = 64;
+    
+    private static final byte STARTED = 1;
+    private static final byte DONE = 2;
+    
+    /**
+     * Outcome of one run.
+     */
+    public static class BatchReport {
+        private final long applied;
+        private final long skipped;
+        private final List<String> uncertain;
+        
+        public BatchReport(long applied, long skipped, List<String> uncertain) {
+            this.applied = applied;
+            this.skipped = skipped;
+            this.uncertain = Collections.unmodifiableList(uncertain);
+        }
+        
+        /** Accounts adjusted by this run. */
+        public long getApplied() { return applied; }
+        /** Accounts already adjusted for the day by an earlier attempt. */
+        public long getSkipped() { return skipped; }
+        /**
+         * Accounts an earlier attempt started but did not confirm; they
+         * were not adjusted again.
+         */
+        public List<String> getUncertain() { return uncertain; }
+    }
+    
+    private final RateTable rates;
+    private final Path checkpointFile;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    private volatile TransactionProcessor processor;
+    
+    public EndOfDayBatch(RateTable rates, Path checkpointFile) {
+        this(rates, checkpointFile, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+    
+    public EndOfDayBatch(RateTable rates, Path checkpointFile, int chunkSize, ForkJoinPool pool) {
+        this.rates = rates;
+        this.checkpointFile = checkpointFile;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+    
+    /**
+     * Reports adjustments to the processor's listeners; null stops
+     * reporting.
+     */
+    public void setProcessor(TransactionProcessor processor) {
+        this.processor = processor;
+    }
+    
+    public BatchReport run(long businessDay, Collection<Account> book) throws IOException {
+        List<Account> accounts = new ArrayList<>(book);
+        accounts.sort(Comparator.comparing(Account::getAccountId));
+        int chunks = (accounts.size() + chunkSize - 1) / chunkSize;
+        
+        LongAdder applied = new LongAdder();
+        LongAdder skipped = new LongAdder();
+        try (Markers markers = new Markers(checkpointFile, businessDay)) {
+            List<String> uncertain = new ArrayList<>();
+            for (Account account : accounts) {
+                if (markers.isUncertain(account.getAccountId())) {
+                    uncertain.add(account.getAccountId());
+                }
+            }
+            try {
+                pool.invoke(new ChunkTask(accounts, businessDay, markers, 0, chunks, applied, skipped));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            markers.flush();
+            return new BatchReport(applied.sum(), skipped.sum(), uncertain);
+        }
+    }
+    
+    // Fork/join tasks are never serialized
+    @SuppressWarnings("serial")
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Account> accounts;
+        private final long businessDay;
+        private final Markers markers;
+        private final int fromChunk;
+        private final int toChunk;
+        private final LongAdder applied;
+        private final LongAdder skipped;
+        
+        ChunkTask(List<Account> accounts, long businessDay, Markers markers, int fromChunk, int toChunk,
+                  LongAdder applied, LongAdder skipped) {
+            this.accounts = accounts;
+            this.businessDay = businessDay;
+            this.markers = markers;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.applied = applied;
+            this.skipped = skipped;
+        }
+        
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int mid = (fromChunk + toChunk) >>> 1;
+                invokeAll(new ChunkTask(accounts, businessDay, markers, fromChunk, mid, applied, skipped),
+                          new ChunkTask(accounts, businessDay, markers, mid, toChunk, applied, skipped));
+                return;
+            }
+            if (fromChunk == toChunk) {
+                return;
+            }
+            int end = Math.min(accounts.size(), (fromChunk + 1) * chunkSize);
+            List<Account> group = new ArrayList<>(MARK_GROUP);
+            for (int i = fromChunk * chunkSize; i < end; i++) {
+                Account account = accounts.get(i);
+                if (markers.isMarked(account.getAccountId())) {
+                    if (!markers.isUncertain(account.getAccountId())) {
+                        skipped.increment();
+                    }
+                    continue;
+                }
+                group.add(account);
+                if (group.size() == MARK_GROUP) {
+                    apply(group);
+                }
+            }
+            apply(group);
+        }
+        
+        private void apply(List<Account> group) {
+            if (group.isEmpty()) {
+                return;
+            }
+            try {
+                // Durable before any of the group is charged
+                markers.started(group);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            TransactionProcessor listeners = processor;
+            for (Account account : group) {
+                long adjustment = account.applyEndOfDay(businessDay, rates);
+                if (adjustment == Account.END_OF_DAY_DONE) {
+                    skipped.increment();
+                } else {
+                    applied.increment();
+                    if (listeners != null && adjustment > 0) {
+                        listeners.deposited(account, adjustment);
+                    } else if (listeners != null && adjustment < 0) {
+                        listeners.withdrew(account, -adjustment);
+                    }
+                }
+                try {
+                    markers.done(account);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            group.clear();
+        }
+    }
+    
+    // ========== MARKERS ==========
+    
+    /**
+     * The marker file of one business day: the day, then one record per
+     * marker: kind (byte), id length (short), id (UTF-8). A torn record at
+     * the end is cut off on open. A file for another day is started over.
+     */
+    private static class Markers implements AutoCloseable {
+        private final FileChannel channel;
+        private final Set<String> started = new HashSet<>();
+        private final Set<String> done = new HashSet<>();
+        
+        Markers(Path file, long businessDay) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                long end = channel.size() >= Long.BYTES && readDay() == businessDay ? load() : 0;
+                if (end == 0) {
+                    ByteBuffer header = ByteBuffer.allocate(Long.BYTES).putLong(0, businessDay);
+                    channel.write(header, 0);
+                    end = Long.BYTES;
+                }
+                channel.truncate(end);
+                channel.position(end);
+                channel.force(true);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        
+        private long readDay() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+            channel.read(header, 0);
+            return header.getLong(0);
+        }
+        
+        // Returns the end of the last complete record
+        private long load() throws IOException {
+            ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+            channel.read(data, 0);
+            data.flip().position(Long.BYTES);
+            long end = Long.BYTES;
+            while (data.remaining() >= 3) {
+                byte kind = data.get();
+                int length = data.getShort() & 0xFFFF;
+                if ((kind != STARTED && kind != DONE) || data.remaining() < length) {
+                    break;
+                }
+                byte[] id = new byte[length];
+                data.get(id);
+                (kind == STARTED ? started : done).add(new String(id, StandardCharsets.UTF_8));
+                end = data.position();
+            }
+            return end;
+        }
+        
+        synchronized boolean isMarked(String accountId) {
+            return started.contains(accountId) || done.contains(accountId);
+        }
+        
+        synchronized boolean isUncertain(String accountId) {
+            return started.contains(accountId) && !done.contains(accountId);
+        }
+        
+        synchronized void started(List<Account> group) throws IOException {
+            Set<String> ids = new LinkedHashSet<>();
+            for (Account account : group) {
+                ids.add(account.getAccountId());
+            }
+            append(STARTED, ids);
+            channel.force(false);
+            started.addAll(ids);
+        }
+        
+        synchronized void done(Account account) throws IOException {
+            append(DONE, Set.of(account.getAccountId()));
+            done.add(account.getAccountId());
+        }
+        
+        synchronized void flush() throws IOException {
+            channel.force(false);
+        }
+        
+        private void append(byte kind, Set<String> ids) throws IOException {
+            List<byte[]> encoded = new ArrayList<>(ids.size());
+            int size = 0;
+            for (String id : ids) {
+                byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                size += 3 + bytes.length;
+            }
+            ByteBuffer records = ByteBuffer.allocate(size);
+            for (byte[] bytes : encoded) {
+                records.put(kind).putShort((short) bytes.length).put(bytes);
+            }
+            records.flip();
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+        }
+        
+        @Override
+        public synchronized void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package banking;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the most recent operations of TransactionProcessor and
+ * AccountService with their timing and outcome, for finding out what was
+ * slow after a latency spike.
+ * 
+ * Each thread writes to its own ring buffer of primitive arrays, so
+ * recording takes no lock, allocates nothing and only publishes the new
+ * head with a release store. Cost is two System.nanoTime() calls and a
+ * few array stores per recorded operation.
+ * 
+ * Sampling: with a sample rate of N only every Nth operation of a thread
+ * is kept, but an operation slower than the anomaly threshold is always
+ * kept, and triggers the anomaly handler with a dump of all rings (at
+ * most once per cooldown). The dump is taken and handled on the
+ * handler's executor, never on the slow thread, which only hands the
+ * task off. dump() can also be called at any time; it
+ * copies the rings without stopping the writers and drops any slot a
+ * writer overwrote while it was being copied.
+ * 
+ * Rings belong to threads and are kept after the thread ends, so a dump
+ * still shows what a finished worker did, but only for the retention
+ * period after its last event and for at most MAX_DEAD_RINGS finished
+ * threads, newest first. Finished threads' rings are dropped when a new
+ * thread starts recording and on every dump, so pools that replace
+ * their threads (or a virtual thread per task) do not grow the recorder
+ * without bound.
+ */
+public class FlightRecorder {
+    
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long DEFAULT_RETENTION_NANOS = 60_000_000_000L;
+    /** Rings of finished threads kept at most. */
+    public static final int MAX_DEAD_RINGS = 64;
+    
+    /**
+     * One recorded operation.
+     */
+    public static class Event {
+        private final long timestampMillis;
+        private final long startNanos;
+        private final long durationNanos;
+        private final String thread;
+        private final byte type;
+        private final byte statusOp;
+        private final String accountId;
+        private final String targetId;
+        private final long amountMinorUnits;
+        private final int code;
+        
+        Event(long timestampMillis, long startNanos, long durationNanos, String thread, byte type, byte statusOp,
+              String accountId, String targetId, long amountMinorUnits, int code) {
+            this.timestampMillis = timestampMillis;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.thread = thread;
+            this.type = type;
+            this.statusOp = statusOp;
+            this.accountId = accountId;
+            this.targetId = targetId;
+            this.amountMinorUnits = amountMinorUnits;
+            this.code = code;
+        }
+        
+        /** Wall-clock start time. */
+        public long getTimestampMillis() { return timestampMillis; }
+        /** System.nanoTime() at the start. */
+        public long getStartNanos() { return startNanos; }
+        public long getDurationNanos() { return durationNanos; }
+        public String getThread() { return thread; }
+        /** TransactionCodec command type. */
+        public byte getType() { return type; }
+        /** TransactionCodec status operation of a status change, otherwise 0. */
+        public byte getStatusOp() { return statusOp; }
+        public String getAccountId() { return accountId; }
+        public String getTargetId() { return targetId; }
+        public Money getAmount() { return Money.ofMinorUnits(amountMinorUnits); }
+        /** TransactionProcessor.Result code. */
+        public int getCode() { return code; }
+        public boolean isSuccess() { return code == TransactionProcessor.Result.OK; }
+        
+        @Override
+        public String toString() {
+            return timestampMillis + " " + thread + " " + typeName(type, statusOp) + " " + accountId
+                    + (targetId != null ? "->" + targetId : "") + " $" + Money.format(amountMinorUnits)
+                    + " code=" + code + " " + durationNanos + "ns";
+        }
+    }
+    
+    /**
+     * One thread's ring. Only the owner writes the slots; head is
+     * published with a release store after the slot is filled. Twice
+     * the capacity is allocated and only the newest capacity slots are
+     * read, so a dump does not race the slot being written.
+     */
+    private static class Ring {
+        private static final VarHandle HEAD;
+        
+        static {
+            try {
+                HEAD = MethodHandles.lookup().findVarHandle(Ring.class, "head", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+        
+        final String thread;
+        final WeakReference<Thread> owner;
+        final int capacity;
+        final int mask;
+        final long[] starts;
+        final long[] durations;
+        final byte[] types;
+        final byte[] statusOps;
+        final String[] accountIds;
+        final String[] targetIds;
+        final long[] amounts;
+        final int[] codes;
+        long head;
+        long calls;
+        
+        Ring(Thread owner, int capacity) {
+            int size = capacity * 2;
+            this.thread = owner.getName();
+            this.owner = new WeakReference<>(owner);
+            this.capacity = capacity;
+            this.mask = size - 1;
+            starts = new long[size];
+            durations = new long[size];
+            types = new byte[size];
+            statusOps = new byte[size];
+            accountIds = new String[size];
+            targetIds = new String[size];
+            amounts = new long[size];
+            codes = new int[size];
+        }
+        
+        void write(long start, long duration, byte type, byte statusOp, String accountId, String targetId,
+                   long amount, int code) {
+            long h = head;
+            int slot = (int) h & mask;
+            starts[slot] = start;
+            durations[slot] = duration;
+            types[slot] = type;
+            statusOps[slot] = statusOp;
+            accountIds[slot] = accountId;
+            targetIds[slot] = targetId;
+            amounts[slot] = amount;
+            codes[slot] = code;
+            HEAD.setRelease(this, h + 1);
+        }
+        
+        boolean isDead() {
+            Thread t = owner.get();
+            return t == null || !t.isAlive();
+        }
+        
+        boolean isEmpty() {
+            return (long) HEAD.getAcquire(this) == 0;
+        }
+        
+        // Start of the newest event; only stable once the owner is dead
+        long lastStartNanos() {
+            long h = (long) HEAD.getAcquire(this);
+            return starts[(int) (h - 1) & mask];
+        }
+        
+        void copyTo(List<Event> events, long originMillis, long originNanos) {
+            long end = (long) HEAD.getAcquire(this);
+            long begin = Math.max(0, end - capacity);
+            List<Event> copied = new ArrayList<>((int) (end - begin));
+            for (long i = begin; i < end; i++) {
+                int slot = (int) i & mask;
+                long start = starts[slot];
+                copied.add(new Event(originMillis + (start - originNanos) / 1_000_000, start, durations[slot],
+                        thread, types[slot], statusOps[slot], accountIds[slot], targetIds[slot], amounts[slot],
+                        codes[slot]));
+            }
+            // Slots the writer reused while they were copied, including the one in progress
+            long overwritten = (long) HEAD.getAcquire(this) - mask;
+            int skip = (int) Math.max(0, Math.min(copied.size(), overwritten - begin));
+            events.addAll(copied.subList(skip, copied.size()));
+        }
+    }
+    
+    private final int capacity;
+    private final long originMillis = System.currentTimeMillis();
+    private final long originNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Ring> rings = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Ring> ring;
+    private final ReentrantLock pruneLock = new ReentrantLock();
+    private final AtomicLong lastAnomalyNanos = new AtomicLong(Long.MIN_VALUE);
+    private volatile boolean enabled = true;
+    private volatile int sampleRate = 1;
+    private volatile long anomalyNanos = Long.MAX_VALUE;
+    private volatile long cooldownNanos = 1_000_000_000L;
+    private volatile long retentionNanos = DEFAULT_RETENTION_NANOS;
+    private volatile Consumer<List<Event>> anomalyHandler;
+    private volatile Executor anomalyExecutor = ForkJoinPool.commonPool();
+    
+    public FlightRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param capacity events kept per thread, rounded up to a power of two
+     */
+    public FlightRecorder(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.ring = ThreadLocal.withInitial(() -> {
+            Ring r = new Ring(Thread.currentThread(), this.capacity);
+            prune();
+            rings.add(r);
+            return r;
+        });
+    }
+    
+    // ========== CONTROLS ==========
+    
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Keeps one in every n operations per thread; 1 keeps all.
+     */
+    public void setSampleRate(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Sample rate must be at least 1");
+        }
+        this.sampleRate = n;
+    }
+    
+    /**
+     * Operations at least this slow are always kept and passed to the
+     * handler together with a dump of every ring, at most once per
+     * cooldown. The dump and the handler run on the common pool.
+     */
+    public void onAnomaly(long thresholdNanos, long cooldownNanos, Consumer<List<Event>> handler) {
+        onAnomaly(thresholdNanos, cooldownNanos, handler, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * As onAnomaly(), taking the dump and running the handler on the
+     * executor.
+     */
+    public void onAnomaly(long thresholdNanos, long cooldownNanos, Consumer<List<Event>> handler,
+                          Executor executor) {
+        this.cooldownNanos = cooldownNanos;
+        this.anomalyExecutor = executor;
+        this.anomalyHandler = handler;
+        this.anomalyNanos = thresholdNanos;
+    }
+    
+    /**
+     * How long the ring of a finished thread is kept after its last
+     * event; set it to at least the interval between dumps.
+     */
+    public void setRetention(long nanos) {
+        this.retentionNanos = nanos;
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /** Rings currently held, of live and finished threads. */
+    public int getRingCount() {
+        return rings.size();
+    }
+    
+    // ========== RECORDING ==========
+    
+    /**
+     * Start of an operation: the time to pass to end(), or 0 when
+     * recording is off.
+     */
+    long begin() {
+        return enabled ? System.nanoTime() : 0;
+    }
+    
+    void end(long start, byte type, byte statusOp, Account account, Account target, long amount, int code) {
+        if (start == 0) {
+            return;
+        }
+        long duration = System.nanoTime() - start;
+        Ring r = ring.get();
+        boolean anomaly = duration >= anomalyNanos;
+        if (++r.calls % sampleRate != 0 && !anomaly) {
+            return;
+        }
+        r.write(start, duration, type, statusOp, account == null ? null : account.getAccountId(),
+                target == null ? null : target.getAccountId(), amount, code);
+        if (anomaly) {
+            anomaly(start);
+        }
+    }
+    
+    private void anomaly(long now) {
+        Consumer<List<Event>> handler = anomalyHandler;
+        long last = lastAnomalyNanos.get();
+        if (handler == null || (last != Long.MIN_VALUE && now - last < cooldownNanos)
+                || !lastAnomalyNanos.compareAndSet(last, now)) {
+            return;
+        }
+        // The slow thread only hands off; copying the rings is not its cost
+        anomalyExecutor.execute(() -> handler.accept(dump()));
+    }
+    
+    // ========== DUMPS ==========
+    
+    /**
+     * The events currently held by every ring, oldest first.
+     */
+    public List<Event> dump() {
+        prune();
+        List<Event> events = new ArrayList<>();
+        for (Ring r : rings) {
+            r.copyTo(events, originMillis, originNanos);
+        }
+        events.sort(Comparator.comparingLong(Event::getStartNanos));
+        return Collections.unmodifiableList(events);
+    }
+    
+    // Drops rings of finished threads past the retention, then the
+    // oldest of those left beyond MAX_DEAD_RINGS
+    private void prune() {
+        if (!pruneLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            List<Ring> dead = new ArrayList<>();
+            for (Iterator<Ring> it = rings.iterator(); it.hasNext(); ) {
+                Ring r = it.next();
+                if (!r.isDead()) {
+                    continue;
+                }
+                if (r.isEmpty() || now - r.lastStartNanos() > retentionNanos) {
+                    it.remove();
+                } else {
+                    dead.add(r);
+                }
+            }
+            if (dead.size() > MAX_DEAD_RINGS) {
+                dead.sort(Comparator.comparingLong(Ring::lastStartNanos));
+                rings.removeAll(dead.subList(0, dead.size() - MAX_DEAD_RINGS));
+            }
+        } finally {
+            pruneLock.unlock();
+        }
+    }
+    
+    /**
+     * Writes dump() to a file, one event per line, slowest call noted
+     * first.
+     */
+    public void dump(Path file) throws IOException {
+        List<Event> events = dump();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp)) {
+            Event slowest = null;
+            for (Event event : events) {
+                if (slowest == null || event.getDurationNanos() > slowest.getDurationNanos()) {
+                    slowest = event;
+                }
+            }
+            out.write("# " + events.size() + " events" + (slowest != null ? ", slowest: " + slowest : ""));
+            out.newLine();
+            for (Event event : events) {
+                out.write(event.toString());
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    static String typeName(byte type, byte statusOp) {
+        switch (type) {
+            case TransactionCodec.DEPOSIT: return "DEPOSIT";
+            case TransactionCodec.WITHDRAW: return "WITHDRAW";
+            case TransactionCodec.TRANSFER: return "TRANSFER";
+            default:
+                switch (statusOp) {
+                    case TransactionCodec.VERIFY: return "VERIFY";
+                    case TransactionCodec.SUSPEND: return "SUSPEND";
+                    case TransactionCodec.REINSTATE: return "REINSTATE";
+                    default: return "CLOSE";
+                }
+        }
+    }
+}
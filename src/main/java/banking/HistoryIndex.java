@@ -0,0 +1,322 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Secondary indexes over a TransactionJournal for history queries that
+ * cut across accounts: by operation type, by account, by counterparty
+ * and by amount range.
+ * 
+ * Attach it to a processor instead of the journal: each operation is
+ * appended to the journal and indexed in the same step. Entries already
+ * in the journal (or recovered from a SegmentedTransactionLog) can be
+ * indexed with index().
+ * 
+ * Type, account and counterparty postings are SequenceBitmaps, added to
+ * in O(1) as sequences only grow. Queries hand out copies that share
+ * their chunks copy-on-write, so even the type postings, which span the
+ * whole history, are returned without copying it. Amounts are kept in
+ * sorted runs of (amount, sequence) pairs: new pairs collect in a small
+ * buffer, which is sorted into a run when full, and runs of similar
+ * length are merged (as in a log-structured merge tree), so appends cost
+ * O(log n) amortized and a range query is a binary search per run. Queries
+ * return bitmaps that can be combined with and()/or(), and entries()
+ * resolves them against the journal; nothing scans the whole history.
+ */
+public class HistoryIndex implements TransactionListener {
+    
+    private static final int BUFFER_SIZE = 1024;
+    
+    /**
+     * Amounts and sequences sorted by amount, then sequence.
+     */
+    private static class Run {
+        final long[] amounts;
+        final long[] sequences;
+        
+        Run(long[] amounts, long[] sequences) {
+            this.amounts = amounts;
+            this.sequences = sequences;
+        }
+    }
+    
+    private final TransactionJournal journal;
+    private final Map<Byte, SequenceBitmap> byType = new HashMap<>();
+    private final Map<String, SequenceBitmap> byAccount = new HashMap<>();
+    private final Map<String, SequenceBitmap> byCounterparty = new HashMap<>();
+    private final List<Run> runs = new ArrayList<>();
+    private final long[] bufferAmounts = new long[BUFFER_SIZE];
+    private final long[] bufferSequences = new long[BUFFER_SIZE];
+    private int buffered;
+    private long indexed;
+    
+    public HistoryIndex(TransactionJournal journal) {
+        this.journal = journal;
+    }
+    
+    /**
+     * Journals and indexes every operation of the processor and its
+     * AccountService. Do not attach the journal itself as well.
+     */
+    public HistoryIndex attach(TransactionProcessor processor) {
+        processor.addListener(this);
+        processor.getAccountService().addListener(this);
+        return this;
+    }
+    
+    @Override
+    public void onDeposit(Account account, double amount) {
+        record(TransactionCodec.DEPOSIT, account.getAccountId(), null, amount, null);
+    }
+    
+    @Override
+    public void onWithdraw(Account account, double amount) {
+        record(TransactionCodec.WITHDRAW, account.getAccountId(), null, amount, null);
+    }
+    
+    @Override
+    public void onTransfer(Account from, Account to, double amount) {
+        record(TransactionCodec.TRANSFER, from.getAccountId(), to.getAccountId(), amount, null);
+    }
+    
+    @Override
+    public void onStatusChange(Account account, String from, String to) {
+        record(TransactionCodec.STATUS_CHANGE, account.getAccountId(), null, 0, to);
+    }
+    
+    /**
+     * Indexes an entry. Entries must be indexed in sequence order.
+     */
+    public synchronized void index(JournalEntry entry) {
+        long sequence = entry.getSequence();
+        if (sequence < indexed) {
+            throw new IllegalArgumentException("Entry " + sequence + " already indexed");
+        }
+        indexed = sequence + 1;
+        byType.computeIfAbsent(entry.getType(), t -> new SequenceBitmap()).add(sequence);
+        byAccount.computeIfAbsent(entry.getAccountId(), id -> new SequenceBitmap()).add(sequence);
+        if (entry.getTargetId() != null) {
+            byCounterparty.computeIfAbsent(entry.getTargetId(), id -> new SequenceBitmap()).add(sequence);
+        }
+        if (entry.getType() != TransactionCodec.STATUS_CHANGE) {
+            bufferAmounts[buffered] = entry.getAmountMinorUnits();
+            bufferSequences[buffered] = sequence;
+            if (++buffered == BUFFER_SIZE) {
+                flushBuffer();
+            }
+        }
+    }
+    
+    /**
+     * Indexes the journal entries not yet indexed.
+     */
+    public synchronized void catchUp() {
+        for (JournalEntry entry : journal.entries(indexed, journal.size())) {
+            index(entry);
+        }
+    }
+    
+    // ========== QUERIES ==========
+    
+    /**
+     * Entries of a TransactionCodec type.
+     */
+    public synchronized SequenceBitmap ofType(byte type) {
+        return copy(byType.get(type));
+    }
+    
+    /**
+     * Entries acting on the account: its deposits, withdrawals, status
+     * changes and outgoing transfers.
+     */
+    public synchronized SequenceBitmap byAccount(String accountId) {
+        return copy(byAccount.get(accountId));
+    }
+    
+    /**
+     * Transfers into the account.
+     */
+    public synchronized SequenceBitmap byCounterparty(String accountId) {
+        return copy(byCounterparty.get(accountId));
+    }
+    
+    /**
+     * Every entry the account takes part in, on either side.
+     */
+    public synchronized SequenceBitmap involving(String accountId) {
+        return byAccount(accountId).or(byCounterparty(accountId));
+    }
+    
+    /**
+     * Money movements with min <= amount <= max.
+     */
+    public SequenceBitmap amountBetween(Money min, Money max) {
+        return amountBetweenMinorUnits(min.getMinorUnits(), max.getMinorUnits());
+    }
+    
+    /**
+     * Money movements with amount >= min.
+     */
+    public SequenceBitmap amountAtLeast(Money min) {
+        return amountBetweenMinorUnits(min.getMinorUnits(), Long.MAX_VALUE);
+    }
+    
+    synchronized SequenceBitmap amountBetweenMinorUnits(long min, long max) {
+        if (min > max) {
+            return new SequenceBitmap();
+        }
+        int total = 0;
+        int[] from = new int[runs.size()];
+        int[] to = new int[runs.size()];
+        for (int r = 0; r < runs.size(); r++) {
+            Run run = runs.get(r);
+            from[r] = lowerBound(run.amounts, min);
+            to[r] = max == Long.MAX_VALUE ? run.amounts.length : lowerBound(run.amounts, max + 1);
+            total += to[r] - from[r];
+        }
+        long[] hits = new long[total + buffered];
+        int n = 0;
+        for (int r = 0; r < runs.size(); r++) {
+            int length = to[r] - from[r];
+            System.arraycopy(runs.get(r).sequences, from[r], hits, n, length);
+            n += length;
+        }
+        for (int i = 0; i < buffered; i++) {
+            if (bufferAmounts[i] >= min && bufferAmounts[i] <= max) {
+                hits[n++] = bufferSequences[i];
+            }
+        }
+        Arrays.sort(hits, 0, n);
+        SequenceBitmap result = new SequenceBitmap();
+        for (int i = 0; i < n; i++) {
+            result.add(hits[i]);
+        }
+        return result;
+    }
+    
+    /**
+     * The journal entries in the set, in sequence order.
+     */
+    public List<JournalEntry> entries(SequenceBitmap sequences) {
+        long[] array = sequences.toArray();
+        List<JournalEntry> result = new ArrayList<>(array.length);
+        for (long sequence : array) {
+            result.add(journal.get(sequence));
+        }
+        return result;
+    }
+    
+    /**
+     * Approximate memory held by the bitmaps and amount runs.
+     */
+    public synchronized long sizeInBytes() {
+        long total = 16L * BUFFER_SIZE;
+        for (SequenceBitmap bitmap : byType.values()) {
+            total += bitmap.sizeInBytes();
+        }
+        for (SequenceBitmap bitmap : byAccount.values()) {
+            total += bitmap.sizeInBytes();
+        }
+        for (SequenceBitmap bitmap : byCounterparty.values()) {
+            total += bitmap.sizeInBytes();
+        }
+        for (Run run : runs) {
+            total += 16L * run.amounts.length;
+        }
+        return total;
+    }
+    
+    // ========== INTERNALS ==========
+    
+    private synchronized void record(byte type, String accountId, String targetId, double amount, String status) {
+        index(journal.append(type, accountId, targetId, amount, status));
+    }
+    
+    private static SequenceBitmap copy(SequenceBitmap bitmap) {
+        return bitmap == null ? new SequenceBitmap() : bitmap.copy();
+    }
+    
+    private void flushBuffer() {
+        Run run = sort(bufferAmounts, bufferSequences, buffered);
+        buffered = 0;
+        // Keep run lengths at least doubling from newest to oldest
+        while (!runs.isEmpty() && runs.get(runs.size() - 1).amounts.length <= run.amounts.length * 2) {
+            run = merge(runs.remove(runs.size() - 1), run);
+        }
+        runs.add(run);
+    }
+    
+    // Bottom-up merge sort by amount over the primitive arrays. It is
+    // stable and the buffer holds increasing sequences, so equal amounts
+    // stay in sequence order
+    private static Run sort(long[] amounts, long[] sequences, int n) {
+        long[] a = Arrays.copyOf(amounts, n);
+        long[] s = Arrays.copyOf(sequences, n);
+        long[] mergedAmounts = new long[n];
+        long[] mergedSequences = new long[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int low = 0; low < n; low += width * 2) {
+                int mid = Math.min(low + width, n);
+                int high = Math.min(low + width * 2, n);
+                int i = low;
+                int j = mid;
+                for (int k = low; k < high; k++) {
+                    if (j == high || (i < mid && a[i] <= a[j])) {
+                        mergedAmounts[k] = a[i];
+                        mergedSequences[k] = s[i++];
+                    } else {
+                        mergedAmounts[k] = a[j];
+                        mergedSequences[k] = s[j++];
+                    }
+                }
+            }
+            long[] swap = a;
+            a = mergedAmounts;
+            mergedAmounts = swap;
+            swap = s;
+            s = mergedSequences;
+            mergedSequences = swap;
+        }
+        return new Run(a, s);
+    }
+    
+    private static Run merge(Run a, Run b) {
+        int length = a.amounts.length + b.amounts.length;
+        long[] amounts = new long[length];
+        long[] sequences = new long[length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < length; k++) {
+            boolean takeA = j == b.amounts.length || (i < a.amounts.length
+                    && (a.amounts[i] < b.amounts[j]
+                    || (a.amounts[i] == b.amounts[j] && a.sequences[i] < b.sequences[j])));
+            if (takeA) {
+                amounts[k] = a.amounts[i];
+                sequences[k] = a.sequences[i++];
+            } else {
+                amounts[k] = b.amounts[j];
+                sequences[k] = b.sequences[j++];
+            }
+        }
+        return new Run(amounts, sequences);
+    }
+    
+    /** First index whose amount is >= key. */
+    private static int lowerBound(long[] amounts, long key) {
+        int low = 0;
+        int high = amounts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (amounts[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
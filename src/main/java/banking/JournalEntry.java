@@ -0,0 +1,42 @@
+package banking;
+
+/**
+ * One journaled operation. Types are the TransactionCodec command types.
+ * The amount is kept in minor units; the double forms round to the cent.
+ */
+public class JournalEntry {
+    
+    private final long sequence;
+    private final byte type;
+    private final String accountId;
+    private final String targetId;
+    private final long amountMinorUnits;
+    private final String status;
+    
+    public JournalEntry(long sequence, byte type, String accountId, String targetId,
+                        double amount, String status) {
+        this(sequence, type, accountId, targetId, Money.toMinorUnits(amount), status);
+    }
+    
+    public JournalEntry(long sequence, byte type, String accountId, String targetId,
+                        long amountMinorUnits, String status) {
+        this.sequence = sequence;
+        this.type = type;
+        this.accountId = accountId;
+        this.targetId = targetId;
+        this.amountMinorUnits = amountMinorUnits;
+        this.status = status;
+    }
+    
+    public long getSequence() { return sequence; }
+    public byte getType() { return type; }
+    /** The account acted on; the source of a transfer. */
+    public String getAccountId() { return accountId; }
+    /** The target of a transfer, otherwise null. */
+    public String getTargetId() { return targetId; }
+    public double getAmount() { return Money.toDouble(amountMinorUnits); }
+    /** The amount in minor units (cents), as journaled. */
+    public long getAmountMinorUnits() { return amountMinorUnits; }
+    /** The new status of a status change, otherwise null. */
+    public String getStatus() { return status; }
+}
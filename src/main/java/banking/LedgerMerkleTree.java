@@ -0,0 +1,309 @@
+package banking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tamper-evident hash of a TransactionJournal.
+ * 
+ * The journal is cut into fixed-size segments. Once a segment is full it
+ * is sealed: its entries are hashed into a per-segment Merkle tree and
+ * the segment root is appended to a tree over all segments. Sealing is
+ * done in batches by seal(), usually from the background thread started
+ * by start(), so deposits and withdrawals never wait for a hash.
+ * 
+ * An inclusion proof for one entry is the path through its segment tree
+ * followed by the path through the segment tree of roots, O(log n)
+ * hashes in all. A range proof for a run of k entries holds only the
+ * hashes beside its two ends, in the first and last segment and in the
+ * tree of roots, so it is also O(log n) hashes; verifying it hashes the
+ * k entries up to the shared roots, O(k + log n) work instead of k
+ * separate proofs. Entries in the open (not yet sealed) segment cannot
+ * be proven.
+ */
+public class LedgerMerkleTree implements AutoCloseable {
+    
+    public static final int DEFAULT_SEGMENT_SIZE = 1024;
+    
+    private final TransactionJournal journal;
+    private final int segmentSize;
+    private final List<MerkleTree> segments = new ArrayList<>();
+    private final MerkleTree roots = new MerkleTree();
+    private final Object sealLock = new Object();
+    private ScheduledExecutorService sealer;
+    
+    /**
+     * Proof that one entry is part of the sealed ledger.
+     */
+    public static class InclusionProof {
+        private final long sequence;
+        private final List<MerkleTree.Step> path;
+        private final byte[] root;
+        
+        InclusionProof(long sequence, List<MerkleTree.Step> path, byte[] root) {
+            this.sequence = sequence;
+            this.path = Collections.unmodifiableList(path);
+            this.root = root;
+        }
+        
+        public long getSequence() { return sequence; }
+        /** Number of hashes in the proof. */
+        public int length() { return path.size(); }
+        /** The ledger root the proof was taken against. */
+        public byte[] getRoot() { return root.clone(); }
+    }
+    
+    /**
+     * Proof that a run of consecutive entries is part of the sealed
+     * ledger.
+     */
+    public static class RangeProof {
+        private final long from;
+        private final long to;
+        private final int segmentSize;
+        private final int segmentCount;
+        // Within the first and last segment, and over the segment roots
+        private final List<byte[]> headPath;
+        private final List<byte[]> tailPath;
+        private final List<byte[]> rootPath;
+        private final byte[] root;
+        
+        RangeProof(long from, long to, int segmentSize, int segmentCount, List<byte[]> headPath,
+                   List<byte[]> tailPath, List<byte[]> rootPath, byte[] root) {
+            this.from = from;
+            this.to = to;
+            this.segmentSize = segmentSize;
+            this.segmentCount = segmentCount;
+            this.headPath = Collections.unmodifiableList(headPath);
+            this.tailPath = Collections.unmodifiableList(tailPath);
+            this.rootPath = Collections.unmodifiableList(rootPath);
+            this.root = root;
+        }
+        
+        /** First sequence covered. */
+        public long getFrom() { return from; }
+        /** One past the last sequence covered. */
+        public long getTo() { return to; }
+        /** Number of hashes in the proof. */
+        public int length() { return headPath.size() + tailPath.size() + rootPath.size(); }
+        /** The ledger root the proof was taken against. */
+        public byte[] getRoot() { return root.clone(); }
+    }
+    
+    public LedgerMerkleTree(TransactionJournal journal) {
+        this(journal, DEFAULT_SEGMENT_SIZE);
+    }
+    
+    public LedgerMerkleTree(TransactionJournal journal, int segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        this.journal = journal;
+        this.segmentSize = segmentSize;
+    }
+    
+    /**
+     * Seals every full segment not sealed yet.
+     * 
+     * @return the number of segments sealed by this call
+     */
+    public int seal() {
+        synchronized (sealLock) {
+            int sealed = 0;
+            while (true) {
+                long from;
+                synchronized (this) {
+                    from = (long) segments.size() * segmentSize;
+                }
+                if (journal.size() < from + segmentSize) {
+                    return sealed;
+                }
+                // Hash outside the monitor so proofs are not held up
+                MerkleTree segment = new MerkleTree();
+                for (JournalEntry entry : journal.entries(from, from + segmentSize)) {
+                    segment.append(leafHash(entry));
+                }
+                synchronized (this) {
+                    segments.add(segment);
+                    roots.append(segment.root());
+                }
+                sealed++;
+            }
+        }
+    }
+    
+    /**
+     * Seals new segments every periodMillis on a daemon thread.
+     */
+    public synchronized void start(long periodMillis) {
+        if (sealer != null) {
+            return;
+        }
+        sealer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-sealer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sealer.scheduleWithFixedDelay(this::seal, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public synchronized void close() {
+        if (sealer != null) {
+            sealer.shutdownNow();
+            sealer = null;
+        }
+    }
+    
+    public synchronized int getSealedSegments() {
+        return segments.size();
+    }
+    
+    /**
+     * Entries covered by the root: sequences [0, getSealedEntries()).
+     */
+    public synchronized long getSealedEntries() {
+        return (long) segments.size() * segmentSize;
+    }
+    
+    /**
+     * The current ledger root, or null before the first seal.
+     */
+    public synchronized byte[] root() {
+        byte[] root = roots.root();
+        return root == null ? null : root.clone();
+    }
+    
+    public synchronized InclusionProof proveInclusion(long sequence) {
+        if (sequence < 0 || sequence >= getSealedEntries()) {
+            throw new IllegalArgumentException("Entry " + sequence + " is not sealed");
+        }
+        int segment = (int) (sequence / segmentSize);
+        List<MerkleTree.Step> path = new ArrayList<>();
+        segments.get(segment).prove((int) (sequence % segmentSize), path);
+        roots.prove(segment, path);
+        return new InclusionProof(sequence, path, roots.root());
+    }
+    
+    /**
+     * Checks that the entry, as presented, is the one the proof was taken
+     * for and that it leads to the given trusted root.
+     */
+    public static boolean verify(JournalEntry entry, InclusionProof proof, byte[] trustedRoot) {
+        if (entry.getSequence() != proof.sequence) {
+            return false;
+        }
+        return Arrays.equals(MerkleTree.fold(leafHash(entry), proof.path), trustedRoot);
+    }
+    
+    /**
+     * Proves the sealed entries with sequences [from, to).
+     */
+    public synchronized RangeProof proveRange(long from, long to) {
+        if (from < 0 || to <= from || to > getSealedEntries()) {
+            throw new IllegalArgumentException("Entries " + from + ".." + to + " are not sealed");
+        }
+        int first = (int) (from / segmentSize);
+        int last = (int) ((to - 1) / segmentSize);
+        int head = (int) (from % segmentSize);
+        int tail = (int) ((to - 1) % segmentSize) + 1;
+        List<byte[]> headPath = new ArrayList<>();
+        List<byte[]> tailPath = new ArrayList<>();
+        if (first == last) {
+            segments.get(first).proveRange(head, tail, headPath);
+        } else {
+            segments.get(first).proveRange(head, segmentSize, headPath);
+            segments.get(last).proveRange(0, tail, tailPath);
+        }
+        List<byte[]> rootPath = new ArrayList<>();
+        roots.proveRange(first, last + 1, rootPath);
+        return new RangeProof(from, to, segmentSize, segments.size(), headPath, tailPath, rootPath, roots.root());
+    }
+    
+    /**
+     * Checks that the entries, as presented, are exactly the run the
+     * proof was taken for and that they lead to the given trusted root.
+     */
+    public static boolean verifyRange(List<JournalEntry> entries, RangeProof proof, byte[] trustedRoot) {
+        if (entries.size() != proof.to - proof.from) {
+            return false;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).getSequence() != proof.from + i) {
+                return false;
+            }
+        }
+        long size = proof.segmentSize;
+        int first = (int) (proof.from / size);
+        int last = (int) ((proof.to - 1) / size);
+        List<byte[]> segmentRoots = new ArrayList<>(last - first + 1);
+        for (int s = first; s <= last; s++) {
+            long start = Math.max(proof.from, s * size);
+            long end = Math.min(proof.to, (s + 1) * size);
+            List<byte[]> leaves = new ArrayList<>((int) (end - start));
+            for (long sequence = start; sequence < end; sequence++) {
+                leaves.add(leafHash(entries.get((int) (sequence - proof.from))));
+            }
+            // Segments in between are complete and need no hashes
+            List<byte[]> path = s == first ? proof.headPath : s == last ? proof.tailPath : List.of();
+            byte[] segmentRoot = MerkleTree.foldRange(leaves, (int) (start - s * size), proof.segmentSize, path);
+            if (segmentRoot == null) {
+                return false;
+            }
+            segmentRoots.add(segmentRoot);
+        }
+        byte[] root = MerkleTree.foldRange(segmentRoots, first, proof.segmentCount, proof.rootPath);
+        return root != null && Arrays.equals(root, trustedRoot);
+    }
+    
+    /**
+     * Verifies a run of consecutive entries against the current root.
+     * 
+     * @return false if any entry is unsealed or differs from what was sealed
+     */
+    public synchronized boolean verifyRange(List<JournalEntry> entries) {
+        if (entries.isEmpty()) {
+            return true;
+        }
+        long from = entries.get(0).getSequence();
+        long to = from + entries.size();
+        if (from < 0 || to > getSealedEntries()) {
+            return false;
+        }
+        return verifyRange(entries, proveRange(from, to), roots.root());
+    }
+    
+    /**
+     * Hash of the canonical encoding of an entry.
+     */
+    static byte[] leafHash(JournalEntry entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(entry.getSequence());
+            out.writeByte(entry.getType());
+            out.writeLong(entry.getAmountMinorUnits());
+            writeNullable(out, entry.getAccountId());
+            writeNullable(out, entry.getTargetId());
+            writeNullable(out, entry.getStatus());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return MerkleTree.hashLeaf(bytes.toByteArray());
+    }
+    
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
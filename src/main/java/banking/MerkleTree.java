@@ -0,0 +1,173 @@
+package banking;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Append-only binary Merkle tree over SHA-256 hashes.
+ * 
+ * All levels are kept, so an append rehashes only the right edge
+ * (O(log n)) and an inclusion or range proof is read off in O(log n).
+ * A node without a right sibling is promoted to the next level
+ * unchanged. Not thread-safe.
+ */
+class MerkleTree {
+    
+    private static final byte LEAF_PREFIX = 0;
+    private static final byte NODE_PREFIX = 1;
+    
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+    
+    /**
+     * One proof step: the sibling hash and which side it sits on.
+     */
+    static final class Step {
+        final byte[] sibling;
+        final boolean left;
+        
+        Step(byte[] sibling, boolean left) {
+            this.sibling = sibling;
+            this.left = left;
+        }
+    }
+    
+    private final List<List<byte[]>> levels = new ArrayList<>();
+    
+    MerkleTree() {
+        levels.add(new ArrayList<>());
+    }
+    
+    void append(byte[] hash) {
+        levels.get(0).add(hash);
+        int index = levels.get(0).size() - 1;
+        for (int k = 0; levels.get(k).size() > 1; k++) {
+            if (levels.size() == k + 1) {
+                levels.add(new ArrayList<>());
+            }
+            List<byte[]> level = levels.get(k);
+            int parent = index / 2;
+            byte[] left = level.get(2 * parent);
+            byte[] node = 2 * parent + 1 < level.size() ? hashNode(left, level.get(2 * parent + 1)) : left;
+            List<byte[]> above = levels.get(k + 1);
+            if (parent < above.size()) {
+                above.set(parent, node);
+            } else {
+                above.add(node);
+            }
+            index = parent;
+        }
+    }
+    
+    int size() {
+        return levels.get(0).size();
+    }
+    
+    byte[] root() {
+        List<byte[]> top = levels.get(levels.size() - 1);
+        return top.isEmpty() ? null : top.get(0);
+    }
+    
+    /**
+     * Appends the path from leaf index up to the root to the proof.
+     */
+    void prove(int index, List<Step> proof) {
+        for (int k = 0; levels.get(k).size() > 1; k++) {
+            List<byte[]> level = levels.get(k);
+            int sibling = index ^ 1;
+            if (sibling < level.size()) {
+                proof.add(new Step(level.get(sibling), sibling < index));
+            }
+            index /= 2;
+        }
+    }
+    
+    /**
+     * Appends the hashes needed, with those of leaves [from, to), to
+     * rebuild the root: level by level, the left neighbour of the range
+     * when it starts on a right child, then the right neighbour when it
+     * ends on a left child that has one. At most two per level.
+     */
+    void proveRange(int from, int to, List<byte[]> proof) {
+        int lo = from;
+        int hi = to - 1;
+        for (int k = 0; levels.get(k).size() > 1; k++) {
+            List<byte[]> level = levels.get(k);
+            if ((lo & 1) == 1) {
+                proof.add(level.get(lo - 1));
+            }
+            if ((hi & 1) == 0 && hi + 1 < level.size()) {
+                proof.add(level.get(hi + 1));
+            }
+            lo /= 2;
+            hi /= 2;
+        }
+    }
+    
+    /**
+     * Rebuilds the root of a tree of size leaves from the hashes of the
+     * consecutive leaves starting at from and their range proof.
+     * 
+     * @return null if the proof has too few or too many hashes
+     */
+    static byte[] foldRange(List<byte[]> hashes, int from, int size, List<byte[]> proof) {
+        Iterator<byte[]> steps = proof.iterator();
+        List<byte[]> nodes = new ArrayList<>(hashes);
+        int lo = from;
+        for (int n = size; n > 1; n = (n + 1) / 2) {
+            int hi = lo + nodes.size() - 1;
+            if ((lo & 1) == 1) {
+                if (!steps.hasNext()) {
+                    return null;
+                }
+                nodes.add(0, steps.next());
+                lo--;
+            }
+            if ((hi & 1) == 0 && hi + 1 < n) {
+                if (!steps.hasNext()) {
+                    return null;
+                }
+                nodes.add(steps.next());
+            }
+            List<byte[]> parents = new ArrayList<>((nodes.size() + 1) / 2);
+            for (int i = 0; i < nodes.size(); i += 2) {
+                parents.add(i + 1 < nodes.size() ? hashNode(nodes.get(i), nodes.get(i + 1)) : nodes.get(i));
+            }
+            nodes = parents;
+            lo /= 2;
+        }
+        return steps.hasNext() || nodes.size() != 1 ? null : nodes.get(0);
+    }
+    
+    /**
+     * Folds a proof from the leaf hash upwards; the result is the root the
+     * proof commits to.
+     */
+    static byte[] fold(byte[] hash, List<Step> proof) {
+        for (Step step : proof) {
+            hash = step.left ? hashNode(step.sibling, hash) : hashNode(hash, step.sibling);
+        }
+        return hash;
+    }
+    
+    static byte[] hashLeaf(byte[] data) {
+        MessageDigest sha = SHA256.get();
+        sha.update(LEAF_PREFIX);
+        return sha.digest(data);
+    }
+    
+    static byte[] hashNode(byte[] left, byte[] right) {
+        MessageDigest sha = SHA256.get();
+        sha.update(NODE_PREFIX);
+        sha.update(left);
+        return sha.digest(right);
+    }
+}
@@ -0,0 +1,199 @@
+package banking;
+
+/**
+ * An exact amount of money, held as a long count of minor units (cents).
+ * 
+ * Arithmetic is plain long arithmetic with overflow checks, comparison
+ * is exact, and formatting never goes through double. Account keeps its
+ * balance in minor units too, so amounts passed as Money are applied
+ * without rounding.
+ * 
+ * For hot loops the static helpers work on raw minor units and allocate
+ * nothing; Money itself is an immutable value.
+ */
+public final class Money implements Comparable<Money> {
+    
+    /** Minor units per major unit. */
+    public static final int SCALE = 100;
+    
+    public static final Money ZERO = new Money(0);
+    
+    // Largest double amount whose minor units fit in a long
+    private static final double MAX_AMOUNT = Long.MAX_VALUE / (double) SCALE;
+    
+    private final long minorUnits;
+    
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+    
+    public static Money ofMinorUnits(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+    
+    public static Money ofMajorUnits(long majorUnits) {
+        return ofMinorUnits(Math.multiplyExact(majorUnits, (long) SCALE));
+    }
+    
+    /**
+     * Converts a double, rounding to the nearest minor unit.
+     */
+    public static Money of(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Not an amount: " + amount);
+        }
+        return ofMinorUnits(toMinorUnits(amount));
+    }
+    
+    /**
+     * Parses "123", "123.4" or "-123.45" exactly.
+     * 
+     * @throws NumberFormatException for malformed text or more than two
+     *                               decimal places
+     */
+    public static Money parse(String text) {
+        String s = text.trim();
+        boolean negative = s.startsWith("-");
+        if (negative || s.startsWith("+")) {
+            s = s.substring(1);
+        }
+        int dot = s.indexOf('.');
+        String major = dot < 0 ? s : s.substring(0, dot);
+        String minor = dot < 0 ? "" : s.substring(dot + 1);
+        if (major.isEmpty() && minor.isEmpty() || minor.length() > 2
+                || !digits(major) || !digits(minor)) {
+            throw new NumberFormatException("Not an amount: " + text);
+        }
+        try {
+            long units = major.isEmpty() ? 0 : Long.parseLong(major);
+            long cents = minor.isEmpty() ? 0 : Long.parseLong(minor) * (minor.length() == 1 ? 10 : 1);
+            long value = Math.addExact(Math.multiplyExact(units, (long) SCALE), cents);
+            return ofMinorUnits(negative ? -value : value);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+    
+    private static boolean digits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // ========== ARITHMETIC ==========
+    
+    public Money plus(Money other) {
+        return ofMinorUnits(add(minorUnits, other.minorUnits));
+    }
+    
+    public Money minus(Money other) {
+        return ofMinorUnits(subtract(minorUnits, other.minorUnits));
+    }
+    
+    public Money times(long factor) {
+        return ofMinorUnits(multiply(minorUnits, factor));
+    }
+    
+    public Money negate() {
+        return ofMinorUnits(Math.negateExact(minorUnits));
+    }
+    
+    public boolean isZero() { return minorUnits == 0; }
+    public boolean isPositive() { return minorUnits > 0; }
+    public boolean isNegative() { return minorUnits < 0; }
+    
+    public long getMinorUnits() { return minorUnits; }
+    
+    /** Nearest double, for display or legacy double APIs. */
+    public double toDouble() { return toDouble(minorUnits); }
+    
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).minorUnits == minorUnits;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+    
+    /**
+     * Always two decimal places, e.g. "1234.50" or "-0.05".
+     */
+    @Override
+    public String toString() {
+        return format(minorUnits);
+    }
+    
+    // ========== RAW MINOR UNITS ==========
+    
+    /**
+     * Sum of two amounts in minor units.
+     * 
+     * @throws ArithmeticException if the result overflows a long
+     */
+    public static long add(long minorUnits, long otherMinorUnits) {
+        return Math.addExact(minorUnits, otherMinorUnits);
+    }
+    
+    /**
+     * Difference of two amounts in minor units.
+     * 
+     * @throws ArithmeticException if the result overflows a long
+     */
+    public static long subtract(long minorUnits, long otherMinorUnits) {
+        return Math.subtractExact(minorUnits, otherMinorUnits);
+    }
+    
+    /**
+     * An amount in minor units times a whole factor.
+     * 
+     * @throws ArithmeticException if the result overflows a long
+     */
+    public static long multiply(long minorUnits, long factor) {
+        return Math.multiplyExact(minorUnits, factor);
+    }
+    
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * SCALE);
+    }
+    
+    /**
+     * Converts a transaction amount given as a double. NaN, infinities
+     * and amounts too large for a long come back as 0, which every
+     * validation rule rejects, instead of saturating to Long.MAX_VALUE.
+     */
+    public static long amountMinorUnits(double amount) {
+        // NaN fails the comparison as well
+        if (!(Math.abs(amount) < MAX_AMOUNT)) {
+            return 0;
+        }
+        return toMinorUnits(amount);
+    }
+    
+    public static double toDouble(long minorUnits) {
+        return minorUnits / (double) SCALE;
+    }
+    
+    public static String format(long minorUnits) {
+        long major = minorUnits / SCALE;
+        int minor = (int) Math.abs(minorUnits % SCALE);
+        StringBuilder sb = new StringBuilder(24);
+        if (minorUnits < 0 && major == 0) {
+            sb.append('-');
+        }
+        sb.append(major).append('.');
+        if (minor < 10) {
+            sb.append('0');
+        }
+        return sb.append(minor).toString();
+    }
+}
@@ -0,0 +1,218 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Settles batches of transfers between accounts by their net effect.
+ * 
+ * Sweeps move money back and forth between the same accounts; applied
+ * one by one, every transfer would change two balances. Here a batch is
+ * reduced to one net position per account (money in minus money out),
+ * and each account's balance is changed once, by that amount.
+ * 
+ * Settlement is atomic: every account in the batch is locked, each
+ * transfer is checked against the processor's validation rules, every
+ * account with a net outflow is checked against its balance, and only
+ * then are the positions applied. If any account would be overdrawn
+ * nothing is applied. Transfers between accounts in the wrong status
+ * are left out of the batch and reported.
+ * 
+ * The original transfers are still reported to the processor's
+ * listeners one by one, in submission order, so the journal and the
+ * event stream keep the full history. Sweeps are internal and do not
+ * count against velocity limits.
+ */
+public class NettingEngine {
+    
+    /**
+     * A transfer awaiting settlement.
+     */
+    public static class Transfer {
+        private final Account from;
+        private final Account to;
+        private final long amountMinorUnits;
+        
+        Transfer(Account from, Account to, long amountMinorUnits) {
+            this.from = from;
+            this.to = to;
+            this.amountMinorUnits = amountMinorUnits;
+        }
+        
+        public Account getFrom() { return from; }
+        public Account getTo() { return to; }
+        public Money getAmount() { return Money.ofMinorUnits(amountMinorUnits); }
+    }
+    
+    /**
+     * Outcome of one settlement.
+     */
+    public static class Settlement {
+        private final int code;
+        private final String message;
+        private final List<Transfer> settled;
+        private final List<Transfer> unsettled;
+        private final List<Transfer> rejected;
+        private final Map<String, Money> positions;
+        private final List<String> shortAccounts;
+        
+        Settlement(int code, String message, List<Transfer> settled, List<Transfer> unsettled,
+                   List<Transfer> rejected, Map<String, Money> positions, List<String> shortAccounts) {
+            this.code = code;
+            this.message = message;
+            this.settled = Collections.unmodifiableList(settled);
+            this.unsettled = Collections.unmodifiableList(unsettled);
+            this.rejected = Collections.unmodifiableList(rejected);
+            this.positions = Collections.unmodifiableMap(positions);
+            this.shortAccounts = Collections.unmodifiableList(shortAccounts);
+        }
+        
+        public boolean isSuccess() { return code == TransactionProcessor.Result.OK; }
+        /** A TransactionProcessor.Result code. */
+        public int getCode() { return code; }
+        public String getMessage() { return message; }
+        /** Transfers included in the netting; empty if settlement failed. */
+        public List<Transfer> getSettled() { return settled; }
+        /**
+         * Valid transfers not applied because the settlement failed; to
+         * be resubmitted once the short accounts are funded, or dropped.
+         */
+        public List<Transfer> getUnsettled() { return unsettled; }
+        /** Transfers left out because an account's status forbids them. */
+        public List<Transfer> getRejected() { return rejected; }
+        /** Net change per account id, zero positions omitted. */
+        public Map<String, Money> getPositions() { return positions; }
+        /** Accounts whose net outflow exceeded their balance. */
+        public List<String> getShortAccounts() { return shortAccounts; }
+        /** Balance changes made, one per non-zero position. */
+        public int getMovements() { return isSuccess() ? positions.size() : 0; }
+    }
+    
+    private final TransactionProcessor processor;
+    private final ConcurrentLinkedQueue<Transfer> pending = new ConcurrentLinkedQueue<>();
+    
+    public NettingEngine(TransactionProcessor processor) {
+        this.processor = processor;
+    }
+    
+    public void submit(Account from, Account to, double amount) {
+        submit(from, to, Money.of(amount));
+    }
+    
+    public void submit(Account from, Account to, Money amount) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Account not found");
+        }
+        pending.add(new Transfer(from, to, amount.getMinorUnits()));
+    }
+    
+    /**
+     * Queues transfers returned by a failed settlement again.
+     */
+    public void resubmit(List<Transfer> transfers) {
+        pending.addAll(transfers);
+    }
+    
+    public int getPendingCount() {
+        return pending.size();
+    }
+    
+    /**
+     * Settles everything submitted so far. On failure nothing is
+     * re-queued: every drained transfer is returned in the unsettled or
+     * rejected list for the caller to resubmit.
+     */
+    public synchronized Settlement settle() {
+        List<Transfer> batch = new ArrayList<>();
+        for (Transfer transfer; (transfer = pending.poll()) != null; ) {
+            batch.add(transfer);
+        }
+        return settle(batch);
+    }
+    
+    /**
+     * Nets and applies the given transfers as one unit.
+     */
+    public Settlement settle(List<Transfer> batch) {
+        List<Account> involved = new ArrayList<>(batch.size() * 2);
+        for (Transfer transfer : batch) {
+            involved.add(transfer.from);
+            involved.add(transfer.to);
+        }
+        ValidationRules rules = processor.getValidationRules();
+        List<Transfer> settled = new ArrayList<>(batch.size());
+        List<Transfer> rejected = new ArrayList<>();
+        // Net positions by account, in first-seen order. Keyed by
+        // equality so two handles on one off-heap record share a position
+        Map<Account, long[]> nets = new HashMap<>();
+        List<Account> order = new ArrayList<>();
+        
+        Settlement result;
+        ReentrantLock[] locks = Account.lockAll(involved);
+        try {
+            for (Transfer transfer : batch) {
+                if (transfer.from.equals(transfer.to)
+                        || !rules.permits(ValidationRules.Operation.TRANSFER_OUT, transfer.from,
+                                transfer.from.loadStatus(), transfer.amountMinorUnits)
+                        || !rules.permits(ValidationRules.Operation.TRANSFER_IN, transfer.to,
+                                transfer.to.loadStatus(), transfer.amountMinorUnits)) {
+                    rejected.add(transfer);
+                    continue;
+                }
+                settled.add(transfer);
+                position(nets, order, transfer.from)[0] -= transfer.amountMinorUnits;
+                position(nets, order, transfer.to)[0] += transfer.amountMinorUnits;
+            }
+            
+            Map<String, Money> positions = new LinkedHashMap<>();
+            List<String> shortAccounts = new ArrayList<>();
+            for (Account account : order) {
+                long net = nets.get(account)[0];
+                if (net != 0) {
+                    positions.put(account.getAccountId(), Money.ofMinorUnits(net));
+                }
+                if (net < 0 && -net > account.getBalanceMinorUnits()) {
+                    shortAccounts.add(account.getAccountId());
+                }
+            }
+            if (!shortAccounts.isEmpty()) {
+                return new Settlement(TransactionProcessor.Result.INSUFFICIENT_FUNDS,
+                        "Insufficient funds", List.of(), settled, rejected, positions, shortAccounts);
+            }
+            for (Account account : order) {
+                long net = nets.get(account)[0];
+                if (net != 0) {
+                    account.applyNetMinorUnits(net);
+                }
+            }
+            result = new Settlement(TransactionProcessor.Result.OK, "Settled " + settled.size()
+                    + " transfers in " + positions.size() + " movements", settled, List.of(), rejected, positions,
+                    List.of());
+        } finally {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+        // History: every original transfer, after the positions are applied
+        for (Transfer transfer : settled) {
+            processor.transferred(transfer.from, transfer.to, transfer.amountMinorUnits);
+        }
+        return result;
+    }
+    
+    private static long[] position(Map<Account, long[]> nets, List<Account> order, Account account) {
+        long[] net = nets.get(account);
+        if (net == null) {
+            net = new long[1];
+            nets.put(account, net);
+            order.add(account);
+        }
+        return net;
+    }
+}
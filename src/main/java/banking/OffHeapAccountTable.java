@@ -0,0 +1,275 @@
+package banking;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Account table kept in direct memory, for books too large to hold as
+ * Account objects without long GC pauses.
+ * 
+ * Fixed-width records in an open-addressing hash table:
+ *   0  idHash       long   (0 = empty slot)
+ *   8  balance      long   minor units (cents)
+ *   16 lastEndOfDay long
+ *   24 status       int    index into STATUSES
+ *   28 idLength     int
+ *   32 id           24 bytes ASCII
+ * 
+ * get() returns a short-lived flyweight handle that is an Account, so
+ * TransactionProcessor and AccountService work on it unchanged. Writes
+ * are guarded by a fixed array of striped locks; the heap holds only
+ * the buffer and the locks, however many accounts are stored.
+ */
+public class OffHeapAccountTable {
+    
+    public static final int RECORD_SIZE = 56;
+    public static final int MAX_ID_LENGTH = 24;
+    
+    static final String[] STATUSES = {
+        Account.UNVERIFIED, Account.VERIFIED, Account.SUSPENDED, Account.CLOSED
+    };
+    
+    private static final int HASH_OFFSET = 0;
+    private static final int BALANCE_OFFSET = 8;
+    private static final int END_OF_DAY_OFFSET = 16;
+    private static final int STATUS_OFFSET = 24;
+    private static final int ID_LENGTH_OFFSET = 28;
+    private static final int ID_OFFSET = 32;
+    
+    private static final int LOCK_STRIPES = 1024;
+    
+    // Smallest table; the load factor then always leaves a slot empty,
+    // which ends every probe
+    private static final int MIN_SLOTS = 4;
+    private static final int MAX_SLOTS = Integer.highestOneBit(Integer.MAX_VALUE / RECORD_SIZE);
+    
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    
+    private final ByteBuffer records;
+    private final int capacity;
+    private final int mask;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final Object insertLock = new Object();
+    private int size;
+    
+    /**
+     * @param maxAccounts accounts the table must hold; capacity is sized
+     *                    for a load factor of at most 0.75
+     */
+    public OffHeapAccountTable(int maxAccounts) {
+        if (maxAccounts < 0) {
+            throw new IllegalArgumentException("Negative account count: " + maxAccounts);
+        }
+        long needed = Math.max(MIN_SLOTS, (maxAccounts * 4L + 2) / 3);
+        if (needed > MAX_SLOTS) {
+            throw new IllegalArgumentException("Too many accounts for one table: " + maxAccounts);
+        }
+        int slots = Integer.highestOneBit((int) needed - 1) << 1;
+        this.capacity = slots;
+        this.mask = slots - 1;
+        this.records = ByteBuffer.allocateDirect(slots * RECORD_SIZE).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+    
+    /**
+     * Adds an account.
+     * 
+     * @return the handle, or null if the id is already present
+     */
+    public Account create(String accountId, double initialBalance, String status) {
+        if (!Double.isFinite(initialBalance)) {
+            throw new IllegalArgumentException("Initial balance is not finite: " + initialBalance);
+        }
+        return create(accountId, Money.toMinorUnits(initialBalance), status);
+    }
+    
+    /**
+     * Adds an account with an exact opening balance.
+     * 
+     * @return the handle, or null if the id is already present
+     */
+    public Account create(String accountId, Money initialBalance, String status) {
+        return create(accountId, initialBalance.getMinorUnits(), status);
+    }
+    
+    private Account create(String accountId, long initialMinorUnits, String status) {
+        int statusCode = statusCode(status);
+        if (accountId.length() > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Account id longer than " + MAX_ID_LENGTH + ": " + accountId);
+        }
+        long hash = hash(accountId);
+        synchronized (insertLock) {
+            if (size >= capacity - capacity / 4) {
+                throw new IllegalStateException("Account table is full");
+            }
+            int slot = find(accountId, hash);
+            if (slot >= 0) {
+                return null;
+            }
+            slot = -slot - 1;
+            int base = slot * RECORD_SIZE;
+            for (int i = 0; i < accountId.length(); i++) {
+                records.put(base + ID_OFFSET + i, (byte) accountId.charAt(i));
+            }
+            INTS.set(records, base + ID_LENGTH_OFFSET, accountId.length());
+            INTS.setVolatile(records, base + STATUS_OFFSET, statusCode);
+            LONGS.setVolatile(records, base + BALANCE_OFFSET, initialMinorUnits);
+            LONGS.setVolatile(records, base + END_OF_DAY_OFFSET, Long.MIN_VALUE);
+            // Publishing the hash last makes the record visible to readers
+            LONGS.setRelease(records, base + HASH_OFFSET, hash);
+            size++;
+            return new OffHeapAccount(this, slot, accountId);
+        }
+    }
+    
+    /**
+     * Returns a handle for the account, or null if it is not stored.
+     */
+    public Account get(String accountId) {
+        int slot = find(accountId, hash(accountId));
+        return slot >= 0 ? new OffHeapAccount(this, slot, accountId) : null;
+    }
+    
+    public int size() {
+        synchronized (insertLock) {
+            return size;
+        }
+    }
+    
+    /**
+     * Linear probe: the slot holding the id, or -(empty slot) - 1.
+     */
+    private int find(String accountId, long hash) {
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (true) {
+            int base = slot * RECORD_SIZE;
+            long stored = (long) LONGS.getAcquire(records, base + HASH_OFFSET);
+            if (stored == 0) {
+                return -slot - 1;
+            }
+            if (stored == hash && idEquals(base, accountId)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    private boolean idEquals(int base, String accountId) {
+        int length = (int) INTS.get(records, base + ID_LENGTH_OFFSET);
+        if (length != accountId.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (records.get(base + ID_OFFSET + i) != (byte) accountId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // 64-bit FNV-1a, never 0 (0 marks an empty slot)
+    static long hash(String accountId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < accountId.length(); i++) {
+            h ^= accountId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+    
+    static int statusCode(String status) {
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equals(status)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown status: " + status);
+    }
+    
+    // ========== RECORD ACCESS (used by OffHeapAccount) ==========
+    
+    ReentrantLock lockFor(int slot) {
+        return locks[slot & (LOCK_STRIPES - 1)];
+    }
+    
+    long balance(int slot) {
+        return (long) LONGS.getVolatile(records, slot * RECORD_SIZE + BALANCE_OFFSET);
+    }
+    
+    void setBalance(int slot, long minorUnits) {
+        LONGS.setVolatile(records, slot * RECORD_SIZE + BALANCE_OFFSET, minorUnits);
+    }
+    
+    String status(int slot) {
+        return STATUSES[(int) INTS.getVolatile(records, slot * RECORD_SIZE + STATUS_OFFSET)];
+    }
+    
+    void setStatus(int slot, String status) {
+        INTS.setVolatile(records, slot * RECORD_SIZE + STATUS_OFFSET, statusCode(status));
+    }
+    
+    long lastEndOfDay(int slot) {
+        return (long) LONGS.getVolatile(records, slot * RECORD_SIZE + END_OF_DAY_OFFSET);
+    }
+    
+    void setLastEndOfDay(int slot, long day) {
+        LONGS.setVolatile(records, slot * RECORD_SIZE + END_OF_DAY_OFFSET, day);
+    }
+    
+    /**
+     * Flyweight handle over one record. Handles for the same record are
+     * equal and interchangeable.
+     */
+    static final class OffHeapAccount extends Account {
+        private final OffHeapAccountTable table;
+        private final int slot;
+        
+        OffHeapAccount(OffHeapAccountTable table, int slot, String accountId) {
+            super(accountId);
+            this.table = table;
+            this.slot = slot;
+        }
+        
+        @Override protected ReentrantLock lock() { return table.lockFor(slot); }
+        @Override protected long loadBalance() { return table.balance(slot); }
+        @Override protected void storeBalance(long value) { table.setBalance(slot, value); }
+        @Override protected String loadStatus() { return table.status(slot); }
+        @Override protected void storeStatus(String value) { table.setStatus(slot, value); }
+        @Override protected long loadLastEndOfDay() { return table.lastEndOfDay(slot); }
+        @Override protected void storeLastEndOfDay(long day) { table.setLastEndOfDay(slot, day); }
+        @Override protected boolean supportsStriping() { return false; }
+        
+        /**
+         * The seqlock version lives on the handle, so other handles'
+         * writes would not invalidate it; read under the record's lock.
+         */
+        @Override
+        public Snapshot snapshot() {
+            lock().lock();
+            try {
+                return new Snapshot(loadStatus(), loadBalance());
+            } finally {
+                lock().unlock();
+            }
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof OffHeapAccount
+                    && ((OffHeapAccount) o).table == table && ((OffHeapAccount) o).slot == slot;
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(table) + slot;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * End-of-day interest and fee rates, by account status and balance band.
+ * 
+ * Each band applies from its minimum balance up to the next band's
+ * minimum. Statuses without bands (typically CLOSED) are left alone.
+ * Fees are capped at the balance so they never overdraw an account.
+ */
+public class RateTable {
+    
+    private static class Band {
+        final double minBalance;
+        final double dailyRate;
+        final double fee;
+        
+        Band(double minBalance, double dailyRate, double fee) {
+            this.minBalance = minBalance;
+            this.dailyRate = dailyRate;
+            this.fee = fee;
+        }
+    }
+    
+    private final Map<String, List<Band>> bands = new HashMap<>();
+    
+    /**
+     * Adds a band for a status.
+     * 
+     * @param dailyRate interest per day as a fraction of the balance
+     * @param fee       flat fee charged per run
+     */
+    public RateTable addBand(String status, double minBalance, double dailyRate, double fee) {
+        List<Band> list = bands.computeIfAbsent(status, s -> new ArrayList<>());
+        list.add(new Band(minBalance, dailyRate, fee));
+        list.sort((a, b) -> Double.compare(b.minBalance, a.minBalance));
+        return this;
+    }
+    
+    /**
+     * The net balance change (interest minus fee) for one run.
+     */
+    public double adjustment(String status, double balance) {
+        List<Band> list = bands.get(status);
+        if (list == null) {
+            return 0;
+        }
+        for (Band band : list) {
+            if (balance >= band.minBalance) {
+                double interest = balance * band.dailyRate;
+                double fee = Math.min(band.fee, Math.max(0, balance + interest));
+                return interest - fee;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,213 @@
+package banking;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Rebuilds account state from a journal, in parallel.
+ * 
+ * Entries are applied as recorded, without re-validating them. Amounts
+ * and balances stay in minor units throughout, from the journal entries
+ * to the rebuilt accounts and the digest, so the result is exact and
+ * does not depend on the order additions happen in.
+ * 
+ * The log is partitioned by account id and each partition is replayed
+ * by its own thread, in sequence order. A transfer whose accounts fall
+ * in different partitions is split into a debit leg (source partition)
+ * and a credit leg (target partition); the credit leg waits until the
+ * source partition has applied the debit, so every account sees the
+ * transfers in causal order. A leg only ever waits for a lower or equal
+ * sequence number, so partitions cannot deadlock.
+ * 
+ * digest() gives a fingerprint of a set of accounts to check that the
+ * replayed state is identical to the original.
+ */
+public class ReplayEngine {
+    
+    private final int partitions;
+    
+    public ReplayEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public ReplayEngine(int partitions) {
+        this.partitions = Math.max(1, partitions);
+    }
+    
+    /**
+     * Balance and status of each account at the moment journaling began.
+     */
+    public static Map<String, Account.Snapshot> openingState(Collection<Account> accounts) {
+        Map<String, Account.Snapshot> opening = new HashMap<>();
+        for (Account account : accounts) {
+            opening.put(account.getAccountId(), account.snapshot());
+        }
+        return opening;
+    }
+    
+    /**
+     * Replays the log on top of the opening state.
+     * 
+     * @return the rebuilt accounts by id; accounts first seen in the log
+     *         start empty and unverified
+     */
+    public Map<String, Account> replay(Map<String, Account.Snapshot> opening, List<JournalEntry> log) {
+        List<List<JournalEntry>> work = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            work.add(new ArrayList<>());
+        }
+        for (JournalEntry entry : log) {
+            int source = partition(entry.getAccountId());
+            work.get(source).add(entry);
+            if (entry.getType() == TransactionCodec.TRANSFER) {
+                int target = partition(entry.getTargetId());
+                if (target != source) {
+                    work.get(target).add(entry);
+                }
+            }
+        }
+        
+        // Highest sequence each partition has applied
+        AtomicLongArray progress = new AtomicLongArray(partitions);
+        for (int p = 0; p < partitions; p++) {
+            progress.set(p, -1);
+        }
+        Map<String, Account> rebuilt = new ConcurrentHashMap<>();
+        ExecutorService threads = Executors.newFixedThreadPool(partitions);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                int partition = p;
+                results.add(threads.submit(() ->
+                        replayPartition(partition, work.get(partition), opening, progress, rebuilt)));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Replay interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replay failed", e.getCause());
+        } finally {
+            threads.shutdownNow();
+        }
+        return rebuilt;
+    }
+    
+    private void replayPartition(int partition, List<JournalEntry> entries, Map<String, Account.Snapshot> opening,
+                                 AtomicLongArray progress, Map<String, Account> rebuilt) {
+        Map<String, long[]> balances = new HashMap<>();
+        Map<String, String> statuses = new HashMap<>();
+        for (JournalEntry entry : entries) {
+            String id = entry.getAccountId();
+            long cents = entry.getAmountMinorUnits();
+            switch (entry.getType()) {
+                case TransactionCodec.DEPOSIT:
+                    balance(id, opening, balances, statuses)[0] += cents;
+                    break;
+                case TransactionCodec.WITHDRAW:
+                    balance(id, opening, balances, statuses)[0] -= cents;
+                    break;
+                case TransactionCodec.STATUS_CHANGE:
+                    balance(id, opening, balances, statuses);
+                    statuses.put(id, entry.getStatus());
+                    break;
+                case TransactionCodec.OPEN:
+                    balance(id, opening, balances, statuses)[0] = cents;
+                    statuses.put(id, entry.getStatus());
+                    break;
+                case TransactionCodec.TRANSFER:
+                    if (partition(id) == partition) {
+                        balance(id, opening, balances, statuses)[0] -= cents;
+                    }
+                    String target = entry.getTargetId();
+                    if (partition(target) == partition) {
+                        awaitDebit(partition(id), entry.getSequence(), partition, progress);
+                        balance(target, opening, balances, statuses)[0] += cents;
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown entry type: " + entry.getType());
+            }
+            progress.set(partition, entry.getSequence());
+        }
+        for (Map.Entry<String, long[]> e : balances.entrySet()) {
+            Money balance = Money.ofMinorUnits(e.getValue()[0]);
+            rebuilt.put(e.getKey(), new Account(e.getKey(), balance, statuses.get(e.getKey())));
+        }
+        // Accounts that had no entries keep their opening state
+        for (Map.Entry<String, Account.Snapshot> e : opening.entrySet()) {
+            if (partition(e.getKey()) == partition && !balances.containsKey(e.getKey())) {
+                Account.Snapshot s = e.getValue();
+                rebuilt.put(e.getKey(), new Account(e.getKey(), Money.ofMinorUnits(s.getBalanceMinorUnits()),
+                        s.getStatus()));
+            }
+        }
+    }
+    
+    private static long[] balance(String id, Map<String, Account.Snapshot> opening,
+                                    Map<String, long[]> balances, Map<String, String> statuses) {
+        long[] balance = balances.get(id);
+        if (balance == null) {
+            Account.Snapshot s = opening.get(id);
+            balance = new long[] { s == null ? 0 : s.getBalanceMinorUnits() };
+            balances.put(id, balance);
+            statuses.put(id, s == null ? Account.UNVERIFIED : s.getStatus());
+        }
+        return balance;
+    }
+    
+    private static void awaitDebit(int source, long sequence, int self, AtomicLongArray progress) {
+        if (source == self) {
+            return;
+        }
+        int spins = 0;
+        while (progress.get(source) < sequence) {
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(10_000);
+            }
+        }
+    }
+    
+    private int partition(String accountId) {
+        return Math.floorMod(accountId.hashCode(), partitions);
+    }
+    
+    /**
+     * SHA-256 over every account's id, balance in cents and status, in
+     * id order.
+     */
+    public static String digest(Collection<Account> accounts) {
+        List<Account> sorted = new ArrayList<>(accounts);
+        sorted.sort(Comparator.comparing(Account::getAccountId));
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (Account account : sorted) {
+                Account.Snapshot s = account.snapshot();
+                String line = account.getAccountId() + "|" + s.getBalanceMinorUnits() + "|" + s.getStatus() + "\n";
+                sha.update(line.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,667 @@
+package banking;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Durable journal of successful operations, split into fixed-size
+ * segment files.
+ * 
+ * Every operation is one 64-byte TransactionCodec command frame whose
+ * correlation id is its sequence number. Appends go to the active
+ * segment; when it is full it is forced to disk, sealed with an index
+ * file (first sequence, record count, CRC32 of the data) and a new
+ * segment is started. On open only the active segment is scanned, and a
+ * frame torn by a crash is cut off; sealed segments are trusted from
+ * their index.
+ * 
+ * compact() folds sealed segments into a checkpoint of every account's
+ * balance and status as of the end of the last folded segment, then
+ * deletes them, so disk use and recovery time depend on the number of
+ * accounts and the segment size, not on how long the log has run.
+ * recover() replays the segments on top of the latest checkpoint.
+ * 
+ * Files in the directory:
+ *   00000000000000000000.log   frames of the segment starting at seq 0
+ *   00000000000000000000.idx   written when the segment is sealed
+ *   checkpoint-00000000000000004096.bin   state before seq 4096
+ * 
+ * Attach it to the AccountRegistry as well as the processor so accounts
+ * opened after seed() are logged with their opening balance.
+ * 
+ * Appends are written but not forced; call flush() at commit points.
+ * Account ids must fit the codec (20 ASCII characters).
+ */
+public class SegmentedTransactionLog implements TransactionListener, AutoCloseable {
+    
+    private static final int CHECKPOINT_MAGIC = 0x43484B31; // CHK1
+    
+    /**
+     * State needed to rebuild the accounts: a checkpoint and the entries
+     * after it.
+     */
+    public static class Recovery {
+        private final long checkpointSequence;
+        private final Map<String, Account.Snapshot> checkpoint;
+        private final List<JournalEntry> entries;
+        
+        Recovery(long checkpointSequence, Map<String, Account.Snapshot> checkpoint, List<JournalEntry> entries) {
+            this.checkpointSequence = checkpointSequence;
+            this.checkpoint = Collections.unmodifiableMap(checkpoint);
+            this.entries = Collections.unmodifiableList(entries);
+        }
+        
+        /** First sequence not covered by the checkpoint. */
+        public long getCheckpointSequence() { return checkpointSequence; }
+        public Map<String, Account.Snapshot> getCheckpoint() { return checkpoint; }
+        /** Entries from the checkpoint sequence on, in order. */
+        public List<JournalEntry> getEntries() { return entries; }
+        
+        /**
+         * Rebuilds the accounts by replaying the entries on the checkpoint.
+         */
+        public Map<String, Account> replay() {
+            return new ReplayEngine().replay(checkpoint, entries);
+        }
+    }
+    
+    private static class Segment {
+        final long firstSequence;
+        final Path file;
+        int count;
+        boolean sealed;
+        
+        Segment(long firstSequence, Path file) {
+            this.firstSequence = firstSequence;
+            this.file = file;
+        }
+    }
+    
+    private final Path directory;
+    private final int segmentRecords;
+    private final List<Segment> segments = new ArrayList<>();
+    private final ByteBuffer frame = ByteBuffer.allocateDirect(TransactionCodec.COMMAND_LENGTH)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private final Object compactLock = new Object();
+    private FileChannel active;
+    private long nextSequence;
+    private long checkpointSequence;
+    private Path checkpointFile;
+    private volatile Thread compactor;
+    
+    /**
+     * Opens or creates a log in the directory.
+     * 
+     * @param segmentBytes maximum size of one segment file, rounded down
+     *                     to whole frames
+     */
+    public SegmentedTransactionLog(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentRecords = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                segmentBytes / TransactionCodec.COMMAND_LENGTH));
+        Files.createDirectories(directory);
+        open();
+    }
+    
+    /**
+     * Records every operation of the processor and its AccountService.
+     */
+    public SegmentedTransactionLog attach(TransactionProcessor processor) {
+        processor.addListener(this);
+        processor.getAccountService().addListener(this);
+        return this;
+    }
+    
+    /**
+     * Records every account registered from now on, with its opening
+     * balance and status, so accounts created after seed() recover.
+     */
+    public SegmentedTransactionLog attach(AccountRegistry registry) {
+        registry.addListener(this);
+        return this;
+    }
+    
+    @Override
+    public void onAccountOpened(Account account) {
+        Account.Snapshot opening = account.snapshot();
+        append(TransactionCodec.OPEN, statusOp(opening.getStatus()), account.getAccountId(), null,
+                opening.getBalance());
+    }
+    
+    @Override
+    public void onDeposit(Account account, double amount) {
+        append(TransactionCodec.DEPOSIT, (byte) 0, account.getAccountId(), null, amount);
+    }
+    
+    @Override
+    public void onWithdraw(Account account, double amount) {
+        append(TransactionCodec.WITHDRAW, (byte) 0, account.getAccountId(), null, amount);
+    }
+    
+    @Override
+    public void onTransfer(Account from, Account to, double amount) {
+        append(TransactionCodec.TRANSFER, (byte) 0, from.getAccountId(), to.getAccountId(), amount);
+    }
+    
+    @Override
+    public void onStatusChange(Account account, String from, String to) {
+        append(TransactionCodec.STATUS_CHANGE, statusOp(to), account.getAccountId(), null, 0);
+    }
+    
+    /**
+     * Writes the state of the accounts as the opening checkpoint. Only
+     * allowed before anything has been appended.
+     */
+    public void seed(Collection<Account> accounts) throws IOException {
+        synchronized (compactLock) {
+            synchronized (this) {
+                if (nextSequence != 0 || checkpointFile != null) {
+                    throw new IllegalStateException("Log is not empty");
+                }
+            }
+            writeCheckpoint(0, ReplayEngine.openingState(accounts));
+        }
+    }
+    
+    /**
+     * Forces everything appended so far to disk.
+     */
+    public synchronized void flush() throws IOException {
+        if (active != null) {
+            active.force(false);
+        }
+    }
+    
+    public synchronized long size() {
+        return nextSequence;
+    }
+    
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+    
+    public synchronized long getCheckpointSequence() {
+        return checkpointSequence;
+    }
+    
+    // ========== COMPACTION ==========
+    
+    /**
+     * Folds every sealed segment into a new checkpoint and deletes them.
+     * 
+     * @return the number of segments folded
+     */
+    public int compact() throws IOException {
+        synchronized (compactLock) {
+            List<Segment> sealed = new ArrayList<>();
+            long base;
+            synchronized (this) {
+                for (Segment segment : segments) {
+                    if (segment.sealed) {
+                        sealed.add(segment);
+                    }
+                }
+                base = checkpointSequence;
+            }
+            if (sealed.isEmpty()) {
+                return 0;
+            }
+            
+            Map<String, long[]> balances = new HashMap<>();
+            Map<String, String> statuses = new HashMap<>();
+            for (Map.Entry<String, Account.Snapshot> e : readCheckpoint().entrySet()) {
+                balances.put(e.getKey(), new long[] { e.getValue().getBalanceMinorUnits() });
+                statuses.put(e.getKey(), e.getValue().getStatus());
+            }
+            TransactionCodec.CommandView command = new TransactionCodec.CommandView();
+            for (Segment segment : sealed) {
+                ByteBuffer data = read(segment, segment.count, true);
+                for (int i = 0; i < segment.count; i++) {
+                    command.wrap(data, i * TransactionCodec.COMMAND_LENGTH);
+                    fold(command, balances, statuses);
+                }
+            }
+            Map<String, Account.Snapshot> state = new HashMap<>();
+            for (Map.Entry<String, long[]> e : balances.entrySet()) {
+                state.put(e.getKey(), new Account.Snapshot(statuses.get(e.getKey()), e.getValue()[0]));
+            }
+            Segment last = sealed.get(sealed.size() - 1);
+            writeCheckpoint(last.firstSequence + last.count, state);
+            
+            synchronized (this) {
+                segments.removeAll(sealed);
+            }
+            for (Segment segment : sealed) {
+                Files.deleteIfExists(indexFile(segment.firstSequence));
+                Files.deleteIfExists(segment.file);
+            }
+            Files.deleteIfExists(checkpointPath(base));
+            return sealed.size();
+        }
+    }
+    
+    /**
+     * Runs compact() every interval on a daemon thread.
+     */
+    public synchronized void startCompaction(long intervalMillis) {
+        if (compactor != null) {
+            return;
+        }
+        compactor = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(intervalMillis);
+                    compact();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    // Segments stay in place; retried next interval
+                }
+            }
+        }, "log-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+    
+    // ========== RECOVERY ==========
+    
+    /**
+     * Reads the latest checkpoint and every entry after it.
+     */
+    public Recovery recover() throws IOException {
+        synchronized (compactLock) {
+            List<Segment> live;
+            List<Integer> counts = new ArrayList<>();
+            List<Boolean> sealed = new ArrayList<>();
+            long base;
+            synchronized (this) {
+                live = new ArrayList<>(segments);
+                for (Segment segment : live) {
+                    counts.add(segment.count);
+                    sealed.add(segment.sealed);
+                }
+                base = checkpointSequence;
+            }
+            List<JournalEntry> entries = new ArrayList<>();
+            TransactionCodec.CommandView command = new TransactionCodec.CommandView();
+            for (int s = 0; s < live.size(); s++) {
+                Segment segment = live.get(s);
+                ByteBuffer data = read(segment, counts.get(s), sealed.get(s));
+                for (int i = 0; i < counts.get(s); i++) {
+                    command.wrap(data, i * TransactionCodec.COMMAND_LENGTH);
+                    entries.add(toEntry(command));
+                }
+            }
+            return new Recovery(base, readCheckpoint(), entries);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        synchronized (this) {
+            thread = compactor;
+            compactor = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (active != null) {
+                active.force(false);
+                active.close();
+                active = null;
+            }
+        }
+    }
+    
+    // ========== INTERNALS ==========
+    
+    private synchronized void append(byte type, byte statusOp, String accountId, String targetId, double amount) {
+        try {
+            if (active == null) {
+                startSegment();
+            }
+            Segment segment = segments.get(segments.size() - 1);
+            frame.clear();
+            switch (type) {
+                case TransactionCodec.DEPOSIT:
+                    TransactionCodec.encodeDeposit(frame, nextSequence, accountId, amount);
+                    break;
+                case TransactionCodec.WITHDRAW:
+                    TransactionCodec.encodeWithdraw(frame, nextSequence, accountId, amount);
+                    break;
+                case TransactionCodec.TRANSFER:
+                    TransactionCodec.encodeTransfer(frame, nextSequence, accountId, targetId, amount);
+                    break;
+                case TransactionCodec.OPEN:
+                    TransactionCodec.encodeOpen(frame, nextSequence, accountId, amount, statusOp);
+                    break;
+                default:
+                    TransactionCodec.encodeStatusChange(frame, nextSequence, accountId, statusOp);
+            }
+            frame.flip();
+            long position = (long) segment.count * TransactionCodec.COMMAND_LENGTH;
+            while (frame.hasRemaining()) {
+                active.write(frame, position + frame.position());
+            }
+            segment.count++;
+            nextSequence++;
+            if (segment.count >= segmentRecords) {
+                seal(segment);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private void startSegment() throws IOException {
+        Segment segment = new Segment(nextSequence, segmentPath(nextSequence));
+        active = FileChannel.open(segment.file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segments.add(segment);
+    }
+    
+    private void seal(Segment segment) throws IOException {
+        if (active != null) {
+            active.force(false);
+            active.close();
+            active = null;
+        } else {
+            try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+        }
+        CRC32 crc = crc(read(segment, segment.count, false));
+        Path index = indexFile(segment.firstSequence);
+        Path temp = index.resolveSibling(index.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+            out.writeLong(segment.firstSequence);
+            out.writeInt(segment.count);
+            out.writeLong(crc.getValue());
+        }
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segment.sealed = true;
+    }
+    
+    private void open() throws IOException {
+        List<Long> starts = new ArrayList<>();
+        long latest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".log")) {
+                    starts.add(Long.parseLong(name.substring(0, name.length() - 4)));
+                } else if (name.startsWith("checkpoint-") && name.endsWith(".bin")) {
+                    latest = Math.max(latest, Long.parseLong(name.substring(11, name.length() - 4)));
+                } else if (name.endsWith(".tmp")) {
+                    Files.delete(file);
+                }
+            }
+        }
+        if (latest >= 0) {
+            checkpointSequence = latest;
+            checkpointFile = checkpointPath(latest);
+        }
+        Collections.sort(starts);
+        nextSequence = checkpointSequence;
+        for (int i = 0; i < starts.size(); i++) {
+            long first = starts.get(i);
+            Segment segment = new Segment(first, segmentPath(first));
+            Path index = indexFile(first);
+            if (Files.exists(index)) {
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(index))) {
+                    in.readLong();
+                    segment.count = in.readInt();
+                }
+                segment.sealed = true;
+            } else {
+                segment.count = scan(segment);
+                if (segment.count >= segmentRecords) {
+                    // Full, but the crash came before its index was written
+                    seal(segment);
+                }
+            }
+            if (first + segment.count <= checkpointSequence) {
+                // Folded by a compaction that crashed before deleting it
+                Files.deleteIfExists(index);
+                Files.deleteIfExists(segment.file);
+                continue;
+            }
+            if (first != nextSequence) {
+                throw new IOException("Gap in log before segment " + segment.file);
+            }
+            segments.add(segment);
+            nextSequence = first + segment.count;
+        }
+        // Drop checkpoints superseded by the latest
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "checkpoint-*.bin")) {
+            for (Path file : files) {
+                if (!file.equals(checkpointFile)) {
+                    Files.delete(file);
+                }
+            }
+        }
+        if (!segments.isEmpty() && !segments.get(segments.size() - 1).sealed) {
+            active = FileChannel.open(segments.get(segments.size() - 1).file, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+    }
+    
+    /**
+     * Counts the valid frames of an unsealed segment and cuts off the
+     * rest. Valid frames past the segment size are kept, not truncated.
+     */
+    private int scan(Segment segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            int frames = (int) Math.min(Integer.MAX_VALUE / TransactionCodec.COMMAND_LENGTH,
+                    channel.size() / TransactionCodec.COMMAND_LENGTH);
+            ByteBuffer data = read(channel, frames);
+            TransactionCodec.CommandView command = new TransactionCodec.CommandView();
+            int count = 0;
+            while (count < frames) {
+                command.wrap(data, count * TransactionCodec.COMMAND_LENGTH);
+                byte type = command.type();
+                if (type < TransactionCodec.DEPOSIT || type > TransactionCodec.OPEN
+                        || command.correlationId() != segment.firstSequence + count) {
+                    break;
+                }
+                count++;
+            }
+            long valid = (long) count * TransactionCodec.COMMAND_LENGTH;
+            if (channel.size() > valid) {
+                channel.truncate(valid);
+            }
+            return count;
+        }
+    }
+    
+    /**
+     * Reads the first count frames, checking them against the index if
+     * the segment was sealed when count was taken.
+     */
+    private ByteBuffer read(Segment segment, int count, boolean verify) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ)) {
+            ByteBuffer data = read(channel, count);
+            if (verify) {
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(indexFile(segment.firstSequence)))) {
+                    in.readLong();
+                    in.readInt();
+                    if (in.readLong() != crc(data).getValue()) {
+                        throw new IOException("Checksum mismatch in " + segment.file);
+                    }
+                }
+            }
+            return data;
+        }
+    }
+    
+    private static ByteBuffer read(FileChannel channel, int count) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(count * TransactionCodec.COMMAND_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        while (data.hasRemaining()) {
+            if (channel.read(data, data.position()) < 0) {
+                throw new IOException("Segment shorter than its index");
+            }
+        }
+        data.flip();
+        return data;
+    }
+    
+    private static CRC32 crc(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        return crc;
+    }
+    
+    private Map<String, Account.Snapshot> readCheckpoint() throws IOException {
+        Map<String, Account.Snapshot> state = new HashMap<>();
+        Path file;
+        synchronized (this) {
+            file = checkpointFile;
+        }
+        if (file == null) {
+            return state;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Not a checkpoint: " + file);
+            }
+            in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                long balance = in.readLong();
+                state.put(id, new Account.Snapshot(in.readUTF(), balance));
+            }
+        }
+        return state;
+    }
+    
+    private void writeCheckpoint(long sequence, Map<String, Account.Snapshot> state) throws IOException {
+        Path file = checkpointPath(sequence);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(channel)));
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(state.size());
+            for (Map.Entry<String, Account.Snapshot> e : state.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().getBalanceMinorUnits());
+                out.writeUTF(e.getValue().getStatus());
+            }
+            out.flush();
+            channel.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (this) {
+            checkpointSequence = sequence;
+            checkpointFile = file;
+        }
+    }
+    
+    private static void fold(TransactionCodec.CommandView command, Map<String, long[]> balances,
+                             Map<String, String> statuses) {
+        String id = command.accountId();
+        long amount = command.amountMinorUnits();
+        switch (command.type()) {
+            case TransactionCodec.DEPOSIT:
+                balance(id, balances, statuses)[0] += amount;
+                break;
+            case TransactionCodec.WITHDRAW:
+                balance(id, balances, statuses)[0] -= amount;
+                break;
+            case TransactionCodec.TRANSFER:
+                balance(id, balances, statuses)[0] -= amount;
+                balance(command.targetId(), balances, statuses)[0] += amount;
+                break;
+            case TransactionCodec.OPEN:
+                balance(id, balances, statuses)[0] = amount;
+                statuses.put(id, status(command.statusOp()));
+                break;
+            default:
+                balance(id, balances, statuses);
+                statuses.put(id, status(command.statusOp()));
+        }
+    }
+    
+    private static long[] balance(String id, Map<String, long[]> balances, Map<String, String> statuses) {
+        long[] balance = balances.get(id);
+        if (balance == null) {
+            balance = new long[1];
+            balances.put(id, balance);
+            statuses.put(id, Account.UNVERIFIED);
+        }
+        return balance;
+    }
+    
+    private static JournalEntry toEntry(TransactionCodec.CommandView command) {
+        byte type = command.type();
+        return new JournalEntry(command.correlationId(), type, command.accountId(),
+                type == TransactionCodec.TRANSFER ? command.targetId() : null, command.amountMinorUnits(),
+                type == TransactionCodec.STATUS_CHANGE || type == TransactionCodec.OPEN
+                        ? status(command.statusOp()) : null);
+    }
+    
+    private static byte statusOp(String status) {
+        switch (status) {
+            case Account.VERIFIED: return TransactionCodec.VERIFY;
+            case Account.SUSPENDED: return TransactionCodec.SUSPEND;
+            case Account.CLOSED: return TransactionCodec.CLOSE;
+            case Account.UNVERIFIED: return 0;
+            default: throw new IllegalArgumentException("Cannot log status: " + status);
+        }
+    }
+    
+    private static String status(byte statusOp) {
+        switch (statusOp) {
+            case TransactionCodec.VERIFY:
+            case TransactionCodec.REINSTATE:
+                return Account.VERIFIED;
+            case TransactionCodec.SUSPEND: return Account.SUSPENDED;
+            case TransactionCodec.CLOSE: return Account.CLOSED;
+            case 0: return Account.UNVERIFIED;
+            default: throw new IllegalArgumentException("Unknown status operation: " + statusOp);
+        }
+    }
+    
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%020d.log", firstSequence));
+    }
+    
+    private Path indexFile(long firstSequence) {
+        return directory.resolve(String.format("%020d.idx", firstSequence));
+    }
+    
+    private Path checkpointPath(long sequence) {
+        return directory.resolve(String.format("checkpoint-%020d.bin", sequence));
+    }
+}
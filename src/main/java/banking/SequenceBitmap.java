@@ -0,0 +1,320 @@
+package banking;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of journal sequence numbers.
+ * 
+ * Sequences are split into chunks of 65536 by their high bits. A chunk
+ * holding few sequences is a sorted array of their low 16 bits (2 bytes
+ * each); once it holds more than 4096 it becomes a plain bitmap (8 KB,
+ * 1 bit per possible sequence). Sparse sets such as one account's
+ * history stay small, dense sets such as all deposits stay at one bit
+ * per entry, and and()/or() work chunk by chunk, a word at a time for
+ * bitmap chunks.
+ * 
+ * Sequences are added in increasing order, as a journal assigns them,
+ * so only the last chunk ever changes. copy() therefore shares the
+ * chunks and marks the last one shared; whichever side adds to it next
+ * copies that one chunk first. Not thread-safe; HistoryIndex guards its
+ * bitmaps and hands out copies.
+ */
+public class SequenceBitmap {
+    
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+    
+    private static class Chunk {
+        char[] array;
+        long[] bits;
+        int cardinality;
+        // Also held by a copy of the bitmap; copy before adding
+        boolean shared;
+        
+        Chunk(int capacity) {
+            array = new char[capacity];
+        }
+        
+        Chunk(long[] bits, int cardinality) {
+            this.bits = bits;
+            this.cardinality = cardinality;
+        }
+        
+        void add(char low) {
+            if (bits != null) {
+                long mask = 1L << low;
+                if ((bits[low >>> 6] & mask) == 0) {
+                    bits[low >>> 6] |= mask;
+                    cardinality++;
+                }
+                return;
+            }
+            if (cardinality > 0 && array[cardinality - 1] == low) {
+                return;
+            }
+            if (cardinality == ARRAY_MAX) {
+                bits = toBits();
+                array = null;
+                add(low);
+                return;
+            }
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, Math.max(4, array.length * 2)));
+            }
+            array[cardinality++] = low;
+        }
+        
+        boolean contains(char low) {
+            if (bits != null) {
+                return (bits[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+        }
+        
+        long[] toBits() {
+            if (bits != null) {
+                return bits.clone();
+            }
+            long[] words = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[array[i] >>> 6] |= 1L << array[i];
+            }
+            return words;
+        }
+        
+        Chunk copy() {
+            Chunk copy = bits != null ? new Chunk(bits.clone(), cardinality) : new Chunk(0);
+            if (bits == null) {
+                copy.array = Arrays.copyOf(array, cardinality);
+                copy.cardinality = cardinality;
+            }
+            return copy;
+        }
+        
+        long sizeInBytes() {
+            return bits != null ? WORDS * 8L : array.length * 2L;
+        }
+    }
+    
+    private long[] keys = new long[4];
+    private Chunk[] chunks = new Chunk[4];
+    private int count;
+    private long last = -1;
+    
+    /**
+     * Adds a sequence; it must not be lower than the last one added.
+     */
+    public void add(long sequence) {
+        if (sequence < last) {
+            throw new IllegalArgumentException("Sequence " + sequence + " added after " + last);
+        }
+        last = sequence;
+        long key = sequence >>> 16;
+        if (count == 0 || keys[count - 1] != key) {
+            append(key, new Chunk(4));
+        } else if (chunks[count - 1].shared) {
+            chunks[count - 1] = chunks[count - 1].copy();
+        }
+        chunks[count - 1].add((char) sequence);
+    }
+    
+    public boolean contains(long sequence) {
+        int i = Arrays.binarySearch(keys, 0, count, sequence >>> 16);
+        return i >= 0 && chunks[i].contains((char) sequence);
+    }
+    
+    public long cardinality() {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += chunks[i].cardinality;
+        }
+        return total;
+    }
+    
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    /**
+     * Sequences in both sets.
+     */
+    public SequenceBitmap and(SequenceBitmap other) {
+        SequenceBitmap result = new SequenceBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < count && j < other.count) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Chunk chunk = and(chunks[i], other.chunks[j]);
+                if (chunk.cardinality > 0) {
+                    result.append(keys[i], chunk);
+                }
+                i++;
+                j++;
+            }
+        }
+        result.last = Math.min(last, other.last);
+        return result;
+    }
+    
+    /**
+     * Sequences in either set.
+     */
+    public SequenceBitmap or(SequenceBitmap other) {
+        SequenceBitmap result = new SequenceBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < count || j < other.count) {
+            if (j == other.count || (i < count && keys[i] < other.keys[j])) {
+                result.append(keys[i], chunks[i++].copy());
+            } else if (i == count || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.chunks[j++].copy());
+            } else {
+                result.append(keys[i], or(chunks[i++], other.chunks[j++]));
+            }
+        }
+        result.last = Math.max(last, other.last);
+        return result;
+    }
+    
+    /**
+     * An independent copy, in O(chunks): earlier chunks never change, and
+     * the last is shared until either side adds to it.
+     */
+    public SequenceBitmap copy() {
+        SequenceBitmap copy = new SequenceBitmap();
+        if (count > 0) {
+            chunks[count - 1].shared = true;
+            copy.keys = Arrays.copyOf(keys, count);
+            copy.chunks = Arrays.copyOf(chunks, count);
+            copy.count = count;
+        }
+        copy.last = last;
+        return copy;
+    }
+    
+    /**
+     * The sequences in increasing order.
+     */
+    public long[] toArray() {
+        long[] result = new long[(int) cardinality()];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            long high = keys[i] << 16;
+            Chunk chunk = chunks[i];
+            if (chunk.bits == null) {
+                for (int k = 0; k < chunk.cardinality; k++) {
+                    result[n++] = high | chunk.array[k];
+                }
+            } else {
+                for (int w = 0; w < WORDS; w++) {
+                    for (long word = chunk.bits[w]; word != 0; word &= word - 1) {
+                        result[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Approximate memory held by the chunks.
+     */
+    public long sizeInBytes() {
+        long total = count * 16L;
+        for (int i = 0; i < count; i++) {
+            total += chunks[i].sizeInBytes();
+        }
+        return total;
+    }
+    
+    private void append(long key, Chunk chunk) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            chunks = Arrays.copyOf(chunks, count * 2);
+        }
+        keys[count] = key;
+        chunks[count++] = chunk;
+    }
+    
+    private static Chunk and(Chunk a, Chunk b) {
+        if (a.bits != null && b.bits != null) {
+            long[] words = new long[WORDS];
+            int cardinality = 0;
+            for (int w = 0; w < WORDS; w++) {
+                words[w] = a.bits[w] & b.bits[w];
+                cardinality += Long.bitCount(words[w]);
+            }
+            return shrink(new Chunk(words, cardinality));
+        }
+        if (a.bits != null) {
+            return and(b, a);
+        }
+        Chunk result = new Chunk(Math.max(1, Math.min(a.cardinality, b.cardinality)));
+        if (b.bits != null) {
+            for (int i = 0; i < a.cardinality; i++) {
+                if (b.contains(a.array[i])) {
+                    result.array[result.cardinality++] = a.array[i];
+                }
+            }
+            return result;
+        }
+        for (int i = 0, j = 0; i < a.cardinality && j < b.cardinality; ) {
+            if (a.array[i] < b.array[j]) {
+                i++;
+            } else if (a.array[i] > b.array[j]) {
+                j++;
+            } else {
+                result.array[result.cardinality++] = a.array[i];
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+    
+    private static Chunk or(Chunk a, Chunk b) {
+        if (a.bits == null && b.bits == null && a.cardinality + b.cardinality <= ARRAY_MAX) {
+            Chunk result = new Chunk(Math.max(1, a.cardinality + b.cardinality));
+            int i = 0;
+            int j = 0;
+            while (i < a.cardinality || j < b.cardinality) {
+                char next;
+                if (j == b.cardinality || (i < a.cardinality && a.array[i] < b.array[j])) {
+                    next = a.array[i++];
+                } else if (i == a.cardinality || a.array[i] > b.array[j]) {
+                    next = b.array[j++];
+                } else {
+                    next = a.array[i++];
+                    j++;
+                }
+                result.array[result.cardinality++] = next;
+            }
+            return result;
+        }
+        long[] words = a.toBits();
+        long[] other = b.bits != null ? b.bits : b.toBits();
+        int cardinality = 0;
+        for (int w = 0; w < WORDS; w++) {
+            words[w] |= other[w];
+            cardinality += Long.bitCount(words[w]);
+        }
+        return shrink(new Chunk(words, cardinality));
+    }
+    
+    private static Chunk shrink(Chunk chunk) {
+        if (chunk.cardinality > ARRAY_MAX) {
+            return chunk;
+        }
+        Chunk array = new Chunk(Math.max(1, chunk.cardinality));
+        for (int w = 0; w < WORDS; w++) {
+            for (long word = chunk.bits[w]; word != 0; word &= word - 1) {
+                array.array[array.cardinality++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+            }
+        }
+        return array;
+    }
+}
@@ -0,0 +1,855 @@
+package banking;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Future-dated and recurring transactions (standing orders) on a
+ * hierarchical timing wheel.
+ * 
+ * Orders are not tasks: each is a row in a set of parallel primitive
+ * arrays (type, account indexes, amount, due tick, period), about 40
+ * bytes, with account ids interned once. The wheel has four levels of
+ * 256 buckets; level 0 holds orders due within 256 ticks, level 1 within
+ * 65,536 ticks, and so on. Buckets are intrusive linked lists through
+ * the order rows, so scheduling and cancelling are O(1). Each tick fires
+ * one level-0 bucket as a batch; every 256 ticks the next bucket of the
+ * level above is cascaded down. Orders further out than the top level
+ * wait on an overflow list.
+ * 
+ * Recurring orders are put back on the wheel when they fire. Occurrences
+ * missed while the scheduler was down fire on their own ticks as it
+ * catches up, but only the latest maxCatchUp of each order; older ones
+ * are skipped and counted in the Report.
+ * 
+ * Persistence: with a state file, every change to the wheel is appended
+ * to a journal next to it and forced before it takes effect: orders
+ * scheduled and cancelled, and each tick's fired orders before any of
+ * them is executed. The whole wheel (current tick and every live order)
+ * is checkpointed to the state file, forced and moved into place, once
+ * the journal has grown past a size or a time threshold, and on
+ * close(); the journal then starts over. open() restores the checkpoint,
+ * if one was written, with the same order ids and replays the journal
+ * over it. An order
+ * that fired is therefore never fired again after a crash: delivery is
+ * at most once, and an order interrupted mid-execution must be checked
+ * against the ledger rather than retried.
+ */
+public class StandingOrderScheduler implements AutoCloseable {
+    
+    static final int LEVELS = 4;
+    static final int SLOT_BITS = 8;
+    static final int SLOTS = 1 << SLOT_BITS;
+    static final int SLOT_MASK = SLOTS - 1;
+    
+    /** Missed occurrences of one recurring order fired on catching up. */
+    public static final int DEFAULT_MAX_CATCH_UP = 10;
+    
+    /** Journal size past which an advance checkpoints the wheel. */
+    public static final long DEFAULT_CHECKPOINT_BYTES = 1 << 20;
+    
+    /** Time after which an advance checkpoints a changed wheel. */
+    public static final long DEFAULT_CHECKPOINT_MILLIS = 60_000;
+    
+    // Row type of a cancelled order, freed when its bucket comes round
+    private static final byte CANCELLED = 0;
+    private static final int NONE = -1;
+    
+    // Journal entry: length of what follows (int), kind (byte), payload.
+    //   TICK_FIRED      tick, then per fired order: order id, next due
+    //                   tick or DONE
+    //   ORDER_SCHEDULED order id, type, account id, target id or "",
+    //                   amount, due tick, period
+    //   ORDER_CANCELLED order id
+    // An entry cut short by a crash is ignored; a tick's orders are not
+    // executed before its entry is on disk
+    private static final int ENTRY_HEADER = Integer.BYTES + 1;
+    private static final byte TICK_FIRED = 1;
+    private static final byte ORDER_SCHEDULED = 2;
+    private static final byte ORDER_CANCELLED = 3;
+    private static final int FIRED_BYTES = 2 * Long.BYTES;
+    private static final long DONE = Long.MIN_VALUE;
+    
+    /**
+     * One order that came due.
+     */
+    public static class Fired {
+        private final long orderId;
+        private final byte type;
+        private final String accountId;
+        private final String targetId;
+        private final long amountMinorUnits;
+        private TransactionProcessor.Result result;
+        
+        Fired(long orderId, byte type, String accountId, String targetId, long amountMinorUnits) {
+            this.orderId = orderId;
+            this.type = type;
+            this.accountId = accountId;
+            this.targetId = targetId;
+            this.amountMinorUnits = amountMinorUnits;
+        }
+        
+        public long getOrderId() { return orderId; }
+        /** TransactionCodec.DEPOSIT, WITHDRAW or TRANSFER. */
+        public byte getType() { return type; }
+        public String getAccountId() { return accountId; }
+        public String getTargetId() { return targetId; }
+        public Money getAmount() { return Money.ofMinorUnits(amountMinorUnits); }
+        public TransactionProcessor.Result getResult() { return result; }
+    }
+    
+    /**
+     * Outcome of one advance.
+     */
+    public static class Report {
+        private final long ticks;
+        private final int fired;
+        private final long skipped;
+        private final List<Fired> failures;
+        
+        Report(long ticks, int fired, long skipped, List<Fired> failures) {
+            this.ticks = ticks;
+            this.fired = fired;
+            this.skipped = skipped;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+        
+        public long getTicks() { return ticks; }
+        public int getFired() { return fired; }
+        /** Missed occurrences dropped by the catch-up limit. */
+        public long getSkipped() { return skipped; }
+        public int getSucceeded() { return fired - failures.size(); }
+        /** Fired orders whose transaction was refused. */
+        public List<Fired> getFailures() { return failures; }
+    }
+    
+    private final TransactionProcessor processor;
+    private final Function<String, Account> accounts;
+    private final LongSupplier clock;
+    private final long tickMillis;
+    private final Path stateFile;
+    private final Path journalFile;
+    private FileChannel journal;
+    // The current tick's entry, built up as its orders fire
+    private ByteBuffer pending = ByteBuffer.allocate(ENTRY_HEADER + Long.BYTES + FIRED_BYTES * 64);
+    private long journalBytes;
+    private long lastCheckpointMillis;
+    private volatile long checkpointBytes = DEFAULT_CHECKPOINT_BYTES;
+    private volatile long checkpointMillis = DEFAULT_CHECKPOINT_MILLIS;
+    private volatile int maxCatchUp = DEFAULT_MAX_CATCH_UP;
+    
+    // Interned account ids; orders refer to them by index
+    private final List<String> ids = new ArrayList<>();
+    private final Map<String, Integer> idIndex = new HashMap<>();
+    
+    // Order rows
+    private byte[] types = new byte[1024];
+    private int[] sources = new int[1024];
+    private int[] targets = new int[1024];
+    private long[] amounts = new long[1024];
+    private long[] dueTicks = new long[1024];
+    private long[] periodTicks = new long[1024];
+    private int[] generations = new int[1024];
+    private int[] next = new int[1024];
+    private int rows;
+    private int freeRow = NONE;
+    private int live;
+    
+    private final int[][] buckets = new int[LEVELS][SLOTS];
+    private int overflow = NONE;
+    private long currentTick;
+    private long skipped;
+    private boolean dirty;
+    
+    private final Object advanceLock = new Object();
+    private volatile Thread ticker;
+    
+    public StandingOrderScheduler(TransactionProcessor processor, Function<String, Account> accounts,
+                                  long tickMillis) {
+        this(processor, accounts, tickMillis, System::currentTimeMillis, null);
+    }
+    
+    /**
+     * @param accounts  resolves account ids when orders fire
+     * @param stateFile where the wheel is persisted, or null
+     */
+    public StandingOrderScheduler(TransactionProcessor processor, Function<String, Account> accounts,
+                                  long tickMillis, LongSupplier clock, Path stateFile) {
+        this.processor = processor;
+        this.accounts = accounts;
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.stateFile = stateFile;
+        this.journalFile = stateFile == null ? null : stateFile.resolveSibling(stateFile.getFileName() + ".journal");
+        for (int[] level : buckets) {
+            Arrays.fill(level, NONE);
+        }
+        this.currentTick = clock.getAsLong() / tickMillis;
+        this.lastCheckpointMillis = clock.getAsLong();
+    }
+    
+    /**
+     * Creates a scheduler, restoring the wheel from the state file and
+     * its journal if they exist. Orders that came due while it was down
+     * fire on the next advance.
+     */
+    public static StandingOrderScheduler open(TransactionProcessor processor, Function<String, Account> accounts,
+                                              long tickMillis, LongSupplier clock, Path stateFile)
+            throws IOException {
+        StandingOrderScheduler scheduler = new StandingOrderScheduler(processor, accounts, tickMillis, clock, stateFile);
+        if (stateFile != null && (Files.exists(stateFile) || Files.exists(scheduler.journalFile))) {
+            scheduler.restore();
+            // Folds the journal in and drops any torn record at its end
+            scheduler.checkpoint();
+        }
+        return scheduler;
+    }
+    
+    // ========== SCHEDULING ==========
+    
+    public long scheduleTransfer(String fromId, String toId, Money amount, long dueMillis) {
+        return schedule(TransactionCodec.TRANSFER, fromId, toId, amount, dueMillis, 0);
+    }
+    
+    /**
+     * A transfer repeated every periodMillis, starting at firstDueMillis.
+     */
+    public long standingOrder(String fromId, String toId, Money amount, long firstDueMillis, long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        return schedule(TransactionCodec.TRANSFER, fromId, toId, amount, firstDueMillis, periodMillis);
+    }
+    
+    /**
+     * Schedules a deposit, withdrawal or transfer (TransactionCodec
+     * types). Times are rounded up to whole ticks; a period of 0 fires
+     * once.
+     * 
+     * @return the order id, for cancel()
+     */
+    public synchronized long schedule(byte type, String accountId, String targetId, Money amount,
+                                      long dueMillis, long periodMillis) {
+        if (type != TransactionCodec.DEPOSIT && type != TransactionCodec.WITHDRAW
+                && type != TransactionCodec.TRANSFER) {
+            throw new IllegalArgumentException("Unsupported type: " + type);
+        }
+        if ((type == TransactionCodec.TRANSFER) != (targetId != null)) {
+            throw new IllegalArgumentException("Transfers, and only transfers, need a target");
+        }
+        int row = allocate();
+        types[row] = type;
+        sources[row] = intern(accountId);
+        targets[row] = targetId == null ? NONE : intern(targetId);
+        amounts[row] = amount.getMinorUnits();
+        dueTicks[row] = ceilDiv(dueMillis, tickMillis);
+        periodTicks[row] = periodMillis <= 0 ? 0 : Math.max(1, ceilDiv(periodMillis, tickMillis));
+        if (journalFile != null) {
+            try {
+                journalScheduled(row);
+            } catch (IOException e) {
+                free(row);
+                throw new UncheckedIOException(e);
+            }
+        }
+        place(row);
+        live++;
+        dirty = true;
+        return orderId(row);
+    }
+    
+    /**
+     * @return false if the order already fired (one-off) or was cancelled
+     */
+    public synchronized boolean cancel(long orderId) {
+        int row = (int) orderId;
+        if (row < 0 || row >= rows || generations[row] != (int) (orderId >>> 32) || types[row] == CANCELLED) {
+            return false;
+        }
+        if (journalFile != null) {
+            try {
+                append(ByteBuffer.allocate(ENTRY_HEADER + Long.BYTES)
+                        .putInt(1 + Long.BYTES).put(ORDER_CANCELLED).putLong(orderId).flip());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        // Unlinking would need a walk of the bucket; the row is freed
+        // when the bucket fires or cascades instead. The new generation
+        // keeps the id from matching the row once it is cancelled
+        types[row] = CANCELLED;
+        generations[row]++;
+        live--;
+        dirty = true;
+        return true;
+    }
+    
+    /**
+     * How many missed occurrences of one recurring order still fire when
+     * the wheel catches up on an advance; older ones are skipped. Counted
+     * back from the time advanced to.
+     */
+    public void setMaxCatchUp(int occurrences) {
+        if (occurrences < 1) {
+            throw new IllegalArgumentException("At least one occurrence must fire");
+        }
+        this.maxCatchUp = occurrences;
+    }
+    
+    /**
+     * When an advance checkpoints the wheel: once the journal holds
+     * journalBytes, or intervalMillis after the last checkpoint if the
+     * wheel changed since. Until then the journal alone carries the
+     * changes.
+     */
+    public void setCheckpointThreshold(long journalBytes, long intervalMillis) {
+        if (journalBytes < 0 || intervalMillis < 0) {
+            throw new IllegalArgumentException("Thresholds must not be negative");
+        }
+        this.checkpointBytes = journalBytes;
+        this.checkpointMillis = intervalMillis;
+    }
+    
+    /** Live orders. */
+    public synchronized int size() {
+        return live;
+    }
+    
+    // ========== FIRING ==========
+    
+    /**
+     * Fires everything due up to the clock's current time.
+     */
+    public Report advance() {
+        return advanceTo(clock.getAsLong());
+    }
+    
+    /**
+     * Fires everything due up to the given time, one tick's batch at a
+     * time, then checkpoints if a threshold was crossed. Each batch is
+     * journaled before it is executed.
+     */
+    public Report advanceTo(long nowMillis) {
+        synchronized (advanceLock) {
+            long target = nowMillis / tickMillis;
+            long ticks = 0;
+            int fired = 0;
+            long skippedBefore;
+            synchronized (this) {
+                skippedBefore = skipped;
+            }
+            List<Fired> failures = new ArrayList<>();
+            while (true) {
+                List<Fired> batch;
+                synchronized (this) {
+                    if (currentTick >= target) {
+                        break;
+                    }
+                    batch = tick(target);
+                    try {
+                        journal();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                ticks++;
+                for (Fired order : batch) {
+                    order.result = execute(order);
+                    if (!order.result.isSuccess()) {
+                        failures.add(order);
+                    }
+                }
+                fired += batch.size();
+            }
+            synchronized (this) {
+                if (stateFile != null && (journalBytes >= checkpointBytes
+                        || clock.getAsLong() - lastCheckpointMillis >= checkpointMillis)) {
+                    try {
+                        checkpoint();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return new Report(ticks, fired, skipped - skippedBefore, failures);
+            }
+        }
+    }
+    
+    /**
+     * Advances the wheel every tick on a daemon thread.
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                advance();
+                try {
+                    Thread.sleep(tickMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "standing-orders");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+    
+    /**
+     * Stops the ticker and writes a final checkpoint.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        synchronized (this) {
+            thread = ticker;
+            ticker = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (stateFile != null) {
+            synchronized (advanceLock) {
+                synchronized (this) {
+                    dirty = true;
+                    checkpoint();
+                    if (journal != null) {
+                        journal.close();
+                        journal = null;
+                    }
+                }
+            }
+        }
+    }
+    
+    // Caller holds the monitor; moves to the next tick and collects its
+    // batch, leaving out occurrences older than the catch-up limit
+    private List<Fired> tick(long target) {
+        long tick = currentTick + 1;
+        // Cascade from the top so an order can drop several levels at once
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                if (level == LEVELS - 1) {
+                    int row = overflow;
+                    overflow = NONE;
+                    replaceAll(row);
+                }
+                int bucket = (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+                int row = buckets[level][bucket];
+                buckets[level][bucket] = NONE;
+                replaceAll(row);
+            }
+        }
+        int bucket = (int) tick & SLOT_MASK;
+        int row = buckets[0][bucket];
+        buckets[0][bucket] = NONE;
+        currentTick = tick;
+        
+        List<Fired> batch = new ArrayList<>();
+        while (row != NONE) {
+            int following = next[row];
+            if (types[row] == CANCELLED) {
+                free(row);
+            } else {
+                long id = orderId(row);
+                if (periodTicks[row] > 0 && (target - dueTicks[row]) / periodTicks[row] >= maxCatchUp) {
+                    skipped++;
+                } else {
+                    batch.add(new Fired(id, types[row], ids.get(sources[row]),
+                            targets[row] == NONE ? null : ids.get(targets[row]), amounts[row]));
+                }
+                if (periodTicks[row] > 0) {
+                    dueTicks[row] += periodTicks[row];
+                    place(row);
+                    record(tick, id, dueTicks[row]);
+                } else {
+                    free(row);
+                    live--;
+                    record(tick, id, DONE);
+                }
+                dirty = true;
+            }
+            row = following;
+        }
+        // Buckets are LIFO lists; fire in scheduling order
+        Collections.reverse(batch);
+        return batch;
+    }
+    
+    private void record(long tick, long orderId, long due) {
+        if (journalFile == null) {
+            return;
+        }
+        if (pending.position() == 0) {
+            pending.position(ENTRY_HEADER);
+            pending.putLong(tick);
+        }
+        if (pending.remaining() < FIRED_BYTES) {
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        pending.putLong(orderId).putLong(due);
+    }
+    
+    // Caller holds the monitor; forces the tick's entry to the journal
+    private void journal() throws IOException {
+        if (pending.position() == 0) {
+            return;
+        }
+        pending.putInt(0, pending.position() - Integer.BYTES).put(Integer.BYTES, TICK_FIRED);
+        pending.flip();
+        try {
+            append(pending);
+        } finally {
+            pending.clear();
+        }
+    }
+    
+    private void journalScheduled(int row) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(ORDER_SCHEDULED);
+        out.writeLong(orderId(row));
+        out.writeByte(types[row]);
+        out.writeUTF(ids.get(sources[row]));
+        out.writeUTF(targets[row] == NONE ? "" : ids.get(targets[row]));
+        out.writeLong(amounts[row]);
+        out.writeLong(dueTicks[row]);
+        out.writeLong(periodTicks[row]);
+        ByteBuffer entry = ByteBuffer.wrap(bytes.toByteArray());
+        append(entry.putInt(0, entry.remaining() - Integer.BYTES));
+    }
+    
+    // Caller holds the monitor; appends one entry and forces it
+    private void append(ByteBuffer entry) throws IOException {
+        if (journal == null) {
+            journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            journal.position(journal.size());
+        }
+        journalBytes += entry.remaining();
+        while (entry.hasRemaining()) {
+            journal.write(entry);
+        }
+        journal.force(false);
+    }
+    
+    private void replaceAll(int row) {
+        while (row != NONE) {
+            int following = next[row];
+            if (types[row] == CANCELLED) {
+                free(row);
+            } else {
+                place(row);
+            }
+            row = following;
+        }
+    }
+    
+    // Puts a row in the lowest level whose span, counted from the first
+    // tick not yet fired, covers its due tick
+    private void place(int row) {
+        long base = currentTick + 1;
+        long due = Math.max(dueTicks[row], base);
+        long delta = due - base;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (SLOT_BITS * (level + 1))) {
+                int bucket = (int) (due >>> (SLOT_BITS * level)) & SLOT_MASK;
+                next[row] = buckets[level][bucket];
+                buckets[level][bucket] = row;
+                return;
+            }
+        }
+        next[row] = overflow;
+        overflow = row;
+    }
+    
+    private TransactionProcessor.Result execute(Fired order) {
+        Account account = accounts.apply(order.accountId);
+        Money amount = Money.ofMinorUnits(order.amountMinorUnits);
+        switch (order.type) {
+            case TransactionCodec.DEPOSIT:
+                return processor.deposit(account, amount);
+            case TransactionCodec.WITHDRAW:
+                return processor.withdraw(account, amount);
+            default:
+                return processor.transfer(account, accounts.apply(order.targetId), amount);
+        }
+    }
+    
+    // ========== ROWS ==========
+    
+    private int allocate() {
+        if (freeRow != NONE) {
+            int row = freeRow;
+            freeRow = next[row];
+            return row;
+        }
+        if (rows == types.length) {
+            grow(rows * 2);
+        }
+        return rows++;
+    }
+    
+    private void free(int row) {
+        types[row] = CANCELLED;
+        generations[row]++;
+        next[row] = freeRow;
+        freeRow = row;
+    }
+    
+    private void grow(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        sources = Arrays.copyOf(sources, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        dueTicks = Arrays.copyOf(dueTicks, capacity);
+        periodTicks = Arrays.copyOf(periodTicks, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+        next = Arrays.copyOf(next, capacity);
+    }
+    
+    private int intern(String id) {
+        Integer index = idIndex.get(id);
+        if (index == null) {
+            index = ids.size();
+            ids.add(id);
+            idIndex.put(id, index);
+        }
+        return index;
+    }
+    
+    private long orderId(int row) {
+        return ((long) generations[row] << 32) | row;
+    }
+    
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+    
+    // ========== PERSISTENCE ==========
+    
+    /**
+     * Writes the wheel to the state file if it changed since the last
+     * checkpoint, and starts the journal over.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(channel)));
+            out.writeLong(tickMillis);
+            out.writeLong(currentTick);
+            out.writeInt(ids.size());
+            for (String id : ids) {
+                out.writeUTF(id);
+            }
+            // Generations of every row, so ids issued before a restart
+            // never match a later order
+            out.writeInt(rows);
+            for (int row = 0; row < rows; row++) {
+                out.writeInt(generations[row]);
+            }
+            out.writeInt(live);
+            for (int row = 0; row < rows; row++) {
+                if (types[row] == CANCELLED) {
+                    continue;
+                }
+                out.writeInt(row);
+                out.writeByte(types[row]);
+                out.writeInt(sources[row]);
+                out.writeInt(targets[row]);
+                out.writeLong(amounts[row]);
+                out.writeLong(dueTicks[row]);
+                out.writeLong(periodTicks[row]);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // Everything journaled is in the state file now. Should the
+        // truncation be lost, replaying the old entries again is harmless
+        if (journal != null) {
+            journal.truncate(0);
+            journal.force(true);
+        } else {
+            Files.deleteIfExists(journalFile);
+        }
+        journalBytes = 0;
+        lastCheckpointMillis = clock.getAsLong();
+        dirty = false;
+    }
+    
+    private synchronized void restore() throws IOException {
+        if (Files.exists(stateFile)) {
+            readCheckpoint();
+        }
+        replayJournal();
+        for (int row = 0; row < rows; row++) {
+            if (types[row] != CANCELLED) {
+                place(row);
+            }
+        }
+        // Unused rows go back on the free list
+        for (int row = rows - 1; row >= 0; row--) {
+            if (types[row] == CANCELLED) {
+                next[row] = freeRow;
+                freeRow = row;
+            }
+        }
+    }
+    
+    private void readCheckpoint() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile)))) {
+            if (in.readLong() != tickMillis) {
+                throw new IOException("State file was written with a different tick size");
+            }
+            currentTick = in.readLong();
+            int idCount = in.readInt();
+            for (int i = 0; i < idCount; i++) {
+                intern(in.readUTF());
+            }
+            int rowCount = in.readInt();
+            if (rowCount > types.length) {
+                grow(rowCount);
+            }
+            rows = rowCount;
+            for (int row = 0; row < rows; row++) {
+                generations[row] = in.readInt();
+            }
+            Arrays.fill(types, 0, rows, CANCELLED);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int row = in.readInt();
+                types[row] = in.readByte();
+                sources[row] = in.readInt();
+                targets[row] = in.readInt();
+                amounts[row] = in.readLong();
+                dueTicks[row] = in.readLong();
+                periodTicks[row] = in.readLong();
+            }
+            live = count;
+        }
+    }
+    
+    // Applies the changes journaled after the checkpoint. A tick whose
+    // entry is torn was cut short by a crash before any of it was
+    // executed, so it is left to fire again. Entries already folded into
+    // the checkpoint change nothing
+    private void replayJournal() throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(journalFile);
+        ByteBuffer entries = ByteBuffer.wrap(bytes);
+        while (entries.remaining() >= ENTRY_HEADER) {
+            int length = entries.getInt();
+            if (length < 1 || length > entries.remaining()) {
+                break;
+            }
+            int end = entries.position() + length;
+            byte kind = entries.get();
+            if (kind == TICK_FIRED) {
+                replayTick(entries, end);
+            } else if (kind == ORDER_SCHEDULED) {
+                replayScheduled(new DataInputStream(
+                        new ByteArrayInputStream(bytes, entries.position(), end - entries.position())));
+            } else if (kind == ORDER_CANCELLED) {
+                int row = liveRow(entries.getLong());
+                if (row != NONE) {
+                    types[row] = CANCELLED;
+                    generations[row]++;
+                    live--;
+                }
+            } else {
+                break;
+            }
+            entries.position(end);
+        }
+        dirty = true;
+    }
+    
+    private void replayTick(ByteBuffer entries, int end) {
+        long tick = entries.getLong();
+        while (entries.position() < end) {
+            int row = liveRow(entries.getLong());
+            long due = entries.getLong();
+            if (row == NONE) {
+                continue;
+            }
+            if (due == DONE) {
+                types[row] = CANCELLED;
+                generations[row]++;
+                live--;
+            } else {
+                dueTicks[row] = Math.max(dueTicks[row], due);
+            }
+        }
+        currentTick = Math.max(currentTick, tick);
+    }
+    
+    private void replayScheduled(DataInputStream in) throws IOException {
+        long orderId = in.readLong();
+        int row = (int) orderId;
+        int generation = (int) (orderId >>> 32);
+        // A row already live, or since reused, was scheduled before the
+        // checkpoint
+        if (row < 0 || (row < rows && (types[row] != CANCELLED || generations[row] != generation))) {
+            return;
+        }
+        if (row >= types.length) {
+            grow(Math.max(types.length * 2, row + 1));
+        }
+        rows = Math.max(rows, row + 1);
+        generations[row] = generation;
+        types[row] = in.readByte();
+        sources[row] = intern(in.readUTF());
+        String target = in.readUTF();
+        targets[row] = target.isEmpty() ? NONE : intern(target);
+        amounts[row] = in.readLong();
+        dueTicks[row] = in.readLong();
+        periodTicks[row] = in.readLong();
+        live++;
+    }
+    
+    private int liveRow(long orderId) {
+        int row = (int) orderId;
+        if (row < 0 || row >= rows || generations[row] != (int) (orderId >>> 32) || types[row] == CANCELLED) {
+            return NONE;
+        }
+        return row;
+    }
+}
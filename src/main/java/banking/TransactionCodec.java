@@ -0,0 +1,334 @@
+package banking;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Function;
+
+/**
+ * Fixed-layout binary codec for transaction commands and results.
+ * 
+ * Command frame (64 bytes, little-endian):
+ *   0  type            byte   DEPOSIT / WITHDRAW / TRANSFER / STATUS_CHANGE / OPEN
+ *   1  statusOp        byte   VERIFY / SUSPEND / REINSTATE / CLOSE (status change);
+ *                             initial status of an OPEN, 0 for Unverified
+ *   2  accountIdLength byte
+ *   3  targetIdLength  byte
+ *   8  correlationId   long
+ *   16 amount          long   minor units (cents)
+ *   24 accountId       20 bytes ASCII
+ *   44 targetId        20 bytes ASCII (transfer only)
+ * 
+ * Result frame (24 bytes, little-endian):
+ *   0  type            byte   type of the command answered
+ *   1  code            byte   TransactionProcessor.Result code
+ *   2  success         byte
+ *   8  correlationId   long
+ *   16 amount          long   minor units echoed from the command
+ * 
+ * Encoders take amounts as Money or as doubles. A double amount is
+ * converted like Account converts it: NaN, infinities and amounts too
+ * large for a long are encoded as 0, which the processor rejects, so a
+ * bad amount never turns into Long.MAX_VALUE on the wire. An opening
+ * balance that is not finite is rejected outright.
+ * 
+ * Encoders write at the buffer's position and advance it. Views are
+ * flyweights: wrap() them over any heap or direct buffer and read fields
+ * in place, so decoding allocates nothing until a String is asked for.
+ * Frames are little-endian whatever the buffer's byte order, which is
+ * left as it was. A frame whose id length is outside 0..MAX_ID_LENGTH
+ * is rejected with an IllegalArgumentException when the id is read.
+ */
+public final class TransactionCodec {
+    
+    // Command types
+    public static final byte DEPOSIT = 1;
+    public static final byte WITHDRAW = 2;
+    public static final byte TRANSFER = 3;
+    public static final byte STATUS_CHANGE = 4;
+    /** Account registered with an opening balance; logged, not applied. */
+    public static final byte OPEN = 5;
+    
+    // Status operations
+    public static final byte VERIFY = 1;
+    public static final byte SUSPEND = 2;
+    public static final byte REINSTATE = 3;
+    public static final byte CLOSE = 4;
+    
+    public static final int COMMAND_LENGTH = 64;
+    public static final int RESULT_LENGTH = 24;
+    public static final int MAX_ID_LENGTH = 20;
+    
+    static final int TYPE_OFFSET = 0;
+    static final int STATUS_OP_OFFSET = 1;
+    static final int ACCOUNT_ID_LENGTH_OFFSET = 2;
+    static final int TARGET_ID_LENGTH_OFFSET = 3;
+    static final int CORRELATION_OFFSET = 8;
+    static final int AMOUNT_OFFSET = 16;
+    static final int ACCOUNT_ID_OFFSET = 24;
+    static final int TARGET_ID_OFFSET = 44;
+    
+    static final int CODE_OFFSET = 1;
+    static final int SUCCESS_OFFSET = 2;
+    
+    private TransactionCodec() {
+    }
+    
+    // ========== ENCODING ==========
+    
+    public static void encodeDeposit(ByteBuffer buffer, long correlationId, String accountId, double amount) {
+        encodeCommand(buffer, DEPOSIT, (byte) 0, correlationId, accountId, null, Money.amountMinorUnits(amount));
+    }
+    
+    public static void encodeDeposit(ByteBuffer buffer, long correlationId, String accountId, Money amount) {
+        encodeCommand(buffer, DEPOSIT, (byte) 0, correlationId, accountId, null, amount.getMinorUnits());
+    }
+    
+    public static void encodeWithdraw(ByteBuffer buffer, long correlationId, String accountId, double amount) {
+        encodeCommand(buffer, WITHDRAW, (byte) 0, correlationId, accountId, null, Money.amountMinorUnits(amount));
+    }
+    
+    public static void encodeWithdraw(ByteBuffer buffer, long correlationId, String accountId, Money amount) {
+        encodeCommand(buffer, WITHDRAW, (byte) 0, correlationId, accountId, null, amount.getMinorUnits());
+    }
+    
+    public static void encodeTransfer(ByteBuffer buffer, long correlationId, String fromId, String toId, double amount) {
+        encodeCommand(buffer, TRANSFER, (byte) 0, correlationId, fromId, toId, Money.amountMinorUnits(amount));
+    }
+    
+    public static void encodeTransfer(ByteBuffer buffer, long correlationId, String fromId, String toId, Money amount) {
+        encodeCommand(buffer, TRANSFER, (byte) 0, correlationId, fromId, toId, amount.getMinorUnits());
+    }
+    
+    public static void encodeStatusChange(ByteBuffer buffer, long correlationId, String accountId, byte statusOp) {
+        encodeCommand(buffer, STATUS_CHANGE, statusOp, correlationId, accountId, null, 0L);
+    }
+    
+    public static void encodeOpen(ByteBuffer buffer, long correlationId, String accountId, double balance,
+                                  byte statusOp) {
+        if (!Double.isFinite(balance)) {
+            throw new IllegalArgumentException("Opening balance is not finite: " + balance);
+        }
+        encodeCommand(buffer, OPEN, statusOp, correlationId, accountId, null, Money.toMinorUnits(balance));
+    }
+    
+    public static void encodeOpen(ByteBuffer buffer, long correlationId, String accountId, Money balance,
+                                  byte statusOp) {
+        encodeCommand(buffer, OPEN, statusOp, correlationId, accountId, null, balance.getMinorUnits());
+    }
+    
+    public static void encodeResult(ByteBuffer buffer, byte type, long correlationId,
+                                    double amount, TransactionProcessor.Result result) {
+        writeResult(buffer, type, correlationId, Money.amountMinorUnits(amount), result);
+    }
+    
+    public static void encodeResult(ByteBuffer buffer, byte type, long correlationId,
+                                    Money amount, TransactionProcessor.Result result) {
+        writeResult(buffer, type, correlationId, amount.getMinorUnits(), result);
+    }
+    
+    private static void writeResult(ByteBuffer buffer, byte type, long correlationId,
+                                    long amountMinorUnits, TransactionProcessor.Result result) {
+        int base = buffer.position();
+        buffer.put(base + TYPE_OFFSET, type);
+        buffer.put(base + CODE_OFFSET, (byte) result.getCode());
+        buffer.put(base + SUCCESS_OFFSET, (byte) (result.isSuccess() ? 1 : 0));
+        putLong(buffer, base + CORRELATION_OFFSET, correlationId);
+        putLong(buffer, base + AMOUNT_OFFSET, amountMinorUnits);
+        buffer.position(base + RESULT_LENGTH);
+    }
+    
+    private static void encodeCommand(ByteBuffer buffer, byte type, byte statusOp, long correlationId,
+                                      String accountId, String targetId, long amountMinorUnits) {
+        int base = buffer.position();
+        buffer.put(base + TYPE_OFFSET, type);
+        buffer.put(base + STATUS_OP_OFFSET, statusOp);
+        buffer.put(base + ACCOUNT_ID_LENGTH_OFFSET, putId(buffer, base + ACCOUNT_ID_OFFSET, accountId));
+        buffer.put(base + TARGET_ID_LENGTH_OFFSET, putId(buffer, base + TARGET_ID_OFFSET, targetId));
+        putLong(buffer, base + CORRELATION_OFFSET, correlationId);
+        putLong(buffer, base + AMOUNT_OFFSET, amountMinorUnits);
+        buffer.position(base + COMMAND_LENGTH);
+    }
+    
+    private static byte putId(ByteBuffer buffer, int offset, String id) {
+        int length = id == null ? 0 : id.length();
+        if (length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Account id longer than " + MAX_ID_LENGTH + ": " + id);
+        }
+        for (int i = 0; i < MAX_ID_LENGTH; i++) {
+            char c = i < length ? id.charAt(i) : 0;
+            if (c > 0x7F) {
+                throw new IllegalArgumentException("Account id is not ASCII: " + id);
+            }
+            buffer.put(offset + i, (byte) c);
+        }
+        return (byte) length;
+    }
+    
+    // ========== DISPATCH ==========
+    
+    /**
+     * Applies a decoded command to the processor. Account ids are resolved
+     * through the lookup; a missing account is passed on as null so the
+     * processor reports it the usual way.
+     */
+    public static TransactionProcessor.Result apply(CommandView command, TransactionProcessor processor,
+                                                    Function<String, Account> lookup) {
+        Account account = lookup.apply(command.accountId());
+        Money amount = Money.ofMinorUnits(command.amountMinorUnits());
+        switch (command.type()) {
+            case DEPOSIT:
+                return processor.deposit(account, amount);
+            case WITHDRAW:
+                return processor.withdraw(account, amount);
+            case TRANSFER:
+                return processor.transfer(account, lookup.apply(command.targetId()), amount);
+            case STATUS_CHANGE:
+                return changeStatus(processor.getAccountService(), account, command.statusOp());
+            case OPEN:
+                throw new IllegalArgumentException("Account openings are not processor commands");
+            default:
+                throw new IllegalArgumentException("Unknown command type: " + command.type());
+        }
+    }
+    
+    private static TransactionProcessor.Result changeStatus(AccountService service, Account account, byte statusOp) {
+        if (account == null) {
+            return new TransactionProcessor.Result(false, "Account is null", TransactionProcessor.Result.ACCOUNT_NULL);
+        }
+        boolean success;
+        switch (statusOp) {
+            case VERIFY: success = service.verify(account); break;
+            case SUSPEND: success = service.suspend(account); break;
+            case REINSTATE: success = service.reinstate(account); break;
+            case CLOSE: success = service.close(account); break;
+            default: throw new IllegalArgumentException("Unknown status operation: " + statusOp);
+        }
+        return success
+                ? new TransactionProcessor.Result(true, "Status changed", TransactionProcessor.Result.OK)
+                : new TransactionProcessor.Result(false, "Status change failed",
+                        TransactionProcessor.Result.STATUS_CHANGE_FAILED);
+    }
+    
+    // ========== FLYWEIGHT VIEWS ==========
+    
+    /**
+     * Flyweight reader over an encoded command frame.
+     */
+    public static final class CommandView {
+        private ByteBuffer buffer;
+        private int offset;
+        
+        public CommandView wrap(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+            return this;
+        }
+        
+        public byte type() { return buffer.get(offset + TYPE_OFFSET); }
+        public byte statusOp() { return buffer.get(offset + STATUS_OP_OFFSET); }
+        public long correlationId() { return getLong(buffer, offset + CORRELATION_OFFSET); }
+        public long amountMinorUnits() { return getLong(buffer, offset + AMOUNT_OFFSET); }
+        public double amount() { return Money.toDouble(amountMinorUnits()); }
+        
+        public String accountId() {
+            return getId(buffer, offset + ACCOUNT_ID_OFFSET, buffer.get(offset + ACCOUNT_ID_LENGTH_OFFSET));
+        }
+        
+        public String targetId() {
+            return getId(buffer, offset + TARGET_ID_OFFSET, buffer.get(offset + TARGET_ID_LENGTH_OFFSET));
+        }
+        
+        /**
+         * Compares the account id in place, without materializing a String.
+         */
+        public boolean accountIdEquals(String id) {
+            return idEquals(buffer, offset + ACCOUNT_ID_OFFSET, buffer.get(offset + ACCOUNT_ID_LENGTH_OFFSET), id);
+        }
+    }
+    
+    /**
+     * Flyweight reader over an encoded result frame.
+     */
+    public static final class ResultView {
+        private ByteBuffer buffer;
+        private int offset;
+        
+        public ResultView wrap(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+            return this;
+        }
+        
+        public byte type() { return buffer.get(offset + TYPE_OFFSET); }
+        public int code() { return buffer.get(offset + CODE_OFFSET); }
+        public boolean isSuccess() { return buffer.get(offset + SUCCESS_OFFSET) != 0; }
+        public long correlationId() { return getLong(buffer, offset + CORRELATION_OFFSET); }
+        public long amountMinorUnits() { return getLong(buffer, offset + AMOUNT_OFFSET); }
+        public double amount() { return Money.toDouble(amountMinorUnits()); }
+        
+        /**
+         * Rebuilds the processor's Result, including its message.
+         */
+        public TransactionProcessor.Result toResult() {
+            return new TransactionProcessor.Result(isSuccess(), message(type(), code(), amountMinorUnits()), code());
+        }
+    }
+    
+    static String message(byte type, int code, long amountMinorUnits) {
+        switch (code) {
+            case TransactionProcessor.Result.OK:
+                switch (type) {
+                    case DEPOSIT: return "Deposited $" + Money.format(amountMinorUnits);
+                    case WITHDRAW: return "Withdrew $" + Money.format(amountMinorUnits);
+                    case TRANSFER: return "Transferred $" + Money.format(amountMinorUnits);
+                    default: return "Status changed";
+                }
+            case TransactionProcessor.Result.ACCOUNT_NULL: return "Account is null";
+            case TransactionProcessor.Result.ACCOUNT_NOT_FOUND: return "Account not found";
+            case TransactionProcessor.Result.INSUFFICIENT_FUNDS: return "Insufficient funds";
+            case TransactionProcessor.Result.DEPOSIT_FAILED: return "Deposit failed";
+            case TransactionProcessor.Result.WITHDRAWAL_FAILED: return "Withdrawal failed";
+            case TransactionProcessor.Result.TRANSFER_FAILED: return "Transfer failed";
+            case TransactionProcessor.Result.STATUS_CHANGE_FAILED: return "Status change failed";
+            case TransactionProcessor.Result.VELOCITY_LIMIT_EXCEEDED: return "Velocity limit exceeded";
+            default: return "Failed";
+        }
+    }
+    
+    private static long getLong(ByteBuffer buffer, int index) {
+        long value = buffer.getLong(index);
+        return buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+    }
+    
+    private static void putLong(ByteBuffer buffer, int index, long value) {
+        buffer.putLong(index, buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : Long.reverseBytes(value));
+    }
+    
+    private static int checkIdLength(int length) {
+        if (length < 0 || length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Malformed frame: id length " + length);
+        }
+        return length;
+    }
+    
+    private static String getId(ByteBuffer buffer, int offset, int length) {
+        checkIdLength(length);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buffer.get(offset + i);
+        }
+        return new String(chars);
+    }
+    
+    private static boolean idEquals(ByteBuffer buffer, int offset, int length, String id) {
+        if (id == null || id.length() != checkIdLength(length)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != (byte) id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only in-memory journal of successful operations.
+ * 
+ * Attach it to a processor to record deposits, withdrawals, transfers
+ * and the status changes of the processor's AccountService. Entries are
+ * numbered densely from 0 in append order.
+ * 
+ * The processor reports an operation after releasing the account locks,
+ * so two operations racing on an account can be journaled in the other
+ * order from the one they were applied in. Replay does not depend on it:
+ * deposits, withdrawals and transfers are summed in cents without being
+ * re-validated, which gives the same balances in any order. Status
+ * changes are reported under the account's lock, so an account's status
+ * changes are always journaled in the order they were made.
+ */
+public class TransactionJournal implements TransactionListener {
+    
+    private final List<JournalEntry> entries = new ArrayList<>();
+    
+    /**
+     * Records every operation of the processor and its AccountService.
+     */
+    public TransactionJournal attach(TransactionProcessor processor) {
+        processor.addListener(this);
+        processor.getAccountService().addListener(this);
+        return this;
+    }
+    
+    @Override
+    public void onDeposit(Account account, double amount) {
+        append(TransactionCodec.DEPOSIT, account.getAccountId(), null, amount, null);
+    }
+    
+    @Override
+    public void onWithdraw(Account account, double amount) {
+        append(TransactionCodec.WITHDRAW, account.getAccountId(), null, amount, null);
+    }
+    
+    @Override
+    public void onTransfer(Account from, Account to, double amount) {
+        append(TransactionCodec.TRANSFER, from.getAccountId(), to.getAccountId(), amount, null);
+    }
+    
+    @Override
+    public void onStatusChange(Account account, String from, String to) {
+        append(TransactionCodec.STATUS_CHANGE, account.getAccountId(), null, 0, to);
+    }
+    
+    /**
+     * Appends an entry and returns it with its sequence number.
+     */
+    public JournalEntry append(byte type, String accountId, String targetId,
+                               double amount, String status) {
+        return append(type, accountId, targetId, Money.toMinorUnits(amount), status);
+    }
+    
+    /**
+     * Appends an entry with its amount in minor units.
+     */
+    public synchronized JournalEntry append(byte type, String accountId, String targetId,
+                                            long amountMinorUnits, String status) {
+        JournalEntry entry = new JournalEntry(entries.size(), type, accountId, targetId, amountMinorUnits, status);
+        entries.add(entry);
+        return entry;
+    }
+    
+    public synchronized JournalEntry get(long sequence) {
+        return entries.get((int) sequence);
+    }
+    
+    public synchronized long size() {
+        return entries.size();
+    }
+    
+    /**
+     * A copy of the entries in [from, to).
+     */
+    public synchronized List<JournalEntry> entries(long from, long to) {
+        return new ArrayList<>(entries.subList((int) from, (int) to));
+    }
+    
+    public synchronized List<JournalEntry> entries() {
+        return new ArrayList<>(entries);
+    }
+}
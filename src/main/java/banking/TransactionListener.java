@@ -0,0 +1,38 @@
+package banking;
+
+/**
+ * Observes successful operations of a TransactionProcessor, status
+ * changes made through an AccountService, accounts registered with an
+ * AccountRegistry, and accounts archived.
+ * 
+ * Callbacks run on the caller's thread, after the account has been
+ * updated, so implementations must be fast and thread-safe.
+ */
+public interface TransactionListener {
+    
+    default void onDeposit(Account account, double amount) {
+    }
+    
+    default void onWithdraw(Account account, double amount) {
+    }
+    
+    default void onTransfer(Account from, Account to, double amount) {
+    }
+    
+    default void onStatusChange(Account account, String from, String to) {
+    }
+    
+    /**
+     * Called once when an account is registered, before any other thread
+     * can look it up.
+     */
+    default void onAccountOpened(Account account) {
+    }
+    
+    /**
+     * Called on a TransactionProcessor's listeners once AccountArchiver
+     * has moved the account out of memory; drop any reference to it.
+     */
+    default void onAccountArchived(Account account) {
+    }
+}
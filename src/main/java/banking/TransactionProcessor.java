@@ -1,11 +1,21 @@
 package banking;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * Processes transactions and returns results.
  */
 public class TransactionProcessor {
     
     private final AccountService accountService;
+    private final List<TransactionListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile VelocityLimiter velocityLimiter;
+    private volatile ValidationRules validationRules = ValidationRules.DEFAULT;
+    private volatile FlightRecorder flightRecorder;
     
     public TransactionProcessor() {
         this.accountService = new AccountService();
@@ -16,61 +26,317 @@ public class TransactionProcessor {
     }
     
     public Result deposit(Account account, double amount) {
+        return depositMinorUnits(account, Money.amountMinorUnits(amount));
+    }
+    
+    public Result deposit(Account account, Money amount) {
+        return depositMinorUnits(account, amount.getMinorUnits());
+    }
+    
+    public Result withdraw(Account account, double amount) {
+        return withdrawMinorUnits(account, Money.amountMinorUnits(amount));
+    }
+    
+    public Result withdraw(Account account, Money amount) {
+        return withdrawMinorUnits(account, amount.getMinorUnits());
+    }
+    
+    public Result transfer(Account from, Account to, double amount) {
+        return transferMinorUnits(from, to, Money.amountMinorUnits(amount));
+    }
+    
+    public Result transfer(Account from, Account to, Money amount) {
+        return transferMinorUnits(from, to, amount.getMinorUnits());
+    }
+    
+    // Amounts below are in minor units. Each call still allocates its Result,
+    // plus the message string on success
+    
+    private Result depositMinorUnits(Account account, long amount) {
+        FlightRecorder recorder = flightRecorder;
+        if (recorder == null) {
+            return executeDeposit(account, amount);
+        }
+        long start = recorder.begin();
+        Result result = executeDeposit(account, amount);
+        recorder.end(start, TransactionCodec.DEPOSIT, (byte) 0, account, null, amount, result.getCode());
+        return result;
+    }
+    
+    private Result withdrawMinorUnits(Account account, long amount) {
+        FlightRecorder recorder = flightRecorder;
+        if (recorder == null) {
+            return executeWithdraw(account, amount);
+        }
+        long start = recorder.begin();
+        Result result = executeWithdraw(account, amount);
+        recorder.end(start, TransactionCodec.WITHDRAW, (byte) 0, account, null, amount, result.getCode());
+        return result;
+    }
+    
+    private Result transferMinorUnits(Account from, Account to, long amount) {
+        FlightRecorder recorder = flightRecorder;
+        if (recorder == null) {
+            return executeTransfer(from, to, amount);
+        }
+        long start = recorder.begin();
+        Result result = executeTransfer(from, to, amount);
+        recorder.end(start, TransactionCodec.TRANSFER, (byte) 0, from, to, amount, result.getCode());
+        return result;
+    }
+    
+    private Result executeDeposit(Account account, long amount) {
         if (account == null) {
-            return new Result(false, "Account is null");
+            return new Result(false, "Account is null", Result.ACCOUNT_NULL);
         }
-        boolean success = account.deposit(amount);
+        boolean success = account.depositMinorUnits(amount, validationRules);
         if (success) {
-            return new Result(true, "Deposited $" + amount);
+            double value = Money.toDouble(amount);
+            for (TransactionListener listener : listeners) {
+                listener.onDeposit(account, value);
+            }
+            return new Result(true, "Deposited $" + Money.format(amount), Result.OK);
         } else {
-            return new Result(false, "Deposit failed");
+            return new Result(false, "Deposit failed", Result.DEPOSIT_FAILED);
         }
     }
     
-    public Result withdraw(Account account, double amount) {
+    private Result executeWithdraw(Account account, long amount) {
         if (account == null) {
-            return new Result(false, "Account is null");
+            return new Result(false, "Account is null", Result.ACCOUNT_NULL);
+        }
+        // A non-positive amount is refused by the account and never counts as a debit
+        VelocityLimiter limiter = amount > 0 ? velocityLimiter : null;
+        long reservation = limiter == null ? VelocityLimiter.NO_RESERVATION
+                : limiter.reserveMinorUnits(account, amount);
+        if (limiter != null && reservation == VelocityLimiter.NO_RESERVATION) {
+            return new Result(false, "Velocity limit exceeded", Result.VELOCITY_LIMIT_EXCEEDED);
         }
-        if (amount > account.getBalance()) {
-            return new Result(false, "Insufficient funds");
+        // The account checks the balance under its lock, so no pre-check here
+        int code = account.withdrawMinorUnits(amount, validationRules);
+        boolean success = code == Result.OK;
+        if (!success && limiter != null) {
+            limiter.releaseMinorUnits(account, reservation, amount);
+        }
+        if (code == Result.INSUFFICIENT_FUNDS) {
+            return new Result(false, "Insufficient funds", Result.INSUFFICIENT_FUNDS);
         }
-        boolean success = account.withdraw(amount);
         if (success) {
-            return new Result(true, "Withdrew $" + amount);
+            double value = Money.toDouble(amount);
+            for (TransactionListener listener : listeners) {
+                listener.onWithdraw(account, value);
+            }
+            return new Result(true, "Withdrew $" + Money.format(amount), Result.OK);
         } else {
-            return new Result(false, "Withdrawal failed");
+            return new Result(false, "Withdrawal failed", Result.WITHDRAWAL_FAILED);
         }
     }
     
-    public Result transfer(Account from, Account to, double amount) {
+    private Result executeTransfer(Account from, Account to, long amount) {
         if (from == null || to == null) {
-            return new Result(false, "Account not found");
+            return new Result(false, "Account not found", Result.ACCOUNT_NOT_FOUND);
+        }
+        // A non-positive amount is refused by the account and never counts as a debit
+        VelocityLimiter limiter = amount > 0 ? velocityLimiter : null;
+        long reservation = limiter == null ? VelocityLimiter.NO_RESERVATION
+                : limiter.reserveMinorUnits(from, amount);
+        if (limiter != null && reservation == VelocityLimiter.NO_RESERVATION) {
+            return new Result(false, "Velocity limit exceeded", Result.VELOCITY_LIMIT_EXCEEDED);
+        }
+        boolean success = from.transferMinorUnits(to, amount, validationRules);
+        if (!success && limiter != null) {
+            limiter.releaseMinorUnits(from, reservation, amount);
         }
-        boolean success = from.transfer(to, amount);
         if (success) {
-            return new Result(true, "Transferred $" + amount);
+            double value = Money.toDouble(amount);
+            for (TransactionListener listener : listeners) {
+                listener.onTransfer(from, to, value);
+            }
+            return new Result(true, "Transferred $" + Money.format(amount), Result.OK);
         } else {
-            return new Result(false, "Transfer failed");
+            return new Result(false, "Transfer failed", Result.TRANSFER_FAILED);
         }
     }
     
+    /**
+     * Executes a one-to-many transfer (e.g. payroll): the source is
+     * checked and debited once, and all accepted credits are applied
+     * atomically. See BulkTransfer.
+     */
+    public BulkTransfer.Result transfer(BulkTransfer batch) {
+        FlightRecorder recorder = flightRecorder;
+        if (recorder == null) {
+            return executeBulkTransfer(batch);
+        }
+        long start = recorder.begin();
+        BulkTransfer.Result result = executeBulkTransfer(batch);
+        // Recorded as one transfer of the batch total, with no single target
+        recorder.end(start, TransactionCodec.TRANSFER, (byte) 0, batch.getSource(), null,
+                batch.getTotal().getMinorUnits(), result.getCode());
+        return result;
+    }
+    
+    private BulkTransfer.Result executeBulkTransfer(BulkTransfer batch) {
+        Account from = batch.getSource();
+        if (from == null) {
+            return new BulkTransfer.Result(Result.ACCOUNT_NOT_FOUND, "Account not found", 0,
+                    List.of(), List.of());
+        }
+        List<BulkTransfer.Credit> credits = batch.getCredits();
+        long requested = batch.getTotal().getMinorUnits();
+        // The batch counts as a single debit of its total
+        VelocityLimiter limiter = requested > 0 ? velocityLimiter : null;
+        long reservation = limiter == null ? VelocityLimiter.NO_RESERVATION
+                : limiter.reserveMinorUnits(from, requested);
+        if (limiter != null && reservation == VelocityLimiter.NO_RESERVATION) {
+            return new BulkTransfer.Result(Result.VELOCITY_LIMIT_EXCEEDED, "Velocity limit exceeded", 0,
+                    List.of(), List.of());
+        }
+        List<BulkTransfer.Rejection> rejected = new ArrayList<>();
+        int code = from.transferToManyMinorUnits(credits, batch.isStrict(), validationRules, rejected);
+        if (code != Result.OK) {
+            if (limiter != null) {
+                limiter.releaseMinorUnits(from, reservation, requested);
+            }
+            String message = code == Result.INSUFFICIENT_FUNDS ? "Insufficient funds" : "Bulk transfer failed";
+            return new BulkTransfer.Result(code, message, 0, List.of(), rejected);
+        }
+        
+        Set<BulkTransfer.Credit> skipped = new HashSet<>();
+        for (BulkTransfer.Rejection rejection : rejected) {
+            skipped.add(rejection.getCredit());
+        }
+        List<BulkTransfer.Credit> applied = new ArrayList<>(credits.size() - skipped.size());
+        long debited = 0;
+        for (BulkTransfer.Credit credit : credits) {
+            if (!skipped.contains(credit)) {
+                applied.add(credit);
+                debited += credit.getAmountMinorUnits();
+            }
+        }
+        if (limiter != null && debited < requested) {
+            // Keep the debit, counting only what was actually debited
+            limiter.shrinkMinorUnits(from, reservation, requested, debited);
+        }
+        for (BulkTransfer.Credit credit : applied) {
+            transferred(from, credit.getTarget(), credit.getAmountMinorUnits());
+        }
+        return new BulkTransfer.Result(Result.OK, "Transferred $" + Money.format(debited) + " to "
+                + applied.size() + " accounts", debited, applied, rejected);
+    }
+    
     public AccountService getAccountService() {
         return accountService;
     }
     
+    public void addListener(TransactionListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(TransactionListener listener) {
+        listeners.remove(listener);
+    }
+    
+    // Report balance changes applied outside deposit(), withdraw() and
+    // transfer(), e.g. by EndOfDayBatch and NettingEngine
+    void deposited(Account account, long amount) {
+        double value = Money.toDouble(amount);
+        for (TransactionListener listener : listeners) {
+            listener.onDeposit(account, value);
+        }
+    }
+    
+    void withdrew(Account account, long amount) {
+        double value = Money.toDouble(amount);
+        for (TransactionListener listener : listeners) {
+            listener.onWithdraw(account, value);
+        }
+    }
+    
+    void transferred(Account from, Account to, long amount) {
+        double value = Money.toDouble(amount);
+        for (TransactionListener listener : listeners) {
+            listener.onTransfer(from, to, value);
+        }
+    }
+    
+    // Let go of an account AccountArchiver moved out of memory
+    void archived(Account account) {
+        VelocityLimiter limiter = velocityLimiter;
+        if (limiter != null) {
+            limiter.remove(account);
+        }
+        for (TransactionListener listener : listeners) {
+            listener.onAccountArchived(account);
+        }
+    }
+    
+    /**
+     * Records the timing and outcome of deposits, withdrawals, transfers
+     * and the AccountService's status changes; null stops recording.
+     */
+    public void setFlightRecorder(FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+        accountService.setFlightRecorder(flightRecorder);
+    }
+    
+    public FlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+    
+    /**
+     * Limits applied to withdrawals and to the source of transfers;
+     * null disables them.
+     */
+    public void setVelocityLimiter(VelocityLimiter velocityLimiter) {
+        this.velocityLimiter = velocityLimiter;
+    }
+    
+    /**
+     * Rules checked by deposits, withdrawals and transfers; defaults to
+     * ValidationRules.DEFAULT.
+     */
+    public void setValidationRules(ValidationRules validationRules) {
+        this.validationRules = validationRules;
+    }
+    
+    public ValidationRules getValidationRules() {
+        return validationRules;
+    }
+    
     /**
      * Simple result class.
      */
     public static class Result {
+        
+        // Result codes (stable: used by the binary wire format)
+        public static final int OK = 0;
+        public static final int FAILED = 1;
+        public static final int ACCOUNT_NULL = 2;
+        public static final int ACCOUNT_NOT_FOUND = 3;
+        public static final int INSUFFICIENT_FUNDS = 4;
+        public static final int DEPOSIT_FAILED = 5;
+        public static final int WITHDRAWAL_FAILED = 6;
+        public static final int TRANSFER_FAILED = 7;
+        public static final int STATUS_CHANGE_FAILED = 8;
+        public static final int VELOCITY_LIMIT_EXCEEDED = 9;
+        
         private final boolean success;
         private final String message;
+        private final int code;
         
         public Result(boolean success, String message) {
+            this(success, message, success ? OK : FAILED);
+        }
+        
+        public Result(boolean success, String message, int code) {
             this.success = success;
             this.message = message;
+            this.code = code;
         }
         
         public boolean isSuccess() { return success; }
         public String getMessage() { return message; }
+        public int getCode() { return code; }
     }
 }
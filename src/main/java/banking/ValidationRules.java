@@ -0,0 +1,256 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Validation rules for deposits, withdrawals and transfers, compiled
+ * into a decision table.
+ * 
+ * Rules are declared per operation, optionally per status: which
+ * statuses may perform it, amount bounds, and custom predicates. build()
+ * folds them into one cell per (operation, status), holding a flag, an
+ * amount range and the custom predicates (usually none), so a check is
+ * a status lookup and two comparisons however many rules were declared.
+ * 
+ * Account.setStatus() takes any string, so statuses other than the four
+ * Account constants share one more column. Rules declared for an
+ * operation as a whole (amount bounds, predicates, allowOnly()) apply
+ * to it; deny() names known statuses only and leaves it allowed. Under
+ * DEFAULT such an account may deposit, withdraw and receive transfers,
+ * but not send them, as before the table existed.
+ * 
+ * The balance itself is checked by Account under its lock, not here.
+ */
+public final class ValidationRules {
+    
+    public enum Operation {
+        DEPOSIT,
+        WITHDRAW,
+        /** The source account of a transfer. */
+        TRANSFER_OUT,
+        /** The target account of a transfer. */
+        TRANSFER_IN
+    }
+    
+    /**
+     * A custom predicate; amounts are in minor units.
+     */
+    @FunctionalInterface
+    public interface Rule {
+        boolean permits(Account account, long amount);
+    }
+    
+    static final String[] STATUSES = {
+        Account.UNVERIFIED, Account.VERIFIED, Account.SUSPENDED, Account.CLOSED
+    };
+    
+    // Column of every status not in STATUSES
+    static final int OTHER = STATUSES.length;
+    private static final int COLUMNS = STATUSES.length + 1;
+    
+    private static final Rule[] NO_RULES = new Rule[0];
+    
+    /**
+     * The bank's standing rules:
+     *   deposit:      any status but CLOSED, amount > 0
+     *   withdraw:     not CLOSED or SUSPENDED, amount > 0
+     *   transfer out: VERIFIED only, amount > 0
+     *   transfer in:  any status but CLOSED
+     */
+    public static final ValidationRules DEFAULT = builder()
+            .deny(Operation.DEPOSIT, Account.CLOSED)
+            .minAmount(Operation.DEPOSIT, Money.ofMinorUnits(1))
+            .deny(Operation.WITHDRAW, Account.CLOSED, Account.SUSPENDED)
+            .minAmount(Operation.WITHDRAW, Money.ofMinorUnits(1))
+            .allowOnly(Operation.TRANSFER_OUT, Account.VERIFIED)
+            .minAmount(Operation.TRANSFER_OUT, Money.ofMinorUnits(1))
+            .deny(Operation.TRANSFER_IN, Account.CLOSED)
+            .build();
+    
+    /**
+     * One compiled (operation, status) decision.
+     */
+    private static final class Cell {
+        final boolean allowed;
+        final long minAmount;
+        final long maxAmount;
+        final Rule[] rules;
+        
+        Cell(boolean allowed, long minAmount, long maxAmount, Rule[] rules) {
+            this.allowed = allowed;
+            this.minAmount = minAmount;
+            this.maxAmount = maxAmount;
+            this.rules = rules;
+        }
+    }
+    
+    // [operation][status index], OTHER for any other status
+    private final Cell[][] table;
+    
+    private ValidationRules(Cell[][] table) {
+        this.table = table;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Whether the account, in the given status, may perform the operation
+     * for the amount (in minor units).
+     */
+    public boolean permits(Operation operation, Account account, String status, long amount) {
+        Cell cell = table[operation.ordinal()][statusIndex(status)];
+        if (!cell.allowed || amount < cell.minAmount || amount > cell.maxAmount) {
+            return false;
+        }
+        for (Rule rule : cell.rules) {
+            if (!rule.permits(account, amount)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Status values are normally the Account constants, so identity hits
+    static int statusIndex(String status) {
+        if (status == null) {
+            return OTHER;
+        }
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i] == status) {
+                return i;
+            }
+        }
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equals(status)) {
+                return i;
+            }
+        }
+        return OTHER;
+    }
+    
+    /**
+     * Collects rules; every operation starts out allowed for every status
+     * with no amount bounds. Statuses are named by the Account constants.
+     */
+    public static final class Builder {
+        private final boolean[][] allowed = new boolean[Operation.values().length][COLUMNS];
+        private final long[][] minAmounts = new long[Operation.values().length][COLUMNS];
+        private final long[][] maxAmounts = new long[Operation.values().length][COLUMNS];
+        private final List<List<List<Rule>>> rules = new ArrayList<>();
+        
+        private Builder() {
+            for (int op = 0; op < allowed.length; op++) {
+                Arrays.fill(allowed[op], true);
+                Arrays.fill(minAmounts[op], Long.MIN_VALUE);
+                Arrays.fill(maxAmounts[op], Long.MAX_VALUE);
+                List<List<Rule>> perStatus = new ArrayList<>();
+                for (int s = 0; s < COLUMNS; s++) {
+                    perStatus.add(new ArrayList<>());
+                }
+                rules.add(perStatus);
+            }
+        }
+        
+        public Builder deny(Operation operation, String... statuses) {
+            for (String status : statuses) {
+                allowed[operation.ordinal()][index(status)] = false;
+            }
+            return this;
+        }
+        
+        public Builder allowOnly(Operation operation, String... statuses) {
+            Arrays.fill(allowed[operation.ordinal()], false);
+            for (String status : statuses) {
+                allowed[operation.ordinal()][index(status)] = true;
+            }
+            return this;
+        }
+        
+        public Builder minAmount(Operation operation, Money min) {
+            for (int s = 0; s < COLUMNS; s++) {
+                raiseMin(operation, s, min);
+            }
+            return this;
+        }
+        
+        public Builder minAmount(Operation operation, String status, Money min) {
+            raiseMin(operation, index(status), min);
+            return this;
+        }
+        
+        public Builder maxAmount(Operation operation, Money max) {
+            for (int s = 0; s < COLUMNS; s++) {
+                lowerMax(operation, s, max);
+            }
+            return this;
+        }
+        
+        public Builder maxAmount(Operation operation, String status, Money max) {
+            lowerMax(operation, index(status), max);
+            return this;
+        }
+        
+        public Builder require(Operation operation, Rule rule) {
+            for (int s = 0; s < COLUMNS; s++) {
+                rules.get(operation.ordinal()).get(s).add(rule);
+            }
+            return this;
+        }
+        
+        public Builder require(Operation operation, String status, Rule rule) {
+            rules.get(operation.ordinal()).get(index(status)).add(rule);
+            return this;
+        }
+        
+        /**
+         * Copies the rules of an existing table, e.g. to extend DEFAULT.
+         */
+        public Builder from(ValidationRules base) {
+            for (int op = 0; op < allowed.length; op++) {
+                for (int s = 0; s < COLUMNS; s++) {
+                    Cell cell = base.table[op][s];
+                    allowed[op][s] = cell.allowed;
+                    minAmounts[op][s] = cell.minAmount;
+                    maxAmounts[op][s] = cell.maxAmount;
+                    rules.get(op).get(s).clear();
+                    rules.get(op).get(s).addAll(Arrays.asList(cell.rules));
+                }
+            }
+            return this;
+        }
+        
+        public ValidationRules build() {
+            Cell[][] table = new Cell[allowed.length][COLUMNS];
+            for (int op = 0; op < allowed.length; op++) {
+                for (int s = 0; s < COLUMNS; s++) {
+                    List<Rule> custom = rules.get(op).get(s);
+                    table[op][s] = new Cell(allowed[op][s], minAmounts[op][s], maxAmounts[op][s],
+                            custom.isEmpty() ? NO_RULES : custom.toArray(NO_RULES));
+                }
+            }
+            return new ValidationRules(table);
+        }
+        
+        private void raiseMin(Operation operation, int status, Money min) {
+            long[] row = minAmounts[operation.ordinal()];
+            row[status] = Math.max(row[status], min.getMinorUnits());
+        }
+        
+        private void lowerMax(Operation operation, int status, Money max) {
+            long[] row = maxAmounts[operation.ordinal()];
+            row[status] = Math.min(row[status], max.getMinorUnits());
+        }
+        
+        private static int index(String status) {
+            int index = statusIndex(status);
+            if (index == OTHER) {
+                throw new IllegalArgumentException("Unknown status: " + status);
+            }
+            return index;
+        }
+    }
+}
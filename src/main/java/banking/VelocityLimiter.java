@@ -0,0 +1,231 @@
+package banking;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-account velocity limits: at most N debits, and at most a total
+ * amount, per rolling window.
+ * 
+ * Each account gets one fixed-size ring of time buckets with running
+ * totals, so memory per account is constant and a check costs O(1)
+ * amortized: only buckets the clock has moved past are cleared.
+ * 
+ * A reservation is identified by the bucket it was counted in, so
+ * giving it back or shrinking it changes that bucket, not whichever is
+ * current; once the bucket has left the window there is nothing to give
+ * back. Windows with nothing left in them are evicted a couple at a
+ * time as reservations are made, so idle accounts cost no memory.
+ */
+public class VelocityLimiter {
+    
+    public static final int DEFAULT_BUCKETS = 12;
+    
+    /** reserve() result when the debit would exceed a limit. */
+    public static final long NO_RESERVATION = Long.MIN_VALUE;
+    
+    // Windows examined for eviction per reservation
+    private static final int SWEEP_STEP = 2;
+    
+    private final int maxCount;
+    private final long maxAmountCents;
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<Account, Window> windows = new ConcurrentHashMap<>();
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private Iterator<Map.Entry<Account, Window>> sweep;
+    
+    public VelocityLimiter(int maxCount, double maxAmount, long windowMillis) {
+        this(maxCount, maxAmount, windowMillis, DEFAULT_BUCKETS, System::currentTimeMillis);
+    }
+    
+    public VelocityLimiter(int maxCount, double maxAmount, long windowMillis, int bucketCount, LongSupplier clock) {
+        this.maxCount = maxCount;
+        this.maxAmountCents = Money.toMinorUnits(maxAmount);
+        this.bucketMillis = Math.max(1, windowMillis / bucketCount);
+        this.bucketCount = bucketCount;
+        this.clock = clock;
+    }
+    
+    /**
+     * Reserves one debit of the given amount if it stays within limits.
+     * 
+     * @throws IllegalArgumentException if the amount is not positive
+     */
+    public boolean tryAcquire(Account account, double amount) {
+        return reserve(account, amount) != NO_RESERVATION;
+    }
+    
+    /**
+     * Reserves one debit of the given amount if it stays within limits.
+     * 
+     * @return the reservation, for release(), or NO_RESERVATION
+     * @throws IllegalArgumentException if the amount is not positive
+     */
+    public long reserve(Account account, double amount) {
+        long cents = Money.amountMinorUnits(amount);
+        if (cents <= 0) {
+            throw new IllegalArgumentException("Amount must be positive: " + amount);
+        }
+        return reserveMinorUnits(account, cents);
+    }
+    
+    /**
+     * Gives back a reservation whose debit then failed.
+     */
+    public void release(Account account, long reservation, double amount) {
+        releaseMinorUnits(account, reservation, Money.amountMinorUnits(amount));
+    }
+    
+    /**
+     * Drops an account's window, e.g. once the account is archived.
+     */
+    public void remove(Account account) {
+        windows.remove(account);
+    }
+    
+    /** Accounts with a window in memory. */
+    public int size() {
+        return windows.size();
+    }
+    
+    long reserveMinorUnits(Account account, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive: " + amount);
+        }
+        long now = clock.getAsLong();
+        sweep(now);
+        while (true) {
+            Window window = windows.computeIfAbsent(account, a -> new Window(bucketCount));
+            long reservation = window.tryAcquire(now, amount);
+            if (!window.isEvicted()) {
+                return reservation;
+            }
+            // An evicted window was empty; start a fresh one
+            windows.remove(account, window);
+        }
+    }
+    
+    void releaseMinorUnits(Account account, long reservation, long amount) {
+        Window window = windows.get(account);
+        if (window != null && reservation != NO_RESERVATION) {
+            window.adjust(clock.getAsLong(), reservation, 1, amount);
+        }
+    }
+    
+    /**
+     * Lowers the amount of a reservation without giving up its debit,
+     * e.g. when only part of a bulk transfer was applied.
+     */
+    void shrinkMinorUnits(Account account, long reservation, long from, long to) {
+        Window window = windows.get(account);
+        if (window != null && reservation != NO_RESERVATION && to < from) {
+            window.adjust(clock.getAsLong(), reservation, 0, from - to);
+        }
+    }
+    
+    // Evicts windows with nothing left in them, a few per call
+    private void sweep(long now) {
+        if (!sweepLock.tryLock()) {
+            return;
+        }
+        try {
+            for (int i = 0; i < SWEEP_STEP; i++) {
+                if (sweep == null || !sweep.hasNext()) {
+                    sweep = windows.entrySet().iterator();
+                    if (!sweep.hasNext()) {
+                        return;
+                    }
+                }
+                Map.Entry<Account, Window> entry = sweep.next();
+                if (entry.getValue().evictIfEmpty(now)) {
+                    windows.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+    
+    /**
+     * Ring of time buckets for one account.
+     */
+    private class Window {
+        private final int[] counts;
+        private final long[] amounts;
+        private long currentBucket = Long.MIN_VALUE;
+        private int totalCount;
+        private long totalAmount;
+        private boolean evicted;
+        
+        Window(int buckets) {
+            this.counts = new int[buckets];
+            this.amounts = new long[buckets];
+        }
+        
+        synchronized long tryAcquire(long now, long cents) {
+            if (evicted) {
+                return NO_RESERVATION;
+            }
+            advance(now);
+            // Written so that a huge amount cannot overflow past the limit
+            if (totalCount + 1 > maxCount || cents > maxAmountCents - totalAmount) {
+                return NO_RESERVATION;
+            }
+            int slot = (int) Math.floorMod(currentBucket, (long) counts.length);
+            counts[slot]++;
+            amounts[slot] += cents;
+            totalCount++;
+            totalAmount += cents;
+            return currentBucket;
+        }
+        
+        // Takes debits and cents back out of the bucket they were
+        // reserved in, if it is still inside the window
+        synchronized void adjust(long now, long bucket, int debits, long cents) {
+            advance(now);
+            if (bucket > currentBucket || bucket <= currentBucket - counts.length) {
+                return;
+            }
+            int slot = (int) Math.floorMod(bucket, (long) counts.length);
+            if (counts[slot] >= debits && amounts[slot] >= cents) {
+                counts[slot] -= debits;
+                amounts[slot] -= cents;
+                totalCount -= debits;
+                totalAmount -= cents;
+            }
+        }
+        
+        synchronized boolean isEvicted() {
+            return evicted;
+        }
+        
+        synchronized boolean evictIfEmpty(long now) {
+            advance(now);
+            evicted = totalCount == 0;
+            return evicted;
+        }
+        
+        // Clears the buckets the clock has moved past since the last call
+        private void advance(long now) {
+            long bucket = Math.floorDiv(now, bucketMillis);
+            if (bucket <= currentBucket) {
+                return;
+            }
+            long steps = currentBucket == Long.MIN_VALUE ? counts.length
+                    : Math.min(bucket - currentBucket, counts.length);
+            for (long i = 0; i < steps; i++) {
+                int slot = (int) Math.floorMod(bucket - i, (long) counts.length);
+                totalCount -= counts[slot];
+                totalAmount -= amounts[slot];
+                counts[slot] = 0;
+                amounts[slot] = 0;
+            }
+            currentBucket = bucket;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package banking.benchmark;
+
+import banking.Account;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: consistent balance+status reads under a 50:1 read/write mix.
+ * 
+ * Compares Account.snapshot() (seqlock, readers never lock) against the
+ * classic pattern of guarding reads and writes with one monitor.
+ * 
+ * Run: mvn -Pbenchmark test -Dbenchmark=AccountReadBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class AccountReadBenchmark {
+    
+    private static final int READERS = 50;
+    
+    private Account account;
+    private SynchronizedAccount synchronizedAccount;
+    
+    /**
+     * Baseline: balance and status behind a single monitor.
+     */
+    static class SynchronizedAccount {
+        private double balance;
+        private String status = Account.VERIFIED;
+        
+        synchronized void deposit(double amount) {
+            balance += amount;
+        }
+        
+        synchronized Account.Snapshot snapshot() {
+            return new Account.Snapshot(balance, status);
+        }
+    }
+    
+    @Setup
+    public void setUp() {
+        account = new Account("BENCH-001", 1000.0, Account.VERIFIED);
+        synchronizedAccount = new SynchronizedAccount();
+    }
+    
+    @Benchmark
+    @Group("seqlock")
+    @GroupThreads(READERS)
+    public void seqlockRead(Blackhole bh) {
+        bh.consume(account.snapshot());
+    }
+    
+    @Benchmark
+    @Group("seqlock")
+    @GroupThreads(1)
+    public boolean seqlockWrite() {
+        return account.deposit(1.0);
+    }
+    
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(READERS)
+    public void synchronizedRead(Blackhole bh) {
+        bh.consume(synchronizedAccount.snapshot());
+    }
+    
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(1)
+    public void synchronizedWrite() {
+        synchronizedAccount.deposit(1.0);
+    }
+}
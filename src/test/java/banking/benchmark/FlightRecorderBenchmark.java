@@ -0,0 +1,58 @@
+package banking.benchmark;
+
+import banking.Account;
+import banking.FlightRecorder;
+import banking.TransactionProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: cost of the flight recorder on a deposit.
+ * 
+ * Compares a processor without a recorder against one recording every
+ * operation and one sampling 1 in 100. The difference per operation is
+ * the recorder's overhead.
+ * 
+ * Run: mvn -Pbenchmark test -Dbenchmark=FlightRecorderBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FlightRecorderBenchmark {
+    
+    private Account account;
+    private TransactionProcessor plain;
+    private TransactionProcessor recorded;
+    private TransactionProcessor sampled;
+    
+    @Setup
+    public void setUp() {
+        account = new Account("BENCH-1", 0.0, Account.VERIFIED);
+        plain = new TransactionProcessor();
+        recorded = new TransactionProcessor();
+        recorded.setFlightRecorder(new FlightRecorder());
+        sampled = new TransactionProcessor();
+        FlightRecorder sampling = new FlightRecorder();
+        sampling.setSampleRate(100);
+        sampled.setFlightRecorder(sampling);
+    }
+    
+    @Benchmark
+    public TransactionProcessor.Result noRecorder() {
+        return plain.deposit(account, 1.0);
+    }
+    
+    @Benchmark
+    public TransactionProcessor.Result recordAll() {
+        return recorded.deposit(account, 1.0);
+    }
+    
+    @Benchmark
+    public TransactionProcessor.Result sampleOneInHundred() {
+        return sampled.deposit(account, 1.0);
+    }
+}
@@ -0,0 +1,87 @@
+package banking.benchmark;
+
+import banking.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark: summing 1,000 amounts.
+ * 
+ * Compares double (fast but inexact), BigDecimal (exact but allocating),
+ * Money values and raw minor units. Summing raw minor units is exact and
+ * as fast as double; Money allocates per step unless escape analysis
+ * removes it, which is why Account and TransactionProcessor work on raw
+ * minor units internally.
+ * 
+ * Run: mvn -Pbenchmark test -Dbenchmark=MoneyBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    
+    private static final int SIZE = 1000;
+    
+    private double[] doubles;
+    private BigDecimal[] decimals;
+    private Money[] monies;
+    private long[] minorUnits;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        doubles = new double[SIZE];
+        decimals = new BigDecimal[SIZE];
+        monies = new Money[SIZE];
+        minorUnits = new long[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            long cents = random.nextInt(1_000_000);
+            minorUnits[i] = cents;
+            doubles[i] = cents / 100.0;
+            decimals[i] = BigDecimal.valueOf(cents, 2);
+            monies[i] = Money.ofMinorUnits(cents);
+        }
+    }
+    
+    @Benchmark
+    public double sumDouble() {
+        double total = 0;
+        for (double d : doubles) {
+            total += d;
+        }
+        return total;
+    }
+    
+    @Benchmark
+    public BigDecimal sumBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal d : decimals) {
+            total = total.add(d);
+        }
+        return total;
+    }
+    
+    @Benchmark
+    public Money sumMoney() {
+        Money total = Money.ZERO;
+        for (Money m : monies) {
+            total = total.plus(m);
+        }
+        return total;
+    }
+    
+    @Benchmark
+    public long sumMinorUnits() {
+        long total = 0;
+        for (long m : minorUnits) {
+            total = Math.addExact(total, m);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,70 @@
+package banking.concurrency;
+
+import banking.Account;
+import banking.AccountService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency Tests for lock-free consistent reads.
+ * 
+ * A writer moves the account through paired balance/status states; a
+ * reader must never observe a balance from one state with the status
+ * of another.
+ */
+@DisplayName("Concurrency Tests - Account Snapshot")
+public class AccountSnapshotTests {
+    
+    @Test
+    @DisplayName("Snapshot: reflects the current balance and status")
+    void snapshotMatchesGetters() {
+        Account account = new Account("SNAP-001", 250.0, Account.VERIFIED);
+        new AccountService().suspend(account);
+        
+        Account.Snapshot snapshot = account.snapshot();
+        
+        assertEquals(250.0, snapshot.getBalance());
+        assertEquals(Account.SUSPENDED, snapshot.getStatus());
+    }
+    
+    @Test
+    @DisplayName("Snapshot: never mixes balance and status from different writes")
+    void snapshotIsConsistent() throws Exception {
+        Account account = new Account("SNAP-002", 0.0, Account.VERIFIED);
+        Account sink = new Account("SNAP-003", 0.0, Account.VERIFIED);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> violation = new AtomicReference<>();
+        
+        // Invariant kept by the writer at every consistent point:
+        // Verified <=> balance == 0, Suspended <=> balance == 100
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                account.deposit(100.0);
+                account.setStatus(Account.SUSPENDED);
+                account.setStatus(Account.VERIFIED);
+                account.transfer(sink, 100.0);
+            }
+            running.set(false);
+        });
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                Account.Snapshot s = account.snapshot();
+                if (s.getStatus().equals(Account.SUSPENDED) && s.getBalance() != 100.0) {
+                    violation.compareAndSet(null, s.getStatus() + "/" + s.getBalance());
+                }
+            }
+        });
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        
+        assertNull(violation.get());
+        assertEquals(2_000_000.0, sink.getBalance());
+    }
+}
@@ -0,0 +1,99 @@
+package banking.concurrency;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency Tests for incrementally maintained client aggregates.
+ * 
+ * Aggregates must always equal a full scan of the client's accounts,
+ * including after concurrent transfers between them.
+ */
+@DisplayName("Concurrency Tests - Client Aggregates")
+public class ClientAggregateTests {
+    
+    private Client client;
+    private Account checking;
+    private Account savings;
+    
+    @BeforeEach
+    void setUp() {
+        client = new Client("CL-001", "Alice");
+        checking = new Account("AGG-001", 500.0, Account.VERIFIED);
+        savings = new Account("AGG-002", 1500.0, Account.UNVERIFIED);
+        client.addAccount(checking);
+        client.addAccount(savings);
+    }
+    
+    @Test
+    @DisplayName("Aggregates: adding accounts counts balance and status")
+    void addAccount_UpdatesAggregates() {
+        assertEquals(2000.0, client.getTotalBalance());
+        assertEquals(1, client.getAccountCount(Account.VERIFIED));
+        assertEquals(1, client.getAccountCount(Account.UNVERIFIED));
+        assertEquals(2, client.getActiveAccountCount());
+    }
+    
+    @Test
+    @DisplayName("Aggregates: processor and service paths keep totals current")
+    void processorAndService_UpdateAggregates() {
+        TransactionProcessor processor = new TransactionProcessor();
+        Account external = new Account("EXT-001", 0.0, Account.VERIFIED);
+        
+        processor.deposit(checking, 100.0);
+        processor.withdraw(checking, 50.0);
+        processor.transfer(checking, external, 200.0);
+        processor.getAccountService().verify(savings);
+        processor.getAccountService().close(checking);
+        
+        assertEquals(1850.0, client.getTotalBalance());
+        assertEquals(1, client.getAccountCount(Account.VERIFIED));
+        assertEquals(0, client.getAccountCount(Account.UNVERIFIED));
+        assertEquals(1, client.getAccountCount(Account.CLOSED));
+        assertEquals(1, client.getActiveAccountCount());
+    }
+    
+    @Test
+    @DisplayName("Aggregates: concurrent traffic matches a full scan")
+    void concurrentTraffic_MatchesScan() throws Exception {
+        new AccountService().verify(savings);
+        Account merchant = new Account("AGG-003", 0.0, Account.VERIFIED);
+        client.addAccount(merchant);
+        merchant.promoteToHot();
+        AtomicInteger withdrawals = new AtomicInteger();
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    checking.transfer(savings, 1.0);
+                    savings.transfer(checking, 1.0);
+                    merchant.deposit(2.0);
+                    if (savings.withdraw(1.0)) {
+                        withdrawals.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        double scanned = 0;
+        for (Account account : client.getAccounts()) {
+            scanned += account.getBalance();
+        }
+        assertEquals(scanned, client.getTotalBalance(), 1e-6);
+        assertEquals(2000.0 + 4 * 2000 * 2.0 - withdrawals.get(), client.getTotalBalance(), 1e-6);
+    }
+}
@@ -0,0 +1,218 @@
+package banking.concurrency;
+
+import banking.Account;
+import banking.Money;
+import banking.TransactionProcessor;
+import banking.ValidationRules;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency Tests for hot (striped) accounts.
+ * 
+ * Many threads deposit into and withdraw from the same account; the
+ * final balance must match the successful operations exactly.
+ */
+@DisplayName("Concurrency Tests - Hot Accounts")
+public class HotAccountTests {
+    
+    private static final int THREADS = 8;
+    private static final int OPS = 5000;
+    
+    @Test
+    @DisplayName("Hot account: promoted accounts report isHot")
+    void promoteToHot_SetsHotMode() {
+        Account account = new Account("HOT-001", 100.0, Account.VERIFIED);
+        assertFalse(account.isHot());
+        
+        account.promoteToHot();
+        
+        assertTrue(account.isHot());
+        assertEquals(100.0, account.getBalance());
+    }
+    
+    @Test
+    @DisplayName("Hot account: contended locking promotes the account automatically")
+    void contention_PromotesAutomatically() throws Exception {
+        Account account = new Account("HOT-008", 0.0, Account.VERIFIED);
+        TransactionProcessor processor = new TransactionProcessor();
+        CountDownLatch[] holding = new CountDownLatch[1];
+        CountDownLatch[] release = new CountDownLatch[1];
+        // A 9.99 deposit holds the account lock until released
+        processor.setValidationRules(ValidationRules.builder()
+                .from(ValidationRules.DEFAULT)
+                .require(ValidationRules.Operation.DEPOSIT, (a, amount) -> {
+                    if (amount == 999) {
+                        holding[0].countDown();
+                        try {
+                            release[0].await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return true;
+                })
+                .build());
+        
+        // CONTENTION_THRESHOLD (64) contended acquisitions, THREADS per round
+        int rounds = 64 / THREADS;
+        for (int round = 0; round < rounds; round++) {
+            holding[0] = new CountDownLatch(1);
+            release[0] = new CountDownLatch(1);
+            Thread holder = new Thread(() -> processor.deposit(account, 9.99));
+            holder.start();
+            holding[0].await();
+            // Every contender finds the lock taken and parks on it
+            List<Thread> contenders = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Thread contender = new Thread(() -> processor.deposit(account, 0.01));
+                contender.start();
+                contenders.add(contender);
+            }
+            for (Thread contender : contenders) {
+                while (contender.getState() != Thread.State.WAITING) {
+                    Thread.onSpinWait();
+                }
+            }
+            release[0].countDown();
+            holder.join();
+            for (Thread contender : contenders) {
+                contender.join();
+            }
+        }
+        
+        // Decided once the CONTENTION_WINDOW (1024) acquisitions are sampled
+        assertFalse(account.isHot());
+        int quiet = 0;
+        while (!account.isHot()) {
+            assertTrue(++quiet <= 1024, "not promoted");
+            processor.deposit(account, 0.01);
+        }
+        assertEquals(1024 - rounds * (THREADS + 1), quiet);
+        // Striped from now on, and still exact
+        runConcurrently(() -> {
+            for (int i = 0; i < OPS; i++) {
+                processor.deposit(account, 0.01);
+            }
+        });
+        assertEquals(Money.ofMinorUnits(rounds * (999 + THREADS) + quiet + THREADS * OPS),
+                account.getBalanceAsMoney());
+    }
+    
+    @Test
+    @DisplayName("Hot account: concurrent deposits are all counted")
+    void concurrentDeposits_AllCounted() throws Exception {
+        Account account = new Account("HOT-002", 0.0, Account.VERIFIED);
+        account.promoteToHot();
+        
+        runConcurrently(() -> {
+            for (int i = 0; i < OPS; i++) {
+                account.deposit(1.0);
+            }
+        });
+        
+        assertEquals(THREADS * OPS, account.getBalance());
+    }
+    
+    @Test
+    @DisplayName("Hot account: withdrawals never overdraw while deposits race")
+    void concurrentWithdrawals_NeverOverdraw() throws Exception {
+        Account account = new Account("HOT-003", 1000.0, Account.VERIFIED);
+        account.promoteToHot();
+        AtomicInteger withdrawn = new AtomicInteger();
+        
+        runConcurrently(() -> {
+            for (int i = 0; i < OPS; i++) {
+                if (account.withdraw(2.0)) {
+                    withdrawn.incrementAndGet();
+                }
+                account.deposit(1.0);
+            }
+        });
+        
+        double expected = 1000.0 + THREADS * OPS - 2.0 * withdrawn.get();
+        assertEquals(expected, account.getBalance());
+        assertTrue(account.getBalance() >= 0);
+    }
+    
+    @Test
+    @DisplayName("Hot account: hot accounts still reject deposits when closed")
+    void closedHotAccount_RejectsDeposit() {
+        Account account = new Account("HOT-004", 50.0, Account.VERIFIED);
+        account.promoteToHot();
+        account.setStatus(Account.CLOSED);
+        
+        assertFalse(account.deposit(10.0));
+        assertEquals(50.0, account.getBalance());
+    }
+    
+    @Test
+    @DisplayName("Hot account: no striped deposit lands after the account is closed")
+    void closeRacingDeposits_NothingLandsAfterClose() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            Account account = new Account("HOT-007", 0.0, Account.VERIFIED);
+            account.promoteToHot();
+            AtomicInteger accepted = new AtomicInteger();
+            double[] balanceAtClose = new double[1];
+            Thread closer = new Thread(() -> {
+                Thread.onSpinWait();
+                account.setStatus(Account.CLOSED);
+                balanceAtClose[0] = account.getBalance();
+            });
+            closer.start();
+            runConcurrently(() -> {
+                for (int i = 0; i < OPS / 10; i++) {
+                    if (account.deposit(1.0)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            closer.join();
+            
+            assertEquals(balanceAtClose[0], account.getBalance());
+            assertEquals(accepted.get(), account.getBalance());
+        }
+    }
+    
+    @Test
+    @DisplayName("Hot account: transfer into a hot account lands in its stripes")
+    void transferIntoHotAccount() {
+        Account source = new Account("HOT-005", 300.0, Account.VERIFIED);
+        Account target = new Account("HOT-006", 0.0, Account.VERIFIED);
+        target.promoteToHot();
+        
+        assertTrue(source.transfer(target, 120.0));
+        
+        assertEquals(180.0, source.getBalance());
+        assertEquals(120.0, target.getBalance());
+    }
+    
+    private static void runConcurrently(Runnable task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                task.run();
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for closed-account archival.
+ * 
+ * Tests the flow:
+ *   AccountService.close -> AccountArchiver -> AccountArchive -> lazy reload
+ */
+@DisplayName("Integration Tests - Account Archiver")
+public class AccountArchiverTests {
+    
+    private static final long DAY = 86_400_000L;
+    
+    @TempDir
+    Path dir;
+    
+    private AtomicLong now;
+    private TransactionProcessor processor;
+    private AccountRegistry registry;
+    private Client client;
+    private AccountArchive archive;
+    private AccountArchiver archiver;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        now = new AtomicLong(100 * DAY);
+        processor = new TransactionProcessor();
+        registry = new AccountRegistry();
+        client = registry.getOrCreateClient("C1", "Kareem Ahmed");
+        for (int i = 0; i < 10; i++) {
+            registry.addAccount(client, new Account("ARC-" + i, 100.0 + i, Account.VERIFIED));
+        }
+        archive = new AccountArchive(dir.resolve("archive.bin"));
+        archiver = new AccountArchiver(registry, archive, 30 * DAY, now::get).attach(processor);
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        archive.close();
+    }
+    
+    @Test
+    @DisplayName("Archive: only accounts past retention leave memory")
+    void retentionRespected() throws IOException {
+        processor.getAccountService().close(registry.getAccount("ARC-1"));
+        now.addAndGet(10 * DAY);
+        processor.getAccountService().close(registry.getAccount("ARC-2"));
+        now.addAndGet(25 * DAY);
+        
+        assertEquals(1, archiver.archive());
+        
+        assertEquals(9, registry.accountCount());
+        assertEquals(9, client.getAccounts().size());
+        assertEquals(1, client.getAccountCount(Account.CLOSED));
+        assertEquals(1000.0 + 45.0 - 101.0, client.getTotalBalance(), 0.001);
+        assertEquals(1, archive.size());
+    }
+    
+    @Test
+    @DisplayName("Archive: archived accounts reload lazily on lookup")
+    void lazyReload() throws IOException {
+        processor.getAccountService().close(registry.getAccount("ARC-3"));
+        now.addAndGet(31 * DAY);
+        archiver.archive();
+        
+        Account reloaded = registry.getAccount("ARC-3");
+        assertNotNull(reloaded);
+        assertEquals(Account.CLOSED, reloaded.getStatus());
+        assertEquals(103.0, reloaded.getBalance(), 0.001);
+        assertNotNull(client.getAccount("ARC-3"));
+        assertNull(registry.getAccount("ARC-404"));
+        assertNull(registry.getClient("C1").getAccount("ARC-404"));
+        // A closed copy still refuses money
+        assertFalse(reloaded.deposit(10.0));
+    }
+    
+    @Test
+    @DisplayName("Archive: accounts closed before attaching use first sighting")
+    void closedBeforeAttach() throws IOException {
+        Account old = new Account("ARC-OLD", 5.0, Account.CLOSED);
+        registry.addAccount(client, old);
+        
+        assertEquals(0, archiver.archive());
+        assertEquals(1, archiver.getPendingCount());
+        now.addAndGet(30 * DAY);
+        assertEquals(1, archiver.archive());
+        assertNotNull(registry.getAccount("ARC-OLD"));
+    }
+    
+    @Test
+    @DisplayName("Archive: archived accounts leave rankings, limits and reconciliation")
+    void deregistered() throws IOException {
+        TransactionJournal journal = new TransactionJournal().attach(processor);
+        BalanceReconciler reconciler = new BalanceReconciler(journal, registry.getAccounts()).attach(processor);
+        AccountRankingIndex ranking = new AccountRankingIndex().attach(processor);
+        VelocityLimiter limiter = new VelocityLimiter(100, 1_000_000.0, DAY, 12, now::get);
+        processor.setVelocityLimiter(limiter);
+        
+        Account account = registry.getAccount("ARC-4");
+        processor.withdraw(account, 4.0);
+        processor.withdraw(registry.getAccount("ARC-5"), 5.0);
+        assertEquals(2, limiter.size());
+        processor.getAccountService().close(account);
+        now.addAndGet(30 * DAY);
+        assertEquals(1, archiver.archive());
+        
+        assertEquals(1, limiter.size());
+        assertTrue(ranking.topByBalance(10).stream().noneMatch(r -> r.getAccount() == account));
+        BalanceReconciler.Report report = reconciler.reconcile();
+        assertTrue(report.isBalanced());
+        assertEquals(100.0, report.getArchived(), 0.001);
+        report = reconciler.reconcileAll();
+        assertTrue(report.isBalanced());
+        assertEquals(9, report.getAccountsChecked());
+        assertEquals(client.getTotalBalance(), report.getActualTotal(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Archive: index rebuilt on reopen, torn tail dropped")
+    void reopen() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            processor.getAccountService().close(registry.getAccount("ARC-" + i));
+        }
+        now.addAndGet(30 * DAY);
+        assertEquals(10, archiver.archive());
+        archive.close();
+        
+        // Half a record left by a crash mid-append
+        Path file = dir.resolve("archive.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            channel.write(java.nio.ByteBuffer.wrap(new byte[] { 0, 0, 0, 40, 0, 5 }));
+        }
+        archive = new AccountArchive(file);
+        
+        assertEquals(10, archive.size());
+        for (int i = 0; i < 10; i++) {
+            AccountArchive.Entry entry = archive.find("ARC-" + i);
+            assertNotNull(entry);
+            assertEquals("C1", entry.getClientId());
+            assertEquals(Money.of(100.0 + i), entry.getBalance());
+            assertEquals(100 * DAY, entry.getClosedAt());
+        }
+    }
+    
+    @Test
+    @DisplayName("Archive: many accounts, compact index")
+    void manyAccounts() throws IOException {
+        for (int i = 0; i < 20_000; i++) {
+            Account account = new Account("BULK-" + i, 1.0, Account.CLOSED);
+            registry.addAccount(client, account);
+        }
+        now.addAndGet(1);
+        archiver.archive();
+        now.addAndGet(30 * DAY);
+        
+        assertEquals(20_000, archiver.archive());
+        assertEquals(20_000, archive.size());
+        assertEquals(10, registry.accountCount());
+        assertEquals(Money.of(1.0), archive.find("BULK-12345").getBalance());
+    }
+    
+    @Test
+    @DisplayName("Archive: lookups run alongside appends")
+    void concurrentLookups() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            archive.append("C1", new Account("OLD-" + i, 5.0, Account.CLOSED), 0, 0);
+        }
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                done.add(readers.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        assertEquals(Money.of(5.0), archive.find("OLD-" + i).getBalance());
+                    }
+                    assertNull(archive.find("MISSING"));
+                }));
+            }
+            for (int i = 0; i < 1000; i++) {
+                archive.append("C1", new Account("NEW-" + i, 7.0, Account.CLOSED), 0, 0);
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+        assertEquals(2000, archive.size());
+        assertEquals(Money.of(7.0), archive.find("NEW-999").getBalance());
+    }
+}
@@ -0,0 +1,255 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for the account event stream.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor / AccountService -> AccountEventPublisher -> Flow.Subscriber
+ */
+@DisplayName("Integration Tests - Account Event Stream")
+public class AccountEventPublisherTests {
+    
+    private ExecutorService executor;
+    private TransactionProcessor processor;
+    private Account checking;
+    private Account savings;
+    
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        processor = new TransactionProcessor();
+        checking = new Account("EVT-001", 500.0, Account.VERIFIED);
+        savings = new Account("EVT-002", 100.0, Account.VERIFIED);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    @DisplayName("Events: every change is delivered in order")
+    void eventsDeliveredInOrder() throws InterruptedException {
+        AccountEventPublisher publisher = new AccountEventPublisher(executor, 256, 16).attach(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        
+        processor.deposit(checking, 50.0);
+        processor.withdraw(checking, 20.0);
+        processor.transfer(checking, savings, 30.0);
+        processor.getAccountService().suspend(savings);
+        publisher.close();
+        
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        List<AccountEvent> events = subscriber.events();
+        assertEquals(5, events.size());
+        assertEquals(AccountEvent.Type.DEPOSIT, events.get(0).getType());
+        assertEquals(550.0, events.get(0).getBalance());
+        assertEquals(AccountEvent.Type.WITHDRAWAL, events.get(1).getType());
+        assertEquals(AccountEvent.Type.TRANSFER_OUT, events.get(2).getType());
+        assertEquals("EVT-002", events.get(2).getCounterpartyId());
+        assertEquals(AccountEvent.Type.TRANSFER_IN, events.get(3).getType());
+        assertEquals(130.0, events.get(3).getBalance());
+        assertEquals(AccountEvent.Type.STATUS_CHANGE, events.get(4).getType());
+        assertEquals(Account.VERIFIED, events.get(4).getPreviousStatus());
+        assertEquals(Account.SUSPENDED, events.get(4).getStatus());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i, events.get(i).getSequence());
+        }
+    }
+    
+    @Test
+    @DisplayName("Events: buffered events are delivered in batches on demand")
+    void batchedOnDemand() throws InterruptedException {
+        AccountEventPublisher publisher = new AccountEventPublisher(executor, 256, 10).attach(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        publisher.subscribe(subscriber);
+        
+        for (int i = 0; i < 25; i++) {
+            processor.deposit(checking, 1.0);
+        }
+        Thread.sleep(100);
+        assertEquals(0, subscriber.batchCount());
+        
+        subscriber.subscription.request(2);
+        waitFor(() -> subscriber.events().size() == 20);
+        assertEquals(2, subscriber.batchCount());
+        
+        subscriber.subscription.request(5);
+        publisher.close();
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, subscriber.batchCount());
+        assertEquals(25, subscriber.events().size());
+    }
+    
+    @Test
+    @DisplayName("Events: a stalled subscriber never blocks transactions")
+    void slowSubscriberDropsInsteadOfBlocking() {
+        AccountEventPublisher publisher = new AccountEventPublisher(executor, 8, 4).attach(processor);
+        CollectingSubscriber stalled = new CollectingSubscriber(0);
+        publisher.subscribe(stalled);
+        
+        for (int i = 0; i < 100; i++) {
+            assertTrue(processor.deposit(checking, 1.0).isSuccess());
+        }
+        
+        assertEquals(92, publisher.getDroppedCount());
+        assertEquals(600.0, checking.getBalance());
+    }
+    
+    @Test
+    @DisplayName("Events: cancelling stops delivery")
+    void cancelStopsDelivery() {
+        AccountEventPublisher publisher = new AccountEventPublisher(executor, 16, 4).attach(processor);
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        assertEquals(1, publisher.getSubscriberCount());
+        
+        subscriber.subscription.cancel();
+        processor.deposit(checking, 1.0);
+        
+        assertEquals(0, publisher.getSubscriberCount());
+        assertEquals(0, publisher.getDroppedCount());
+    }
+    
+    @Test
+    @DisplayName("Events: sequences arrive in order when many threads publish")
+    void concurrentPublishersInOrder() throws Exception {
+        ExecutorService delivery = Executors.newFixedThreadPool(2);
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        try {
+            AccountEventPublisher publisher = new AccountEventPublisher(delivery, 10_000, 16).attach(processor);
+            CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+            publisher.subscribe(subscriber);
+            
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                done.add(writers.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        processor.deposit(checking, 1.0);
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+            publisher.close();
+            
+            assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+            List<AccountEvent> events = subscriber.events();
+            assertEquals(4000, events.size());
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(i, events.get(i).getSequence());
+            }
+        } finally {
+            writers.shutdownNow();
+            delivery.shutdownNow();
+        }
+    }
+    
+    @Test
+    @DisplayName("Events: a subscriber racing close() is still completed")
+    void subscribeRacingClose() throws Exception {
+        ExecutorService subscribers = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 50; round++) {
+                AccountEventPublisher publisher = new AccountEventPublisher(executor, 16, 4);
+                List<CollectingSubscriber> all = new CopyOnWriteArrayList<>();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> done = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    done.add(subscribers.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < 10; i++) {
+                            CollectingSubscriber subscriber = new CollectingSubscriber(1);
+                            all.add(subscriber);
+                            publisher.subscribe(subscriber);
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                publisher.close();
+                for (Future<?> future : done) {
+                    future.get();
+                }
+                for (CollectingSubscriber subscriber : all) {
+                    assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+                }
+                assertEquals(0, publisher.getSubscriberCount());
+            }
+        } finally {
+            subscribers.shutdownNow();
+        }
+    }
+    
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+    
+    private static class CollectingSubscriber implements Flow.Subscriber<List<AccountEvent>> {
+        private final long initialRequest;
+        private final List<List<AccountEvent>> batches = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        
+        CollectingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+        
+        @Override
+        public synchronized void onNext(List<AccountEvent> batch) {
+            batches.add(batch);
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            done.countDown();
+        }
+        
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+        
+        synchronized int batchCount() {
+            return batches.size();
+        }
+        
+        synchronized List<AccountEvent> events() {
+            List<AccountEvent> all = new ArrayList<>();
+            batches.forEach(all::addAll);
+            return all;
+        }
+    }
+}
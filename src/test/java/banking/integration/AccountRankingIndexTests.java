@@ -0,0 +1,154 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for the live ranking index.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor -> TransactionListener -> AccountRankingIndex
+ */
+@DisplayName("Integration Tests - Ranking Index")
+public class AccountRankingIndexTests {
+    
+    private static final long MINUTE = 60_000L;
+    
+    private AtomicLong now;
+    private AccountRankingIndex index;
+    private TransactionProcessor processor;
+    private Account a;
+    private Account b;
+    private Account c;
+    
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(10 * MINUTE);
+        processor = new TransactionProcessor();
+        index = new AccountRankingIndex(60 * MINUTE, 60, now::get).attach(processor);
+        a = new Account("RANK-A", 100.0, Account.VERIFIED);
+        b = new Account("RANK-B", 500.0, Account.VERIFIED);
+        c = new Account("RANK-C", 300.0, Account.VERIFIED);
+        index.track(a);
+        index.track(b);
+        index.track(c);
+    }
+    
+    @Test
+    @DisplayName("Ranking: top by balance follows processor updates")
+    void topByBalance() {
+        assertEquals(List.of(b, c), accounts(index.topByBalance(2)));
+        
+        processor.deposit(a, 1000.0);
+        processor.transfer(b, c, 450.0);
+        
+        List<AccountRankingIndex.Ranked> top = index.topByBalance(3);
+        assertEquals(List.of(a, c, b), accounts(top));
+        assertEquals(1100.0, top.get(0).getValue());
+        assertEquals(50.0, top.get(2).getValue());
+    }
+    
+    @Test
+    @DisplayName("Ranking: balances are ranked by exact minor units")
+    void exactBalances() {
+        // Equal as doubles, one cent apart
+        Account x = new Account("RANK-X", Money.ofMinorUnits(9_000_000_000_000_001L), Account.VERIFIED);
+        Account y = new Account("RANK-Y", Money.ofMinorUnits(9_000_000_000_000_002L), Account.VERIFIED);
+        index.track(x);
+        index.track(y);
+        
+        List<AccountRankingIndex.Ranked> top = index.topByBalance(2);
+        assertEquals(List.of(y, x), accounts(top));
+        assertEquals(9_000_000_000_000_002L, top.get(0).getExactValue());
+    }
+    
+    @Test
+    @DisplayName("Ranking: failed operations do not count as activity")
+    void failedOperationsIgnored() {
+        processor.withdraw(a, 5000.0);
+        
+        assertTrue(index.mostActive(3).isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Ranking: activity expires once it leaves the window")
+    void activityWindow() {
+        processor.deposit(a, 1.0);
+        processor.deposit(a, 1.0);
+        now.addAndGet(30 * MINUTE);
+        processor.deposit(b, 1.0);
+        processor.deposit(b, 1.0);
+        processor.deposit(b, 1.0);
+        
+        assertEquals(List.of(b, a), accounts(index.mostActive(5)));
+        assertEquals(3.0, index.mostActive(1).get(0).getValue());
+        
+        now.addAndGet(31 * MINUTE); // a's deposits are now over an hour old
+        
+        assertEquals(List.of(b), accounts(index.mostActive(5)));
+        
+        now.addAndGet(2 * 60 * MINUTE);
+        
+        assertTrue(index.mostActive(5).isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Ranking: closed and removed accounts leave both rankings")
+    void removal() {
+        processor.deposit(a, 1.0);
+        processor.deposit(c, 1.0);
+        
+        processor.getAccountService().close(c);
+        index.remove(b);
+        
+        assertEquals(List.of(a), accounts(index.topByBalance(5)));
+        assertEquals(List.of(a), accounts(index.mostActive(5)));
+    }
+    
+    @Test
+    @DisplayName("Ranking: concurrent activity on many accounts is counted exactly")
+    void concurrentActivity() throws Exception {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            accounts.add(new Account("RANK-" + i, 0.0, Account.VERIFIED));
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            threads.add(Thread.startVirtualThread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    Account account = accounts.get((offset + i) % accounts.size());
+                    // Uneven traffic, so the ranking has an order
+                    if (i % accounts.size() <= accounts.indexOf(account)) {
+                        processor.deposit(account, 1.0);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        long total = 0;
+        for (AccountRankingIndex.Ranked ranked : index.mostActive(100)) {
+            assertEquals(ranked.getAccount().getBalance(), ranked.getValue());
+            total += (long) ranked.getValue();
+        }
+        assertEquals(accounts.stream().mapToDouble(Account::getBalance).sum(), total);
+        List<AccountRankingIndex.Ranked> top = index.mostActive(3);
+        assertTrue(top.get(0).getValue() >= top.get(1).getValue());
+        assertTrue(top.get(1).getValue() >= top.get(2).getValue());
+    }
+    
+    private static List<Account> accounts(List<AccountRankingIndex.Ranked> ranked) {
+        return ranked.stream().map(AccountRankingIndex.Ranked::getAccount).toList();
+    }
+}
@@ -0,0 +1,144 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for balance reconciliation.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor -> TransactionJournal -> BalanceReconciler -> Account
+ */
+@DisplayName("Integration Tests - Balance Reconciliation")
+public class BalanceReconcilerTests {
+    
+    private TransactionProcessor processor;
+    private TransactionJournal journal;
+    private List<Account> accounts;
+    private BalanceReconciler reconciler;
+    
+    @BeforeEach
+    void setUp() {
+        processor = new TransactionProcessor();
+        journal = new TransactionJournal().attach(processor);
+        accounts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            accounts.add(new Account("REC-" + i, 100.10, Account.VERIFIED));
+        }
+        reconciler = new BalanceReconciler(journal, accounts, 8, ForkJoinPool.commonPool());
+    }
+    
+    @Test
+    @DisplayName("Reconcile: journaled traffic balances exactly")
+    void journaledTrafficBalances() {
+        Random random = new Random(3);
+        for (int i = 0; i < 3000; i++) {
+            Account a = accounts.get(random.nextInt(accounts.size()));
+            Account b = accounts.get(random.nextInt(accounts.size()));
+            double amount = (1 + random.nextInt(5000)) / 100.0;
+            switch (random.nextInt(3)) {
+                case 0: processor.deposit(a, amount); break;
+                case 1: processor.withdraw(a, amount); break;
+                default: processor.transfer(a, b, amount); break;
+            }
+        }
+        
+        BalanceReconciler.Report report = reconciler.reconcile();
+        
+        assertTrue(report.isBalanced(), () -> report.getDrifts().toString());
+        assertEquals(5005.0, report.getOpeningTotal());
+        assertEquals(report.getTransfersOut(), report.getTransfersIn());
+        assertEquals(report.getExpectedTotal(), report.getActualTotal());
+        assertEquals(journal.size(), report.getEntriesApplied());
+    }
+    
+    @Test
+    @DisplayName("Reconcile: only accounts touched since the last run are re-read")
+    void incremental() {
+        processor.deposit(accounts.get(0), 10.0);
+        assertEquals(1, reconciler.reconcile().getAccountsChecked());
+        
+        processor.transfer(accounts.get(1), accounts.get(2), 5.0);
+        BalanceReconciler.Report report = reconciler.reconcile();
+        
+        assertEquals(1, report.getEntriesApplied());
+        assertEquals(2, report.getAccountsChecked());
+        assertEquals(5015.0, report.getActualTotal());
+        assertTrue(report.isBalanced());
+        
+        assertEquals(50, reconciler.reconcileAll().getAccountsChecked());
+    }
+    
+    @Test
+    @DisplayName("Reconcile: an unjournaled change is reported down to the account")
+    void driftReported() {
+        processor.deposit(accounts.get(7), 20.0);
+        // Bypasses the processor, so never reaches the journal
+        accounts.get(7).deposit(0.01);
+        accounts.get(9).withdraw(1.0);
+        
+        // Off for the first time: re-checked before being reported
+        BalanceReconciler.Report incremental = reconciler.reconcile();
+        assertEquals(List.of("REC-7"), incremental.getUnconfirmed());
+        assertTrue(incremental.getDrifts().isEmpty());
+        assertEquals(1, reconciler.reconcile().getDrifts().size());
+        
+        assertEquals(List.of("REC-9"), reconciler.reconcileAll().getUnconfirmed());
+        BalanceReconciler.Report full = reconciler.reconcileAll();
+        assertFalse(full.isBalanced());
+        assertTrue(full.getUnconfirmed().isEmpty());
+        assertEquals(2, full.getDrifts().size());
+        BalanceReconciler.Drift drift = full.getDrifts().get(0);
+        assertEquals("REC-7", drift.getAccountId());
+        assertEquals(120.10, drift.getExpected());
+        assertEquals(0.01, drift.getDifference());
+        assertEquals("REC-9", full.getDrifts().get(1).getAccountId());
+        assertEquals(-1.0, full.getDrifts().get(1).getDifference());
+        
+        // Drifting accounts stay on the report until corrected
+        accounts.get(9).deposit(1.0);
+        assertEquals(1, reconciler.reconcile().getDrifts().size());
+    }
+    
+    @Test
+    @DisplayName("Reconcile: an operation not yet journaled is re-checked, not reported")
+    void inFlightOperation() {
+        processor.deposit(accounts.get(3), 10.0);
+        // Balance changed, journal entry not appended yet
+        accounts.get(3).deposit(5.0);
+        
+        BalanceReconciler.Report first = reconciler.reconcile();
+        assertTrue(first.getDrifts().isEmpty());
+        assertEquals(List.of("REC-3"), first.getUnconfirmed());
+        assertTrue(first.isBalanced());
+        
+        journal.append(TransactionCodec.DEPOSIT, "REC-3", null, 500L, null);
+        BalanceReconciler.Report second = reconciler.reconcile();
+        assertTrue(second.getDrifts().isEmpty());
+        assertTrue(second.getUnconfirmed().isEmpty());
+        assertTrue(second.isBalanced());
+        assertEquals(5020.0, second.getActualTotal());
+    }
+    
+    @Test
+    @DisplayName("Reconcile: accounts opened later are tracked from their opening balance")
+    void trackNewAccount() {
+        Account late = new Account("REC-LATE", 40.0, Account.VERIFIED);
+        reconciler.track(late);
+        processor.transfer(late, accounts.get(0), 15.0);
+        
+        BalanceReconciler.Report report = reconciler.reconcile();
+        
+        assertTrue(report.isBalanced());
+        assertEquals(5045.0, report.getActualTotal());
+    }
+}
@@ -0,0 +1,178 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for the streaming bulk loader.
+ * 
+ * Tests the flow:
+ *   flat file -> BulkLoader -> AccountRegistry -> Client / Account
+ */
+@DisplayName("Integration Tests - Bulk Loader")
+public class BulkLoaderTests {
+    
+    @TempDir
+    Path dir;
+    
+    private AccountRegistry registry;
+    private List<BulkLoader.Reject> rejects;
+    
+    @BeforeEach
+    void setUp() {
+        registry = new AccountRegistry();
+        rejects = new CopyOnWriteArrayList<>();
+    }
+    
+    @Test
+    @DisplayName("Loader: CSV rows across many small chunks all load")
+    void csvAcrossChunks() throws Exception {
+        StringBuilder csv = new StringBuilder("clientId,name,accountId,balance,status\n");
+        for (int i = 0; i < 2000; i++) {
+            csv.append("C").append(i % 500).append(",Client ").append(i % 500)
+               .append(",A").append(i).append(",").append(i).append(".50,")
+               .append(Account.VERIFIED).append("\r\n");
+        }
+        Path file = Files.writeString(dir.resolve("accounts.csv"), csv);
+        
+        BulkLoader loader = new BulkLoader(registry, BulkLoader.Format.csv(), true, 256, 4);
+        BulkLoader.LoadReport report = loader.load(file, rejects::add);
+        
+        assertEquals(2000, report.getLoaded());
+        assertEquals(0, report.getRejected());
+        assertEquals(2000, registry.accountCount());
+        assertEquals(500, registry.clientCount());
+        assertEquals(4, registry.getClient("C7").getAccounts().size());
+        assertEquals(1999.5, registry.getAccount("A1999").getBalance());
+    }
+    
+    @Test
+    @DisplayName("Loader: bad rows are rejected with line numbers, load continues")
+    void rejectsReported() throws Exception {
+        Path file = Files.writeString(dir.resolve("mixed.csv"), String.join("\n",
+                "C1,Ann,A1,100.0,Verified",
+                "C1,Ann,A2,abc,Verified",
+                "C2,Bob,A3,50.0,Frozen",
+                "C2,Bob,A1,10.0,Verified",
+                "C3,Cy,A4,-5,Verified",
+                "C3,Cy,A5",
+                "C3,Cy,A6,0,Closed"));
+        
+        BulkLoader.LoadReport report = new BulkLoader(registry, BulkLoader.Format.csv()).load(file, rejects::add);
+        
+        assertEquals(2, report.getLoaded());
+        assertEquals(5, report.getRejected());
+        assertEquals(5, rejects.size());
+        assertTrue(rejects.stream().anyMatch(r -> r.getLineNumber() == 3 && r.getReason().startsWith("Unknown status")));
+        assertTrue(rejects.stream().anyMatch(r -> r.getLineNumber() == 4 && r.getReason().startsWith("Duplicate")));
+        assertEquals(Account.CLOSED, registry.getAccount("A6").getStatus());
+    }
+    
+    @Test
+    @DisplayName("Loader: balances are parsed exactly, to the cent")
+    void exactBalances() throws Exception {
+        Path file = Files.writeString(dir.resolve("cents.csv"), String.join("\n",
+                "C1,Ann,A1,0.29,Verified",
+                "C1,Ann,A2,90071992547409.87,Verified",
+                "C1,Ann,A3,10.005,Verified",
+                "C1,Ann,A4,1e3,Verified"));
+        
+        BulkLoader.LoadReport report = new BulkLoader(registry, BulkLoader.Format.csv()).load(file, rejects::add);
+        
+        assertEquals(2, report.getLoaded());
+        assertEquals(29, registry.getAccount("A1").getBalanceMinorUnits());
+        assertEquals(9_007_199_254_740_987L, registry.getAccount("A2").getBalanceMinorUnits());
+        assertTrue(rejects.stream().allMatch(r -> r.getReason().startsWith("Invalid balance")));
+    }
+    
+    @Test
+    @DisplayName("Loader: lines longer than many chunks load intact")
+    void longLines() throws Exception {
+        String name = "N".repeat(10_000);
+        Path file = Files.writeString(dir.resolve("long.csv"), String.join("\n",
+                "C1," + name + ",A1,1.00,Verified",
+                "C2,Bob,A2,2.00,Verified"));
+        
+        BulkLoader loader = new BulkLoader(registry, BulkLoader.Format.csv(), false, 64, 2);
+        BulkLoader.LoadReport report = loader.load(file, rejects::add);
+        
+        assertEquals(2, report.getLoaded());
+        assertEquals(name, registry.getClient("C1").getName());
+        assertEquals(2.0, registry.getAccount("A2").getBalance());
+    }
+    
+    @Test
+    @DisplayName("Loader: client accounts keep load order in a live list")
+    void clientAccountsInOrder() throws Exception {
+        Client client = registry.getOrCreateClient("C1", "Ann");
+        List<Account> accounts = client.getAccounts();
+        Path file = Files.writeString(dir.resolve("order.csv"), String.join("\n",
+                "C1,Ann,A3,1.00,Verified",
+                "C1,Ann,A1,1.00,Verified",
+                "C1,Ann,A2,1.00,Verified"));
+        
+        new BulkLoader(registry, BulkLoader.Format.csv(), false, 1024, 1).load(file, rejects::add);
+        
+        assertEquals(List.of("A3", "A1", "A2"), accounts.stream().map(Account::getAccountId).toList());
+        assertThrows(UnsupportedOperationException.class, () -> accounts.add(new Account("A4", 0.0)));
+        
+        Account duplicate = new Account("A1", 5.0, Account.VERIFIED);
+        client.addAccount(duplicate);
+        assertEquals(4, accounts.size());
+        assertEquals(1.0, client.getAccount("A1").getBalance());
+        assertTrue(client.removeAccount(registry.getAccount("A1")));
+        assertSame(duplicate, client.getAccount("A1"));
+        assertEquals(7.0, client.getTotalBalance());
+    }
+    
+    @Test
+    @DisplayName("Loader: opening listeners may use the registry")
+    void listenerUsesRegistry() throws Exception {
+        List<Account> seen = new CopyOnWriteArrayList<>();
+        registry.addListener(new TransactionListener() {
+            @Override
+            public void onAccountOpened(Account account) {
+                assertNull(registry.getAccount(account.getAccountId()));
+                seen.add(account);
+                if (account.getAccountId().equals("A1")) {
+                    registry.addAccount(registry.getOrCreateClient("C9", "Audit"), new Account("AUDIT-A1", 0.0));
+                }
+            }
+        });
+        Path file = Files.writeString(dir.resolve("audit.csv"), "C1,Ann,A1,1.00,Verified\n");
+        
+        BulkLoader.LoadReport report = new BulkLoader(registry, BulkLoader.Format.csv()).load(file, rejects::add);
+        
+        assertEquals(1, report.getLoaded());
+        assertEquals(2, seen.size());
+        assertNotNull(registry.getAccount("A1"));
+        assertNotNull(registry.getAccount("AUDIT-A1"));
+        assertFalse(registry.addAccount(registry.getClient("C1"), new Account("A1", 0.0)));
+    }
+    
+    @Test
+    @DisplayName("Loader: fixed-width records are split by column widths")
+    void fixedWidth() throws Exception {
+        Path file = Files.writeString(dir.resolve("accounts.dat"),
+                "C1    Ann       A1    250.00    Unverified\n"
+              + "C2    Bob       A2    75.25     Suspended \n");
+        
+        BulkLoader loader = new BulkLoader(registry, BulkLoader.Format.fixedWidth(6, 10, 6, 10, 10));
+        BulkLoader.LoadReport report = loader.load(file, rejects::add);
+        
+        assertEquals(2, report.getLoaded());
+        assertEquals("Bob", registry.getClient("C2").getName());
+        assertEquals(Account.SUSPENDED, registry.getAccount("A2").getStatus());
+        assertEquals(75.25, registry.getAccount("A2").getBalance());
+    }
+}
@@ -0,0 +1,153 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for one-to-many transfers.
+ * 
+ * Tests the flow:
+ *   BulkTransfer -> TransactionProcessor -> Account (one debit, many credits)
+ */
+@DisplayName("Integration Tests - Bulk Transfer")
+public class BulkTransferTests {
+    
+    private TransactionProcessor processor;
+    private Account employer;
+    private List<Account> employees;
+    
+    @BeforeEach
+    void setUp() {
+        processor = new TransactionProcessor();
+        employer = new Account("EMP-000", 100_000.0, Account.VERIFIED);
+        employees = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            employees.add(new Account("EMP-" + (i + 1), 0.0, Account.VERIFIED));
+        }
+    }
+    
+    @Test
+    @DisplayName("Payroll: one debit, every employee credited")
+    void payroll() {
+        BulkTransfer payroll = new BulkTransfer(employer);
+        employees.forEach(e -> payroll.credit(e, 50.0));
+        List<Account> credited = new ArrayList<>();
+        processor.addListener(new TransactionListener() {
+            @Override
+            public void onTransfer(Account from, Account to, double amount) {
+                credited.add(to);
+            }
+        });
+        
+        BulkTransfer.Result result = processor.transfer(payroll);
+        
+        assertTrue(result.isSuccess(), result.getMessage());
+        assertEquals(Money.ofMajorUnits(50_000), result.getDebited());
+        assertEquals(1000, result.getApplied().size());
+        assertTrue(result.getRejected().isEmpty());
+        assertEquals(50_000.0, employer.getBalance(), 0.001);
+        employees.forEach(e -> assertEquals(50.0, e.getBalance(), 0.001));
+        assertEquals(employees, credited);
+    }
+    
+    @Test
+    @DisplayName("Payroll: closed targets reported, rest applied")
+    void closedTargetsReported() {
+        processor.getAccountService().close(employees.get(3));
+        processor.getAccountService().close(employees.get(7));
+        BulkTransfer payroll = new BulkTransfer(employer);
+        employees.forEach(e -> payroll.credit(e, 10.0));
+        
+        BulkTransfer.Result result = processor.transfer(payroll);
+        
+        assertTrue(result.isSuccess());
+        assertEquals(998, result.getApplied().size());
+        assertEquals(2, result.getRejected().size());
+        assertSame(employees.get(3), result.getRejected().get(0).getCredit().getTarget());
+        assertEquals(Account.CLOSED, result.getRejected().get(0).getTargetStatus());
+        assertEquals(100_000.0 - 9_980.0, employer.getBalance(), 0.001);
+        assertEquals(0.0, employees.get(7).getBalance(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Payroll: strict mode rejects the whole batch")
+    void strictMode() {
+        processor.getAccountService().close(employees.get(5));
+        BulkTransfer payroll = new BulkTransfer(employer).strict();
+        employees.forEach(e -> payroll.credit(e, 10.0));
+        
+        BulkTransfer.Result result = processor.transfer(payroll);
+        
+        assertFalse(result.isSuccess());
+        assertEquals(TransactionProcessor.Result.TRANSFER_FAILED, result.getCode());
+        assertEquals(1, result.getRejected().size());
+        assertEquals(Money.ZERO, result.getDebited());
+        assertEquals(100_000.0, employer.getBalance(), 0.001);
+        employees.forEach(e -> assertEquals(0.0, e.getBalance(), 0.001));
+    }
+    
+    @Test
+    @DisplayName("Payroll: total checked up front against the balance")
+    void insufficientFunds() {
+        BulkTransfer payroll = new BulkTransfer(employer);
+        employees.forEach(e -> payroll.credit(e, 100.01));
+        
+        BulkTransfer.Result result = processor.transfer(payroll);
+        
+        assertEquals(TransactionProcessor.Result.INSUFFICIENT_FUNDS, result.getCode());
+        assertEquals(100_000.0, employer.getBalance(), 0.001);
+        assertEquals(0.0, employees.get(999).getBalance(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Payroll: unverified source cannot send")
+    void unverifiedSource() {
+        Account source = new Account("EMP-X", 1000.0, Account.UNVERIFIED);
+        BulkTransfer.Result result = processor.transfer(new BulkTransfer(source).credit(employees.get(0), 10.0));
+        assertEquals(TransactionProcessor.Result.TRANSFER_FAILED, result.getCode());
+        assertTrue(result.getRejected().isEmpty());
+        assertEquals(1000.0, source.getBalance(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Concurrency: overlapping batches and transfers conserve money")
+    void concurrentBatches() throws Exception {
+        Account other = new Account("EMP-OTHER", 100_000.0, Account.VERIFIED);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Account source = t % 2 == 0 ? employer : other;
+                futures.add(executor.submit(() -> {
+                    for (int round = 0; round < 20; round++) {
+                        BulkTransfer batch = new BulkTransfer(source);
+                        employees.subList(0, 200).forEach(e -> batch.credit(e, 1.0));
+                        assertTrue(processor.transfer(batch).isSuccess());
+                        // Opposing single transfers take the same locks in the same order
+                        processor.transfer(employees.get(round), source, 1.0);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double total = employer.getBalance() + other.getBalance();
+        for (Account e : employees) {
+            total += e.getBalance();
+        }
+        assertEquals(200_000.0, total, 0.001);
+    }
+}
@@ -0,0 +1,143 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for the client tier index.
+ * 
+ * Tests the flow:
+ *   Client.setCreditScore -> ClientTierIndex -> ClientSet queries
+ */
+@DisplayName("Integration Tests - Client Tier Index")
+public class ClientTierIndexTests {
+    
+    @TempDir
+    Path dir;
+    
+    private ClientTierIndex index;
+    private List<Client> clients;
+    
+    @BeforeEach
+    void setUp() {
+        index = new ClientTierIndex(new CreditScoreChecker());
+        clients = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Client client = new Client("C" + i, "Client " + i);
+            // Scores 500..895: Poor, Fair, Good and Excellent all present
+            client.setCreditScore(500 + 2 * i);
+            clients.add(client);
+        }
+        index.addAll(clients);
+    }
+    
+    @Test
+    @DisplayName("Index: tiers match CreditScoreChecker")
+    void tiersMatchChecker() {
+        CreditScoreChecker checker = new CreditScoreChecker();
+        for (String tier : List.of("Excellent", "Good", "Fair", "Poor")) {
+            long expected = clients.stream().filter(c -> checker.getTier(c.getCreditScore()).equals(tier)).count();
+            assertEquals(expected, index.tier(tier).size(), tier);
+        }
+        assertEquals(clients.stream().filter(checker::isEligible).count(), index.eligible().size());
+        assertEquals(200, index.all().size());
+    }
+    
+    @Test
+    @DisplayName("Index: a score change moves the client between tiers")
+    void scoreChangeMovesClient() {
+        Client c0 = clients.get(0);
+        assertTrue(index.tier("Poor").clients().contains(c0));
+        
+        c0.setCreditScore(800);
+        
+        assertFalse(index.tier("Poor").clients().contains(c0));
+        assertTrue(index.tier("Excellent").clients().contains(c0));
+        assertTrue(index.eligible().clients().contains(c0));
+        
+        c0.setCreditScore(560);
+        assertTrue(index.tier("Fair").clients().contains(c0));
+        assertFalse(index.eligible().clients().contains(c0));
+    }
+    
+    @Test
+    @DisplayName("Index: results already returned do not see later changes")
+    void resultsAreSnapshots() {
+        Client c0 = clients.get(0);
+        ClientTierIndex.ClientSet poor = index.tier("Poor");
+        ClientTierIndex.ClientSet again = index.tier("Poor");
+        int size = poor.size();
+        
+        c0.setCreditScore(800);
+        
+        assertEquals(size, poor.size());
+        assertTrue(poor.clients().contains(c0));
+        assertTrue(again.clients().contains(c0));
+        assertEquals(size - 1, index.tier("Poor").size());
+        assertFalse(index.tier("Poor").clients().contains(c0));
+    }
+    
+    @Test
+    @DisplayName("Index: a client indexed twice keeps both indexes current")
+    void severalIndexes() {
+        ClientTierIndex other = new ClientTierIndex(new CreditScoreChecker());
+        other.addAll(clients);
+        Client c0 = clients.get(0);
+        
+        c0.setCreditScore(800);
+        
+        assertTrue(index.tier("Excellent").clients().contains(c0));
+        assertTrue(other.tier("Excellent").clients().contains(c0));
+        assertFalse(other.tier("Poor").clients().contains(c0));
+    }
+    
+    @Test
+    @DisplayName("Index: eligible clients without a credit line")
+    void intersections() {
+        for (int i = 0; i < clients.size(); i += 3) {
+            index.setFlag(clients.get(i), "creditLine", true);
+        }
+        
+        ClientTierIndex.ClientSet result = index.eligible().andNot(index.flagged("creditLine"));
+        
+        for (Client client : result.clients()) {
+            assertTrue(client.getCreditScore() >= CreditScoreChecker.THRESHOLD_ELIGIBLE);
+            assertNotEquals(0, Integer.parseInt(client.getClientId().substring(1)) % 3);
+        }
+        assertEquals(index.eligible().size() - index.eligible().and(index.flagged("creditLine")).size(),
+                result.size());
+        assertEquals(index.tier("Good").size() + index.tier("Excellent").size(),
+                index.tier("Good").or(index.tier("Excellent")).size());
+        assertThrows(IllegalArgumentException.class, () -> index.setFlag(clients.get(0), ClientTierIndex.ELIGIBLE, true));
+    }
+    
+    @Test
+    @DisplayName("Index: bureau ingestion keeps the index current")
+    void bureauIngestionUpdatesIndex() throws Exception {
+        AccountRegistry registry = new AccountRegistry();
+        ClientTierIndex registryIndex = new ClientTierIndex(new CreditScoreChecker());
+        StringBuilder file = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            registryIndex.add(registry.getOrCreateClient("R" + i, "R" + i));
+            file.append("R").append(i).append(",").append(i % 2 == 0 ? 780 : 600).append("\n");
+        }
+        assertEquals(500, registryIndex.tier("Poor").size());
+        
+        new CreditBureauIngestor(registry, new CreditScoreChecker(), BulkLoader.Format.csv(), false, 256, 4)
+                .ingest(Files.writeString(dir.resolve("bureau.csv"), file), c -> { }, r -> { });
+        
+        assertEquals(250, registryIndex.tier("Excellent").size());
+        assertEquals(250, registryIndex.tier("Fair").size());
+        assertTrue(registryIndex.tier("Poor").isEmpty());
+    }
+}
@@ -0,0 +1,138 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for credit bureau ingestion.
+ * 
+ * Tests the flow:
+ *   bureau file -> CreditBureauIngestor -> Client -> CreditScoreChecker -> delta feed
+ */
+@DisplayName("Integration Tests - Credit Bureau Ingestion")
+public class CreditBureauIngestionTests {
+    
+    @TempDir
+    Path dir;
+    
+    private AccountRegistry registry;
+    private List<CreditBureauIngestor.ScoreChange> changes;
+    private List<BulkLoader.Reject> rejects;
+    
+    @BeforeEach
+    void setUp() {
+        registry = new AccountRegistry();
+        for (int i = 0; i < 1000; i++) {
+            registry.getOrCreateClient("C" + i, "Client " + i).setCreditScore(600);
+        }
+        changes = new CopyOnWriteArrayList<>();
+        rejects = new CopyOnWriteArrayList<>();
+    }
+    
+    @Test
+    @DisplayName("Bureau: only tier or eligibility changes reach the delta feed")
+    void deltaFeedOnlyChanges() throws Exception {
+        StringBuilder file = new StringBuilder("clientId,score\n");
+        for (int i = 0; i < 1000; i++) {
+            // Every 10th client crosses into Good (eligible), the rest move within Fair or repeat
+            int score = i % 10 == 0 ? 700 : i % 10 == 1 ? 600 : 620;
+            file.append("C").append(i).append(",").append(score).append("\n");
+        }
+        Path path = Files.writeString(dir.resolve("bureau.csv"), file);
+        
+        CreditBureauIngestor ingestor = new CreditBureauIngestor(registry, new CreditScoreChecker(),
+                BulkLoader.Format.csv(), true, 512, 4);
+        CreditBureauIngestor.IngestReport report = ingestor.ingest(path, changes::add, rejects::add);
+        
+        assertEquals(900, report.getUpdated());
+        assertEquals(100, report.getUnchanged());
+        assertEquals(100, report.getChanges());
+        assertEquals(0, report.getRejected());
+        assertEquals(100, changes.size());
+        for (CreditBureauIngestor.ScoreChange change : changes) {
+            assertEquals("Fair", change.getPreviousTier());
+            assertEquals("Good", change.getTier());
+            assertTrue(change.isEligibilityChange());
+            assertTrue(change.isEligible());
+        }
+        assertEquals(620, registry.getClient("C5").getCreditScore());
+        assertEquals(700, registry.getClient("C990").getCreditScore());
+    }
+    
+    @Test
+    @DisplayName("Bureau: a tier change without an eligibility change is still emitted")
+    void tierChangeEmitted() throws Exception {
+        Path path = Files.writeString(dir.resolve("bureau.csv"), "C1,500\nC2,760\n");
+        registry.getClient("C2").setCreditScore(700);
+        
+        new CreditBureauIngestor(registry, new CreditScoreChecker()).ingest(path, changes::add, rejects::add);
+        
+        assertEquals(2, changes.size());
+        CreditBureauIngestor.ScoreChange c2 = changes.stream()
+                .filter(c -> c.getClient().getClientId().equals("C2")).findFirst().orElseThrow();
+        assertTrue(c2.isTierChange());
+        assertFalse(c2.isEligibilityChange());
+        assertEquals("Excellent", c2.getTier());
+    }
+    
+    @Test
+    @DisplayName("Bureau: the last row for a client wins across parallel chunks")
+    void lastRowWins() throws Exception {
+        StringBuilder file = new StringBuilder();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                // Alternates between Poor and Good, ending on client-specific scores
+                int score = round == 19 ? 700 + i : round % 2 == 0 ? 500 : 720;
+                file.append("C").append(i).append(",").append(score).append("\n");
+            }
+        }
+        Path path = Files.writeString(dir.resolve("bureau.csv"), file);
+        
+        CreditBureauIngestor.IngestReport report = new CreditBureauIngestor(registry, new CreditScoreChecker(),
+                BulkLoader.Format.csv(), false, 256, 8).ingest(path, changes::add, rejects::add);
+        
+        assertEquals(2000, report.getUpdated() + report.getUnchanged() + report.getSuperseded());
+        for (int i = 0; i < 100; i++) {
+            Client client = registry.getClient("C" + i);
+            assertEquals(700 + i, client.getCreditScore());
+            // The client's changes chain in order and end on the final tier
+            int score = 600;
+            for (CreditBureauIngestor.ScoreChange change : changes) {
+                if (change.getClient() == client) {
+                    assertEquals(score, change.getPreviousScore());
+                    score = change.getScore();
+                }
+            }
+            assertEquals(new CreditScoreChecker().getTier(700 + i), new CreditScoreChecker().getTier(score));
+        }
+    }
+    
+    @Test
+    @DisplayName("Bureau: bad records are rejected with line numbers")
+    void rejects() throws Exception {
+        Path path = Files.writeString(dir.resolve("bureau.csv"), String.join("\n",
+                "C1,710", "C1,abc", "NOPE,700", "C2", "C3,-1", "C4,550", "C5,851", "C6,299"));
+        
+        CreditBureauIngestor.IngestReport report = new CreditBureauIngestor(registry, new CreditScoreChecker())
+                .ingest(path, changes::add, rejects::add);
+        
+        assertEquals(6, report.getRejected());
+        assertEquals(2, report.getUpdated());
+        assertEquals(1, report.getChanges());
+        assertTrue(rejects.stream().anyMatch(r -> r.getLineNumber() == 3 && r.getReason().startsWith("Unknown client")));
+        assertTrue(rejects.stream().anyMatch(r -> r.getLineNumber() == 5 && r.getReason().startsWith("Score out of range")));
+        assertTrue(rejects.stream().anyMatch(r -> r.getLineNumber() == 7 && r.getReason().startsWith("Score out of range")));
+        assertEquals(600, registry.getClient("C5").getCreditScore());
+        assertEquals(710, registry.getClient("C1").getCreditScore());
+    }
+}
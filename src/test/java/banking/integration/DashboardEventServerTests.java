@@ -0,0 +1,192 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for live dashboard updates.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor / AccountService -> DashboardEventServer -> SSE stream
+ */
+@DisplayName("Integration Tests - Dashboard Event Server")
+public class DashboardEventServerTests {
+    
+    private TransactionProcessor processor;
+    private AccountRegistry registry;
+    private Account account;
+    private DashboardEventServer server;
+    private String token;
+    private final List<Socket> connections = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        processor = new TransactionProcessor();
+        registry = new AccountRegistry();
+        account = new Account("DASH-001", 1000.0, Account.VERIFIED);
+        registry.addAccount(registry.getOrCreateClient("C1", "Kareem Ahmed"), account);
+        registry.addAccount(registry.getOrCreateClient("C2", "Other Client"),
+                new Account("DASH-002", 500.0, Account.VERIFIED));
+        server = new DashboardEventServer(registry, 0, 50, 60_000).attach(processor).start();
+        token = server.grant("C1");
+    }
+    
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Socket connection : connections) {
+            connection.close();
+        }
+        server.close();
+    }
+    
+    @Test
+    @DisplayName("SSE: initial state sent on connect")
+    void initialState() throws Exception {
+        BlockingQueue<String> events = open("DASH-001");
+        String first = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertTrue(first.contains("\"accountId\":\"DASH-001\""), first);
+        assertTrue(first.contains("\"balance\":\"1000.00\""), first);
+        assertTrue(first.contains("\"transferEnabled\":true"), first);
+    }
+    
+    @Test
+    @DisplayName("SSE: burst of deposits coalesced to the latest balance")
+    void burstCoalesced() throws Exception {
+        BlockingQueue<String> events = open("DASH-001");
+        assertNotNull(events.poll(5, TimeUnit.SECONDS));
+        
+        for (int i = 0; i < 500; i++) {
+            assertTrue(processor.deposit(account, 1.0).isSuccess());
+        }
+        
+        int received = 0;
+        String last = null;
+        while (last == null || !last.contains("\"balance\":\"1500.00\"")) {
+            last = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(last, "final balance never pushed");
+            received++;
+        }
+        assertTrue(received < 50, "expected coalescing, got " + received + " events");
+    }
+    
+    @Test
+    @DisplayName("SSE: status change pushes new button states")
+    void statusChangePushed() throws Exception {
+        BlockingQueue<String> events = open("DASH-001");
+        assertNotNull(events.poll(5, TimeUnit.SECONDS));
+        
+        processor.getAccountService().suspend(account);
+        
+        String event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertTrue(event.contains("\"status\":\"Suspended\""), event);
+        assertTrue(event.contains("\"depositEnabled\":true"), event);
+        assertTrue(event.contains("\"withdrawEnabled\":false"), event);
+    }
+    
+    @Test
+    @DisplayName("SSE: sessions removed when the browser disconnects")
+    void disconnectRemovesSession() throws Exception {
+        BlockingQueue<String> events = open("DASH-001");
+        assertNotNull(events.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getSessionCount());
+        
+        connections.get(0).close();
+        // The write after the disconnect fails and ends the session
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getSessionCount() > 0 && System.currentTimeMillis() < deadline) {
+            processor.deposit(account, 1.0);
+            Thread.sleep(20);
+        }
+        assertEquals(0, server.getSessionCount());
+    }
+    
+    @Test
+    @DisplayName("Access: loopback only, token required, own accounts only")
+    void accessControl() throws Exception {
+        assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+        assertEquals(401, status("/events?account=DASH-001", null));
+        assertEquals(401, status("/events?account=DASH-001", "not-a-token"));
+        assertEquals(403, status("/events?account=DASH-002", token));
+        assertEquals(403, status("/events?account=DASH-001&account=DASH-002", token));
+        assertEquals(403, status("/events?account=DASH-404", token));
+        assertEquals(403, status("/events?account=DASH-001", server.grant("C-NONE")));
+        assertEquals(200, status("/events?account=DASH-002", server.grant("C2")));
+        // EventSource cannot set headers, so the page passes it in the query
+        assertEquals(200, status("/events?account=DASH-001&token=" + token, null));
+        
+        server.revoke(token);
+        assertEquals(401, status("/events?account=DASH-001&token=" + token, null));
+    }
+    
+    @Test
+    @DisplayName("Controller: view state matches button states")
+    void controllerViewState() {
+        ClientController controller = new ClientController(processor);
+        controller.selectAccount(account);
+        ClientController.ViewState state = controller.getViewState();
+        assertEquals(Money.ofMajorUnits(1000), state.getBalance());
+        assertEquals(controller.isDepositEnabled(), state.isDepositEnabled());
+        assertEquals(controller.isWithdrawEnabled(), state.isWithdrawEnabled());
+        assertEquals(controller.isTransferEnabled(), state.isTransferEnabled());
+    }
+    
+    /**
+     * Status code of a request; the connection is kept open until
+     * tearDown so a stream that was accepted stays counted.
+     */
+    private int status(String path, String bearer) throws Exception {
+        BufferedReader in = request(path, bearer);
+        return Integer.parseInt(in.readLine().split(" ")[1]);
+    }
+    
+    private BufferedReader request(String path, String bearer) throws Exception {
+        Socket connection = new Socket(server.getAddress().getAddress(), server.getPort());
+        connections.add(connection);
+        OutputStream out = connection.getOutputStream();
+        out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n"
+                + (bearer != null ? "Authorization: Bearer " + bearer + "\r\n" : "") + "\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        return new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Opens an event stream and collects the data line of each event.
+     */
+    private BlockingQueue<String> open(String accountId) throws Exception {
+        BufferedReader in = request("/events?account=" + accountId, token);
+        assertTrue(in.readLine().contains(" 200 "));
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        Thread.startVirtualThread(() -> {
+            try (in) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("data: ")) {
+                        events.add(line.substring(6));
+                    }
+                }
+            } catch (Exception e) {
+                // Stream closed
+            }
+        });
+        return events;
+    }
+}
@@ -0,0 +1,233 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for the transaction flight recorder.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor / AccountService -> FlightRecorder rings -> dump
+ */
+@DisplayName("Integration Tests - Flight Recorder")
+public class FlightRecorderTests {
+    
+    @TempDir
+    Path dir;
+    
+    private TransactionProcessor processor;
+    private FlightRecorder recorder;
+    private Account a;
+    private Account b;
+    
+    @BeforeEach
+    void setUp() {
+        processor = new TransactionProcessor();
+        recorder = new FlightRecorder(64);
+        processor.setFlightRecorder(recorder);
+        a = new Account("FR-A", 100.0, Account.VERIFIED);
+        b = new Account("FR-B", 0.0, Account.UNVERIFIED);
+    }
+    
+    @Test
+    @DisplayName("Recorder: operations recorded with outcome and duration")
+    void recordsOperations() {
+        processor.deposit(a, 25.0);
+        processor.withdraw(a, 500.0);
+        processor.transfer(a, b, 10.0);
+        processor.getAccountService().verify(b);
+        processor.getAccountService().reinstate(b);
+        
+        List<FlightRecorder.Event> events = recorder.dump();
+        assertEquals(5, events.size());
+        assertEquals(TransactionCodec.DEPOSIT, events.get(0).getType());
+        assertTrue(events.get(0).isSuccess());
+        assertEquals(Money.of(25.0), events.get(0).getAmount());
+        assertEquals(TransactionProcessor.Result.INSUFFICIENT_FUNDS, events.get(1).getCode());
+        assertEquals("FR-B", events.get(2).getTargetId());
+        assertEquals(TransactionCodec.VERIFY, events.get(3).getStatusOp());
+        assertEquals(TransactionProcessor.Result.STATUS_CHANGE_FAILED, events.get(4).getCode());
+        for (FlightRecorder.Event event : events) {
+            assertTrue(event.getDurationNanos() >= 0);
+            assertEquals(Thread.currentThread().getName(), event.getThread());
+        }
+    }
+    
+    @Test
+    @DisplayName("Recorder: a bulk transfer is recorded as one operation")
+    void recordsBulkTransfer() {
+        Account c = new Account("FR-C", 0.0, Account.VERIFIED);
+        processor.transfer(new BulkTransfer(a).credit(b, 10.0).credit(c, 15.0));
+        
+        List<FlightRecorder.Event> events = recorder.dump();
+        assertEquals(1, events.size());
+        assertEquals(TransactionCodec.TRANSFER, events.get(0).getType());
+        assertEquals("FR-A", events.get(0).getAccountId());
+        assertNull(events.get(0).getTargetId());
+        assertEquals(Money.of(25.0), events.get(0).getAmount());
+        assertTrue(events.get(0).isSuccess());
+    }
+    
+    @Test
+    @DisplayName("Recorder: ring keeps the most recent operations")
+    void ringWraps() {
+        for (int i = 1; i <= 200; i++) {
+            processor.deposit(a, i);
+        }
+        
+        List<FlightRecorder.Event> events = recorder.dump();
+        assertEquals(64, events.size());
+        assertEquals(Money.of(137.0), events.get(0).getAmount());
+        assertEquals(Money.of(200.0), events.get(63).getAmount());
+    }
+    
+    @Test
+    @DisplayName("Recorder: sampling, disabling and detaching")
+    void sampling() {
+        recorder.setSampleRate(10);
+        for (int i = 0; i < 50; i++) {
+            processor.deposit(a, 1.0);
+        }
+        assertEquals(5, recorder.dump().size());
+        
+        recorder.setEnabled(false);
+        processor.deposit(a, 1.0);
+        processor.setFlightRecorder(null);
+        recorder.setEnabled(true);
+        recorder.setSampleRate(1);
+        processor.deposit(a, 1.0);
+        processor.getAccountService().suspend(a);
+        assertEquals(5, recorder.dump().size());
+        assertThrows(IllegalArgumentException.class, () -> recorder.setSampleRate(0));
+    }
+    
+    @Test
+    @DisplayName("Recorder: slow operation bypasses sampling and triggers a dump")
+    void anomaly() {
+        recorder.setSampleRate(1_000);
+        AtomicReference<List<FlightRecorder.Event>> dumped = new AtomicReference<>();
+        List<Runnable> handedOff = new ArrayList<>();
+        recorder.onAnomaly(5_000_000, 60_000_000_000L, dumped::set, handedOff::add);
+        processor.addListener(new TransactionListener() {
+            @Override
+            public void onDeposit(Account account, double amount) {
+                if (amount == 99.0) {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        
+        processor.deposit(a, 1.0);
+        processor.deposit(a, 99.0);
+        // The slow thread only handed the dump off
+        assertNull(dumped.get());
+        assertEquals(1, handedOff.size());
+        handedOff.get(0).run();
+        processor.deposit(a, 99.0);
+        
+        assertNotNull(dumped.get());
+        assertEquals(1, dumped.get().size());
+        assertTrue(dumped.get().get(0).getDurationNanos() >= 5_000_000);
+        // Second spike is recorded but within the cooldown
+        assertEquals(1, handedOff.size());
+        assertEquals(2, recorder.dump().size());
+    }
+    
+    @Test
+    @DisplayName("Recorder: threads record concurrently into their own rings")
+    void concurrentThreads() throws Exception {
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Account account = new Account("FR-T" + t, 0.0, Account.VERIFIED);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10_000; i++) {
+                    processor.deposit(account, 1.0);
+                }
+            }, "worker-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        // Dumps taken while the writers run only ever show complete events
+        for (int i = 0; i < 50; i++) {
+            for (FlightRecorder.Event event : recorder.dump()) {
+                assertEquals(Money.of(1.0), event.getAmount());
+                assertTrue(event.getAccountId().startsWith("FR-T"));
+            }
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        
+        List<FlightRecorder.Event> events = recorder.dump();
+        assertEquals(threads * 64, events.size());
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i - 1).getStartNanos() <= events.get(i).getStartNanos());
+        }
+    }
+    
+    @Test
+    @DisplayName("Recorder: rings of finished threads are released")
+    void finishedThreadsReleased() throws Exception {
+        int threads = FlightRecorder.MAX_DEAD_RINGS + 36;
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> processor.deposit(a, 1.0), "short-" + t);
+            thread.start();
+            thread.join();
+        }
+        List<FlightRecorder.Event> events = recorder.dump();
+        assertEquals(FlightRecorder.MAX_DEAD_RINGS, recorder.getRingCount());
+        assertEquals(FlightRecorder.MAX_DEAD_RINGS, events.size());
+        // The newest threads are the ones kept
+        assertTrue(events.stream().anyMatch(e -> e.getThread().equals("short-" + (threads - 1))));
+        
+        recorder.setRetention(0);
+        Thread.sleep(1);
+        assertTrue(recorder.dump().isEmpty());
+        assertEquals(0, recorder.getRingCount());
+        
+        processor.deposit(a, 1.0);
+        assertEquals(1, recorder.getRingCount());
+        assertEquals(1, recorder.dump().size());
+    }
+    
+    @Test
+    @DisplayName("Recorder: dump to file")
+    void dumpToFile() throws IOException {
+        processor.deposit(a, 12.5);
+        processor.transfer(a, b, 1.0);
+        Path file = dir.resolve("flight.txt");
+        
+        recorder.dump(file);
+        
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).startsWith("# 2 events, slowest:"));
+        assertTrue(lines.get(1).contains("DEPOSIT FR-A $12.50 code=0"), lines.get(1));
+        assertTrue(lines.get(2).contains("TRANSFER FR-A->FR-B"), lines.get(2));
+    }
+}
@@ -0,0 +1,193 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for secondary history indexes.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor -> HistoryIndex (journal + bitmaps + amount runs) -> queries
+ */
+@DisplayName("Integration Tests - History Index")
+public class HistoryIndexTests {
+    
+    private TransactionProcessor processor;
+    private TransactionJournal journal;
+    private HistoryIndex index;
+    private List<Account> accounts;
+    
+    @BeforeEach
+    void setUp() {
+        processor = new TransactionProcessor();
+        journal = new TransactionJournal();
+        index = new HistoryIndex(journal).attach(processor);
+        accounts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            accounts.add(new Account("HIX-" + i, 50_000.0, Account.VERIFIED));
+        }
+    }
+    
+    @Test
+    @DisplayName("Index: large withdrawals by amount range and type")
+    void largeWithdrawals() {
+        runRandomTraffic(20_000, 11);
+        
+        SequenceBitmap hits = index.ofType(TransactionCodec.WITHDRAW).and(index.amountAtLeast(Money.of(10_000.0)));
+        
+        assertMatches(e -> e.getType() == TransactionCodec.WITHDRAW && e.getAmount() >= 10_000.0, hits);
+        assertFalse(hits.isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Index: amount ranges match a full scan, boundaries inclusive")
+    void amountRanges() {
+        runRandomTraffic(5_000, 3);
+        processor.deposit(accounts.get(0), 123.45);
+        
+        assertMatches(e -> e.getType() != TransactionCodec.STATUS_CHANGE
+                && e.getAmount() >= 100.0 && e.getAmount() <= 500.0,
+                index.amountBetween(Money.of(100.0), Money.of(500.0)));
+        assertMatches(e -> e.getType() != TransactionCodec.STATUS_CHANGE && e.getAmount() == 123.45,
+                index.amountBetween(Money.of(123.45), Money.of(123.45)));
+        assertTrue(index.amountBetween(Money.of(1_000_000.0), Money.of(2_000_000.0)).isEmpty());
+        assertTrue(index.amountBetween(Money.of(500.0), Money.of(100.0)).isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Index: query results are snapshots, apart from the index")
+    void resultsAreSnapshots() {
+        runRandomTraffic(5_000, 7);
+        SequenceBitmap deposits = index.ofType(TransactionCodec.DEPOSIT);
+        long before = deposits.cardinality();
+        
+        processor.deposit(accounts.get(0), 10.0);
+        deposits.add(journal.size() + 100);
+        
+        assertEquals(before + 1, deposits.cardinality());
+        assertEquals(before + 1, index.ofType(TransactionCodec.DEPOSIT).cardinality());
+        assertFalse(index.ofType(TransactionCodec.DEPOSIT).contains(journal.size() + 100));
+        assertTrue(index.ofType(TransactionCodec.DEPOSIT).contains(journal.size() - 1));
+        assertFalse(deposits.contains(journal.size() - 1));
+        assertMatches(e -> e.getType() == TransactionCodec.DEPOSIT, index.ofType(TransactionCodec.DEPOSIT));
+    }
+    
+    @Test
+    @DisplayName("Index: account and counterparty postings")
+    void accountAndCounterparty() {
+        runRandomTraffic(10_000, 5);
+        processor.getAccountService().suspend(accounts.get(7));
+        
+        assertMatches(e -> "HIX-7".equals(e.getAccountId()), index.byAccount("HIX-7"));
+        assertMatches(e -> "HIX-7".equals(e.getTargetId()), index.byCounterparty("HIX-7"));
+        assertMatches(e -> "HIX-7".equals(e.getAccountId()) || "HIX-7".equals(e.getTargetId()),
+                index.involving("HIX-7"));
+        assertMatches(e -> e.getType() == TransactionCodec.TRANSFER
+                && "HIX-3".equals(e.getAccountId()) && "HIX-9".equals(e.getTargetId()),
+                index.byAccount("HIX-3").and(index.byCounterparty("HIX-9")));
+        assertTrue(index.byAccount("HIX-404").isEmpty());
+        assertEquals(1, index.ofType(TransactionCodec.STATUS_CHANGE).cardinality());
+    }
+    
+    @Test
+    @DisplayName("Index: catching up on an existing journal gives the same answers")
+    void catchUp() {
+        runRandomTraffic(3_000, 9);
+        
+        HistoryIndex rebuilt = new HistoryIndex(journal);
+        rebuilt.catchUp();
+        
+        assertArrayEquals(index.ofType(TransactionCodec.TRANSFER).toArray(),
+                rebuilt.ofType(TransactionCodec.TRANSFER).toArray());
+        assertArrayEquals(index.amountAtLeast(Money.of(50.0)).toArray(),
+                rebuilt.amountAtLeast(Money.of(50.0)).toArray());
+        assertThrows(IllegalArgumentException.class, () -> rebuilt.index(journal.get(0)));
+    }
+    
+    @Test
+    @DisplayName("Bitmap: and/or match sorted sets across sparse and dense chunks")
+    void bitmapOperations() {
+        Random random = new Random(21);
+        TreeSet<Long> a = new TreeSet<>();
+        TreeSet<Long> b = new TreeSet<>();
+        SequenceBitmap bitmapA = new SequenceBitmap();
+        SequenceBitmap bitmapB = new SequenceBitmap();
+        for (long s = 0; s < 300_000; s++) {
+            // Dense, sparse and empty stretches
+            int density = (int) (s / 65_536) % 3 == 0 ? 2 : 40;
+            if (random.nextInt(density) == 0) {
+                a.add(s);
+                bitmapA.add(s);
+            }
+            if (s > 100_000 && random.nextInt(3) == 0) {
+                b.add(s);
+                bitmapB.add(s);
+            }
+        }
+        
+        TreeSet<Long> and = new TreeSet<>(a);
+        and.retainAll(b);
+        TreeSet<Long> or = new TreeSet<>(a);
+        or.addAll(b);
+        assertArrayEquals(toArray(a), bitmapA.toArray());
+        assertArrayEquals(toArray(and), bitmapA.and(bitmapB).toArray());
+        assertArrayEquals(toArray(or), bitmapA.or(bitmapB).toArray());
+        assertEquals(or.size(), bitmapB.or(bitmapA).cardinality());
+        assertTrue(bitmapA.contains(a.first()));
+        assertFalse(bitmapA.contains(a.first() + 300_000));
+        assertThrows(IllegalArgumentException.class, () -> bitmapA.add(5));
+    }
+    
+    @Test
+    @DisplayName("Bitmap: sparse postings stay compact")
+    void compact() {
+        SequenceBitmap sparse = new SequenceBitmap();
+        for (long s = 0; s < 1_000_000; s += 1_000) {
+            sparse.add(s);
+        }
+        // 1000 entries: 2 bytes each plus growth slack, against 125 KB for a flat bitmap
+        assertTrue(sparse.sizeInBytes() < 8_000, "size " + sparse.sizeInBytes());
+    }
+    
+    private void assertMatches(Predicate<JournalEntry> filter, SequenceBitmap hits) {
+        List<Long> expected = new ArrayList<>();
+        for (JournalEntry entry : journal.entries()) {
+            if (filter.test(entry)) {
+                expected.add(entry.getSequence());
+            }
+        }
+        List<Long> actual = new ArrayList<>();
+        for (JournalEntry entry : index.entries(hits)) {
+            actual.add(entry.getSequence());
+        }
+        assertEquals(expected, actual);
+    }
+    
+    private static long[] toArray(TreeSet<Long> set) {
+        return set.stream().mapToLong(Long::longValue).toArray();
+    }
+    
+    private void runRandomTraffic(int operations, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < operations; i++) {
+            Account a = accounts.get(random.nextInt(accounts.size()));
+            Account b = accounts.get(random.nextInt(accounts.size()));
+            double amount = (1 + random.nextInt(1_500_000)) / 100.0;
+            switch (random.nextInt(3)) {
+                case 0: processor.deposit(a, amount); break;
+                case 1: processor.withdraw(a, amount); break;
+                default: processor.transfer(a, b, amount); break;
+            }
+        }
+    }
+}
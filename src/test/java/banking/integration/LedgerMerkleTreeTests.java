@@ -0,0 +1,149 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for the ledger Merkle tree.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor -> TransactionJournal -> LedgerMerkleTree
+ */
+@DisplayName("Integration Tests - Ledger Merkle Tree")
+public class LedgerMerkleTreeTests {
+    
+    private TransactionProcessor processor;
+    private TransactionJournal journal;
+    private LedgerMerkleTree ledger;
+    private Account account;
+    
+    @BeforeEach
+    void setUp() {
+        processor = new TransactionProcessor();
+        journal = new TransactionJournal().attach(processor);
+        ledger = new LedgerMerkleTree(journal, 16);
+        account = new Account("MRK-001", 0.0, Account.VERIFIED);
+    }
+    
+    @Test
+    @DisplayName("Merkle: only full segments are sealed")
+    void sealsFullSegments() {
+        deposits(40);
+        
+        assertEquals(2, ledger.seal());
+        assertEquals(32, ledger.getSealedEntries());
+        assertEquals(0, ledger.seal());
+        
+        deposits(8);
+        assertEquals(1, ledger.seal());
+        assertEquals(3, ledger.getSealedSegments());
+    }
+    
+    @Test
+    @DisplayName("Merkle: every sealed entry has a short inclusion proof")
+    void inclusionProofs() {
+        deposits(16 * 37);
+        ledger.seal();
+        byte[] root = ledger.root();
+        
+        for (long seq = 0; seq < journal.size(); seq++) {
+            LedgerMerkleTree.InclusionProof proof = ledger.proveInclusion(seq);
+            assertTrue(LedgerMerkleTree.verify(journal.get(seq), proof, root), "seq=" + seq);
+            // 4 levels in a segment of 16, 6 over 37 segments
+            assertTrue(proof.length() <= 10);
+        }
+    }
+    
+    @Test
+    @DisplayName("Merkle: an altered entry fails verification")
+    void alteredEntryRejected() {
+        deposits(64);
+        ledger.seal();
+        byte[] root = ledger.root();
+        
+        JournalEntry original = journal.get(20);
+        JournalEntry forged = new JournalEntry(original.getSequence(), original.getType(),
+                original.getAccountId(), original.getTargetId(), original.getAmount() * 10, original.getStatus());
+        LedgerMerkleTree.InclusionProof proof = ledger.proveInclusion(20);
+        
+        assertTrue(LedgerMerkleTree.verify(original, proof, root));
+        assertFalse(LedgerMerkleTree.verify(forged, proof, root));
+        assertFalse(LedgerMerkleTree.verify(journal.get(21), proof, root));
+        
+        List<JournalEntry> range = journal.entries(10, 30);
+        assertTrue(ledger.verifyRange(range));
+        range.set(10, forged);
+        assertFalse(ledger.verifyRange(range));
+    }
+    
+    @Test
+    @DisplayName("Merkle: a range proof holds only the hashes beside its ends")
+    void rangeProofs() {
+        deposits(16 * 37);
+        ledger.seal();
+        byte[] root = ledger.root();
+        
+        long[][] ranges = { { 0, 1 }, { 5, 40 }, { 15, 17 }, { 16, 32 }, { 100, 101 }, { 3, 589 }, { 0, 592 } };
+        for (long[] r : ranges) {
+            LedgerMerkleTree.RangeProof proof = ledger.proveRange(r[0], r[1]);
+            List<JournalEntry> entries = journal.entries(r[0], r[1]);
+            assertTrue(LedgerMerkleTree.verifyRange(entries, proof, root), r[0] + ".." + r[1]);
+            // Two boundary paths of 4 levels in a segment, plus 2 per level over 37 segments
+            assertTrue(proof.length() <= 2 * 4 + 2 * 6, "length=" + proof.length());
+        }
+        
+        LedgerMerkleTree.RangeProof proof = ledger.proveRange(5, 40);
+        List<JournalEntry> entries = journal.entries(5, 40);
+        assertFalse(LedgerMerkleTree.verifyRange(journal.entries(6, 41), proof, root));
+        assertFalse(LedgerMerkleTree.verifyRange(entries.subList(0, 34), proof, root));
+        JournalEntry original = entries.get(20);
+        entries.set(20, new JournalEntry(original.getSequence(), original.getType(), original.getAccountId(),
+                original.getTargetId(), original.getAmount() + 1, original.getStatus()));
+        assertFalse(LedgerMerkleTree.verifyRange(entries, proof, root));
+        assertThrows(IllegalArgumentException.class, () -> ledger.proveRange(580, 593));
+    }
+    
+    @Test
+    @DisplayName("Merkle: root changes as segments are added and proofs cannot cover the open segment")
+    void rootGrowsWithLedger() {
+        deposits(16);
+        ledger.seal();
+        byte[] first = ledger.root();
+        
+        deposits(20);
+        ledger.seal();
+        
+        assertFalse(java.util.Arrays.equals(first, ledger.root()));
+        assertThrows(IllegalArgumentException.class, () -> ledger.proveInclusion(33));
+        assertTrue(ledger.verifyRange(journal.entries(0, 32)));
+        assertFalse(ledger.verifyRange(journal.entries(30, 36)));
+    }
+    
+    @Test
+    @DisplayName("Merkle: background sealer catches up")
+    void backgroundSealing() throws InterruptedException {
+        ledger.start(5);
+        try {
+            deposits(100);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (ledger.getSealedSegments() < 6 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(6, ledger.getSealedSegments());
+        } finally {
+            ledger.close();
+        }
+    }
+    
+    private void deposits(int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(processor.deposit(account, 1.0 + i % 7).isSuccess());
+        }
+    }
+}
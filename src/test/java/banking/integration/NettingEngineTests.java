@@ -0,0 +1,157 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for transfer netting.
+ * 
+ * Tests the flow:
+ *   NettingEngine.submit -> settle (net positions) -> Account -> TransactionJournal
+ */
+@DisplayName("Integration Tests - Netting Engine")
+public class NettingEngineTests {
+    
+    private TransactionProcessor processor;
+    private NettingEngine engine;
+    private Account a;
+    private Account b;
+    private Account c;
+    
+    @BeforeEach
+    void setUp() {
+        processor = new TransactionProcessor();
+        engine = new NettingEngine(processor);
+        a = new Account("NET-A", 1000.0, Account.VERIFIED);
+        b = new Account("NET-B", 1000.0, Account.VERIFIED);
+        c = new Account("NET-C", 1000.0, Account.VERIFIED);
+    }
+    
+    @Test
+    @DisplayName("Netting: opposing transfers collapse to net positions")
+    void opposingTransfersNet() {
+        engine.submit(a, b, 300.0);
+        engine.submit(b, a, 200.0);
+        engine.submit(b, c, 100.0);
+        engine.submit(c, a, 100.0);
+        
+        NettingEngine.Settlement settlement = engine.settle();
+        
+        assertTrue(settlement.isSuccess(), settlement.getMessage());
+        assertEquals(4, settlement.getSettled().size());
+        // a: -300 +200 +100 = 0, b: +300 -200 -100 = 0, c: +100 -100 = 0
+        assertEquals(0, settlement.getMovements());
+        assertEquals(1000.0, a.getBalance(), 0.001);
+        assertEquals(1000.0, b.getBalance(), 0.001);
+        assertEquals(0, engine.getPendingCount());
+    }
+    
+    @Test
+    @DisplayName("Netting: gross overdraft allowed when the net position is covered")
+    void netCovered() {
+        Account empty = new Account("NET-E", 0.0, Account.VERIFIED);
+        engine.submit(a, empty, 500.0);
+        engine.submit(empty, b, 400.0);
+        
+        NettingEngine.Settlement settlement = engine.settle();
+        
+        assertTrue(settlement.isSuccess());
+        assertEquals(Money.ofMajorUnits(-500), settlement.getPositions().get("NET-A"));
+        assertEquals(Money.ofMajorUnits(100), settlement.getPositions().get("NET-E"));
+        assertEquals(500.0, a.getBalance(), 0.001);
+        assertEquals(100.0, empty.getBalance(), 0.001);
+        assertEquals(1400.0, b.getBalance(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Netting: short account fails the whole settlement, transfers returned")
+    void shortAccountFailsAll() {
+        engine.submit(b, c, 50.0);
+        engine.submit(a, b, 1500.0);
+        
+        NettingEngine.Settlement settlement = engine.settle();
+        
+        assertEquals(TransactionProcessor.Result.INSUFFICIENT_FUNDS, settlement.getCode());
+        assertEquals(List.of("NET-A"), settlement.getShortAccounts());
+        assertEquals(0, settlement.getMovements());
+        assertEquals(0, settlement.getSettled().size());
+        assertEquals(2, settlement.getUnsettled().size());
+        assertEquals(0, engine.getPendingCount());
+        assertEquals(1000.0, a.getBalance(), 0.001);
+        assertEquals(1000.0, b.getBalance(), 0.001);
+        assertEquals(1000.0, c.getBalance(), 0.001);
+        
+        processor.deposit(a, 500.0);
+        engine.resubmit(settlement.getUnsettled());
+        assertTrue(engine.settle().isSuccess());
+        assertEquals(0.0, a.getBalance(), 0.001);
+        assertEquals(2450.0, b.getBalance(), 0.001);
+        assertEquals(1050.0, c.getBalance(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Netting: two handles on one off-heap record are one position")
+    void offHeapHandlesShareAPosition() {
+        OffHeapAccountTable table = new OffHeapAccountTable(4);
+        table.create("NET-H", 100.0, Account.VERIFIED);
+        engine.submit(table.get("NET-H"), a, 80.0);
+        engine.submit(table.get("NET-H"), b, 80.0);
+        
+        NettingEngine.Settlement settlement = engine.settle();
+        
+        assertEquals(TransactionProcessor.Result.INSUFFICIENT_FUNDS, settlement.getCode());
+        assertEquals(List.of("NET-H"), settlement.getShortAccounts());
+        assertEquals(100.0, table.get("NET-H").getBalance(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Netting: transfers to closed accounts rejected, rest settled")
+    void closedTargetRejected() {
+        processor.getAccountService().close(c);
+        engine.submit(a, b, 100.0);
+        engine.submit(a, c, 100.0);
+        
+        NettingEngine.Settlement settlement = engine.settle();
+        
+        assertTrue(settlement.isSuccess());
+        assertEquals(1, settlement.getRejected().size());
+        assertSame(c, settlement.getRejected().get(0).getTo());
+        assertEquals(900.0, a.getBalance(), 0.001);
+        assertEquals(1000.0, c.getBalance(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("History: every original transfer journaled and replayable")
+    void originalTransfersJournaled() {
+        List<Account> accounts = List.of(a, b, c);
+        var opening = ReplayEngine.openingState(accounts);
+        TransactionJournal journal = new TransactionJournal().attach(processor);
+        Random random = new Random(7);
+        int count = 0;
+        for (int i = 0; i < 500; i++) {
+            Account from = accounts.get(random.nextInt(3));
+            Account to = accounts.get(random.nextInt(3));
+            if (from != to) {
+                engine.submit(from, to, 1 + random.nextInt(20));
+                count++;
+            }
+        }
+        
+        NettingEngine.Settlement settlement = engine.settle();
+        
+        assertTrue(settlement.isSuccess());
+        assertTrue(settlement.getMovements() <= 3);
+        assertEquals(count, journal.size());
+        var rebuilt = new ReplayEngine(2).replay(opening, journal.entries());
+        assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(new ArrayList<>(rebuilt.values())));
+        assertEquals(3000.0, a.getBalance() + b.getBalance() + c.getBalance(), 0.001);
+    }
+}
@@ -0,0 +1,139 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for the off-heap account table.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor / AccountService -> flyweight handle -> direct memory
+ */
+@DisplayName("Integration Tests - Off-Heap Account Table")
+public class OffHeapAccountTableTests {
+    
+    private OffHeapAccountTable table;
+    private TransactionProcessor processor;
+    
+    @BeforeEach
+    void setUp() {
+        table = new OffHeapAccountTable(10_000);
+        processor = new TransactionProcessor();
+    }
+    
+    @Test
+    @DisplayName("Off-heap: records survive handle churn")
+    void createAndGet() {
+        assertNotNull(table.create("OH-001", 125.75, Account.VERIFIED));
+        assertNull(table.create("OH-001", 1.0, Account.VERIFIED));
+        
+        Account handle = table.get("OH-001");
+        
+        assertEquals("OH-001", handle.getAccountId());
+        assertEquals(125.75, handle.getBalance());
+        assertEquals(Account.VERIFIED, handle.getStatus());
+        assertEquals(handle, table.get("OH-001"));
+        assertNull(table.get("OH-404"));
+        assertEquals(1, table.size());
+    }
+    
+    @Test
+    @DisplayName("Off-heap: processor and service run unchanged on handles")
+    void processorAndServiceOnHandles() {
+        table.create("OH-001", 500.0, Account.UNVERIFIED);
+        table.create("OH-002", 0.0, Account.VERIFIED);
+        
+        assertTrue(processor.getAccountService().verify(table.get("OH-001")));
+        assertTrue(processor.deposit(table.get("OH-001"), 0.5).isSuccess());
+        assertTrue(processor.withdraw(table.get("OH-001"), 100.25).isSuccess());
+        assertTrue(processor.transfer(table.get("OH-001"), table.get("OH-002"), 200.0).isSuccess());
+        assertTrue(processor.getAccountService().close(table.get("OH-002")));
+        
+        assertEquals(200.25, table.get("OH-001").getBalance());
+        assertEquals(200.0, table.get("OH-002").getBalance());
+        assertEquals(Account.CLOSED, table.get("OH-002").snapshot().getStatus());
+        assertFalse(processor.deposit(table.get("OH-002"), 1.0).isSuccess());
+    }
+    
+    @Test
+    @DisplayName("Off-heap: transfers between heap and off-heap accounts")
+    void mixedTransfers() {
+        Account heap = new Account("HEAP-001", 100.0, Account.VERIFIED);
+        table.create("OH-001", 100.0, Account.VERIFIED);
+        
+        assertTrue(processor.transfer(heap, table.get("OH-001"), 40.0).isSuccess());
+        assertTrue(processor.transfer(table.get("OH-001"), heap, 140.0).isSuccess());
+        
+        assertEquals(200.0, heap.getBalance());
+        assertEquals(0.0, table.get("OH-001").getBalance());
+    }
+    
+    @Test
+    @DisplayName("Off-heap: concurrent opposing transfers keep the total")
+    void concurrentTransfers() throws Exception {
+        for (int i = 0; i < 64; i++) {
+            table.create("OH-" + i, 1000.0, Account.VERIFIED);
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    Account from = table.get("OH-" + ((i * 7 + seed) % 64));
+                    Account to = table.get("OH-" + ((i * 13 + seed * 3) % 64));
+                    processor.transfer(from, to, 1.25);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        double total = 0;
+        for (int i = 0; i < 64; i++) {
+            total += table.get("OH-" + i).getBalance();
+        }
+        assertEquals(64_000.0, total, 1e-9);
+    }
+    
+    @Test
+    @DisplayName("Off-heap: invalid statuses are rejected")
+    void invalidStatus() {
+        assertThrows(IllegalArgumentException.class, () -> table.create("OH-001", 0.0, "Frozen"));
+    }
+    
+    @Test
+    @DisplayName("Off-heap: opening balances are exact or rejected")
+    void openingBalances() {
+        Account exact = table.create("OH-001", Money.parse("90071992547409.87"), Account.VERIFIED);
+        
+        assertEquals(9_007_199_254_740_987L, exact.getBalanceMinorUnits());
+        assertThrows(IllegalArgumentException.class, () -> table.create("OH-002", Double.NaN, Account.VERIFIED));
+        assertThrows(IllegalArgumentException.class,
+                () -> table.create("OH-002", Double.POSITIVE_INFINITY, Account.VERIFIED));
+        assertNull(table.get("OH-002"));
+    }
+    
+    @Test
+    @DisplayName("Off-heap: a full small table still answers lookups")
+    void smallTableFull() {
+        OffHeapAccountTable small = new OffHeapAccountTable(2);
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(small.create("OH-" + i, 1.0, Account.VERIFIED));
+        }
+        
+        assertThrows(IllegalStateException.class, () -> small.create("OH-9", 1.0, Account.VERIFIED));
+        assertNull(small.get("OH-404"));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapAccountTable(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapAccountTable(-1));
+    }
+}
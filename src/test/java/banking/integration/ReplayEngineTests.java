@@ -0,0 +1,201 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for journal replay.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor / AccountService -> TransactionJournal -> ReplayEngine
+ */
+@DisplayName("Integration Tests - Journal Replay")
+public class ReplayEngineTests {
+    
+    private TransactionProcessor processor;
+    private TransactionJournal journal;
+    private List<Account> accounts;
+    
+    @BeforeEach
+    void setUp() {
+        processor = new TransactionProcessor();
+        accounts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            accounts.add(new Account("RPL-" + i, 1000.0, Account.VERIFIED));
+        }
+    }
+    
+    @Test
+    @DisplayName("Replay: rebuilt state matches the original digest")
+    void replayMatchesOriginal() {
+        Map<String, Account.Snapshot> opening = ReplayEngine.openingState(accounts);
+        journal = new TransactionJournal().attach(processor);
+        runRandomTraffic(5_000, 42);
+        
+        for (int partitions : new int[] { 1, 4, 7 }) {
+            Map<String, Account> rebuilt = new ReplayEngine(partitions).replay(opening, journal.entries());
+            assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(rebuilt.values()),
+                    "partitions=" + partitions);
+        }
+    }
+    
+    @Test
+    @DisplayName("Replay: status changes are journaled and replayed")
+    void statusChangesReplayed() {
+        Map<String, Account.Snapshot> opening = ReplayEngine.openingState(accounts);
+        journal = new TransactionJournal().attach(processor);
+        AccountService service = processor.getAccountService();
+        
+        assertTrue(service.suspend(accounts.get(0)));
+        assertTrue(processor.transfer(accounts.get(1), accounts.get(2), 250.0).isSuccess());
+        assertTrue(service.close(accounts.get(3)));
+        
+        assertEquals(3, journal.size());
+        Map<String, Account> rebuilt = new ReplayEngine(3).replay(opening, journal.entries());
+        assertEquals(Account.SUSPENDED, rebuilt.get("RPL-0").getStatus());
+        assertEquals(750.0, rebuilt.get("RPL-1").getBalance());
+        assertEquals(1250.0, rebuilt.get("RPL-2").getBalance());
+        assertEquals(Account.CLOSED, rebuilt.get("RPL-3").getStatus());
+        assertEquals(1000.0, rebuilt.get("RPL-4").getBalance());
+    }
+    
+    @Test
+    @DisplayName("Replay: money entries replay to the same state in any order")
+    void replayIsOrderIndependent() {
+        Map<String, Account.Snapshot> opening = ReplayEngine.openingState(accounts);
+        journal = new TransactionJournal().attach(processor);
+        runRandomTraffic(2_000, 11);
+        processor.getAccountService().suspend(accounts.get(5));
+        runRandomTraffic(2_000, 12);
+        processor.getAccountService().reinstate(accounts.get(5));
+        processor.getAccountService().close(accounts.get(6));
+        
+        List<JournalEntry> log = journal.entries();
+        List<JournalEntry> money = new ArrayList<>();
+        for (JournalEntry entry : log) {
+            if (entry.getType() != TransactionCodec.STATUS_CHANGE) {
+                money.add(entry);
+            }
+        }
+        Collections.shuffle(money, new Random(3));
+        // Status changes keep their places; everything else is reordered
+        TransactionJournal shuffled = new TransactionJournal();
+        int next = 0;
+        for (JournalEntry entry : log) {
+            JournalEntry e = entry.getType() == TransactionCodec.STATUS_CHANGE ? entry : money.get(next++);
+            shuffled.append(e.getType(), e.getAccountId(), e.getTargetId(), e.getAmountMinorUnits(), e.getStatus());
+        }
+        
+        Map<String, Account> rebuilt = new ReplayEngine(4).replay(opening, shuffled.entries());
+        assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(rebuilt.values()));
+    }
+    
+    @Test
+    @DisplayName("Replay: racing status changes are journaled in the order applied")
+    void racingStatusChanges() throws InterruptedException {
+        Map<String, Account.Snapshot> opening = ReplayEngine.openingState(accounts);
+        journal = new TransactionJournal().attach(processor);
+        AccountService service = processor.getAccountService();
+        Account account = accounts.get(0);
+        
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            boolean suspending = t % 2 == 0;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    if (suspending) {
+                        service.suspend(account);
+                    } else {
+                        service.reinstate(account);
+                    }
+                    processor.deposit(account, 1.0);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        String expected = Account.VERIFIED;
+        for (JournalEntry entry : journal.entries()) {
+            if (entry.getType() == TransactionCodec.STATUS_CHANGE) {
+                assertNotEquals(expected, entry.getStatus(), "transition journaled out of order");
+                expected = entry.getStatus();
+            }
+        }
+        Map<String, Account> rebuilt = new ReplayEngine(4).replay(opening, journal.entries());
+        assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(rebuilt.values()));
+    }
+    
+    @Test
+    @DisplayName("Replay: failed operations are not journaled")
+    void failuresNotJournaled() {
+        journal = new TransactionJournal().attach(processor);
+        
+        assertFalse(processor.withdraw(accounts.get(0), 5000.0).isSuccess());
+        assertFalse(processor.deposit(accounts.get(0), -1.0).isSuccess());
+        
+        assertEquals(0, journal.size());
+    }
+    
+    @Test
+    @DisplayName("Replay: a tampered log gives a different digest")
+    void tamperedLogDetected() {
+        Map<String, Account.Snapshot> opening = ReplayEngine.openingState(accounts);
+        journal = new TransactionJournal().attach(processor);
+        runRandomTraffic(200, 7);
+        
+        List<JournalEntry> log = journal.entries();
+        JournalEntry first = log.get(0);
+        log.set(0, new JournalEntry(first.getSequence(), first.getType(), first.getAccountId(),
+                first.getTargetId(), first.getAmountMinorUnits() + 1, first.getStatus()));
+        
+        Map<String, Account> rebuilt = new ReplayEngine(4).replay(opening, log);
+        assertNotEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(rebuilt.values()));
+    }
+    
+    @Test
+    @DisplayName("Replay: balances too large for a double are rebuilt exactly")
+    void exactLargeBalances() {
+        // One cent apart, but the same double
+        Account large = new Account("RPL-LARGE", Money.ofMinorUnits(9_000_000_000_000_001L), Account.VERIFIED);
+        accounts.add(large);
+        Map<String, Account.Snapshot> opening = ReplayEngine.openingState(accounts);
+        journal = new TransactionJournal().attach(processor);
+        assertTrue(processor.deposit(large, Money.ofMinorUnits(1)).isSuccess());
+        assertTrue(processor.transfer(large, accounts.get(0), Money.ofMinorUnits(3)).isSuccess());
+        
+        Map<String, Account> rebuilt = new ReplayEngine(4).replay(opening, journal.entries());
+        
+        assertEquals(8_999_999_999_999_999L, rebuilt.get("RPL-LARGE").getBalanceMinorUnits());
+        assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(rebuilt.values()));
+        Account off = new Account("RPL-LARGE", Money.ofMinorUnits(9_000_000_000_000_000L), Account.VERIFIED);
+        accounts.set(accounts.size() - 1, off);
+        assertNotEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(rebuilt.values()));
+    }
+    
+    private void runRandomTraffic(int operations, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < operations; i++) {
+            Account a = accounts.get(random.nextInt(accounts.size()));
+            Account b = accounts.get(random.nextInt(accounts.size()));
+            double amount = (1 + random.nextInt(20_000)) / 100.0;
+            switch (random.nextInt(3)) {
+                case 0: processor.deposit(a, amount); break;
+                case 1: processor.withdraw(a, amount); break;
+                default: processor.transfer(a, b, amount); break;
+            }
+        }
+    }
+}
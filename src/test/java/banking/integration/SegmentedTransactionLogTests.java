@@ -0,0 +1,218 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for the segmented on-disk transaction log.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor / AccountService -> SegmentedTransactionLog -> compaction -> recovery
+ */
+@DisplayName("Integration Tests - Segmented Transaction Log")
+public class SegmentedTransactionLogTests {
+    
+    private static final long SEGMENT_BYTES = 64 * 100;
+    
+    @TempDir
+    Path dir;
+    
+    private TransactionProcessor processor;
+    private List<Account> accounts;
+    
+    @BeforeEach
+    void setUp() {
+        processor = new TransactionProcessor();
+        accounts = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            accounts.add(new Account("SEG-" + i, 1000.0, Account.VERIFIED));
+        }
+    }
+    
+    @Test
+    @DisplayName("Log: segments rotate at the size limit with an index each")
+    void rotation() throws IOException {
+        try (SegmentedTransactionLog log = open()) {
+            appendOps(log, 350);
+            
+            assertEquals(350, log.size());
+            assertEquals(4, log.getSegmentCount());
+            assertEquals(3, count("*.idx"));
+            assertEquals(4, count("*.log"));
+            assertEquals(350, log.recover().getEntries().size());
+            assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(log.recover().replay().values()));
+        }
+    }
+    
+    @Test
+    @DisplayName("Log: compaction folds sealed segments into a checkpoint")
+    void compaction() throws IOException {
+        try (SegmentedTransactionLog log = open()) {
+            appendOps(log, 1_050);
+            processor.getAccountService().suspend(accounts.get(0));
+            processor.getAccountService().close(accounts.get(1));
+            
+            assertEquals(10, log.compact());
+            assertEquals(1_000, log.getCheckpointSequence());
+            assertEquals(1, log.getSegmentCount());
+            assertEquals(1, count("checkpoint-*.bin"));
+            assertEquals(1, count("*.log"));
+            
+            SegmentedTransactionLog.Recovery recovery = log.recover();
+            assertEquals(52, recovery.getEntries().size());
+            assertEquals(1_000, recovery.getEntries().get(0).getSequence());
+            assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(recovery.replay().values()));
+            assertEquals(0, log.compact());
+        }
+    }
+    
+    @Test
+    @DisplayName("Log: a full segment whose index was never written is sealed on open")
+    void crashBeforeIndex() throws IOException {
+        try (SegmentedTransactionLog log = open()) {
+            appendOps(log, 100);
+        }
+        Files.delete(dir.resolve(String.format("%020d.idx", 0)));
+        
+        processor = new TransactionProcessor();
+        try (SegmentedTransactionLog log = open()) {
+            assertEquals(100, log.size());
+            assertTrue(Files.exists(dir.resolve(String.format("%020d.idx", 0))));
+            appendOps(log, 30);
+            log.flush();
+        }
+        try (SegmentedTransactionLog log = new SegmentedTransactionLog(dir, SEGMENT_BYTES)) {
+            assertEquals(130, log.size());
+            assertEquals(2, log.getSegmentCount());
+            assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(log.recover().replay().values()));
+        }
+    }
+    
+    @Test
+    @DisplayName("Log: an account opened after seed recovers with its opening balance")
+    void accountOpenedAfterSeed() throws IOException {
+        AccountRegistry registry = new AccountRegistry();
+        try (SegmentedTransactionLog log = open().attach(registry)) {
+            appendOps(log, 120);
+            Account opened = new Account("SEG-NEW", 250.0, Account.VERIFIED);
+            assertTrue(registry.addAccount(registry.getOrCreateClient("C-NEW", "New Client"), opened));
+            accounts.add(opened);
+            processor.deposit(opened, 10.0);
+            appendOps(log, 30);
+            
+            assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(log.recover().replay().values()));
+            log.compact();
+            assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(log.recover().replay().values()));
+            log.flush();
+        }
+        try (SegmentedTransactionLog log = new SegmentedTransactionLog(dir, SEGMENT_BYTES)) {
+            Account recovered = log.recover().replay().get("SEG-NEW");
+            assertEquals(Account.VERIFIED, recovered.getStatus());
+            assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(log.recover().replay().values()));
+        }
+    }
+    
+    @Test
+    @DisplayName("Log: reopening continues the sequence and cuts a torn frame")
+    void reopen() throws IOException {
+        try (SegmentedTransactionLog log = open()) {
+            appendOps(log, 250);
+            log.compact();
+        }
+        // Half a frame left by a crash mid-append
+        try (FileChannel channel = FileChannel.open(dir.resolve(String.format("%020d.log", 200)),
+                StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 1, 0, 6, 0, 0, 0, 0, 0, 9 }));
+        }
+        
+        processor = new TransactionProcessor();
+        try (SegmentedTransactionLog log = open()) {
+            assertEquals(250, log.size());
+            appendOps(log, 100);
+            assertEquals(350, log.size());
+            assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(log.recover().replay().values()));
+        }
+        try (SegmentedTransactionLog log = new SegmentedTransactionLog(dir, SEGMENT_BYTES)) {
+            assertEquals(350, log.size());
+            assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(log.recover().replay().values()));
+        }
+    }
+    
+    @Test
+    @DisplayName("Log: background compaction keeps disk use bounded under load")
+    void backgroundCompaction() throws Exception {
+        try (SegmentedTransactionLog log = open()) {
+            log.startCompaction(5);
+            appendOps(log, 20_050);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (log.getSegmentCount() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            
+            assertEquals(1, log.getSegmentCount());
+            assertEquals(20_050, log.size());
+            assertEquals(ReplayEngine.digest(accounts), ReplayEngine.digest(log.recover().replay().values()));
+        }
+    }
+    
+    @Test
+    @DisplayName("Log: a damaged sealed segment fails its checksum")
+    void checksum() throws IOException {
+        try (SegmentedTransactionLog log = open()) {
+            appendOps(log, 150);
+            try (FileChannel channel = FileChannel.open(dir.resolve(String.format("%020d.log", 0)),
+                    StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[] { 0x7F }), 64 * 3 + 17);
+            }
+            
+            assertThrows(IOException.class, log::recover);
+            assertThrows(IOException.class, log::compact);
+        }
+    }
+    
+    private SegmentedTransactionLog open() throws IOException {
+        SegmentedTransactionLog log = new SegmentedTransactionLog(dir, SEGMENT_BYTES);
+        if (log.size() == 0) {
+            log.seed(accounts);
+        }
+        return log.attach(processor);
+    }
+    
+    private void appendOps(SegmentedTransactionLog log, int operations) {
+        Random random = new Random(log.size());
+        long target = log.size() + operations;
+        while (log.size() < target) {
+            Account a = accounts.get(random.nextInt(accounts.size()));
+            Account b = accounts.get(random.nextInt(accounts.size()));
+            double amount = (1 + random.nextInt(20_000)) / 100.0;
+            switch (random.nextInt(3)) {
+                case 0: processor.deposit(a, amount); break;
+                case 1: processor.withdraw(a, amount); break;
+                default: processor.transfer(a, b, amount); break;
+            }
+        }
+    }
+    
+    private long count(String glob) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> dir.getFileSystem().getPathMatcher("glob:" + glob)
+                    .matches(f.getFileName())).count();
+        }
+    }
+}
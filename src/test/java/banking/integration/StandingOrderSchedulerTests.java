@@ -0,0 +1,265 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for scheduled transfers and standing orders.
+ * 
+ * Tests the flow:
+ *   StandingOrderScheduler.schedule -> timing wheel -> TransactionProcessor -> Account
+ */
+@DisplayName("Integration Tests - Standing Order Scheduler")
+public class StandingOrderSchedulerTests {
+    
+    private static final long TICK = 1000L;
+    
+    @TempDir
+    Path dir;
+    
+    private AtomicLong now;
+    private TransactionProcessor processor;
+    private AccountRegistry registry;
+    private Account payer;
+    private Account payee;
+    
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_000_000L);
+        processor = new TransactionProcessor();
+        registry = new AccountRegistry();
+        Client client = registry.getOrCreateClient("C1", "Client");
+        payer = new Account("SO-001", 10_000.0, Account.VERIFIED);
+        payee = new Account("SO-002", 0.0, Account.VERIFIED);
+        registry.addAccount(client, payer);
+        registry.addAccount(client, payee);
+    }
+    
+    private StandingOrderScheduler scheduler(Path stateFile) throws Exception {
+        return StandingOrderScheduler.open(processor, registry::getAccount, TICK, now::get, stateFile);
+    }
+    
+    @Test
+    @DisplayName("Scheduled transfer fires at its due time, not before")
+    void firesWhenDue() throws Exception {
+        StandingOrderScheduler scheduler = scheduler(dir.resolve("wheel.bin"));
+        scheduler.scheduleTransfer("SO-001", "SO-002", Money.ofMajorUnits(100), now.get() + 5 * TICK);
+        
+        assertEquals(0, scheduler.advanceTo(now.get() + 4 * TICK).getFired());
+        assertEquals(0.0, payee.getBalance(), 0.001);
+        
+        StandingOrderScheduler.Report report = scheduler.advanceTo(now.get() + 5 * TICK);
+        assertEquals(1, report.getFired());
+        assertEquals(1, report.getSucceeded());
+        assertEquals(100.0, payee.getBalance(), 0.001);
+        assertEquals(0, scheduler.size());
+    }
+    
+    @Test
+    @DisplayName("Standing order repeats every period")
+    void standingOrderRepeats() throws Exception {
+        StandingOrderScheduler scheduler = scheduler(null);
+        scheduler.standingOrder("SO-001", "SO-002", Money.ofMajorUnits(10), now.get() + TICK, 10 * TICK);
+        
+        StandingOrderScheduler.Report report = scheduler.advanceTo(now.get() + 100 * TICK);
+        
+        assertEquals(10, report.getFired());
+        assertEquals(100.0, payee.getBalance(), 0.001);
+        assertEquals(1, scheduler.size());
+    }
+    
+    @Test
+    @DisplayName("Far-future order cascades down and fires on the exact tick")
+    void farFutureCascades() throws Exception {
+        StandingOrderScheduler scheduler = scheduler(null);
+        long due = now.get() + 70_000 * TICK;
+        scheduler.scheduleTransfer("SO-001", "SO-002", Money.ofMajorUnits(1), due);
+        
+        assertEquals(0, scheduler.advanceTo(due - TICK).getFired());
+        assertEquals(1, scheduler.advanceTo(due).getFired());
+    }
+    
+    @Test
+    @DisplayName("Cancelled orders never fire")
+    void cancel() throws Exception {
+        StandingOrderScheduler scheduler = scheduler(null);
+        long id = scheduler.standingOrder("SO-001", "SO-002", Money.ofMajorUnits(10), now.get() + TICK, TICK);
+        scheduler.advanceTo(now.get() + 3 * TICK);
+        assertTrue(scheduler.cancel(id));
+        assertFalse(scheduler.cancel(id));
+        
+        assertEquals(0, scheduler.advanceTo(now.get() + 10 * TICK).getFired());
+        assertEquals(30.0, payee.getBalance(), 0.001);
+        assertEquals(0, scheduler.size());
+    }
+    
+    @Test
+    @DisplayName("Failed orders reported with the processor's result")
+    void failureReported() throws Exception {
+        StandingOrderScheduler scheduler = scheduler(null);
+        scheduler.scheduleTransfer("SO-001", "SO-002", Money.ofMajorUnits(50_000), now.get() + TICK);
+        scheduler.scheduleTransfer("SO-001", "SO-404", Money.ofMajorUnits(1), now.get() + TICK);
+        
+        StandingOrderScheduler.Report report = scheduler.advanceTo(now.get() + TICK);
+        
+        assertEquals(2, report.getFired());
+        assertEquals(2, report.getFailures().size());
+        assertEquals(TransactionProcessor.Result.TRANSFER_FAILED, report.getFailures().get(0).getResult().getCode());
+        assertEquals(TransactionProcessor.Result.ACCOUNT_NOT_FOUND, report.getFailures().get(1).getResult().getCode());
+    }
+    
+    @Test
+    @DisplayName("Persistence: wheel survives a restart with the same order ids")
+    void survivesRestart() throws Exception {
+        Path state = dir.resolve("wheel.bin");
+        StandingOrderScheduler scheduler = scheduler(state);
+        long standing = scheduler.standingOrder("SO-001", "SO-002", Money.ofMajorUnits(10),
+                now.get() + TICK, 5 * TICK);
+        scheduler.scheduleTransfer("SO-001", "SO-002", Money.ofMajorUnits(100), now.get() + 20 * TICK);
+        scheduler.advanceTo(now.get() + 5 * TICK);
+        assertEquals(10.0, payee.getBalance(), 0.001);
+        scheduler.close();
+        
+        // Down for 30 ticks: the missed occurrences and the one-off catch up
+        now.addAndGet(35 * TICK);
+        StandingOrderScheduler restarted = scheduler(state);
+        assertEquals(2, restarted.size());
+        StandingOrderScheduler.Report report = restarted.advance();
+        // Standing order due at +6, +11, ... +31 ticks, plus the one-off
+        assertEquals(7, report.getFired());
+        assertEquals(10.0 + 6 * 10.0 + 100.0, payee.getBalance(), 0.001);
+        assertTrue(restarted.cancel(standing));
+        assertEquals(0, restarted.size());
+    }
+    
+    @Test
+    @DisplayName("Persistence: orders fired before a crash do not fire again")
+    void crashMidBatch() throws Exception {
+        Path state = dir.resolve("wheel.bin");
+        StandingOrderScheduler scheduler = scheduler(state);
+        scheduler.standingOrder("SO-001", "SO-002", Money.ofMajorUnits(10), now.get() + TICK, TICK);
+        scheduler.scheduleTransfer("SO-001", "SO-002", Money.ofMajorUnits(100), now.get() + 3 * TICK);
+        scheduler.advanceTo(now.get() + 2 * TICK);
+        
+        // Dies right after the first transfer of tick +3 is applied
+        AtomicBoolean crash = new AtomicBoolean(true);
+        processor.addListener(new TransactionListener() {
+            @Override
+            public void onTransfer(Account from, Account to, double amount) {
+                if (crash.get()) {
+                    throw new IllegalStateException("crash");
+                }
+            }
+        });
+        assertThrows(IllegalStateException.class, () -> scheduler.advanceTo(now.get() + 5 * TICK));
+        double paid = payee.getBalance();
+        // One of the two orders due at +3 went through
+        assertTrue(paid == 30.0 || paid == 120.0, "paid " + paid);
+        crash.set(false);
+        
+        StandingOrderScheduler restarted = scheduler(state);
+        StandingOrderScheduler.Report report = restarted.advanceTo(now.get() + 5 * TICK);
+        // Ticks +4 and +5 only; both orders of +3 were journaled as fired
+        assertEquals(2, report.getFired());
+        assertEquals(paid + 20.0, payee.getBalance(), 0.001);
+        assertEquals(1, restarted.size());
+    }
+    
+    @Test
+    @DisplayName("Persistence: orders scheduled and cancelled since the checkpoint survive a crash")
+    void journalScheduleAndCancel() throws Exception {
+        Path state = dir.resolve("wheel.bin");
+        StandingOrderScheduler scheduler = scheduler(state);
+        scheduler.standingOrder("SO-001", "SO-002", Money.ofMajorUnits(10), now.get() + TICK, TICK);
+        long cancelled = scheduler.scheduleTransfer("SO-001", "SO-002", Money.ofMajorUnits(100), now.get() + 2 * TICK);
+        long oneOff = scheduler.scheduleTransfer("SO-001", "SO-002", Money.ofMajorUnits(1), now.get() + 4 * TICK);
+        assertTrue(scheduler.cancel(cancelled));
+        scheduler.advanceTo(now.get() + 2 * TICK);
+        
+        // Crash: no close(), so only the journal has any of it
+        StandingOrderScheduler restarted = scheduler(state);
+        assertEquals(2, restarted.size());
+        assertFalse(restarted.cancel(cancelled));
+        StandingOrderScheduler.Report report = restarted.advanceTo(now.get() + 4 * TICK);
+        
+        assertEquals(3, report.getFired());
+        assertEquals(41.0, payee.getBalance(), 0.001);
+        assertFalse(restarted.cancel(oneOff));
+        assertEquals(1, restarted.size());
+    }
+    
+    @Test
+    @DisplayName("Persistence: advances checkpoint only past a threshold")
+    void checkpointThreshold() throws Exception {
+        Path state = dir.resolve("wheel.bin");
+        Path journal = dir.resolve("wheel.bin.journal");
+        StandingOrderScheduler scheduler = scheduler(state);
+        scheduler.standingOrder("SO-001", "SO-002", Money.ofMajorUnits(10), now.get() + TICK, TICK);
+        
+        scheduler.advanceTo(now.get() + 3 * TICK);
+        assertFalse(Files.exists(state));
+        assertTrue(Files.size(journal) > 0);
+        
+        scheduler.setCheckpointThreshold(Files.size(journal) + 1, StandingOrderScheduler.DEFAULT_CHECKPOINT_MILLIS);
+        scheduler.advanceTo(now.get() + 4 * TICK);
+        assertTrue(Files.exists(state));
+        assertEquals(0, Files.size(journal));
+        
+        // Time alone also triggers one once the wheel has changed
+        scheduler.advanceTo(now.get() + 5 * TICK);
+        assertTrue(Files.size(journal) > 0);
+        now.addAndGet(StandingOrderScheduler.DEFAULT_CHECKPOINT_MILLIS);
+        scheduler.advanceTo(now.get());
+        assertEquals(0, Files.size(journal));
+        scheduler.close();
+    }
+    
+    @Test
+    @DisplayName("Catch-up fires only the latest missed occurrences")
+    void catchUpLimit() throws Exception {
+        StandingOrderScheduler scheduler = scheduler(null);
+        scheduler.setMaxCatchUp(3);
+        scheduler.standingOrder("SO-001", "SO-002", Money.ofMajorUnits(10), now.get() + TICK, TICK);
+        
+        StandingOrderScheduler.Report report = scheduler.advanceTo(now.get() + 100 * TICK);
+        
+        assertEquals(3, report.getFired());
+        assertEquals(97, report.getSkipped());
+        assertEquals(30.0, payee.getBalance(), 0.001);
+        assertEquals(1, scheduler.advanceTo(now.get() + 101 * TICK).getFired());
+    }
+    
+    @Test
+    @DisplayName("Scale: 100,000 orders each fire once, on their due tick")
+    void manyOrders() throws Exception {
+        StandingOrderScheduler scheduler = scheduler(null);
+        Random random = new Random(3);
+        int orders = 100_000;
+        int horizon = 300_000;
+        int[] dueCounts = new int[horizon + 1];
+        long start = now.get();
+        for (int i = 0; i < orders; i++) {
+            int tick = 1 + random.nextInt(horizon);
+            dueCounts[tick]++;
+            scheduler.schedule(TransactionCodec.DEPOSIT, "SO-002", null, Money.ofMinorUnits(1),
+                    start + tick * TICK, 0);
+        }
+        
+        for (int tick = 1; tick <= horizon; tick++) {
+            assertEquals(dueCounts[tick], scheduler.advanceTo(start + tick * TICK).getFired(), "tick " + tick);
+        }
+        assertEquals(Money.ofMinorUnits(orders), payee.getBalanceAsMoney());
+        assertEquals(0, scheduler.size());
+    }
+}
@@ -0,0 +1,122 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for compiled validation rules.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor -> ValidationRules table -> Account
+ */
+@DisplayName("Integration Tests - Validation Rules")
+public class ValidationRulesTests {
+    
+    private TransactionProcessor processor;
+    private Account verified;
+    private Account unverified;
+    
+    @BeforeEach
+    void setUp() {
+        processor = new TransactionProcessor();
+        verified = new Account("VAL-001", 1000.0, Account.VERIFIED);
+        unverified = new Account("VAL-002", 1000.0, Account.UNVERIFIED);
+    }
+    
+    @Test
+    @DisplayName("Defaults: status and amount checks match the account rules")
+    void defaults() {
+        ValidationRules rules = ValidationRules.DEFAULT;
+        Account closed = new Account("VAL-003", 0.0, Account.CLOSED);
+        assertTrue(rules.permits(ValidationRules.Operation.DEPOSIT, verified, Account.SUSPENDED, 1));
+        assertFalse(rules.permits(ValidationRules.Operation.DEPOSIT, closed, Account.CLOSED, 100));
+        assertFalse(rules.permits(ValidationRules.Operation.DEPOSIT, verified, Account.VERIFIED, 0));
+        assertFalse(rules.permits(ValidationRules.Operation.WITHDRAW, verified, Account.SUSPENDED, 100));
+        assertTrue(rules.permits(ValidationRules.Operation.WITHDRAW, unverified, Account.UNVERIFIED, 100));
+        assertFalse(rules.permits(ValidationRules.Operation.TRANSFER_OUT, unverified, Account.UNVERIFIED, 100));
+        assertTrue(rules.permits(ValidationRules.Operation.TRANSFER_IN, unverified, Account.UNVERIFIED, 100));
+        assertFalse(rules.permits(ValidationRules.Operation.TRANSFER_IN, closed, Account.CLOSED, 100));
+        // Equal but not identical status strings still resolve
+        assertTrue(rules.permits(ValidationRules.Operation.TRANSFER_OUT, verified, new String("Verified"), 100));
+        // Any other status is only kept from sending transfers, as before the table
+        assertTrue(rules.permits(ValidationRules.Operation.DEPOSIT, verified, "FROZEN", 100));
+        assertFalse(rules.permits(ValidationRules.Operation.DEPOSIT, verified, "FROZEN", 0));
+        assertTrue(rules.permits(ValidationRules.Operation.WITHDRAW, verified, "FROZEN", 100));
+        assertFalse(rules.permits(ValidationRules.Operation.TRANSFER_OUT, verified, "FROZEN", 100));
+        assertTrue(rules.permits(ValidationRules.Operation.TRANSFER_IN, verified, "FROZEN", 100));
+    }
+    
+    @Test
+    @DisplayName("Defaults: an account in a custom status still takes deposits")
+    void customStatus() {
+        Account frozen = new Account("VAL-004", 10.0, Account.VERIFIED);
+        frozen.setStatus("FROZEN");
+        
+        assertTrue(processor.deposit(frozen, 5.0).isSuccess());
+        assertTrue(processor.transfer(verified, frozen, 5.0).isSuccess());
+        assertFalse(processor.transfer(frozen, verified, 1.0).isSuccess());
+        assertEquals(20.0, frozen.getBalance(), 0.001);
+        
+        // Operation-wide rules reach it, per-status denials cannot name it
+        ValidationRules capped = ValidationRules.builder()
+                .from(ValidationRules.DEFAULT)
+                .maxAmount(ValidationRules.Operation.DEPOSIT, Money.of(100.0))
+                .build();
+        assertFalse(capped.permits(ValidationRules.Operation.DEPOSIT, frozen, "FROZEN", 10_001));
+        assertTrue(capped.permits(ValidationRules.Operation.DEPOSIT, frozen, "FROZEN", 10_000));
+    }
+    
+    @Test
+    @DisplayName("Processor: insufficient funds reported before status")
+    void insufficientFundsFirst() {
+        Account suspended = new Account("VAL-004", 10.0, Account.SUSPENDED);
+        TransactionProcessor.Result result = processor.withdraw(suspended, 50.0);
+        assertEquals(TransactionProcessor.Result.INSUFFICIENT_FUNDS, result.getCode());
+        result = processor.withdraw(suspended, 5.0);
+        assertEquals(TransactionProcessor.Result.WITHDRAWAL_FAILED, result.getCode());
+        assertEquals(10.0, suspended.getBalance(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Builder: per-status amount limit")
+    void perStatusLimit() {
+        processor.setValidationRules(ValidationRules.builder()
+                .from(ValidationRules.DEFAULT)
+                .maxAmount(ValidationRules.Operation.WITHDRAW, Account.UNVERIFIED, Money.ofMajorUnits(100))
+                .build());
+        
+        assertFalse(processor.withdraw(unverified, 150.0).isSuccess());
+        assertTrue(processor.withdraw(unverified, 100.0).isSuccess());
+        assertTrue(processor.withdraw(verified, 150.0).isSuccess());
+        assertEquals(900.0, unverified.getBalance(), 0.001);
+        assertEquals(850.0, verified.getBalance(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Builder: custom rule applies to transfers")
+    void customRule() {
+        Account target = new Account("VAL-005", 0.0, Account.VERIFIED);
+        // Transfers only into accounts holding less than $500
+        processor.setValidationRules(ValidationRules.builder()
+                .from(ValidationRules.DEFAULT)
+                .require(ValidationRules.Operation.TRANSFER_IN,
+                        (account, amount) -> account.getBalanceMinorUnits() + amount < 50_000)
+                .build());
+        
+        assertTrue(processor.transfer(verified, target, 400.0).isSuccess());
+        assertFalse(processor.transfer(verified, target, 200.0).isSuccess());
+        assertEquals(600.0, verified.getBalance(), 0.001);
+        assertEquals(400.0, target.getBalance(), 0.001);
+    }
+    
+    @Test
+    @DisplayName("Builder: unknown status rejected")
+    void unknownStatus() {
+        assertThrows(IllegalArgumentException.class, () ->
+                ValidationRules.builder().deny(ValidationRules.Operation.DEPOSIT, "FROZEN"));
+    }
+}
@@ -0,0 +1,162 @@
+package banking.integration;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration Tests for velocity limits.
+ * 
+ * Tests the flow:
+ *   TransactionProcessor.withdraw/transfer -> VelocityLimiter -> Account
+ */
+@DisplayName("Integration Tests - Velocity Limits")
+public class VelocityLimitTests {
+    
+    private static final long MINUTE = 60_000L;
+    
+    private AtomicLong now;
+    private TransactionProcessor processor;
+    private Account account;
+    
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(0);
+        processor = new TransactionProcessor();
+        // At most 3 debits and $500 per rolling hour
+        processor.setVelocityLimiter(new VelocityLimiter(3, 500.0, 60 * MINUTE, 12, now::get));
+        account = new Account("VEL-001", 10_000.0, Account.VERIFIED);
+    }
+    
+    @Test
+    @DisplayName("Velocity: count limit blocks the fourth withdrawal")
+    void countLimit() {
+        assertTrue(processor.withdraw(account, 10.0).isSuccess());
+        assertTrue(processor.withdraw(account, 10.0).isSuccess());
+        assertTrue(processor.withdraw(account, 10.0).isSuccess());
+        
+        TransactionProcessor.Result result = processor.withdraw(account, 10.0);
+        
+        assertFalse(result.isSuccess());
+        assertEquals(TransactionProcessor.Result.VELOCITY_LIMIT_EXCEEDED, result.getCode());
+        assertEquals(9970.0, account.getBalance());
+    }
+    
+    @Test
+    @DisplayName("Velocity: amount limit covers transfers too")
+    void amountLimit() {
+        Account target = new Account("VEL-002", 0.0, Account.VERIFIED);
+        
+        assertTrue(processor.withdraw(account, 300.0).isSuccess());
+        assertFalse(processor.transfer(account, target, 250.0).isSuccess());
+        assertTrue(processor.transfer(account, target, 200.0).isSuccess());
+        assertEquals(200.0, target.getBalance());
+    }
+    
+    @Test
+    @DisplayName("Velocity: limits free up as the window rolls")
+    void windowRolls() {
+        processor.withdraw(account, 100.0);
+        now.addAndGet(30 * MINUTE);
+        processor.withdraw(account, 100.0);
+        processor.withdraw(account, 100.0);
+        assertFalse(processor.withdraw(account, 100.0).isSuccess());
+        
+        now.addAndGet(31 * MINUTE); // first withdrawal has left the window
+        
+        assertTrue(processor.withdraw(account, 100.0).isSuccess());
+        assertFalse(processor.withdraw(account, 100.0).isSuccess());
+    }
+    
+    @Test
+    @DisplayName("Velocity: failed debits do not use up the limit")
+    void failedDebitReleased() {
+        account.setStatus(Account.SUSPENDED);
+        for (int i = 0; i < 5; i++) {
+            assertFalse(processor.withdraw(account, 10.0).isSuccess());
+        }
+        account.setStatus(Account.VERIFIED);
+        
+        assertTrue(processor.withdraw(account, 10.0).isSuccess());
+    }
+    
+    @Test
+    @DisplayName("Velocity: a release refunds the bucket the debit was reserved in")
+    void releaseRefundsReservedBucket() {
+        VelocityLimiter limiter = new VelocityLimiter(3, 500.0, 60 * MINUTE, 12, now::get);
+        long first = limiter.reserve(account, 400.0);
+        assertNotEquals(VelocityLimiter.NO_RESERVATION, first);
+        now.addAndGet(10 * MINUTE);
+        long second = limiter.reserve(account, 100.0);
+        
+        limiter.release(account, first, 400.0);
+        
+        assertTrue(limiter.tryAcquire(account, 400.0));
+        // The second reservation is still counted, and leaves with its bucket
+        assertFalse(limiter.tryAcquire(account, 1.0));
+        now.addAndGet(61 * MINUTE);
+        assertTrue(limiter.tryAcquire(account, 100.0));
+        assertNotEquals(VelocityLimiter.NO_RESERVATION, second);
+    }
+    
+    @Test
+    @DisplayName("Velocity: a partly applied bulk transfer counts what was debited")
+    void bulkTransferShrinksReservation() {
+        Account payee = new Account("VEL-003", 0.0, Account.VERIFIED);
+        Account closed = new Account("VEL-004", 0.0, Account.CLOSED);
+        
+        BulkTransfer.Result result = processor.transfer(new BulkTransfer(account)
+                .credit(payee, 300.0)
+                .credit(closed, 150.0));
+        
+        assertTrue(result.isSuccess());
+        assertEquals(1, result.getRejected().size());
+        // One debit of $300: $200 and one more debit are left
+        assertTrue(processor.withdraw(account, 200.0).isSuccess());
+        assertFalse(processor.withdraw(account, 0.01).isSuccess());
+        now.addAndGet(61 * MINUTE);
+        assertTrue(processor.withdraw(account, 500.0).isSuccess());
+    }
+    
+    @Test
+    @DisplayName("Velocity: non-positive and oversized amounts are refused")
+    void badAmountsRefused() {
+        VelocityLimiter limiter = new VelocityLimiter(3, 500.0, 60 * MINUTE, 12, now::get);
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire(account, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> limiter.reserve(account, -5.0));
+        assertThrows(IllegalArgumentException.class, () -> limiter.reserve(account, Double.NaN));
+        // The running total plus the amount would overflow a long
+        VelocityLimiter huge = new VelocityLimiter(3, 9.0e16, 60 * MINUTE, 12, now::get);
+        assertTrue(huge.tryAcquire(account, 9.0e16));
+        assertFalse(huge.tryAcquire(account, 9.0e16));
+        
+        // Through the processor an invalid amount fails without using up a debit
+        for (int i = 0; i < 5; i++) {
+            assertFalse(processor.withdraw(account, -10.0).isSuccess());
+        }
+        assertTrue(processor.withdraw(account, 10.0).isSuccess());
+    }
+    
+    @Test
+    @DisplayName("Velocity: windows of idle accounts are evicted")
+    void idleWindowsEvicted() {
+        VelocityLimiter limiter = new VelocityLimiter(3, 500.0, 60 * MINUTE, 12, now::get);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire(new Account("VEL-IDLE-" + i, 100.0, Account.VERIFIED), 1.0));
+        }
+        assertEquals(100, limiter.size());
+        
+        now.addAndGet(61 * MINUTE);
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire(account, 0.01);
+            now.addAndGet(60 * MINUTE);
+        }
+        
+        assertEquals(1, limiter.size());
+    }
+}
@@ -0,0 +1,120 @@
+package banking.whitebox;
+
+import banking.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * White-Box Tests for Money.
+ * 
+ * Checks the minor-unit representation through parsing, arithmetic,
+ * formatting and the double conversions, and that Account and
+ * TransactionProcessor apply Money amounts without rounding.
+ */
+@DisplayName("White-Box Tests - Money")
+public class MoneyTests {
+    
+    private TransactionProcessor processor;
+    private Account account;
+    
+    @BeforeEach
+    void setUp() {
+        processor = new TransactionProcessor();
+        account = new Account("MNY-001", Money.parse("0.00"), Account.VERIFIED);
+    }
+    
+    @Test
+    @DisplayName("Money: repeated cent deposits do not drift")
+    void noDrift() {
+        Money tenCents = Money.parse("0.10");
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(processor.deposit(account, tenCents).isSuccess());
+        }
+        
+        assertEquals(Money.ofMajorUnits(100), account.getBalanceAsMoney());
+        assertEquals(10_000, account.getBalanceMinorUnits());
+        assertEquals(100.0, account.getBalance());
+    }
+    
+    @Test
+    @DisplayName("Money: result messages are formatted exactly")
+    void exactMessages() {
+        assertEquals("Deposited $19.90", processor.deposit(account, Money.parse("19.9")).getMessage());
+        assertEquals("Withdrew $0.05", processor.withdraw(account, Money.parse("0.05")).getMessage());
+        assertEquals("Deposited $100.00", processor.deposit(account, 100.0).getMessage());
+        assertEquals(Money.parse("119.85"), account.getBalanceAsMoney());
+    }
+    
+    @Test
+    @DisplayName("Money: withdraw and transfer compare exact amounts")
+    void exactComparison() {
+        Account target = new Account("MNY-002", Money.ZERO, Account.VERIFIED);
+        processor.deposit(account, Money.parse("0.30"));
+        
+        assertEquals(TransactionProcessor.Result.INSUFFICIENT_FUNDS,
+                processor.withdraw(account, Money.parse("0.31")).getCode());
+        assertTrue(processor.transfer(account, target, Money.parse("0.10")).isSuccess());
+        assertTrue(processor.transfer(account, target, Money.parse("0.20")).isSuccess());
+        assertTrue(account.getBalanceAsMoney().isZero());
+        assertEquals(Money.parse("0.30"), target.getBalanceAsMoney());
+    }
+    
+    @Test
+    @DisplayName("Money: double amounts are rounded to the cent")
+    void doubleAmountsRounded() {
+        assertTrue(account.deposit(0.1 + 0.2));
+        assertEquals(Money.parse("0.30"), account.getBalanceAsMoney());
+        // Less than half a cent is not an amount
+        assertFalse(account.deposit(0.004));
+        // Nor is anything that does not fit in a long of cents
+        assertFalse(account.deposit(Double.POSITIVE_INFINITY));
+        assertFalse(account.deposit(Double.NaN));
+        assertFalse(account.deposit(1e300));
+        assertEquals(TransactionProcessor.Result.DEPOSIT_FAILED,
+                processor.deposit(account, Double.POSITIVE_INFINITY).getCode());
+        assertFalse(account.withdraw(Double.NEGATIVE_INFINITY));
+        assertEquals(Money.parse("0.30"), account.getBalanceAsMoney());
+    }
+    
+    @Test
+    @DisplayName("Money: parsing, arithmetic and formatting")
+    void valueType() {
+        assertEquals(-5, Money.parse("-0.05").getMinorUnits());
+        assertEquals("-0.05", Money.parse("-0.05").toString());
+        assertEquals("-12.30", Money.parse("-12.3").toString());
+        assertEquals("7.00", Money.parse("7").toString());
+        assertEquals(Money.parse("10.01"), Money.parse("10.00").plus(Money.ofMinorUnits(1)));
+        assertEquals(Money.parse("-2.50"), Money.parse("2.50").negate());
+        assertEquals(Money.parse("7.50"), Money.parse("2.50").times(3));
+        assertTrue(Money.parse("0.10").compareTo(Money.parse("0.09")) > 0);
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.005"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinorUnits(Long.MAX_VALUE).plus(Money.ofMinorUnits(1)));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(Double.NaN));
+    }
+    
+    @Test
+    @DisplayName("Money: raw minor-unit helpers match the value type")
+    void rawMinorUnits() {
+        assertEquals(Money.parse("10.01").getMinorUnits(), Money.add(1000, 1));
+        assertEquals(-250, Money.subtract(0, 250));
+        assertEquals(Money.parse("2.50").times(3).getMinorUnits(), Money.multiply(250, 3));
+        assertEquals("10.01", Money.format(Money.add(1000, 1)));
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.subtract(Long.MIN_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.multiply(Long.MAX_VALUE, 2));
+    }
+    
+    @Test
+    @DisplayName("Money: credit limits are exact amounts")
+    void creditLimits() {
+        CreditScoreChecker checker = new CreditScoreChecker();
+        
+        assertEquals(Money.ofMajorUnits(50000), checker.getCreditLimit(800));
+        assertEquals(Money.ZERO, checker.getCreditLimit(400));
+        assertEquals(25000.0, checker.getMaxCredit(700));
+    }
+}
@@ -0,0 +1,178 @@
+package banking.whitebox;
+
+import banking.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * White-Box Tests for TransactionCodec.
+ * 
+ * Checks the fixed frame layout field by field, the conversion of
+ * amounts into minor units, and the rejection of malformed frames.
+ */
+@DisplayName("White-Box Tests - Transaction Codec")
+public class TransactionCodecTests {
+    
+    @Test
+    @DisplayName("Codec: transfer command round-trips through a direct buffer")
+    void transferRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TransactionCodec.COMMAND_LENGTH);
+        TransactionCodec.encodeTransfer(buffer, 42L, "ACC-1", "ACC-2", 125.5);
+        
+        TransactionCodec.CommandView view = new TransactionCodec.CommandView().wrap(buffer, 0);
+        
+        assertEquals(TransactionCodec.COMMAND_LENGTH, buffer.position());
+        assertEquals(TransactionCodec.TRANSFER, view.type());
+        assertEquals(42L, view.correlationId());
+        assertEquals(12550L, view.amountMinorUnits());
+        assertEquals(125.5, view.amount());
+        assertEquals("ACC-1", view.accountId());
+        assertEquals("ACC-2", view.targetId());
+        assertTrue(view.accountIdEquals("ACC-1"));
+        assertFalse(view.accountIdEquals("ACC-10"));
+    }
+    
+    @Test
+    @DisplayName("Codec: frames are packed back to back")
+    void multipleFrames() {
+        ByteBuffer buffer = ByteBuffer.allocate(3 * TransactionCodec.COMMAND_LENGTH);
+        TransactionCodec.encodeDeposit(buffer, 1, "A", 10.0);
+        TransactionCodec.encodeWithdraw(buffer, 2, "B", 20.0);
+        TransactionCodec.encodeStatusChange(buffer, 3, "C", TransactionCodec.CLOSE);
+        
+        TransactionCodec.CommandView view = new TransactionCodec.CommandView();
+        
+        assertEquals(TransactionCodec.DEPOSIT, view.wrap(buffer, 0).type());
+        assertEquals(TransactionCodec.WITHDRAW, view.wrap(buffer, 64).type());
+        assertEquals(20.0, view.amount());
+        assertEquals(TransactionCodec.STATUS_CHANGE, view.wrap(buffer, 128).type());
+        assertEquals(TransactionCodec.CLOSE, view.statusOp());
+    }
+    
+    @Test
+    @DisplayName("Codec: decoded commands drive the processor and results round-trip")
+    void applyAndEncodeResult() {
+        Map<String, Account> accounts = new HashMap<>();
+        accounts.put("ACC-1", new Account("ACC-1", 100.0, Account.VERIFIED));
+        TransactionProcessor processor = new TransactionProcessor();
+        
+        ByteBuffer command = ByteBuffer.allocate(TransactionCodec.COMMAND_LENGTH);
+        TransactionCodec.encodeWithdraw(command, 7, "ACC-1", 500.0);
+        TransactionCodec.CommandView view = new TransactionCodec.CommandView().wrap(command, 0);
+        TransactionProcessor.Result result = TransactionCodec.apply(view, processor, accounts::get);
+        
+        ByteBuffer out = ByteBuffer.allocateDirect(TransactionCodec.RESULT_LENGTH);
+        TransactionCodec.encodeResult(out, view.type(), view.correlationId(), view.amount(), result);
+        TransactionCodec.ResultView decoded = new TransactionCodec.ResultView().wrap(out, 0);
+        
+        assertFalse(decoded.isSuccess());
+        assertEquals(7L, decoded.correlationId());
+        assertEquals(TransactionProcessor.Result.INSUFFICIENT_FUNDS, decoded.code());
+        assertEquals(result.getMessage(), decoded.toResult().getMessage());
+    }
+    
+    @Test
+    @DisplayName("Codec: success message is rebuilt from code and amount")
+    void successMessageRebuilt() {
+        Account account = new Account("ACC-3", 0.0, Account.VERIFIED);
+        TransactionProcessor.Result result = new TransactionProcessor().deposit(account, 99.99);
+        
+        ByteBuffer out = ByteBuffer.allocate(TransactionCodec.RESULT_LENGTH);
+        TransactionCodec.encodeResult(out, TransactionCodec.DEPOSIT, 1, 99.99, result);
+        
+        assertEquals(result.getMessage(), new TransactionCodec.ResultView().wrap(out, 0).toResult().getMessage());
+    }
+    
+    @Test
+    @DisplayName("Codec: ids longer than the fixed field are rejected")
+    void longIdRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(TransactionCodec.COMMAND_LENGTH);
+        assertThrows(IllegalArgumentException.class,
+                () -> TransactionCodec.encodeDeposit(buffer, 1, "ACCOUNT-ID-FAR-TOO-LONG-1", 1.0));
+    }
+    
+    @Test
+    @DisplayName("Codec: a frame with an out-of-range id length is rejected")
+    void badIdLengthRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(TransactionCodec.COMMAND_LENGTH);
+        TransactionCodec.encodeTransfer(buffer, 1, "ACC-1", "ACC-2", 1.0);
+        TransactionCodec.CommandView view = new TransactionCodec.CommandView().wrap(buffer, 0);
+        
+        buffer.put(2, (byte) (TransactionCodec.MAX_ID_LENGTH + 1));
+        assertThrows(IllegalArgumentException.class, view::accountId);
+        assertThrows(IllegalArgumentException.class, () -> view.accountIdEquals("ACC-1"));
+        buffer.put(3, (byte) -1);
+        assertThrows(IllegalArgumentException.class, view::targetId);
+    }
+    
+    @Test
+    @DisplayName("Codec: encoding leaves the buffer's byte order alone")
+    void byteOrderKept() {
+        ByteBuffer buffer = ByteBuffer.allocate(TransactionCodec.COMMAND_LENGTH + TransactionCodec.RESULT_LENGTH);
+        TransactionCodec.encodeDeposit(buffer, 7L, "ACC-1", 12.34);
+        TransactionCodec.encodeResult(buffer, TransactionCodec.DEPOSIT, 7L, 12.34,
+                new TransactionProcessor.Result(true, "ok", TransactionProcessor.Result.OK));
+        
+        assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+        assertEquals(1234L, Long.reverseBytes(buffer.getLong(16)));
+        assertEquals(7L, new TransactionCodec.CommandView().wrap(buffer, 0).correlationId());
+        assertEquals(1234L, new TransactionCodec.ResultView()
+                .wrap(buffer, TransactionCodec.COMMAND_LENGTH).amountMinorUnits());
+    }
+    
+    @Test
+    @DisplayName("Codec: NaN and infinite amounts encode as 0 and are rejected")
+    void nonFiniteAmounts() {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * TransactionCodec.COMMAND_LENGTH);
+        TransactionCodec.encodeDeposit(buffer, 1, "ACC-1", Double.NaN);
+        TransactionCodec.encodeWithdraw(buffer, 2, "ACC-1", Double.POSITIVE_INFINITY);
+        TransactionCodec.encodeTransfer(buffer, 3, "ACC-1", "ACC-2", Double.NEGATIVE_INFINITY);
+        TransactionCodec.encodeDeposit(buffer, 4, "ACC-1", 1e300);
+        TransactionCodec.CommandView view = new TransactionCodec.CommandView();
+        Account account = new Account("ACC-1", 100.0, Account.VERIFIED);
+        Map<String, Account> accounts = Map.of("ACC-1", account, "ACC-2", new Account("ACC-2", 0.0));
+        TransactionProcessor processor = new TransactionProcessor();
+        
+        for (int i = 0; i < 4; i++) {
+            view.wrap(buffer, i * TransactionCodec.COMMAND_LENGTH);
+            assertEquals(0L, view.amountMinorUnits());
+            assertFalse(TransactionCodec.apply(view, processor, accounts::get).isSuccess());
+        }
+        assertEquals(100.0, account.getBalance());
+        
+        ByteBuffer result = ByteBuffer.allocate(TransactionCodec.RESULT_LENGTH);
+        TransactionCodec.encodeResult(result, TransactionCodec.DEPOSIT, 1, Double.NaN,
+                new TransactionProcessor.Result(false, "Deposit failed", TransactionProcessor.Result.DEPOSIT_FAILED));
+        assertEquals(0L, new TransactionCodec.ResultView().wrap(result, 0).amountMinorUnits());
+        
+        ByteBuffer open = ByteBuffer.allocate(TransactionCodec.COMMAND_LENGTH);
+        assertThrows(IllegalArgumentException.class,
+                () -> TransactionCodec.encodeOpen(open, 1, "ACC-3", Double.NaN, (byte) 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> TransactionCodec.encodeOpen(open, 1, "ACC-3", Double.POSITIVE_INFINITY, (byte) 0));
+    }
+    
+    @Test
+    @DisplayName("Codec: Money amounts are encoded exactly")
+    void moneyAmountsExact() {
+        Money large = Money.parse("90071992547409.87");
+        ByteBuffer buffer = ByteBuffer.allocate(2 * TransactionCodec.COMMAND_LENGTH + TransactionCodec.RESULT_LENGTH);
+        TransactionCodec.encodeOpen(buffer, 1, "ACC-1", large, TransactionCodec.VERIFY);
+        TransactionCodec.encodeTransfer(buffer, 2, "ACC-1", "ACC-2", large);
+        TransactionCodec.encodeResult(buffer, TransactionCodec.TRANSFER, 2, large,
+                new TransactionProcessor.Result(true, "ok", TransactionProcessor.Result.OK));
+        TransactionCodec.CommandView view = new TransactionCodec.CommandView();
+        
+        assertEquals(9_007_199_254_740_987L, view.wrap(buffer, 0).amountMinorUnits());
+        assertEquals(9_007_199_254_740_987L, view.wrap(buffer, TransactionCodec.COMMAND_LENGTH).amountMinorUnits());
+        assertEquals(9_007_199_254_740_987L, new TransactionCodec.ResultView()
+                .wrap(buffer, 2 * TransactionCodec.COMMAND_LENGTH).amountMinorUnits());
+    }
+}